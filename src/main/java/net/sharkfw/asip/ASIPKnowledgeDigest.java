@@ -0,0 +1,465 @@
+package net.sharkfw.asip;
+
+import net.sharkfw.knowledgeBase.STSet;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SharkVocabulary;
+import net.sharkfw.knowledgeBase.inmemory.InMemoInformation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compact summary of a knowledge base - a bloom filter of the SIs of its
+ * topics, types and peers and of its information, and an exact list of
+ * 64 bit keys of its information. It is sent along with an expose: the
+ * receiver can tell that the sender holds each of its information which
+ * matches the exposed interest and skip extraction and transmission, see
+ * {@link #hasNothingNew(ASIPKnowledge, ASIPSpace)}.
+ * <p>
+ * A bloom filter has no false negatives. If an item isn't found, the
+ * sender doesn't have it. An item which is found is missing with
+ * {@link #getFalsePositiveRate()} at most - that is no reason to skip it.
+ * Information are only taken as present if their key is in the exact list
+ * as well. That list is bounded: a digest of a larger knowledge base is
+ * incomplete, it never proves that the sender has nothing new.
+ * <p>
+ * Information are identified by name, the fingerprint of their semantic
+ * annotation and content - like in sync. Information ids aren't used, they
+ * differ on each peer.
+ */
+public class ASIPKnowledgeDigest {
+
+    /** digests of other versions are ignored by receivers */
+    public static final int VERSION = 2;
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    public static final int TOPIC = 1;
+    public static final int TYPE = 2;
+    public static final int PEER = 3;
+    public static final int INFORMATION = 4;
+
+    // 8 KByte each - digest is piggybacked on exposes
+    private static final int MAX_BITS = 64 * 1024;
+    public static final int MAX_INFORMATION_KEYS = 1024;
+
+    private static final int MIN_BITS = 64;
+    private static final int MAX_HASHES = 16;
+
+    private final long[] bits;
+    private final int numBits;
+    private final int hashes;
+
+    // exact keys of information - sorted before being searched or written
+    private long[] informationKeys = new long[0];
+    private int numberInformationKeys = 0;
+    private boolean sorted = true;
+    private boolean complete = true;
+
+    /**
+     * @param expectedItems number of items which are going to be added
+     * @param falsePositiveRate e.g. {@link #DEFAULT_FALSE_POSITIVE_RATE} - size
+     * of filter is bounded, rate is higher with many items
+     */
+    public ASIPKnowledgeDigest(int expectedItems, double falsePositiveRate) {
+        int n = Math.max(1, expectedItems);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+
+        double m = -n * Math.log(p) / (Math.log(2) * Math.log(2));
+        int numBits = (int) Math.min(MAX_BITS, Math.max(MIN_BITS, Math.ceil(m)));
+        // whole words
+        numBits = (numBits + 63) & ~63;
+
+        this.numBits = numBits;
+        this.bits = new long[numBits / 64];
+        this.hashes = (int) Math.min(MAX_HASHES, Math.max(1, Math.round((double) numBits / n * Math.log(2))));
+    }
+
+    private ASIPKnowledgeDigest(long[] bits, int hashes, long[] informationKeys, boolean complete) {
+        this.bits = bits;
+        this.numBits = bits.length * 64;
+        this.hashes = hashes;
+        this.informationKeys = informationKeys;
+        this.numberInformationKeys = informationKeys.length;
+        this.complete = complete;
+    }
+
+    /**
+     * @param knowledge
+     * @return digest of vocabulary and information of knowledge
+     * @throws SharkKBException
+     */
+    public static ASIPKnowledgeDigest create(ASIPKnowledge knowledge) throws SharkKBException {
+        return create(knowledge, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    public static ASIPKnowledgeDigest create(ASIPKnowledge knowledge, double falsePositiveRate) throws SharkKBException {
+        SharkVocabulary vocabulary = knowledge.getVocabulary();
+        if (vocabulary == null && knowledge instanceof SharkVocabulary) {
+            vocabulary = (SharkVocabulary) knowledge;
+        }
+
+        // items are collected first - size of filter depends on their number
+        List<byte[]> items = new ArrayList<>();
+        List<byte[]> infoItems = new ArrayList<>();
+        if (vocabulary != null) {
+            addTags(items, TOPIC, vocabulary.getTopicSTSet());
+            addTags(items, TYPE, vocabulary.getTypeSTSet());
+            addTags(items, PEER, vocabulary.getPeerSTSet());
+        }
+        Iterator<ASIPInformationSpace> spaces = knowledge.informationSpaces();
+        while (spaces != null && spaces.hasNext()) {
+            ASIPInformationSpace space = spaces.next();
+            Iterator<ASIPInformation> infos = space.informations();
+            while (infos.hasNext()) {
+                infoItems.add(informationKey(infos.next()));
+            }
+        }
+
+        ASIPKnowledgeDigest digest = new ASIPKnowledgeDigest(items.size() + infoItems.size(), falsePositiveRate);
+        for (byte[] item : items) {
+            digest.add(item);
+        }
+        for (byte[] item : infoItems) {
+            digest.addInformation(item);
+        }
+        return digest;
+    }
+
+    private static void addTags(List<byte[]> items, int kind, STSet set) throws SharkKBException {
+        if (set == null) return;
+        Enumeration<SemanticTag> tags = set.tags();
+        while (tags != null && tags.hasMoreElements()) {
+            String[] sis = tags.nextElement().getSI();
+            if (sis == null) continue;
+            for (String si : sis) {
+                if (si != null) {
+                    items.add(tagKey(kind, si));
+                }
+            }
+        }
+    }
+
+    public void add(int kind, SemanticTag tag) {
+        if (tag == null || tag.getSI() == null) return;
+        for (String si : tag.getSI()) {
+            if (si != null) {
+                this.add(tagKey(kind, si));
+            }
+        }
+    }
+
+    public void add(ASIPInformation info) throws SharkKBException {
+        this.addInformation(informationKey(info));
+    }
+
+    /**
+     * @param kind {@link #TOPIC}, {@link #TYPE} or {@link #PEER}
+     * @param tag
+     * @return false if none of the SIs of tag is in that dimension - true
+     * if tag is there or a false positive
+     */
+    public boolean mightContain(int kind, SemanticTag tag) {
+        if (tag == null || tag.getSI() == null) return false;
+        for (String si : tag.getSI()) {
+            if (si != null && this.mightContain(tagKey(kind, si))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param info
+     * @return false if info isn't there - true if it is there or a false positive
+     * @throws SharkKBException
+     */
+    public boolean mightContain(ASIPInformation info) throws SharkKBException {
+        return this.mightContain(informationKey(info));
+    }
+
+    /**
+     * @param info
+     * @return true if key of info is in the exact list - false if it isn't
+     * there or the list is incomplete
+     * @throws SharkKBException
+     */
+    public boolean contains(ASIPInformation info) throws SharkKBException {
+        byte[] item = informationKey(info);
+        // filter answers most misses without searching
+        return this.mightContain(item) && this.containsInformationKey(exactKey(item));
+    }
+
+    /**
+     * @return false if knowledge had more information than {@link #MAX_INFORMATION_KEYS}
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Tests all information of knowledge in space. Nothing is copied - that
+     * is much cheaper than extracting knowledge. Each information must be
+     * confirmed by the exact list, see {@link #contains(ASIPInformation)}.
+     *
+     * @param knowledge local knowledge
+     * @param space interest of peer which sent the digest - null: all information
+     * @return true if peer which sent the digest has each of that information
+     * - nothing to offer
+     * @throws SharkKBException
+     */
+    public boolean hasNothingNew(ASIPKnowledge knowledge, ASIPSpace space) throws SharkKBException {
+        Iterator<ASIPInformationSpace> spaces = space != null
+                ? knowledge.getInformationSpaces(space) : knowledge.informationSpaces();
+        while (spaces != null && spaces.hasNext()) {
+            Iterator<ASIPInformation> infos = spaces.next().informations();
+            while (infos.hasNext()) {
+                if (!this.contains(infos.next())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return expected rate of false positives with current fill
+     */
+    public double getFalsePositiveRate() {
+        int set = 0;
+        for (long word : this.bits) {
+            set += Long.bitCount(word);
+        }
+        return Math.pow((double) set / this.numBits, this.hashes);
+    }
+
+    /**
+     * @return size of filter in bits
+     */
+    public int size() {
+        return this.numBits;
+    }
+
+    /**
+     * @return version, number of hash functions, bits, completeness and
+     * exact information keys
+     */
+    public synchronized byte[] toByteArray() {
+        this.sortInformationKeys();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(
+                11 + this.bits.length * 8 + this.numberInformationKeys * 8);
+        DataOutputStream out = new DataOutputStream(baos);
+        try {
+            out.writeByte(VERSION);
+            out.writeByte(this.hashes);
+            out.writeInt(this.bits.length);
+            for (long word : this.bits) {
+                out.writeLong(word);
+            }
+            out.writeBoolean(this.complete);
+            out.writeInt(this.numberInformationKeys);
+            for (int i = 0; i < this.numberInformationKeys; i++) {
+                out.writeLong(this.informationKeys[i]);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // cannot happen with byte array
+            throw new IllegalStateException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @param bytes created by {@link #toByteArray()}
+     * @return digest
+     * @throws SharkKBException unknown version or malformed
+     */
+    public static ASIPKnowledgeDigest fromByteArray(byte[] bytes) throws SharkKBException {
+        if (bytes == null || bytes.length < 11) {
+            throw new SharkKBException("knowledge digest too short");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new SharkKBException("unknown knowledge digest version: " + version);
+            }
+            int hashes = in.readUnsignedByte();
+            int words = in.readInt();
+            if (hashes < 1 || hashes > MAX_HASHES || words < 1 || words > MAX_BITS / 64
+                    || bytes.length < 11 + words * 8) {
+                throw new SharkKBException("malformed knowledge digest");
+            }
+            long[] bits = new long[words];
+            for (int i = 0; i < words; i++) {
+                bits[i] = in.readLong();
+            }
+            boolean complete = in.readBoolean();
+            int keys = in.readInt();
+            if (keys < 0 || keys > MAX_INFORMATION_KEYS || bytes.length != 11 + words * 8 + keys * 8) {
+                throw new SharkKBException("malformed knowledge digest");
+            }
+            long[] informationKeys = new long[keys];
+            for (int i = 0; i < keys; i++) {
+                informationKeys[i] = in.readLong();
+                if (i > 0 && informationKeys[i] < informationKeys[i - 1]) {
+                    throw new SharkKBException("malformed knowledge digest: keys not sorted");
+                }
+            }
+            return new ASIPKnowledgeDigest(bits, hashes, informationKeys, complete);
+        } catch (IOException e) {
+            throw new SharkKBException("malformed knowledge digest: " + e.getMessage());
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                              hashing                              //
+    ///////////////////////////////////////////////////////////////////////
+
+    private void add(byte[] item) {
+        long h1 = toLong(item, 0);
+        long h2 = toLong(item, 8);
+        for (int i = 0; i < this.hashes; i++) {
+            int bit = this.index(h1 + i * h2);
+            this.bits[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    private synchronized void addInformation(byte[] item) {
+        this.add(item);
+        if (this.numberInformationKeys == MAX_INFORMATION_KEYS) {
+            this.complete = false;
+            return;
+        }
+        if (this.numberInformationKeys == this.informationKeys.length) {
+            this.informationKeys = Arrays.copyOf(this.informationKeys,
+                    Math.min(MAX_INFORMATION_KEYS, Math.max(16, this.numberInformationKeys * 2)));
+        }
+        this.informationKeys[this.numberInformationKeys++] = exactKey(item);
+        this.sorted = false;
+    }
+
+    private synchronized void sortInformationKeys() {
+        if (!this.sorted) {
+            Arrays.sort(this.informationKeys, 0, this.numberInformationKeys);
+            this.sorted = true;
+        }
+    }
+
+    private synchronized boolean containsInformationKey(long key) {
+        this.sortInformationKeys();
+        return Arrays.binarySearch(this.informationKeys, 0, this.numberInformationKeys, key) >= 0;
+    }
+
+    /**
+     * Bytes 12 to 19 of SHA-1 - two different information share a key
+     * with probability 2^-64.
+     */
+    private static long exactKey(byte[] item) {
+        return toLong(item, 12);
+    }
+
+    private boolean mightContain(byte[] item) {
+        long h1 = toLong(item, 0);
+        long h2 = toLong(item, 8);
+        for (int i = 0; i < this.hashes; i++) {
+            int bit = this.index(h1 + i * h2);
+            if ((this.bits[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(long hash) {
+        return (int) ((hash & Long.MAX_VALUE) % this.numBits);
+    }
+
+    private static long toLong(byte[] hash, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (hash[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static MessageDigest createDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // each java platform provides SHA-1 and SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        if (s != null) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * SIs are compared case insensitive like in SharkCSAlgebra.
+     */
+    private static byte[] tagKey(int kind, String si) {
+        MessageDigest digest = createDigest("SHA-1");
+        digest.update((byte) kind);
+        update(digest, si.toLowerCase(Locale.ROOT));
+        return digest.digest();
+    }
+
+    private static byte[] informationKey(ASIPInformation info) throws SharkKBException {
+        MessageDigest digest = createDigest("SHA-1");
+        digest.update((byte) INFORMATION);
+        update(digest, info.getName());
+        update(digest, SharkAlgebra.fingerprint(info.getASIPSpace()));
+        update(digest, contentDigest(info));
+        return digest.digest();
+    }
+
+    /**
+     * @return SHA-256 of content as hex string - in memory information know it already
+     */
+    private static String contentDigest(ASIPInformation info) {
+        if (info instanceof InMemoInformation) {
+            return ((InMemoInformation) info).getContentDigest();
+        }
+
+        final MessageDigest digest = createDigest("SHA-256");
+        info.streamContent(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                digest.update(b, off, len);
+            }
+        });
+
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
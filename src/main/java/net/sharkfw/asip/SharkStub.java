@@ -18,6 +18,13 @@ public interface SharkStub {
     void addListener(ASIPPort newListener);
 
     void withdrawListener(ASIPPort listener);
+
+    /**
+     * Port changed its interest - messages are routed by port interests.
+     *
+     * @param listener
+     */
+    void listenerChanged(ASIPPort listener);
     
     void initSecurity(PrivateKey privateKey, /*SharkPublicKeyStorage publicKeyStorage,*/ /*SharkPkiStorage sharkPkiStorage,*/
             SharkEngine.SecurityLevel encryptionLevel, SharkEngine.SecurityLevel signatureLevel, 
@@ -4,11 +4,13 @@ import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPStub;
 import net.sharkfw.asip.SharkStub;
+import net.sharkfw.asip.serialization.ASIPFrameDecoder;
 import net.sharkfw.asip.serialization.ASIPMessageSerializer;
 import net.sharkfw.asip.serialization.ASIPSerializationHolder;
 import net.sharkfw.asip.serialization.ASIPSerializerException;
 import net.sharkfw.knowledgeBase.PeerSemanticTag;
 import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKB;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SystemPropertyHolder;
 import net.sharkfw.peer.SharkEngine;
@@ -20,10 +22,8 @@ import net.sharkfw.system.SharkException;
 import net.sharkfw.system.SharkSecurityException;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Objects of this class are resultSet of the scanning process
@@ -37,13 +37,14 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     private InputStream is;
     private SharkStub sharkStub;
     private ASIPKnowledge knowledge;
+    // knowledge was merged into that kb while decoded
+    private SharkKB insertTarget;
     private ASIPInterest interest;
     private InputStream raw;
-    private ASIPOutMessage response;
+    // ports handling an expose may respond concurrently
+    private volatile ASIPOutMessage response;
     private boolean parsed = false;
-    private ASIPSerializationHolder holder = null;
-    private byte[] jsonMessageBuffer;
-    private int messageRead;
+    private ASIPFrameDecoder decoder;
     private MessageStub messageStub;
     //    private boolean isEmpty = true;
 
@@ -56,6 +57,18 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
         this.is = con.getInputStream();
     }
 
+    /**
+     * Messages of a connection share a decoder - it keeps track of frame borders.
+     *
+     * @param se
+     * @param con
+     * @param decoder reads frames from input stream of con
+     */
+    public ASIPInMessage(SharkEngine se, StreamConnection con, ASIPFrameDecoder decoder) throws SharkKBException {
+        this(se, con);
+        this.decoder = decoder;
+    }
+
     public ASIPInMessage(SharkEngine se, byte[] msg, Stub stub) {
         super(se, null);
 
@@ -77,69 +90,39 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
         this.setCommand(ASIPMessage.ASIP_EXPOSE);
     }
 
+    /**
+     * Reads next frame from stream. Blocks until header is received. Content
+     * isn't buffered: knowledge is decoded while reading, raw content is handed
+     * over as stream which is valid until next message is parsed from this
+     * connection.
+     *
+     * @return true if message was parsed
+     * @throws IOException
+     * @throws SharkSecurityException
+     */
     public boolean parse() throws IOException, SharkSecurityException {
+        if(this.decoder == null) {
+            this.decoder = new ASIPFrameDecoder(this.is);
+        }
 
-        if(this.is.available() > 0){
-            if(holder == null){
-                byte[] configBuffer = new byte[ASIPSerializationHolder.CONFIG_LENGTH];
-                this.is.read(configBuffer);
-                try {
-                    holder = new ASIPSerializationHolder(new String(configBuffer, StandardCharsets.UTF_8));
-                } catch (ASIPSerializerException e) {
-                    e.printStackTrace();
-                    L.d(e.getMessage(), this);
-                    return false;
-                }
-
-                if(!holder.isASIP()){
-                    return false;
-                }
-                jsonMessageBuffer = new byte[(int) holder.getMessageLength()];
-                messageRead = 0;
-//                L.d("Config read", this);
-            }
-
-            if(messageRead < jsonMessageBuffer.length){
-                byte[] tempBuffer = new byte[jsonMessageBuffer.length - messageRead];
-                int tempRead = this.is.read(tempBuffer);
-
-                if( tempBuffer.length <= jsonMessageBuffer.length){
-                    System.arraycopy(tempBuffer, 0, jsonMessageBuffer, messageRead, tempRead);
-                    messageRead += tempRead;
-//                    L.d("Still reading json message", this);
-                }
-            }
-            if(messageRead > 0 && messageRead == jsonMessageBuffer.length){
-                holder.setMessage(new String(jsonMessageBuffer, StandardCharsets.UTF_8));
-//                L.d("Finished reading message", this);
-                if(this.is.available() > 0){
-//                    L.d("There is more available", this);
-                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                    int nRead;
-                    byte[] data = new byte[1024];
-
-//                    L.d("Start reading from stream", this);
-
-                    try{
-                        while ((nRead = this.is.read(data, 0, data.length)) != -1) {
-//                            L.d("Read: " + nRead, this);
-                            buffer.write(data, 0, nRead);
-                        }
-                    } catch (IOException e){
-                    } finally {
-//                        L.d("finished reading from stream", this);
-                        buffer.flush();
-                        holder.setContent(buffer.toByteArray());
-                    }
-                }
-                this.parsed = ASIPMessageSerializer.deserializeInMessage(this, holder);
-                return this.parsed;
-            } else {
-                return false;
-            }
-        } else {
+        ASIPSerializationHolder holder;
+        try {
+            holder = this.decoder.next();
+        } catch (ASIPSerializerException e) {
+            L.d(e.getMessage(), this);
             return false;
         }
+
+        if(holder == null) {
+            return false;
+        }
+
+        this.insertTarget = null;
+        this.parsed = ASIPMessageSerializer.deserializeInMessage(this, holder);
+        if(this.parsed && this.se != null) {
+            this.se.asipFormatReceived(this.getPhysicalSender(), this.getFormat());
+        }
+        return this.parsed;
     }
 
 //    public boolean isEmpty() {
@@ -154,6 +137,26 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
         this.knowledge = knowledge;
     }
 
+    /**
+     * Called by serializers when header of an insert has been decoded - asks
+     * ports for a kb to decode knowledge into, see {@link SharkEngine#getInsertTarget(ASIPInMessage)}.
+     *
+     * @return kb knowledge is to be merged into - null: knowledge is decoded into a new kb
+     */
+    public SharkKB findInsertTarget() {
+        this.insertTarget = this.se != null ? this.se.getInsertTarget(this) : null;
+        return this.insertTarget;
+    }
+
+    /**
+     * @return kb knowledge of this message was merged into while it was decoded -
+     * null if knowledge was decoded into a new kb. Knowledge of this message holds
+     * its vocabulary only in that case.
+     */
+    public SharkKB getInsertTarget() {
+        return this.insertTarget;
+    }
+
     public ASIPInterest getInterest() {
         return interest;
     }
@@ -235,9 +238,10 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
 //        if (receiveraddresses.length < 0)
 //            L.d("no address", this);
 
-        this.response = this.createResponse(null, null);
-        if (this.response != null) {
-            this.response.expose(interest);
+        ASIPOutMessage response = this.createResponse(null, null);
+        this.response = response;
+        if (response != null) {
+            response.expose(interest);
         }
     }
 
@@ -248,9 +252,10 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
 
     @Override
     public void insert(ASIPKnowledge k, String[] receiveraddresses) throws SharkException {
-        this.response = this.createResponse(null, null);
-        if (this.response != null) {
-            this.response.insert(k);
+        ASIPOutMessage response = this.createResponse(null, null);
+        this.response = response;
+        if (response != null) {
+            response.insert(k);
         }
     }
 
@@ -288,7 +293,8 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
 
     @Override
     public boolean responseSent() {
-        if (this.response == null) {
+        ASIPOutMessage response = this.response;
+        if (response == null) {
             return false;
         }
         return response.responseSent();
@@ -5,6 +5,7 @@
  */
 package net.sharkfw.asip.engine;
 
+import net.sharkfw.asip.ASIPKnowledgeDigest;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.protocols.MessageStub;
@@ -37,11 +38,16 @@ public abstract class ASIPMessage {
     public static final String TOPIC = "TOPIC";
     public static final String TYPE = "TYPE";
 
+    /** header is a json object - understood by all peers */
+    public static final String FORMAT_JSON = "JSON";
+    /** header is encoded compactly - see {@link net.sharkfw.asip.serialization.ASIPBinarySerializer} */
+    public static final String FORMAT_BINARY = "BNRY";
+
     private SharkEngine engine;
     private StreamConnection connection;
 
     private final String version = "ASIP1.0";
-    private final String format = "JSON";
+    private String format = FORMAT_JSON;
 
     private boolean encrypted = false;
     private String encryptedSessionKey = "";
@@ -57,6 +63,7 @@ public abstract class ASIPMessage {
     private TimeSemanticTag receiverTime = null;
     private SemanticTag topic;
     private SemanticTag type;
+    private ASIPKnowledgeDigest knowledgeDigest = null;
 
     private PrivateKey privateKey;
     //    private SharkPkiStorage sharkPkiStorage;
@@ -155,6 +162,14 @@ public abstract class ASIPMessage {
         return format;
     }
 
+    /**
+     * @param format {@link #FORMAT_JSON} or {@link #FORMAT_BINARY}. Binary
+     * messages must only be sent to peers which understand that format.
+     */
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
     public boolean isEncrypted() {
         return encrypted;
     }
@@ -266,6 +281,17 @@ public abstract class ASIPMessage {
         this.type = type;
     }
 
+    /**
+     * @return summary of the knowledge of the sender - only sent with exposes, can be null
+     */
+    public ASIPKnowledgeDigest getKnowledgeDigest() {
+        return knowledgeDigest;
+    }
+
+    public void setKnowledgeDigest(ASIPKnowledgeDigest knowledgeDigest) {
+        this.knowledgeDigest = knowledgeDigest;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,6 +5,7 @@ import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.engine.serializer.SharkProtocolNotSupportedException;
 import net.sharkfw.asip.serialization.ASIPMessageSerializer;
 import net.sharkfw.asip.serialization.ASIPSerializationHolder;
+import net.sharkfw.asip.serialization.ASIPSharedInsert;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.protocols.MessageStub;
@@ -28,6 +29,10 @@ public class ASIPOutMessage extends ASIPMessage {
     private boolean responseSent = false;
     private String recipientAddress = "";
     private MessageStub outStub;
+    private StreamConnection connection;
+    // true: connection was taken from pool for this message - release it when sent
+    private boolean acquiredFromPool = false;
+    private SharkEngine engine;
 
     public ASIPOutMessage(SharkEngine engine,
                           StreamConnection connection,
@@ -43,12 +48,18 @@ public class ASIPOutMessage extends ASIPMessage {
         super(engine, connection, ttl, physicalSender, logicalSender, receiverPeer, receiverLocation, receiverTime, topic, type);
         this.recipientAddress = connection.getReceiverAddressString();
         this.os = connection.getOutputStream();
+        this.connection = connection;
+        this.engine = engine;
     }
 
     public ASIPOutMessage(SharkEngine engine, StreamConnection connection, ASIPInMessage in, SemanticTag topic, SemanticTag type) throws SharkKBException {
         super(engine, connection, (in.getTtl() - 1), engine.getOwner(), in.getLogicalSender(), in.getPhysicalSender(), in.getReceiverSpatial(), in.getReceiverTime(), topic, type);
         this.recipientAddress = connection.getReceiverAddressString();
         this.os = connection.getOutputStream();
+        this.connection = connection;
+        this.engine = engine;
+        // peer understands format of its request
+        this.setFormat(in.getFormat());
     }
 
     public ASIPOutMessage(SharkEngine engine,
@@ -65,6 +76,7 @@ public class ASIPOutMessage extends ASIPMessage {
 
         super(engine, stub, ttl, physicalSender, logicalSender, receiverPeer, receiverLocation, receiverTime, topic, type);
         this.outStub = stub;
+        this.engine = engine;
         this.recipientAddress = address;
         this.os = new ByteArrayOutputStream();
     }
@@ -72,6 +84,8 @@ public class ASIPOutMessage extends ASIPMessage {
     public ASIPOutMessage(SharkEngine engine, MessageStub stub, ASIPInMessage in, SemanticTag topic, SemanticTag type) throws SharkKBException {
         super(engine, stub, (in.getTtl() - 1), engine.getOwner(), in.getLogicalSender(), in.getPhysicalSender(), in.getReceiverSpatial(), in.getReceiverTime(), topic, type);
         this.outStub = stub;
+        this.engine = engine;
+        this.setFormat(in.getFormat());
         for (String s : in.getPhysicalSender().getAddresses()) {
             try {
                 if(!Protocols.isStreamProtocol(Protocols.getValueByAddress(s))){
@@ -89,70 +103,174 @@ public class ASIPOutMessage extends ASIPMessage {
         return this.responseSent;
     }
 
-    private void sent() {
+    /**
+     * Set by the engine if the connection of this message was acquired from
+     * its connection pool. Only those connections are released after sending.
+     * Responses share the connection of their request - they must not release
+     * it, another message could own it.
+     *
+     * @param acquiredFromPool
+     */
+    public void setAcquiredFromPool(boolean acquiredFromPool) {
+        this.acquiredFromPool = acquiredFromPool;
+    }
 
-        try {
-            this.os.flush();
-            if (outStub != null) {
-                final byte[] msg = ((ByteArrayOutputStream) this.os).toByteArray();
+    /**
+     * Frames are written while holding this lock - messages sharing a
+     * connection (e.g. a response and a pooled message) don't interleave.
+     */
+    private Object writeLock() {
+        return this.os;
+    }
+
+    /**
+     * Message is written completely. Must be called holding the write lock.
+     *
+     * @throws IOException frame couldn't be flushed
+     */
+    private void sent() throws IOException {
+        this.os.flush();
+        if (outStub != null) {
+            final byte[] msg = ((ByteArrayOutputStream) this.os).toByteArray();
+            try {
                 this.outStub.sendMessage(msg, this.recipientAddress);
+            } catch (IOException e) {
+                // nothing left on a stream connection
+                L.e("cannot send message to " + this.recipientAddress + ": " + e.getMessage(), this);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+
+        if (this.connection != null && this.acquiredFromPool) {
+            // message is complete - connection can carry next message
+            this.engine.getConnectionPool().release(this.connection);
         }
 
         this.responseSent = true;
     }
 
+    /**
+     * Message couldn't be sent.
+     *
+     * @param e
+     * @param frameStarted true if bytes of the frame could have been written - the
+     * stream is out of sync then, the connection can't carry further messages.
+     */
+    private void failed(Exception e, boolean frameStarted) {
+        L.e("cannot send message to " + this.recipientAddress + ": " + e.getMessage(), this);
+        if (this.connection == null) {
+            return;
+        }
+        if (frameStarted) {
+            this.engine.getConnectionPool().discard(this.connection);
+        } else if (this.acquiredFromPool) {
+            this.engine.getConnectionPool().release(this.connection);
+        }
+    }
+
     public void expose(ASIPInterest interest) {
         this.setCommand(ASIPMessage.ASIP_EXPOSE);
+        if (this.getKnowledgeDigest() == null && this.engine != null && this.engine.getExposeKnowledgeDigest()) {
+            this.setKnowledgeDigest(this.engine.getKnowledgeDigest());
+        }
+        ASIPSerializationHolder holder;
         try {
-            ASIPSerializationHolder holder = ASIPMessageSerializer.serializeExpose(this, interest);
-            L.d("Sending an Expose with the complete Size of " + holder.length() + " Bytes", this);
-            this.os.write(holder.messageAsUtf8Bytes());
-        } catch (SharkKBException | IOException e) {
-            e.printStackTrace();
+            holder = ASIPMessageSerializer.serializeExpose(this, interest);
+        } catch (SharkKBException e) {
+            this.failed(e, false);
+            return;
+        }
+        L.d("Sending an Expose with the complete Size of " + holder.length() + " Bytes", this);
+        synchronized (this.writeLock()) {
+            try {
+                this.os.write(holder.messageAsUtf8Bytes());
+                this.sent();
+            } catch (IOException e) {
+                this.failed(e, true);
+            }
         }
-        this.sent();
     }
 
     public void insert(ASIPKnowledge knowledge) {
         this.setCommand(ASIPMessage.ASIP_INSERT);
+        ASIPSerializationHolder holder;
         try {
-            ASIPSerializationHolder holder = ASIPMessageSerializer.serializeInsert(this, knowledge);
-            L.d("Sending an Insert with the complete Size of " + holder.length() + " Bytes", this);
-            this.os.write(holder.messageAsUtf8Bytes());
-            this.os.write(holder.getContent());
-        } catch (SharkKBException | IOException e) {
-            e.printStackTrace();
+            holder = ASIPMessageSerializer.serializeInsert(this, knowledge);
+        } catch (SharkKBException e) {
+            this.failed(e, false);
+            return;
+        }
+        L.d("Sending an Insert with the complete Size of " + holder.length() + " Bytes", this);
+        synchronized (this.writeLock()) {
+            try {
+                this.os.write(holder.messageAsUtf8Bytes());
+                // content is read while streaming - can fail within frame
+                holder.streamContent(this.os);
+                this.sent();
+            } catch (IOException e) {
+                this.failed(e, true);
+            }
+        }
+    }
+
+    /**
+     * Sends an insert which has been serialized for several receivers. Header
+     * fields of this message aren't serialized again - only its receiver peer.
+     *
+     * @param sharedInsert
+     * @throws IOException message couldn't be written - a connection is closed
+     */
+    public void insert(ASIPSharedInsert sharedInsert) throws IOException {
+        this.setCommand(ASIPMessage.ASIP_INSERT);
+        synchronized (this.writeLock()) {
+            try {
+                sharedInsert.writeTo(this.os, this.getReceiverPeer());
+                this.sent();
+            } catch (SharkKBException e) {
+                // receiver is serialized before first byte is written
+                this.failed(e, false);
+                throw new IOException(e.getMessage(), e);
+            } catch (IOException e) {
+                this.failed(e, true);
+                throw e;
+            }
         }
-        this.sent();
     }
 
     public void raw(byte[] raw) {
         this.setCommand(ASIPMessage.ASIP_RAW);
+        ASIPSerializationHolder holder;
         try {
-            ASIPSerializationHolder holder = ASIPMessageSerializer.serializeRaw(this, raw);
-            L.d("Sending a Raw with the complete Size of " + holder.length() + " Bytes", this);
-            this.os.write(holder.messageAsUtf8Bytes());
-            this.os.write(holder.getContent());
-        } catch (SharkKBException | IOException e) {
-            e.printStackTrace();
+            holder = ASIPMessageSerializer.serializeRaw(this, raw);
+        } catch (SharkKBException e) {
+            this.failed(e, false);
+            return;
         }
-        this.sent();
+        this.writeRaw(holder);
     }
 
     public void raw(InputStream inputStream) {
         this.setCommand(ASIPMessage.ASIP_RAW);
+        ASIPSerializationHolder holder;
         try {
-            ASIPSerializationHolder holder = ASIPMessageSerializer.serializeRaw(this, inputStream);
-            L.d("Sending a Raw with the complete Size of " + holder.length() + " Bytes", this);
-            this.os.write(holder.messageAsUtf8Bytes());
-            this.os.write(holder.getContent());
-        } catch (SharkKBException | IOException e) {
-            e.printStackTrace();
+            holder = ASIPMessageSerializer.serializeRaw(this, inputStream);
+        } catch (SharkKBException e) {
+            this.failed(e, false);
+            return;
+        }
+        this.writeRaw(holder);
+    }
+
+    private void writeRaw(ASIPSerializationHolder holder) {
+        L.d("Sending a Raw with the complete Size of " + holder.length() + " Bytes", this);
+        synchronized (this.writeLock()) {
+            try {
+                this.os.write(holder.messageAsUtf8Bytes());
+                this.os.write(holder.getContent());
+                this.sent();
+            } catch (IOException e) {
+                this.failed(e, true);
+            }
         }
-        this.sent();
     }
 
 }
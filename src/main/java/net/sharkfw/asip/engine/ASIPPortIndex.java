@@ -0,0 +1,175 @@
+package net.sharkfw.asip.engine;
+
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.STSet;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.peer.ASIPPort;
+import net.sharkfw.ports.KnowledgePort;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds ports which can be interested in a message before any port code
+ * runs. Knowledge ports are indexed by the subject identifiers of topics,
+ * types and peers of their interest. A message is offered to a port if
+ * its topic, type and sender match the interest of that port.
+ *
+ * Any tags match everything: ports without interest or with an any dimension
+ * get all messages and messages without topic, type or sender are not filtered
+ * in that dimension.
+ *
+ * An index isn't changed after creation - it is rebuilt when ports change.
+ */
+class ASIPPortIndex {
+
+    private static final int TOPIC = 0;
+    private static final int TYPE = 1;
+    private static final int PEER = 2;
+    private static final int DIMENSIONS = 3;
+
+    // port without interest - any direction
+    private static final int ANY_DIRECTION = -1;
+
+    private final int version;
+    private final List<ASIPPort> ports;
+    private final BitSet all;
+
+    // si (lower case) -> ports with that tag in a dimension
+    private final List<HashMap<String, BitSet>> bySI = new ArrayList<>();
+    // ports accepting anything in a dimension
+    private final BitSet[] any = new BitSet[DIMENSIONS];
+
+    private final int[] directions;
+
+    ASIPPortIndex(List<ASIPPort> ports, int version) {
+        this.version = version;
+        this.ports = ports;
+        this.all = new BitSet(ports.size());
+        this.all.set(0, ports.size());
+        this.directions = new int[ports.size()];
+
+        for (int d = 0; d < DIMENSIONS; d++) {
+            this.bySI.add(new HashMap<String, BitSet>());
+            this.any[d] = new BitSet(ports.size());
+        }
+
+        for (int i = 0; i < ports.size(); i++) {
+            ASIPInterest interest = null;
+            if (ports.get(i) instanceof KnowledgePort) {
+                interest = ((KnowledgePort) ports.get(i)).getAsipInterest();
+            }
+
+            if (interest == null) {
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    this.any[d].set(i);
+                }
+                this.directions[i] = ANY_DIRECTION;
+                continue;
+            }
+
+            this.add(TOPIC, i, interest.getTopics());
+            this.add(TYPE, i, interest.getTypes());
+            this.add(PEER, i, interest.getReceivers());
+            this.directions[i] = interest.getDirection();
+        }
+    }
+
+    private void add(int dimension, int port, STSet tags) {
+        if (SharkCSAlgebra.isAny(tags)) {
+            this.any[dimension].set(port);
+            return;
+        }
+
+        try {
+            Iterator<SemanticTag> tagIter = tags.stTags();
+            while (tagIter.hasNext()) {
+                SemanticTag tag = tagIter.next();
+                if (tag instanceof SpatialSemanticTag) {
+                    // geometries overrule sis - can't be indexed
+                    this.any[dimension].set(port);
+                    return;
+                }
+                for (String si : tag.getSI()) {
+                    String key = si.toLowerCase(Locale.ENGLISH);
+                    BitSet portSet = this.bySI.get(dimension).get(key);
+                    if (portSet == null) {
+                        portSet = new BitSet(this.ports.size());
+                        this.bySI.get(dimension).put(key, portSet);
+                    }
+                    portSet.set(port);
+                }
+            }
+        } catch (SharkKBException e) {
+            // cannot be checked - don't filter
+            this.any[dimension].set(port);
+        }
+    }
+
+    int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @param msg
+     * @return ports which could be interested in that message - in the order
+     * they were added to the stub.
+     */
+    List<ASIPPort> getCandidates(ASIPInMessage msg) {
+        BitSet candidates = (BitSet) this.all.clone();
+
+        this.filter(candidates, TOPIC, msg.getTopic());
+        this.filter(candidates, TYPE, msg.getType());
+        SemanticTag sender = msg.getLogicalSender() != null ? msg.getLogicalSender() : msg.getPhysicalSender();
+        this.filter(candidates, PEER, sender);
+
+        if (msg.getCommand() == ASIPMessage.ASIP_EXPOSE && msg.getInterest() != null) {
+            int direction = msg.getInterest().getDirection();
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (!ASIPPortIndex.directionsMatch(this.directions[i], direction)) {
+                    candidates.clear(i);
+                }
+            }
+        }
+
+        List<ASIPPort> result = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            result.add(this.ports.get(i));
+        }
+        return result;
+    }
+
+    private void filter(BitSet candidates, int dimension, SemanticTag tag) {
+        if (SharkCSAlgebra.isAny(tag) || tag instanceof SpatialSemanticTag) {
+            return;
+        }
+
+        BitSet matching = (BitSet) this.any[dimension].clone();
+        for (String si : tag.getSI()) {
+            BitSet portSet = this.bySI.get(dimension).get(si.toLowerCase(Locale.ENGLISH));
+            if (portSet != null) {
+                matching.or(portSet);
+            }
+        }
+        candidates.and(matching);
+    }
+
+    /**
+     * Same rule as {@link SharkCSAlgebra#isIn(ASIPSpace, ASIPSpace)}.
+     */
+    private static boolean directionsMatch(int portDirection, int messageDirection) {
+        if (portDirection == ANY_DIRECTION || portDirection == messageDirection) {
+            return true;
+        }
+        return (portDirection == ASIPSpace.DIRECTION_INOUT && messageDirection != ASIPSpace.DIRECTION_NOTHING)
+                || (messageDirection == ASIPSpace.DIRECTION_INOUT && portDirection != ASIPSpace.DIRECTION_NOTHING);
+    }
+}
@@ -2,18 +2,17 @@ package net.sharkfw.asip.engine;
 
 import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPStub;
-import net.sharkfw.asip.serialization.ASIPSerializationHolder;
+import net.sharkfw.asip.serialization.ASIPFrameDecoder;
 import net.sharkfw.asip.serialization.ASIPSerializerException;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.protocols.AsyncStreamConnection;
 import net.sharkfw.protocols.StreamConnection;
 import net.sharkfw.system.L;
 import net.sharkfw.system.SharkException;
-import net.sharkfw.system.SharkSecurityException;
-import net.sharkfw.system.Streamer;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.security.PrivateKey;
 
 /**
@@ -24,6 +23,9 @@ public class ASIPSession extends Thread {
     private SharkEngine engine;
     private StreamConnection connection;
     private ASIPStub stub;
+    private ASIPFrameDecoder decoder;
+    // parsed message whose content hasn't been received completely
+    private ASIPInMessage pending = null;
 
     private PrivateKey privateKey;
     //    private SharkPkiStorage sharkPkiStorage;
@@ -36,6 +38,11 @@ public class ASIPSession extends Thread {
         this.engine = engine;
         this.connection = connection;
         this.stub = stub;
+        this.decoder = new ASIPFrameDecoder(connection.getInputStream());
+        if (connection instanceof AsyncStreamConnection) {
+            // content which fits into the receive buffer is read when complete
+            this.decoder.setBufferedContentLimit(((AsyncStreamConnection) connection).getReceiveBufferLimit());
+        }
     }
 
     public void initSecurity(PrivateKey privateKey/*, SharkPkiStorage sharkPkiStorage*/,
@@ -51,69 +58,94 @@ public class ASIPSession extends Thread {
         this.refuseUnverifiably = refuseUnverifiably;
     }
 
+    /**
+     * Reads messages from connection until stream ends, remote peer stops
+     * sending (socket timeout) or stream gets out of sync. Idle connections
+     * kept by the connection pool stay open.
+     */
     @Override
     public void run() {
-        boolean handled = false;
-        int looper = 3;
-        int currentLoop = 0;
-
-        ASIPInMessage inMessage = null;
-        try {
-            inMessage = new ASIPInMessage(this.engine, this.connection);
-        } catch (SharkKBException e) {
-            e.printStackTrace();
-        }
-        do {
+        boolean proceed = true;
+        while (proceed) {
             try {
-//                ASIPInMessage inMessage = new ASIPInMessage(this.engine, this.connection);
-                boolean parse = inMessage.parse();
-
-                if(parse){
-                    handled = this.stub.callListener(inMessage);
-                    handled = handled && inMessage.keepOpen();
-                    inMessage = new ASIPInMessage(this.engine, this.connection);
+                ASIPInMessage inMessage = new ASIPInMessage(this.engine, this.connection, this.decoder);
+                if (inMessage.parse()) {
+                    this.stub.callListener(inMessage);
+                    proceed = inMessage.keepOpen();
+                } else {
+                    // frame wasn't a valid message - go ahead unless stream ended or lost its frame borders
+                    proceed = !this.decoder.isClosed();
+                }
+            } catch (SocketTimeoutException e) {
+                if (!this.decoder.isIdle()) {
+                    L.e("remote peer stopped sending within a message", this);
+                    proceed = false;
+                } else {
+                    // pooled connections wait for next message until evicted
+                    proceed = this.engine.getConnectionPool().keepOpen(this.connection);
                 }
-
             } catch (IOException | SharkException e) {
-                handled = false;
-                e.printStackTrace();
+                L.d("reading from connection failed: " + e.getMessage(), this);
+                proceed = false;
             }
+        }
+
+        this.connection.close();
+    }
 
-            if(!handled) {
-                // maybe there is another KEP methode in the stream
-                try {
-                    if (this.connection.getInputStream().available() > 0) {
-                        L.d("More bytes available on inputstream", this);
-                        handled = true;
-                    } else {
-                        // maybe remote peer wasn't fast enough - give it some time
-                        L.d("Waiting for remotepeer for max. : " + engine.getConnectionTimeOut(), this);
-                        long duration = engine.getConnectionTimeOut() / looper;
-                        while (currentLoop < looper) {
-                            Thread.sleep(duration);
-                            currentLoop++;
-                            if (this.connection.getInputStream().available() > 0) {
-                                handled = true;
-                                currentLoop = 0;
-                                break;
-                            }
+    /**
+     * Handles all messages received so far - an alternative to {@link #run()}
+     * for connections which report incoming data. No thread waits for
+     * the next message: frames are handed to ports when their header - and
+     * content which fits into the receive buffer - has been received
+     * completely. Larger content is read by ports as it arrives.
+     *
+     * @param connection connection of this session
+     */
+    void handleAvailableMessages(AsyncStreamConnection connection) {
+        try {
+            while (true) {
+                boolean inputShutdown = connection.isInputShutdown();
+                if (inputShutdown) {
+                    // nothing more to wait for - incomplete content fails
+                    this.decoder.setBufferedContentLimit(0);
+                }
+
+                ASIPInMessage inMessage = this.pending;
+                this.pending = null;
+                if (inMessage == null) {
+                    if (!this.decoder.prefetch() && !inputShutdown) {
+                        return;
+                    }
+                    inMessage = new ASIPInMessage(this.engine, this.connection, this.decoder);
+                    if (!inMessage.parse()) {
+                        if (this.decoder.isContentIncomplete()) {
+                            // parsed again when content is complete
+                            return;
                         }
+                        if (this.decoder.isClosed()) {
+                            connection.close();
+                            return;
+                        }
+                        continue;
                     }
-                } catch (Exception e) {
-                    // ignore and go ahead
                 }
-            }
-        } while (handled);
 
-        try {
-            final InputStream inputStream = this.connection.getInputStream();
-            if (inputStream.available() > 0) {
-                L.e("Closing connection although there is more data on the stream: ", this);
-                Streamer.stream(inputStream, System.err, 5);
+                if (!inputShutdown && !this.decoder.isContentBuffered()) {
+                    // e.g. raw content - port is called when it is complete
+                    this.pending = inMessage;
+                    return;
+                }
+                this.stub.callListener(inMessage);
+                // unread content belongs to this message - not to the next one
+                this.decoder.skipContent();
             }
-        } catch (IOException e) {
-            L.l("Closing connection although there is more data on the stream: " + e.getMessage(), this);
+        } catch (SocketTimeoutException e) {
+            L.e("remote peer stopped sending within a message", this);
+            connection.close();
+        } catch (IOException | ASIPSerializerException | SharkException e) {
+            L.d("reading from connection failed: " + e.getMessage(), this);
+            connection.close();
         }
-        this.connection.close();
     }
 }
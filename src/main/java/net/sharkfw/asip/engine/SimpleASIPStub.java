@@ -9,6 +9,7 @@ import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.peer.ASIPPort;
 import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.ports.KnowledgePort;
+import net.sharkfw.protocols.AsyncStreamConnection;
 import net.sharkfw.protocols.MessageStub;
 import net.sharkfw.protocols.StreamConnection;
 import net.sharkfw.system.L;
@@ -19,6 +20,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by j4rvis on 18.03.16.
@@ -35,6 +42,11 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
      */
     private Hashtable<String, Long> knowledges = new Hashtable<String, Long>();
 
+    private volatile Executor executor = null;
+
+    private volatile ASIPPortIndex portIndex = null;
+    private final AtomicInteger portVersion = new AtomicInteger();
+
     /**
      * Create a new <code>SimpleKEPStub</code> for the <code>SharkEngine</code> se.
      *
@@ -77,11 +89,22 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
      */
     @Override
     public final void handleStream(StreamConnection con) {
-        ASIPSession session = new ASIPSession(this.se, con, this);
+        final ASIPSession session = new ASIPSession(this.se, con, this);
         session.initSecurity(this.privateKey, /*this.publicKeyStorage,*/ /*this.sharkPkiStorage,*/
                 this.encryptionLevel, this.signatureLevel,
                 this.replyPolicy, this.refuseUnverifiably);
-        session.start();
+
+        if (con instanceof AsyncStreamConnection) {
+            // no thread waiting for messages - connection reports them
+            ((AsyncStreamConnection) con).setReadHandler(new AsyncStreamConnection.ReadHandler() {
+                @Override
+                public void dataAvailable(AsyncStreamConnection con) {
+                    session.handleAvailableMessages(con);
+                }
+            });
+        } else {
+            session.start();
+        }
     }
 
     /**
@@ -106,36 +129,126 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
      * This should be the only method in this class which
      * communicates with the listener and the Shark Engine
      *
+     * Messages from different sessions are dispatched concurrently. With
+     * an executor, ports handling an expose are called in parallel as well -
+     * an interest is parsed completely and responses are written one at a
+     * time per connection. Other messages carry content which is read from
+     * the connection: their ports are called one after another. Method returns
+     * after all ports have handled the message - message content belongs
+     * to the connection.
+     *
+     * Only ports whose interest matches topic, type and sender of the
+     * message are called - see {@link ASIPPortIndex}.
+     *
      * @param msg The <code>KEPRequest</code> to handle.
      * @return True if at least one listener was able to handle the message. False otherwise.
      */
     @Override
-    final synchronized public boolean callListener(ASIPInMessage msg) {
-        Iterator<ASIPPort> kpIter = this.getListener();
-        /* make a copy of listener - kp can be added or withdrawn during message handling
-         * which can cause strange side effects.
-         */
+    final public boolean callListener(ASIPInMessage msg) {
+        // candidates are taken from a snapshot - kp can be added or withdrawn during message handling
+        List<ASIPPort> portList = this.getPortIndex().getCandidates(msg);
+        Executor executor = this.executor;
+
+        if (executor == null || msg.getCommand() != ASIPMessage.ASIP_EXPOSE) {
+            boolean handled = false;
+            for (ASIPPort port : portList) {
+                if (this.callPort(port, msg)) {
+                    handled = true;
+                }
+            }
+            return handled;
+        }
 
-        ArrayList<ASIPPort> portList = new ArrayList<>();
-        while (kpIter.hasNext()) {
-            portList.add(kpIter.next());
+        if (portList.isEmpty()) {
+            return false;
         }
 
-        // iterate copied list now
-        boolean handled = false;
+        final ASIPInMessage message = msg;
+        final AtomicBoolean handled = new AtomicBoolean(false);
+        final CountDownLatch done = new CountDownLatch(portList.size() - 1);
+
+        // last port is called by this thread
+        for (int i = 0; i < portList.size() - 1; i++) {
+            final ASIPPort port = portList.get(i);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (SimpleASIPStub.this.callPort(port, message)) {
+                            handled.set(true);
+                        }
+                    } catch (RuntimeException e) {
+                        L.w("port failed handling message: " + e.getMessage(), SimpleASIPStub.this);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
 
-        kpIter = portList.iterator();
-        while (kpIter.hasNext()) {
-            ASIPPort l = kpIter.next();
-            handled = l.handleMessage(msg, msg.getConnection());
+        try {
+            if (this.callPort(portList.get(portList.size() - 1), msg)) {
+                handled.set(true);
+            }
+        } finally {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
-        // TODO necessary?
-//        msg.finished();
+        return handled.get();
+    }
 
-        //    L.d("Having " + this.listener.size() + " listeners.", this);
+    @Override
+    protected void portsChanged() {
+        this.portVersion.incrementAndGet();
+    }
+
+    /**
+     * @return index of current ports - rebuilt if ports changed
+     */
+    private ASIPPortIndex getPortIndex() {
+        ASIPPortIndex index = this.portIndex;
+        int version = this.portVersion.get();
+        if (index == null || index.getVersion() != version) {
+            ArrayList<ASIPPort> portList = new ArrayList<>();
+            Iterator<ASIPPort> kpIter = this.getListener();
+            while (kpIter.hasNext()) {
+                portList.add(kpIter.next());
+            }
+            index = new ASIPPortIndex(portList, version);
+            this.portIndex = index;
+        }
+        return index;
+    }
+
+    private boolean callPort(ASIPPort port, ASIPInMessage msg) {
+        if (port.isSerialized()) {
+            synchronized (port) {
+                return port.handleMessage(msg, msg.getConnection());
+            }
+        }
+        return port.handleMessage(msg, msg.getConnection());
+    }
+
+    /**
+     * @param executor runs ports handling an expose concurrently. Null (default):
+     * ports are called one after another by the thread which received the message.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
 
-        return handled;
+    public Executor getExecutor() {
+        return this.executor;
     }
 
     public final void setNotHandledRequestKP(KnowledgePort kp) {
@@ -8,16 +8,20 @@ import net.sharkfw.ports.KnowledgePort;
 import net.sharkfw.protocols.StreamConnection;
 
 import java.security.PrivateKey;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author thsc
  */
 public abstract class AbstractSharkStub implements SharkStub {
-    private final List<ASIPPort> ports = new ArrayList<>();
+    /**
+     * Ports are read by each incoming message but rarely changed. Iterators
+     * work on a snapshot - no lock needed while dispatching.
+     */
+    private final List<ASIPPort> ports = new CopyOnWriteArrayList<>();
     protected KnowledgePort notHandledRequestsHandler;
     protected SharkEngine se;
     private final HashMap<String, StreamConnection> table = new HashMap<>();
@@ -27,7 +31,7 @@ public abstract class AbstractSharkStub implements SharkStub {
     }
 
     @Override
-    public final void addListener(ASIPPort newListener) {
+    public final synchronized void addListener(ASIPPort newListener) {
         // already in there?
         Iterator<ASIPPort> kpIter = ports.iterator();
         while (kpIter.hasNext()) {
@@ -38,13 +42,31 @@ public abstract class AbstractSharkStub implements SharkStub {
 
         // not found - add
         this.ports.add(newListener);
+        this.portsChanged();
     }
 
     ;
 
     @Override
     public final void withdrawListener(ASIPPort listener) {
-        this.ports.remove(listener);
+        if (this.ports.remove(listener)) {
+            this.portsChanged();
+        }
+    }
+
+    ;
+
+    @Override
+    public void listenerChanged(ASIPPort listener) {
+        if (this.ports.contains(listener)) {
+            this.portsChanged();
+        }
+    }
+
+    /**
+     * Called whenever ports are added, withdrawn or changed.
+     */
+    protected void portsChanged() {
     }
 
     ;
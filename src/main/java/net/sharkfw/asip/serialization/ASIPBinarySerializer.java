@@ -0,0 +1,717 @@
+package net.sharkfw.asip.serialization;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPKnowledgeDigest;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.system.L;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes message headers in {@link ASIPMessage#FORMAT_BINARY}. The header
+ * starts with a string table which holds each string of the message once -
+ * SIs, names, addresses and properties. The fields follow in a fixed order and
+ * refer to strings by their index. Numbers are written as variable length
+ * integers, lists are prefixed with their length.
+ * <p>
+ * Content is sent after the header like in json format. Offsets of
+ * information content aren't sent - content of all information follows in
+ * order of the serialized information.
+ *
+ * @see ASIPMessageSerializer
+ */
+public class ASIPBinarySerializer {
+
+    private static final String CLASS = "ASIPBINARYSERIALIZER: ";
+
+    private static final int TAG_NONE = 0;
+    private static final int TAG_PLAIN = 1;
+    private static final int TAG_PEER = 2;
+    private static final int TAG_SPATIAL = 3;
+    private static final int TAG_TIME = 4;
+
+    private static final int RELATIONS_NONE = 0;
+    private static final int RELATIONS_PREDICATES = 1;
+    private static final int RELATIONS_SUPERTAGS = 2;
+
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_SIGNED = 2;
+
+    private static final int SPACE_TOPICS = 1;
+    private static final int SPACE_TYPES = 1 << 1;
+    private static final int SPACE_SENDER = 1 << 2;
+    private static final int SPACE_APPROVERS = 1 << 3;
+    private static final int SPACE_RECEIVERS = 1 << 4;
+    private static final int SPACE_LOCATIONS = 1 << 5;
+    private static final int SPACE_TIMES = 1 << 6;
+
+    public static ASIPSerializationHolder serializeExpose(ASIPMessage header, ASIPSpace interest) throws SharkKBException {
+        Encoder encoder = new Encoder();
+        try {
+            encoder.writeHeader(header);
+            encoder.writeSpace(interest);
+            encoder.writeDigest(header.getKnowledgeDigest());
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+        return new ASIPSerializationHolder(header, encoder.toByteArray(), null, null);
+    }
+
+    public static ASIPSerializationHolder serializeInsert(ASIPMessage header, ASIPKnowledge knowledge) throws SharkKBException {
+        Encoder encoder = new Encoder();
+        ASIPKnowledgeConverter contentSource;
+        try {
+            encoder.writeHeader(header);
+            contentSource = encoder.writeKnowledge(knowledge);
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+        // content is streamed from knowledge when sent
+        return new ASIPSerializationHolder(header, encoder.toByteArray(), null, contentSource);
+    }
+
+    public static ASIPSerializationHolder serializeRaw(ASIPMessage header, byte[] raw) throws SharkKBException {
+        Encoder encoder = new Encoder();
+        try {
+            encoder.writeHeader(header);
+            encoder.writeVarLong(raw.length);
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+        return new ASIPSerializationHolder(header, encoder.toByteArray(), raw, null);
+    }
+
+    public static boolean deserializeInMessage(ASIPInMessage message, ASIPSerializationHolder serializationHolder) {
+        byte[] bytes = serializationHolder.getMessageBytes();
+        if (bytes == null || bytes.length == 0) {
+            L.d(CLASS + "Stream is empty.");
+            return false;
+        }
+
+        try {
+            Decoder decoder = new Decoder(bytes);
+            decoder.readHeader(message);
+
+            switch (message.getCommand()) {
+                case ASIPMessage.ASIP_EXPOSE:
+                    message.setInterest(decoder.readSpace());
+                    message.setKnowledgeDigest(decoder.readDigest());
+                    break;
+                case ASIPMessage.ASIP_INSERT:
+                    InputStream contentStream = serializationHolder.getContentStream();
+                    if (contentStream == null) {
+                        byte[] content = serializationHolder.getContent();
+                        contentStream = new ByteArrayInputStream(content != null ? content : new byte[0]);
+                    }
+                    message.setKnowledge(decoder.readKnowledge(contentStream, message));
+                    break;
+                case ASIPMessage.ASIP_RAW:
+                    long length = decoder.readVarLong();
+                    if (serializationHolder.getContentStream() != null) {
+                        // raw content is consumed by the port - it isn't buffered
+                        InputStream rawStream = serializationHolder.getContentStream();
+                        if (rawStream instanceof ASIPContentInputStream) {
+                            ((ASIPContentInputStream) rawStream).setLimit(length);
+                        }
+                        message.setRaw(rawStream);
+                        break;
+                    }
+                    if (serializationHolder.getContent() == null) {
+                        L.d("No content available", CLASS);
+                        return false;
+                    }
+                    message.setRaw(new ByteArrayInputStream(serializationHolder.getContent()));
+                    break;
+            }
+        } catch (IOException | SharkKBException | ASIPSerializerException | RuntimeException e) {
+            L.d(CLASS + e);
+            return false;
+        }
+        return true;
+    }
+
+    private static int tagKind(SemanticTag tag) {
+        if (tag == null) return TAG_NONE;
+        if (tag instanceof PeerSemanticTag) return TAG_PEER;
+        if (tag instanceof SpatialSemanticTag) return TAG_SPATIAL;
+        if (tag instanceof TimeSemanticTag) return TAG_TIME;
+        return TAG_PLAIN;
+    }
+
+    private static class Encoder {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.body);
+
+        /**
+         * @return string table followed by the fields written so far
+         */
+        byte[] toByteArray() throws SharkKBException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(this.body.size() + 16 * this.strings.size());
+            DataOutputStream table = new DataOutputStream(baos);
+            try {
+                writeVarLong(table, this.strings.size());
+                for (String s : this.strings.keySet()) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(table, bytes.length);
+                    table.write(bytes);
+                }
+                this.body.writeTo(table);
+                table.flush();
+            } catch (IOException e) {
+                throw new SharkKBException(e.getMessage());
+            }
+            return baos.toByteArray();
+        }
+
+        void writeVarLong(long value) throws IOException {
+            writeVarLong(this.out, value);
+        }
+
+        private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+            // zig zag - small negative values are short as well
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        /**
+         * Writes index of s in string table - 0 stands for null.
+         */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                this.writeVarLong(0);
+                return;
+            }
+            Integer index = this.strings.get(s);
+            if (index == null) {
+                index = this.strings.size() + 1;
+                this.strings.put(s, index);
+            }
+            this.writeVarLong(index);
+        }
+
+        void writeStrings(String[] strings) throws IOException {
+            if (strings == null) {
+                this.writeVarLong(0);
+                return;
+            }
+            this.writeVarLong(strings.length);
+            for (String s : strings) {
+                this.writeString(s);
+            }
+        }
+
+        void writeProperties(PropertyHolder holder) throws IOException, SharkKBException {
+            List<String> names = new ArrayList<>();
+            Enumeration<String> propertyNames = holder != null ? holder.propertyNames(false) : null;
+            while (propertyNames != null && propertyNames.hasMoreElements()) {
+                names.add(propertyNames.nextElement());
+            }
+            this.writeVarLong(names.size());
+            for (String name : names) {
+                this.writeString(name);
+                this.writeString(holder.getProperty(name));
+            }
+        }
+
+        void writeHeader(ASIPMessage header) throws IOException, SharkKBException {
+            int flags = (header.isEncrypted() ? FLAG_ENCRYPTED : 0) | (header.isSigned() ? FLAG_SIGNED : 0);
+            this.out.writeByte(flags);
+            this.writeString(header.getEncryptedSessionKey());
+            this.writeVarLong(header.getTtl());
+            this.writeVarLong(header.getCommand());
+            this.writeTag(header.getPhysicalSender());
+            this.writeTag(header.getReceiverPeer());
+            this.writeTag(header.getReceiverSpatial());
+            this.writeTag(header.getReceiverTime());
+            this.writeTag(header.getTopic());
+            this.writeTag(header.getType());
+            this.writeTag(header.getLogicalSender());
+        }
+
+        void writeTag(SemanticTag tag) throws IOException, SharkKBException {
+            int kind = tagKind(tag);
+            this.out.writeByte(kind);
+            if (kind == TAG_NONE) return;
+
+            this.writeString(tag.getName());
+            this.writeStrings(tag.getSI());
+            switch (kind) {
+                case TAG_PEER:
+                    String[] addresses = ((PeerSemanticTag) tag).getAddresses();
+                    if (addresses != null && addresses.length > 0 && addresses[0] == null) {
+                        addresses = null;
+                    }
+                    this.writeStrings(addresses);
+                    break;
+                case TAG_SPATIAL:
+                    this.writeString(((SpatialSemanticTag) tag).getGeometry().getWKT());
+                    break;
+                case TAG_TIME:
+                    this.writeVarLong(((TimeSemanticTag) tag).getFrom());
+                    this.writeVarLong(((TimeSemanticTag) tag).getDuration());
+                    break;
+            }
+            this.writeProperties(tag);
+        }
+
+        void writeSTSet(STSet set) throws IOException, SharkKBException {
+            if (set == null) {
+                this.out.writeBoolean(false);
+                return;
+            }
+            this.out.writeBoolean(true);
+
+            List<SemanticTag> tags = new ArrayList<>();
+            Enumeration<SemanticTag> tagEnum = set.tags();
+            while (tagEnum != null && tagEnum.hasMoreElements()) {
+                tags.add(tagEnum.nextElement());
+            }
+            this.writeVarLong(tags.size());
+            for (SemanticTag tag : tags) {
+                this.writeTag(tag);
+            }
+
+            // relations refer to tags by their first si
+            List<String[]> relations = new ArrayList<>();
+            int relationKind = RELATIONS_NONE;
+            if ((set instanceof SemanticNet || set instanceof Taxonomy) && !tags.isEmpty()) {
+                if (tags.get(0) instanceof SNSemanticTag) {
+                    relationKind = RELATIONS_PREDICATES;
+                    for (SemanticTag tag : tags) {
+                        String[] sourceSIs = tag.getSI();
+                        if (sourceSIs == null || sourceSIs.length == 0) continue;
+                        Enumeration<String> predicateNames = ((SNSemanticTag) tag).predicateNames();
+                        while (predicateNames != null && predicateNames.hasMoreElements()) {
+                            String predicateName = predicateNames.nextElement();
+                            Enumeration<SNSemanticTag> targets = ((SNSemanticTag) tag).targetTags(predicateName);
+                            while (targets != null && targets.hasMoreElements()) {
+                                String[] targetSIs = targets.nextElement().getSI();
+                                if (targetSIs == null || targetSIs.length == 0) continue;
+                                relations.add(new String[]{sourceSIs[0], targetSIs[0], predicateName});
+                            }
+                        }
+                    }
+                } else if (tags.get(0) instanceof TXSemanticTag) {
+                    relationKind = RELATIONS_SUPERTAGS;
+                    for (SemanticTag tag : tags) {
+                        String[] sourceSIs = tag.getSI();
+                        TXSemanticTag superTag = ((TXSemanticTag) tag).getSuperTag();
+                        if (sourceSIs == null || sourceSIs.length == 0 || superTag == null) continue;
+                        String[] targetSIs = superTag.getSI();
+                        if (targetSIs == null || targetSIs.length == 0) continue;
+                        relations.add(new String[]{sourceSIs[0], targetSIs[0]});
+                    }
+                }
+            }
+
+            this.out.writeByte(relationKind);
+            if (relationKind == RELATIONS_NONE) return;
+            this.writeVarLong(relations.size());
+            for (String[] relation : relations) {
+                this.writeString(relation[0]);
+                this.writeString(relation[1]);
+                if (relationKind == RELATIONS_PREDICATES) {
+                    this.writeString(relation[2]);
+                }
+            }
+        }
+
+        void writeSpace(ASIPSpace space) throws IOException, SharkKBException {
+            if (space == null) {
+                this.out.writeBoolean(false);
+                return;
+            }
+            this.out.writeBoolean(true);
+
+            STSet topics = space.getTopics();
+            STSet types = space.getTypes();
+            PeerSemanticTag sender = space.getSender();
+            PeerSTSet approvers = space.getApprovers();
+            PeerSTSet receivers = space.getReceivers();
+            SpatialSTSet locations = space.getLocations();
+            TimeSTSet times = space.getTimes();
+
+            int dimensions = 0;
+            if (topics != null && !topics.isEmpty()) dimensions |= SPACE_TOPICS;
+            if (types != null && !types.isEmpty()) dimensions |= SPACE_TYPES;
+            if (sender != null) dimensions |= SPACE_SENDER;
+            if (approvers != null && !approvers.isEmpty()) dimensions |= SPACE_APPROVERS;
+            if (receivers != null && !receivers.isEmpty()) dimensions |= SPACE_RECEIVERS;
+            if (locations != null && !locations.isEmpty()) dimensions |= SPACE_LOCATIONS;
+            if (times != null && !times.isEmpty()) dimensions |= SPACE_TIMES;
+
+            this.out.writeByte(dimensions);
+            if ((dimensions & SPACE_TOPICS) != 0) this.writeSTSet(topics);
+            if ((dimensions & SPACE_TYPES) != 0) this.writeSTSet(types);
+            if ((dimensions & SPACE_SENDER) != 0) this.writeTag(sender);
+            if ((dimensions & SPACE_APPROVERS) != 0) this.writeSTSet(approvers);
+            if ((dimensions & SPACE_RECEIVERS) != 0) this.writeSTSet(receivers);
+            if ((dimensions & SPACE_LOCATIONS) != 0) this.writeSTSet(locations);
+            if ((dimensions & SPACE_TIMES) != 0) this.writeSTSet(times);
+            this.writeVarLong(space.getDirection());
+        }
+
+        /**
+         * Length prefixed - 0 if there is no digest.
+         */
+        void writeDigest(ASIPKnowledgeDigest digest) throws IOException {
+            if (digest == null) {
+                this.writeVarLong(0);
+                return;
+            }
+            byte[] bytes = digest.toByteArray();
+            this.writeVarLong(bytes.length);
+            this.out.write(bytes);
+        }
+
+        /**
+         * @return converter which streams content of all written information
+         */
+        ASIPKnowledgeConverter writeKnowledge(ASIPKnowledge knowledge) throws IOException, SharkKBException {
+            SharkVocabulary vocabulary = knowledge.getVocabulary();
+            this.out.writeBoolean(vocabulary != null);
+            if (vocabulary != null) {
+                this.writeSTSet(vocabulary.getTopicSTSet());
+                this.writeSTSet(vocabulary.getTypeSTSet());
+                this.writeSTSet(vocabulary.getPeerSTSet());
+                this.writeSTSet(vocabulary.getSpatialSTSet());
+                this.writeSTSet(vocabulary.getTimeSTSet());
+            }
+
+            List<ASIPInformationSpace> spaces = new ArrayList<>();
+            Iterator<ASIPInformationSpace> spaceIterator = knowledge.informationSpaces();
+            while (spaceIterator.hasNext()) {
+                spaces.add(spaceIterator.next());
+            }
+
+            List<ASIPInformation> contentInformation = new ArrayList<>();
+            long contentLength = 0;
+            this.writeVarLong(spaces.size());
+            for (ASIPInformationSpace informationSpace : spaces) {
+                this.writeSpace(informationSpace.getASIPSpace());
+
+                List<ASIPInformation> infos = new ArrayList<>();
+                Iterator<ASIPInformation> infoIterator = informationSpace.informations();
+                while (infoIterator.hasNext()) {
+                    infos.add(infoIterator.next());
+                }
+                this.writeVarLong(infos.size());
+                for (ASIPInformation info : infos) {
+                    long length = info.getContentLength();
+                    this.writeString(info.getName());
+                    this.writeVarLong(length);
+                    this.writeString(info.getContentType());
+                    contentInformation.add(info);
+                    contentLength += length;
+                }
+            }
+
+            this.writeProperties(knowledge instanceof SharkKB ? (SharkKB) knowledge : null);
+
+            return new ASIPKnowledgeConverter(knowledge, contentInformation, contentLength);
+        }
+    }
+
+    private static class Decoder {
+        private final String[] strings;
+        private final DataInputStream in;
+
+        Decoder(byte[] bytes) throws IOException, ASIPSerializerException {
+            this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int size = this.readLength(bytes.length);
+            this.strings = new String[size];
+            for (int i = 0; i < size; i++) {
+                byte[] s = new byte[this.readLength(bytes.length)];
+                this.in.readFully(s);
+                this.strings[i] = new String(s, StandardCharsets.UTF_8);
+            }
+        }
+
+        long readVarLong() throws IOException, ASIPSerializerException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = this.in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new ASIPSerializerException("malformed number");
+        }
+
+        private int readLength(int max) throws IOException, ASIPSerializerException {
+            long length = this.readVarLong();
+            if (length < 0 || length > max) {
+                throw new ASIPSerializerException("malformed length: " + length);
+            }
+            return (int) length;
+        }
+
+        String readString() throws IOException, ASIPSerializerException {
+            long index = this.readVarLong();
+            if (index == 0) return null;
+            if (index < 0 || index > this.strings.length) {
+                throw new ASIPSerializerException("unknown string: " + index);
+            }
+            return this.strings[(int) index - 1];
+        }
+
+        String[] readStrings() throws IOException, ASIPSerializerException {
+            String[] strings = new String[this.readLength(Integer.MAX_VALUE)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = this.readString();
+            }
+            return strings;
+        }
+
+        Map<String, String> readProperties() throws IOException, ASIPSerializerException {
+            int size = this.readLength(Integer.MAX_VALUE);
+            Map<String, String> properties = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String name = this.readString();
+                String value = this.readString();
+                if (name != null && value != null) {
+                    properties.put(name, value);
+                }
+            }
+            return properties;
+        }
+
+        void readProperties(PropertyHolder holder) throws IOException, ASIPSerializerException, SharkKBException {
+            for (Map.Entry<String, String> property : this.readProperties().entrySet()) {
+                holder.setProperty(property.getKey(), property.getValue());
+            }
+        }
+
+        void readHeader(ASIPInMessage message) throws IOException, ASIPSerializerException, SharkKBException {
+            int flags = this.in.readUnsignedByte();
+            message.setEncrypted((flags & FLAG_ENCRYPTED) != 0);
+            message.setEncryptedSessionKey(this.nonNull(this.readString()));
+            message.setSigned((flags & FLAG_SIGNED) != 0);
+            message.setTtl(this.readVarLong());
+            message.setCommand((int) this.readVarLong());
+            message.setPhysicalSender(this.readTag(null, PeerSemanticTag.class));
+            message.setReceiverPeer(this.readTag(null, PeerSemanticTag.class));
+            message.setReceiverSpatial(this.readTag(null, SpatialSemanticTag.class));
+            message.setReceiverTime(this.readTag(null, TimeSemanticTag.class));
+            message.setTopic(this.readTag(null, SemanticTag.class));
+            message.setType(this.readTag(null, SemanticTag.class));
+            message.setLogicalSender(this.readTag(null, PeerSemanticTag.class));
+        }
+
+        private String nonNull(String s) {
+            return s != null ? s : "";
+        }
+
+        /**
+         * Reads a tag into target - a new set is created if target is null
+         * or cannot hold that kind of tag.
+         */
+        <T extends SemanticTag> T readTag(STSet target, Class<T> type)
+                throws IOException, ASIPSerializerException, SharkKBException {
+
+            int kind = this.in.readUnsignedByte();
+            if (kind == TAG_NONE) return null;
+
+            String name = this.readString();
+            String[] sis = this.readStrings();
+            SemanticTag tag;
+            STSet set;
+            switch (kind) {
+                case TAG_PEER:
+                    String[] addresses = this.readStrings();
+                    set = target instanceof PeerSTSet ? target : InMemoSharkKB.createInMemoPeerSTSet();
+                    tag = ((PeerSTSet) set).createPeerSemanticTag(name, sis, addresses);
+                    break;
+                case TAG_SPATIAL:
+                    String wkt = this.readString();
+                    set = target instanceof SpatialSTSet ? target : InMemoSharkKB.createInMemoSpatialSTSet();
+                    tag = ((SpatialSTSet) set).createSpatialSemanticTag(name, sis,
+                            InMemoSharkGeometry.createGeomByWKT(wkt));
+                    break;
+                case TAG_TIME:
+                    long from = this.readVarLong();
+                    long duration = this.readVarLong();
+                    set = target instanceof TimeSTSet ? target : InMemoSharkKB.createInMemoTimeSTSet();
+                    tag = ((TimeSTSet) set).createTimeSemanticTag(from, duration);
+                    break;
+                case TAG_PLAIN:
+                    set = target != null ? target : InMemoSharkKB.createInMemoSTSet();
+                    tag = set.createSemanticTag(name, sis);
+                    break;
+                default:
+                    throw new ASIPSerializerException("unknown tag kind: " + kind);
+            }
+            this.readProperties(tag);
+
+            if (target != null && set != target) {
+                target.merge(set);
+            }
+            if (!type.isInstance(tag)) {
+                throw new ASIPSerializerException("unexpected tag kind: " + kind);
+            }
+            return type.cast(tag);
+        }
+
+        /**
+         * @return target or a new set if target is null - null if no set was written
+         */
+        STSet readSTSet(STSet target) throws IOException, ASIPSerializerException, SharkKBException {
+            if (!this.in.readBoolean()) return null;
+            if (target == null) target = InMemoSharkKB.createInMemoSTSet();
+
+            int size = this.readLength(Integer.MAX_VALUE);
+            for (int i = 0; i < size; i++) {
+                this.readTag(target, SemanticTag.class);
+            }
+
+            int relationKind = this.in.readUnsignedByte();
+            if (relationKind == RELATIONS_NONE) return target;
+
+            size = this.readLength(Integer.MAX_VALUE);
+            for (int i = 0; i < size; i++) {
+                String sourceSI = this.readString();
+                String targetSI = this.readString();
+                String predicateName = relationKind == RELATIONS_PREDICATES ? this.readString() : null;
+
+                SemanticTag sourceTag = target.getSemanticTag(sourceSI);
+                SemanticTag targetTag = target.getSemanticTag(targetSI);
+                if (relationKind == RELATIONS_PREDICATES
+                        && sourceTag instanceof SNSemanticTag && targetTag instanceof SNSemanticTag) {
+                    ((SNSemanticTag) sourceTag).setPredicate(predicateName, (SNSemanticTag) targetTag);
+                } else if (relationKind == RELATIONS_SUPERTAGS
+                        && sourceTag instanceof TXSemanticTag && targetTag instanceof TXSemanticTag) {
+                    ((TXSemanticTag) sourceTag).move((TXSemanticTag) targetTag);
+                }
+            }
+            return target;
+        }
+
+        ASIPInterest readSpace() throws IOException, ASIPSerializerException, SharkKBException {
+            if (!this.in.readBoolean()) return null;
+
+            ASIPInterest interest = InMemoSharkKB.createInMemoASIPInterest();
+            int dimensions = this.in.readUnsignedByte();
+            if ((dimensions & SPACE_TOPICS) != 0) {
+                interest.setTopics(this.readSTSet(InMemoSharkKB.createInMemoSTSet()));
+            }
+            if ((dimensions & SPACE_TYPES) != 0) {
+                interest.setTypes(this.readSTSet(InMemoSharkKB.createInMemoSTSet()));
+            }
+            if ((dimensions & SPACE_SENDER) != 0) {
+                interest.setSender(this.readTag(null, PeerSemanticTag.class));
+            }
+            if ((dimensions & SPACE_APPROVERS) != 0) {
+                interest.setApprovers((PeerSTSet) this.readSTSet(InMemoSharkKB.createInMemoPeerSTSet()));
+            }
+            if ((dimensions & SPACE_RECEIVERS) != 0) {
+                interest.setReceivers((PeerSTSet) this.readSTSet(InMemoSharkKB.createInMemoPeerSTSet()));
+            }
+            if ((dimensions & SPACE_LOCATIONS) != 0) {
+                interest.setLocations((SpatialSTSet) this.readSTSet(InMemoSharkKB.createInMemoSpatialSTSet()));
+            }
+            if ((dimensions & SPACE_TIMES) != 0) {
+                interest.setTimes((TimeSTSet) this.readSTSet(InMemoSharkKB.createInMemoTimeSTSet()));
+            }
+            int direction = (int) this.readVarLong();
+            if (direction != -1) interest.setDirection(direction);
+            return interest;
+        }
+
+        /**
+         * @return digest - null if there is none or it cannot be read
+         */
+        ASIPKnowledgeDigest readDigest() throws IOException, ASIPSerializerException {
+            if (this.in.available() == 0) return null;
+            byte[] bytes = new byte[this.readLength(this.in.available())];
+            if (bytes.length == 0) return null;
+            this.in.readFully(bytes);
+            try {
+                return ASIPKnowledgeDigest.fromByteArray(bytes);
+            } catch (SharkKBException e) {
+                // peers of other versions - digest is an optimization only
+                L.d(CLASS + "knowledge digest ignored: " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Reads knowledge meta information and adds each information while
+         * its content is read from the stream - into the insert target of
+         * message if a port provides one.
+         */
+        ASIPKnowledge readKnowledge(InputStream contentStream, ASIPInMessage message)
+                throws IOException, ASIPSerializerException, SharkKBException {
+
+            SemanticNet topics = InMemoSharkKB.createInMemoSemanticNet();
+            SemanticNet types = InMemoSharkKB.createInMemoSemanticNet();
+            PeerTaxonomy peers = InMemoSharkKB.createInMemoPeerTaxonomy();
+            SpatialSTSet locations = InMemoSharkKB.createInMemoSpatialSTSet();
+            TimeSTSet times = InMemoSharkKB.createInMemoTimeSTSet();
+            if (this.in.readBoolean()) {
+                this.readSTSet(topics);
+                this.readSTSet(types);
+                this.readSTSet(peers);
+                this.readSTSet(locations);
+                this.readSTSet(times);
+            }
+
+            List<ASIPKnowledgeConverter.ContentEntry> entries = new ArrayList<>();
+            long offset = 0;
+            int numberSpaces = this.readLength(Integer.MAX_VALUE);
+            for (int i = 0; i < numberSpaces; i++) {
+                ASIPInterest interest = this.readSpace();
+                int numberInfos = this.readLength(Integer.MAX_VALUE);
+                for (int k = 0; k < numberInfos; k++) {
+                    ASIPKnowledgeConverter.ContentEntry entry = new ASIPKnowledgeConverter.ContentEntry();
+                    entry.name = this.readString();
+                    if (entry.name != null && entry.name.isEmpty()) {
+                        entry.name = null;
+                    }
+                    entry.length = this.readLength(Integer.MAX_VALUE);
+                    entry.contentType = this.readString();
+                    entry.offset = offset;
+                    entry.interest = interest;
+                    offset += entry.length;
+                    entries.add(entry);
+                }
+            }
+
+            Map<String, String> properties = this.readProperties();
+
+            if (contentStream instanceof ASIPContentInputStream) {
+                ((ASIPContentInputStream) contentStream).setLimit(offset);
+                // knowledge can be merged while decoded - not before content is complete
+                ((ASIPContentInputStream) contentStream).checkBuffered();
+            }
+            return new ASIPKnowledgeConverter(topics, types, peers, locations, times, entries,
+                    properties, contentStream, message.findInsertTarget()).getKnowledge();
+        }
+    }
+}
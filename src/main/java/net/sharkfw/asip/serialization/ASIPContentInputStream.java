@@ -0,0 +1,186 @@
+package net.sharkfw.asip.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * Content section of a received ASIP frame. Bytes are read lazily from the
+ * underlying stream. The length of the content is known after the json header
+ * is parsed - it is empty until a length is set. Content with unknown length
+ * (limit -1) ends with the underlying stream.
+ *
+ * Closing this stream skips the unread rest of the content but never closes
+ * the underlying stream - it carries the next frame.
+ *
+ * With a buffered limit, content up to that length isn't read before it has
+ * been received completely: the first read fails instead of waiting and the
+ * stream is marked incomplete - see {@link ASIPFrameDecoder#prefetch()}.
+ */
+class ASIPContentInputStream extends InputStream {
+
+    private final InputStream is;
+    private long limit = 0;
+    private long read = 0;
+    private boolean eof = false;
+    private long bufferedLimit = 0;
+    private boolean incomplete = false;
+
+    ASIPContentInputStream(InputStream is) {
+        this.is = is;
+    }
+
+    /**
+     * @param limit number of content bytes, -1 if unknown
+     */
+    void setLimit(long limit) {
+        this.limit = limit;
+    }
+
+    long getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @param bufferedLimit content up to that length is only read if it is
+     * available completely - 0: content is always read
+     */
+    void setBufferedLimit(long bufferedLimit) {
+        this.bufferedLimit = bufferedLimit;
+    }
+
+    /**
+     * @return true if the rest of the content is available without waiting -
+     * always true for content of unknown length or above the buffered limit
+     * @throws IOException
+     */
+    boolean isBuffered() throws IOException {
+        long remaining = this.remaining();
+        if (remaining == 0 || this.limit < 0 || this.limit > this.bufferedLimit) {
+            return true;
+        }
+        return this.is.available() >= remaining;
+    }
+
+    /**
+     * @return true if reading was refused because content wasn't received completely
+     */
+    boolean isIncomplete() {
+        return this.incomplete;
+    }
+
+    /**
+     * Skips content as far as it is available without waiting.
+     *
+     * @return true if content has been skipped completely
+     * @throws IOException
+     */
+    boolean skipAvailable() throws IOException {
+        byte[] skipBuffer = null;
+        while (this.remaining() > 0) {
+            int available = (int) Math.min(this.is.available(), this.remaining());
+            if (available <= 0) {
+                return false;
+            }
+            if (skipBuffer == null) {
+                skipBuffer = new byte[Math.min(8192, available)];
+            }
+            if (this.readContent(skipBuffer, 0, Math.min(skipBuffer.length, available)) < 0) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private long remaining() {
+        if (this.eof) {
+            return 0;
+        }
+        return this.limit < 0 ? Long.MAX_VALUE : this.limit - this.read;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = this.read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    /**
+     * Refuses content like a first read does if it hasn't been received
+     * completely - nothing is read.
+     *
+     * @throws IOException content isn't received completely yet
+     */
+    void checkBuffered() throws IOException {
+        if (this.read == 0 && !this.isBuffered()) {
+            this.incomplete = true;
+            throw new IOException("content not received completely yet: " + this.limit + " bytes");
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            this.checkBuffered();
+        }
+        return this.readContent(b, off, len);
+    }
+
+    private int readContent(byte[] b, int off, int len) throws IOException {
+        long remaining = this.remaining();
+        if (remaining == 0) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int n;
+        try {
+            n = this.is.read(b, off, (int) Math.min(len, remaining));
+        } catch (SocketTimeoutException e) {
+            if (this.limit >= 0) {
+                throw e;
+            }
+            // content without length ends when remote peer stops sending
+            n = -1;
+        }
+
+        if (n < 0) {
+            this.eof = true;
+            if (this.limit >= 0) {
+                throw new IOException("stream closed before content was complete: "
+                        + this.read + " of " + this.limit + " bytes");
+            }
+            return -1;
+        }
+        this.read += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(this.is.available(), this.remaining());
+    }
+
+    /**
+     * @return true if the underlying stream ended while reading content
+     */
+    boolean reachedEndOfStream() {
+        return this.eof;
+    }
+
+    @Override
+    public void close() throws IOException {
+        byte[] skipBuffer = null;
+        while (this.remaining() > 0) {
+            if (skipBuffer == null) {
+                skipBuffer = new byte[(int) Math.min(8192, this.remaining())];
+            }
+            if (this.readContent(skipBuffer, 0, skipBuffer.length) < 0) {
+                break;
+            }
+        }
+    }
+}
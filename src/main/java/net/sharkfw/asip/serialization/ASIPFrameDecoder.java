@@ -0,0 +1,253 @@
+package net.sharkfw.asip.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads ASIP frames from a stream. A frame consists of the protocol config
+ * (see {@link ASIPSerializationHolder#CONFIG_LENGTH}), the header - json or
+ * binary depending on the format - and the content.
+ *
+ * The decoder is a state machine - reading config and header can be
+ * interrupted (e.g. by a socket timeout) and is continued with the next call
+ * of {@link #next()}. Buffers are reused for all frames of a stream.
+ * Content isn't read by the decoder at all: it is handed over as lazy stream.
+ * Unread content is skipped before the next frame is read.
+ *
+ * Streams which report received data (e.g. an
+ * {@link net.sharkfw.protocols.AsyncStreamConnection}) are read without
+ * blocking: {@link #prefetch()} takes what is available and tells if a frame
+ * can be handed over. With a buffered content limit, smaller content is only
+ * read when it has been received completely - a frame whose content was
+ * refused is delivered again by {@link #next()}.
+ */
+public class ASIPFrameDecoder {
+
+    private static final int INITIAL_HEADER_CAPACITY = 1024;
+
+    private enum State { CONFIG, HEADER, CONTENT, CLOSED }
+
+    private final InputStream is;
+    private final ByteBuffer config = ByteBuffer.allocate(ASIPSerializationHolder.CONFIG_LENGTH);
+    private ByteBuffer header = ByteBuffer.allocate(INITIAL_HEADER_CAPACITY);
+
+    private State state = State.CONFIG;
+    private ASIPSerializationHolder holder;
+    private ASIPContentInputStream content;
+    // frame of current content - delivered again if content was incomplete
+    private ASIPSerializationHolder frame;
+    private long bufferedContentLimit = 0;
+
+    public ASIPFrameDecoder(InputStream is) {
+        this.is = is;
+    }
+
+    /**
+     * @param bufferedContentLimit content up to that length is only read
+     * after it has been received completely - 0 (default): content is read
+     * as it arrives. Only for streams with a meaningful available().
+     */
+    public void setBufferedContentLimit(long bufferedContentLimit) {
+        this.bufferedContentLimit = bufferedContentLimit;
+    }
+
+    /**
+     * Reads next frame header. The content of the returned holder is
+     * available as stream and can be read until next call of this method.
+     *
+     * @return next frame or null if stream ended between two frames
+     * @throws IOException stream failed or ended within a frame
+     * @throws ASIPSerializerException frame isn't an ASIP frame - stream is
+     * out of sync and cannot be used any longer.
+     */
+    public ASIPSerializationHolder next() throws IOException, ASIPSerializerException {
+        if (this.state == State.CONTENT && this.content.isIncomplete()) {
+            // content wasn't read at all - frame is delivered again
+            return this.deliver(this.frame);
+        }
+        this.skipContent();
+
+        if (this.state == State.CLOSED) {
+            return null;
+        }
+
+        if (this.state == State.CONFIG) {
+            if (!this.fill(this.config)) {
+                if (this.config.position() == 0) {
+                    this.state = State.CLOSED;
+                    return null;
+                }
+                this.state = State.CLOSED;
+                throw new EOFException("stream closed within protocol config");
+            }
+
+            this.configRead();
+        }
+
+        if (!this.fill(this.header)) {
+            this.state = State.CLOSED;
+            throw new EOFException("stream closed within message header");
+        }
+
+        if (this.holder.isBinary()) {
+            this.holder.setMessageBytes(Arrays.copyOf(this.header.array(), this.header.limit()));
+        } else {
+            this.holder.setMessage(new String(this.header.array(), 0, this.header.limit(), StandardCharsets.UTF_8));
+        }
+        ASIPSerializationHolder frame = this.holder;
+        this.holder = null;
+        return this.deliver(frame);
+    }
+
+    private ASIPSerializationHolder deliver(ASIPSerializationHolder frame) {
+        this.content = new ASIPContentInputStream(this.is);
+        this.content.setBufferedLimit(this.bufferedContentLimit);
+        frame.setContentStream(this.content);
+        this.frame = frame;
+        this.state = State.CONTENT;
+        return frame;
+    }
+
+    private void configRead() throws ASIPSerializerException {
+        this.config.flip();
+        String configString = StandardCharsets.UTF_8.decode(this.config).toString();
+        this.config.clear();
+
+        this.holder = new ASIPSerializationHolder(configString);
+        if (!this.holder.isASIP()) {
+            this.state = State.CLOSED;
+            throw new ASIPSerializerException("no ASIP frame: " + configString);
+        }
+
+        int messageLength = (int) this.holder.getMessageLength();
+        if (this.header.capacity() < messageLength) {
+            this.header = ByteBuffer.allocate(messageLength);
+        }
+        this.header.clear();
+        this.header.limit(messageLength);
+        this.state = State.HEADER;
+    }
+
+    /**
+     * Reads as far as possible without blocking: skips unread content of
+     * the current frame and reads config and header of the next one as far
+     * as bytes are available.
+     *
+     * @return true if {@link #next()} won't wait for data - a frame header or
+     * the refused content of current frame is available, or the stream is closed
+     * @throws IOException
+     * @throws ASIPSerializerException frame isn't an ASIP frame
+     */
+    public boolean prefetch() throws IOException, ASIPSerializerException {
+        if (this.state == State.CONTENT) {
+            if (this.content.isIncomplete()) {
+                return this.content.isBuffered();
+            }
+            if (!this.content.skipAvailable()) {
+                return false;
+            }
+            this.skipContent();
+        }
+
+        if (this.state == State.CLOSED) {
+            return true;
+        }
+
+        if (this.state == State.CONFIG) {
+            if (!this.fillAvailable(this.config)) {
+                return false;
+            }
+            this.configRead();
+        }
+
+        return this.fillAvailable(this.header);
+    }
+
+    /**
+     * @return true if content of current frame can be read without waiting -
+     * see {@link #setBufferedContentLimit(long)}
+     * @throws IOException
+     */
+    public boolean isContentBuffered() throws IOException {
+        return this.state != State.CONTENT || this.content.isBuffered();
+    }
+
+    /**
+     * @return true if reading content of current frame was refused - it
+     * hasn't been received completely
+     */
+    public boolean isContentIncomplete() {
+        return this.state == State.CONTENT && this.content.isIncomplete();
+    }
+
+    /**
+     * Skips unread content of the current frame. Called by {@link #next()}
+     * anyway - calling it earlier makes bytes available on the stream
+     * belong to the next frame.
+     *
+     * @throws IOException
+     */
+    public void skipContent() throws IOException {
+        if (this.state == State.CONTENT) {
+            // refused content is skipped as well - waiting for it
+            this.content.setBufferedLimit(0);
+            this.content.close();
+            this.state = this.content.reachedEndOfStream() ? State.CLOSED : State.CONFIG;
+            this.content = null;
+        }
+    }
+
+    /**
+     * @return true if no frame is read partially - stream can be closed
+     * without loosing a message.
+     */
+    public boolean isIdle() {
+        return this.state == State.CLOSED
+                || (this.state == State.CONFIG && this.config.position() == 0);
+    }
+
+    /**
+     * @return true if stream ended or isn't an ASIP stream - no further frames
+     */
+    public boolean isClosed() {
+        return this.state == State.CLOSED;
+    }
+
+    /**
+     * Reads what is available - never more than fits into buffer.
+     * @return true if buffer is full
+     */
+    private boolean fillAvailable(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int available = Math.min(this.is.available(), buffer.remaining());
+            if (available <= 0) {
+                return false;
+            }
+            int n = this.is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), available);
+            if (n < 0) {
+                return false;
+            }
+            buffer.position(buffer.position() + n);
+        }
+        return true;
+    }
+
+    /**
+     * Reads until buffer is full.
+     * @return false if stream ended before
+     */
+    private boolean fill(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = this.is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (n < 0) {
+                return false;
+            }
+            buffer.position(buffer.position() + n);
+        }
+        return true;
+    }
+}
@@ -8,9 +8,17 @@ import net.sharkfw.system.L;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.lang.reflect.Array;
-import java.util.Arrays;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by j4rvis on 12/7/16.
@@ -24,17 +32,34 @@ public class ASIPKnowledgeConverter {
 
     private ASIPKnowledge knowledge;
     private String serializedKnowledge = "";
-    private byte[] content = new byte[0];
+    private byte[] content = null;
     private JSONObject serializedKnowledgeAsJSON;
 
+    // information in order of their offsets - their content is streamed on demand
+    private List<ASIPInformation> contentInformation = new ArrayList<>();
+    private long contentLength = 0;
+
     // Vice Versa Constructors
 
     /**
-     * Converts the knowledge object to the jsonObject including the content meta information and the content itself.
+     * Converts the knowledge object to the jsonObject including the content meta information.
+     * Offsets are calculated by content length. The content itself isn't copied - it is
+     * written by {@link #streamContent(OutputStream)} straight from each information.
      * @param knowledge
      * @throws SharkKBException
      */
     public ASIPKnowledgeConverter(ASIPKnowledge knowledge) throws SharkKBException {
+        this(knowledge, false);
+    }
+
+    /**
+     * @param knowledge
+     * @param withInformationProperties properties of each information (including
+     * its unique id) are serialized as well. Messages don't carry them - receivers
+     * create their own information. Persistent storages need them.
+     * @throws SharkKBException
+     */
+    public ASIPKnowledgeConverter(ASIPKnowledge knowledge, boolean withInformationProperties) throws SharkKBException {
         this.knowledge = knowledge;
 
         JSONObject object = new JSONObject();
@@ -49,7 +74,7 @@ public class ASIPKnowledgeConverter {
         object.put(ASIPKnowledge.VOCABULARY, serializedVocabulary);
 
         JSONArray informationSpaceArray = new JSONArray();
-        int currentOffset = 0;
+        long currentOffset = 0;
         Iterator<ASIPInformationSpace> informationSpaceIterator = this.knowledge.informationSpaces();
         while (informationSpaceIterator.hasNext()){
 
@@ -64,19 +89,18 @@ public class ASIPKnowledgeConverter {
                 ASIPInformation nextInformation = informationIterator.next();
                 JSONObject jsonInformationObject = new JSONObject();
 
+                long length = nextInformation.getContentLength();
+
                 jsonInformationObject.put(NAME, nextInformation.getName());
-                jsonInformationObject.put(LENGTH, nextInformation.getContentLength());
+                jsonInformationObject.put(LENGTH, length);
                 jsonInformationObject.put(OFFSET, currentOffset);
                 jsonInformationObject.put(CONTENT_TYPE, nextInformation.getContentType());
+                if(withInformationProperties) {
+                    jsonInformationObject.put(PropertyHolder.PROPERTIES, ASIPMessageSerializerHelper.serializeInformationProperties(nextInformation));
+                }
 
-                byte[] c = new byte[nextInformation.getContentAsByte().length + this.content.length];
-                System.arraycopy(this.content, 0, c, 0, this.content.length);
-                System.arraycopy(nextInformation.getContentAsByte(), 0, c, this.content.length, nextInformation.getContentAsByte().length);
-                this.content = c;
-
-//                System.arraycopy(nextInformation.getContentAsByte(), 0, this.content, currentOffset,(int) nextInformation.getContentLength());
-//                this.content += nextInformation.getContentAsString();
-                currentOffset=this.content.length;
+                this.contentInformation.add(nextInformation);
+                currentOffset += length;
                 jsonInformationArray.put(jsonInformationObject);
             }
 
@@ -87,6 +111,7 @@ public class ASIPKnowledgeConverter {
 
         object.put(ASIPKnowledge.INFORMATIONSPACES, informationSpaceArray);
 
+        this.contentLength = currentOffset;
         this.serializedKnowledge = object.toString();
         this.serializedKnowledgeAsJSON = object;
     }
@@ -98,8 +123,40 @@ public class ASIPKnowledgeConverter {
      * @throws SharkKBException
      */
     public ASIPKnowledgeConverter(String serializedKnowledge, byte[] content) throws SharkKBException, ASIPSerializerException {
-        this.serializedKnowledge = serializedKnowledge;
+        this(serializedKnowledge, new ByteArrayInputStream(content != null ? content : new byte[0]));
         this.content = content;
+        this.contentLength = content != null ? content.length : 0;
+    }
+
+    /**
+     * Converts the jsonObject to the given knowledge object. Content is read
+     * from the stream in order of the offsets - each information reads its
+     * content directly from the stream. Exactly {@link #getContentLength()} bytes
+     * are read.
+     *
+     * @param serializedKnowledge
+     * @param contentStream
+     * @throws SharkKBException
+     * @throws ASIPSerializerException if content isn't complete
+     */
+    public ASIPKnowledgeConverter(String serializedKnowledge, InputStream contentStream) throws SharkKBException, ASIPSerializerException {
+        this(serializedKnowledge, contentStream, null);
+    }
+
+    /**
+     * Decodes knowledge directly into target. Tags are merged into the
+     * vocabulary of target and each information is added to target while its
+     * content is read from the stream - no intermediate knowledge base is built.
+     * Knowledge of this converter holds decoded vocabulary and properties only.
+     *
+     * @param serializedKnowledge
+     * @param contentStream
+     * @param target knowledge is decoded into that kb - a new one is created if null
+     * @throws SharkKBException
+     * @throws ASIPSerializerException if content isn't complete
+     */
+    public ASIPKnowledgeConverter(String serializedKnowledge, InputStream contentStream, SharkKB target) throws SharkKBException, ASIPSerializerException {
+        this.serializedKnowledge = serializedKnowledge;
 
         JSONObject jsonObject = new JSONObject(serializedKnowledge);
         this.serializedKnowledgeAsJSON = jsonObject;
@@ -127,8 +184,10 @@ public class ASIPKnowledgeConverter {
             ASIPMessageSerializerHelper.deserializeTimeSTSet(times, vocabularyJSON.get(SharkVocabulary.TIMES).toString());
         }
 
-        Knowledge knowledge = new InMemoASIPKnowledge();
-        SharkKB kb = new InMemoSharkKB(topics, types, peers, locations, times, knowledge);
+        SharkKB kb = createKB(topics, types, peers, locations, times);
+
+        // content is a stream - read information in order of their offsets
+        List<ContentEntry> entries = new ArrayList<>();
 
         JSONArray informationSpacesArray = jsonObject.getJSONArray(ASIPKnowledge.INFORMATIONSPACES);
 
@@ -142,30 +201,32 @@ public class ASIPKnowledgeConverter {
                 for (int k = 0; k < informationJSONArray.length(); k++) {
                     JSONObject nextInformation = informationJSONArray.getJSONObject(k);
 
-                    int offset = nextInformation.getInt(OFFSET);
-                    int length = nextInformation.getInt(LENGTH);
-                    String contentType = nextInformation.getString(CONTENT_TYPE);
-                    String name = "";
-                    if(nextInformation.has(NAME)){
-                        name = nextInformation.getString(NAME);
+                    ContentEntry entry = new ContentEntry();
+                    entry.offset = nextInformation.getLong(OFFSET);
+                    entry.length = nextInformation.getInt(LENGTH);
+                    entry.contentType = nextInformation.getString(CONTENT_TYPE);
+                    entry.interest = interest;
+                    if(nextInformation.has(NAME) && !nextInformation.getString(NAME).isEmpty()){
+                        entry.name = nextInformation.getString(NAME);
                     }
-
-                    try {
-//                        String informationContent = this.content.substring(offset, offset + length);
-                        byte[] infoContent = Arrays.copyOfRange(this.content, offset, offset + length);
-                        ASIPInformation asipInformation = kb.addInformation(infoContent, interest);
-                        asipInformation.setContentType(contentType);
-                        if(!name.isEmpty()){
-                            asipInformation.setName(name);
-                        }
-                    } catch (StringIndexOutOfBoundsException | ArrayIndexOutOfBoundsException e){
-                        throw new ASIPSerializerException("Message not complete yet");
+                    if(nextInformation.has(PropertyHolder.PROPERTIES)){
+                        entry.properties = nextInformation.getJSONArray(PropertyHolder.PROPERTIES);
                     }
-
+                    entries.add(entry);
                 }
 
             }
         }
+
+        Collections.sort(entries, new Comparator<ContentEntry>() {
+            @Override
+            public int compare(ContentEntry e1, ContentEntry e2) {
+                return Long.compare(e1.offset, e2.offset);
+            }
+        });
+
+        this.contentLength = readContent(mergeTarget(kb, target), entries, contentStream);
+
         if(jsonObject.has(PropertyHolder.PROPERTIES)){
             ASIPMessageSerializerHelper.deserializeProperties(kb, jsonObject.toString());
         }
@@ -173,6 +234,151 @@ public class ASIPKnowledgeConverter {
         this.knowledge = kb;
     }
 
+    /**
+     * @param serializedKnowledge knowledge as json object
+     * @return number of content bytes announced by serialized knowledge.
+     */
+    public static long getContentLength(JSONObject serializedKnowledge) {
+        long length = 0;
+        if(!serializedKnowledge.has(ASIPKnowledge.INFORMATIONSPACES)) {
+            return length;
+        }
+        JSONArray informationSpacesArray = serializedKnowledge.getJSONArray(ASIPKnowledge.INFORMATIONSPACES);
+        for (int i = 0; i < informationSpacesArray.length(); i++) {
+            JSONObject nextInformationSpace = informationSpacesArray.getJSONObject(i);
+            if (!nextInformationSpace.has(ASIPInformationSpace.INFORMATION)) {
+                continue;
+            }
+            JSONArray informationJSONArray = nextInformationSpace.getJSONArray(ASIPInformationSpace.INFORMATION);
+            for (int k = 0; k < informationJSONArray.length(); k++) {
+                JSONObject nextInformation = informationJSONArray.getJSONObject(k);
+                length = Math.max(length, nextInformation.getLong(OFFSET) + nextInformation.getLong(LENGTH));
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Knowledge which is encoded by another format - vocabulary and content
+     * meta information are already decoded.
+     *
+     * @param topics
+     * @param types
+     * @param peers
+     * @param locations
+     * @param times
+     * @param entries information in order of their offsets
+     * @param properties properties of the knowledge base - can be null
+     * @param contentStream
+     * @param target knowledge is decoded into that kb - a new one is created if null
+     * @throws SharkKBException
+     * @throws ASIPSerializerException if content isn't complete
+     */
+    ASIPKnowledgeConverter(SemanticNet topics, SemanticNet types, PeerTaxonomy peers,
+                           SpatialSTSet locations, TimeSTSet times, List<ContentEntry> entries,
+                           Map<String, String> properties, InputStream contentStream, SharkKB target)
+            throws SharkKBException, ASIPSerializerException {
+
+        SharkKB kb = createKB(topics, types, peers, locations, times);
+        this.contentLength = readContent(mergeTarget(kb, target), entries, contentStream);
+        if(properties != null) {
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                kb.setProperty(property.getKey(), property.getValue());
+            }
+        }
+        this.knowledge = kb;
+    }
+
+    /**
+     * Knowledge which is encoded by another format - only content is
+     * provided by this converter.
+     *
+     * @param knowledge
+     * @param contentInformation information in order of their offsets
+     * @param contentLength
+     */
+    ASIPKnowledgeConverter(ASIPKnowledge knowledge, List<ASIPInformation> contentInformation, long contentLength) {
+        this.knowledge = knowledge;
+        this.contentInformation = contentInformation;
+        this.contentLength = contentLength;
+    }
+
+    private static SharkKB createKB(SemanticNet topics, SemanticNet types, PeerTaxonomy peers,
+                                    SpatialSTSet locations, TimeSTSet times) throws SharkKBException {
+        Knowledge knowledge = new InMemoASIPKnowledge();
+        return new InMemoSharkKB(topics, types, peers, locations, times, knowledge);
+    }
+
+    /**
+     * @param decoded kb holding decoded vocabulary
+     * @param target
+     * @return kb information are added to - target with merged vocabulary
+     * or decoded if there is no target
+     */
+    private static SharkKB mergeTarget(SharkKB decoded, SharkKB target) throws SharkKBException {
+        if(target == null) {
+            return decoded;
+        }
+        target.getTopicSTSet().merge(decoded.getTopicSTSet());
+        target.getTypeSTSet().merge(decoded.getTypeSTSet());
+        target.getPeerSTSet().merge(decoded.getPeerSTSet());
+        target.getSpatialSTSet().merge(decoded.getSpatialSTSet());
+        target.getTimeSTSet().merge(decoded.getTimeSTSet());
+        return target;
+    }
+
+    /**
+     * Adds information to kb while reading their content from the stream.
+     *
+     * @param kb
+     * @param entries information in order of their offsets
+     * @param contentStream
+     * @return number of bytes read
+     * @throws ASIPSerializerException if content isn't complete
+     */
+    private static long readContent(SharkKB kb, List<ContentEntry> entries, InputStream contentStream)
+            throws SharkKBException, ASIPSerializerException {
+
+        long position = 0;
+        for (ContentEntry entry : entries) {
+            try {
+                if(entry.offset < position) {
+                    throw new ASIPSerializerException("information content overlaps at offset " + entry.offset);
+                }
+                while(position < entry.offset) {
+                    long skipped = contentStream.skip(entry.offset - position);
+                    if(skipped <= 0) {
+                        if(contentStream.read() < 0) {
+                            throw new ASIPSerializerException("Message not complete yet");
+                        }
+                        skipped = 1;
+                    }
+                    position += skipped;
+                }
+
+                ASIPInformation asipInformation = kb.addInformation(entry.name, contentStream, entry.length, entry.interest);
+                asipInformation.setContentType(entry.contentType);
+                if(entry.properties != null) {
+                    ASIPMessageSerializerHelper.deserializeInformationProperties(asipInformation, entry.properties);
+                }
+                position += entry.length;
+            } catch (IOException | RuntimeException e){
+                // InMemoInformation wraps stream failures into RuntimeExceptions
+                throw new ASIPSerializerException("Message not complete yet");
+            }
+        }
+        return position;
+    }
+
+    static class ContentEntry {
+        long offset;
+        int length;
+        String contentType;
+        String name;
+        ASIPInterest interest;
+        JSONArray properties;
+    }
+
     // Getter
 
     public ASIPKnowledge getKnowledge() {
@@ -183,8 +389,78 @@ public class ASIPKnowledgeConverter {
         return serializedKnowledge;
     }
 
+    /**
+     * Content of all information. It is created with the first call when
+     * serializing knowledge. Prefer {@link #streamContent(OutputStream)}.
+     *
+     * @return
+     */
     public byte[] getContent() {
-        return content;
+        if(this.content == null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int) this.contentLength);
+            try {
+                this.streamContent(baos);
+            } catch (IOException e) {
+                L.w("cannot create content: " + e.getMessage(), this);
+            }
+            this.content = baos.toByteArray();
+        }
+        return this.content;
+    }
+
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    /**
+     * Writes content of all information to os - each information streams
+     * its content directly, nothing is copied in between.
+     *
+     * @param os
+     * @throws IOException if an information doesn't provide the number of
+     * bytes announced by its content length - offsets would be corrupted.
+     */
+    public void streamContent(OutputStream os) throws IOException {
+        if(this.content != null) {
+            os.write(this.content);
+            return;
+        }
+
+        CountingOutputStream cos = new CountingOutputStream(os);
+        for(ASIPInformation info : this.contentInformation) {
+            long expected = cos.count + info.getContentLength();
+            info.streamContent(cos);
+            if(cos.count != expected) {
+                throw new IOException("information content doesn't fit its length: "
+                        + info.getName() + " (" + (cos.count - expected) + " bytes)");
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream os;
+        private long count = 0;
+
+        CountingOutputStream(OutputStream os) {
+            this.os = os;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.os.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.os.write(b, off, len);
+            this.count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.os.flush();
+        }
     }
 
     public JSONObject getSerializedKnowledgeAsJSON() {
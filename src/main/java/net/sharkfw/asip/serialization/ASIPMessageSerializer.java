@@ -2,10 +2,12 @@ package net.sharkfw.asip.serialization;
 
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPKnowledgeDigest;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.asip.engine.ASIPInMessage;
 import net.sharkfw.asip.engine.ASIPMessage;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.system.Base64;
 import net.sharkfw.system.L;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,6 +16,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.UUID;
 
 /**
  * @author j4rvis
@@ -27,18 +30,26 @@ public class ASIPMessageSerializer {
     public static final String INTEREST = "INTEREST";
     public static final String KNOWLEDGE = "KNOWLEDGE";
     public static final String RAW = "RAW";
+    public static final String DIGEST = "DIGEST";
 
     public static ASIPSerializationHolder serializeExpose(ASIPMessage header, ASIPSpace interest)
             throws SharkKBException, JSONException {
 
+        if (isBinary(header)) {
+            return ASIPBinarySerializer.serializeExpose(header, interest);
+        }
+
         JSONObject object = ASIPMessageSerializerHelper.serializeHeader(header);
         JSONObject content = new JSONObject();
         content.put(ASIPMessage.LOGICALSENDER, ASIPMessageSerializerHelper.serializeTag(header.getLogicalSender())); // PeerSemanticTag from Content Sender.
         content.put(SIGNED, false); // If signed or not
         content.put(INTEREST, ASIPMessageSerializerHelper.serializeInterest(interest));
+        if (header.getKnowledgeDigest() != null) {
+            content.put(DIGEST, Base64.encodeBytes(header.getKnowledgeDigest().toByteArray()));
+        }
         object.put(CONTENT, content);
 
-        ASIPSerializationHolder serializationHolder = new ASIPSerializationHolder(header, object.toString(), null);
+        ASIPSerializationHolder serializationHolder = new ASIPSerializationHolder(header, object.toString(), (byte[]) null);
 
         return serializationHolder;
     }
@@ -46,28 +57,70 @@ public class ASIPMessageSerializer {
     public static ASIPSerializationHolder serializeInsert(ASIPMessage header, ASIPKnowledge knowledge)
             throws JSONException, SharkKBException {
 
-        JSONObject object = ASIPMessageSerializerHelper.serializeHeader(header);
-        JSONObject content = new JSONObject();
-        content.put(ASIPMessage.LOGICALSENDER, ASIPMessageSerializerHelper.serializeTag(header.getLogicalSender())); // PeerSemanticTag from Content Sender.
-        content.put(SIGNED, false); // If signed or not
+        if (isBinary(header)) {
+            return ASIPBinarySerializer.serializeInsert(header, knowledge);
+        }
+
+        ASIPKnowledgeConverter knowledgeConverter = ASIPMessageSerializer.convertKnowledge(knowledge);
+        JSONObject object = ASIPMessageSerializer.insertObject(header, knowledgeConverter);
+
+        // content is streamed from knowledge when sent
+        ASIPSerializationHolder serializationHolder = new ASIPSerializationHolder(header, object.toString(), knowledgeConverter);
 
-        ASIPKnowledgeConverter knowledgeConverter;
+        return serializationHolder;
+    }
+
+    /**
+     * Serializes an insert which is sent to several receivers. Knowledge and
+     * content are serialized once - only the receiver is set for each message.
+     * Shared inserts are always in json format - receivers can be any peers.
+     *
+     * @param header all header fields but receiver peer are taken for each message
+     * @param knowledge
+     * @return
+     * @throws JSONException
+     * @throws SharkKBException
+     */
+    public static ASIPSharedInsert serializeSharedInsert(ASIPMessage header, ASIPKnowledge knowledge)
+            throws JSONException, SharkKBException {
+
+        ASIPKnowledgeConverter knowledgeConverter = ASIPMessageSerializer.convertKnowledge(knowledge);
+        JSONObject object = ASIPMessageSerializer.insertObject(header, knowledgeConverter);
+
+        object.put(ASIPMessage.COMMAND, ASIPMessage.ASIP_INSERT);
+        String placeholder = ASIPMessage.RECEIVERPEER + "-" + UUID.randomUUID().toString();
+        object.put(ASIPMessage.RECEIVERPEER, placeholder);
+
+        return new ASIPSharedInsert(ASIPMessage.FORMAT_JSON, header.getVersion(),
+                object.toString(), JSONObject.quote(placeholder), knowledgeConverter.getContent());
+    }
+
+    private static ASIPKnowledgeConverter convertKnowledge(ASIPKnowledge knowledge) throws SharkKBException {
         if (knowledge instanceof SharkKB){
-            knowledgeConverter = ASIPMessageSerializerHelper.serializeKB((SharkKB) knowledge);
+            return ASIPMessageSerializerHelper.serializeKB((SharkKB) knowledge);
         } else {
-            knowledgeConverter = ASIPMessageSerializerHelper.serializeKnowledge(knowledge);
+            return ASIPMessageSerializerHelper.serializeKnowledge(knowledge);
         }
+    }
 
+    private static JSONObject insertObject(ASIPMessage header, ASIPKnowledgeConverter knowledgeConverter)
+            throws JSONException, SharkKBException {
+
+        JSONObject object = ASIPMessageSerializerHelper.serializeHeader(header);
+        JSONObject content = new JSONObject();
+        content.put(ASIPMessage.LOGICALSENDER, ASIPMessageSerializerHelper.serializeTag(header.getLogicalSender())); // PeerSemanticTag from Content Sender.
+        content.put(SIGNED, false); // If signed or not
         content.put(KNOWLEDGE, knowledgeConverter.getSerializedKnowledgeAsJSON());
         object.put(CONTENT, content);
-
-        ASIPSerializationHolder serializationHolder = new ASIPSerializationHolder(header, object.toString(), knowledgeConverter.getContent());
-
-        return serializationHolder;
+        return object;
     }
 
     public static ASIPSerializationHolder serializeRaw(ASIPMessage header, byte[] raw) throws SharkKBException {
 
+        if (isBinary(header)) {
+            return ASIPBinarySerializer.serializeRaw(header, raw);
+        }
+
         JSONObject object = ASIPMessageSerializerHelper.serializeHeader(header);
         JSONObject content = new JSONObject();
         content.put(ASIPMessage.LOGICALSENDER, ASIPMessageSerializerHelper.serializeTag(header.getLogicalSender())); // PeerSemanticTag from Content Sender.
@@ -117,11 +170,26 @@ public class ASIPMessageSerializer {
         }
         object.put(CONTENT, content);
 
+        if (isBinary(header) && byteArray != null) {
+            return ASIPBinarySerializer.serializeRaw(header, byteArray);
+        }
+
         ASIPSerializationHolder serializationHolder = new ASIPSerializationHolder(header, object.toString(), byteArray);
         return serializationHolder;
     }
 
+    private static boolean isBinary(ASIPMessage header) {
+        return ASIPMessage.FORMAT_BINARY.equals(header.getFormat());
+    }
+
     public static boolean deserializeInMessage(ASIPInMessage message, ASIPSerializationHolder serializationHolder) {
+        if (serializationHolder.getFormat() != null) {
+            // responses are sent in the format of the request
+            message.setFormat(serializationHolder.getFormat());
+        }
+        if (serializationHolder.isBinary()) {
+            return ASIPBinarySerializer.deserializeInMessage(message, serializationHolder);
+        }
         if (serializationHolder.getMessage().isEmpty()) {
             L.d(CLASS + "Stream is empty.");
             return false;
@@ -264,8 +332,39 @@ public class ASIPMessageSerializer {
                     e.printStackTrace();
                     return false;
                 }
+                if (content.has(DIGEST)) {
+                    try {
+                        message.setKnowledgeDigest(ASIPKnowledgeDigest.fromByteArray(
+                                Base64.decode(content.getString(DIGEST))));
+                    } catch (SharkKBException | IOException e) {
+                        // peers of other versions - digest is an optimization only
+                        L.d(CLASS + "knowledge digest ignored: " + e.getMessage());
+                    }
+                }
                 break;
             case ASIPMessage.ASIP_INSERT:
+                if(serializationHolder.getContentStream() != null){
+                    // decode knowledge while reading content from stream
+                    try {
+                        JSONObject knowledgeJSON = content.getJSONObject(ASIPMessageSerializer.KNOWLEDGE);
+                        InputStream contentStream = serializationHolder.getContentStream();
+                        if(contentStream instanceof ASIPContentInputStream) {
+                            ((ASIPContentInputStream) contentStream).setLimit(
+                                    ASIPKnowledgeConverter.getContentLength(knowledgeJSON));
+                            // knowledge can be merged while decoded - not before content is complete
+                            ((ASIPContentInputStream) contentStream).checkBuffered();
+                        }
+                        ASIPKnowledgeConverter knowledgeConverter =
+                                new ASIPKnowledgeConverter(knowledgeJSON.toString(), contentStream,
+                                        message.findInsertTarget());
+                        message.setKnowledge(knowledgeConverter.getKnowledge());
+                    } catch (SharkKBException | ASIPSerializerException | IOException e) {
+                        // e.g. content not received completely yet - see ASIPFrameDecoder
+                        L.d(CLASS + e.getMessage());
+                        return false;
+                    }
+                    break;
+                }
                 if(serializationHolder.getContent()==null){
                     L.d("No content available", CLASS);
                     return false;
@@ -274,7 +373,8 @@ public class ASIPMessageSerializer {
                     ASIPKnowledgeConverter knowledgeConverter =
                             new ASIPKnowledgeConverter(
                                     content.get(ASIPMessageSerializer.KNOWLEDGE).toString(),
-                                    serializationHolder.getContent());
+                                    new ByteArrayInputStream(serializationHolder.getContent()),
+                                    message.findInsertTarget());
                     message.setKnowledge(knowledgeConverter.getKnowledge());
                 } catch (SharkKBException | ASIPSerializerException e) {
                     e.printStackTrace();
@@ -282,6 +382,17 @@ public class ASIPMessageSerializer {
                 }
                 break;
             case ASIPMessage.ASIP_RAW:
+                if(serializationHolder.getContentStream() != null){
+                    // raw content is consumed by the port - it isn't buffered
+                    InputStream contentStream = serializationHolder.getContentStream();
+                    if(contentStream instanceof ASIPContentInputStream) {
+                        // raw without length lasts until end of stream
+                        ((ASIPContentInputStream) contentStream).setLimit(
+                                content.has(RAW) ? content.getLong(RAW) : -1);
+                    }
+                    message.setRaw(contentStream);
+                    break;
+                }
                 if(serializationHolder.getContent()==null){
                     L.d("No content available", CLASS);
                     return false;
@@ -35,7 +35,17 @@ public class ASIPMessageSerializerHelper {
     }
 
     public static ASIPKnowledgeConverter serializeKB(SharkKB kb) throws SharkKBException {
-        ASIPKnowledgeConverter knowledgeConverter = new ASIPKnowledgeConverter(kb);
+        return serializeKB(kb, false);
+    }
+
+    /**
+     * @param kb
+     * @param withInformationProperties see {@link ASIPKnowledgeConverter#ASIPKnowledgeConverter(ASIPKnowledge, boolean)}
+     * @return
+     * @throws SharkKBException
+     */
+    public static ASIPKnowledgeConverter serializeKB(SharkKB kb, boolean withInformationProperties) throws SharkKBException {
+        ASIPKnowledgeConverter knowledgeConverter = new ASIPKnowledgeConverter(kb, withInformationProperties);
         JSONObject jsonObject = knowledgeConverter.getSerializedKnowledgeAsJSON();
         jsonObject.put(PropertyHolder.PROPERTIES, serializeProperties(kb));
         knowledgeConverter.setSerializedKnowledgeAsJSON(jsonObject);
@@ -181,6 +191,37 @@ public class ASIPMessageSerializerHelper {
         return jsonArray;
     }
 
+    /**
+     * Properties of an information - unlike {@link #serializeProperties(SystemPropertyHolder)}
+     * any property holder can be serialized, e.g. wrapped information.
+     *
+     * @param info
+     * @return
+     * @throws SharkKBException
+     */
+    public static JSONArray serializeInformationProperties(PropertyHolder info) throws SharkKBException {
+        JSONArray jsonArray = new JSONArray();
+        Enumeration<String> propNamesEnum = info.propertyNames(false);
+        while (propNamesEnum != null && propNamesEnum.hasMoreElements()) {
+            String name = propNamesEnum.nextElement();
+            JSONObject property = new JSONObject();
+            property.put(PropertyHolder.NAME, name);
+            property.put(PropertyHolder.VALUE, info.getProperty(name));
+            jsonArray.put(property);
+        }
+        return jsonArray;
+    }
+
+    public static void deserializeInformationProperties(PropertyHolder info, JSONArray properties) throws SharkKBException {
+        for (int i = 0; i < properties.length(); i++) {
+            JSONObject property = properties.getJSONObject(i);
+            if (!property.has(PropertyHolder.VALUE)) {
+                continue;
+            }
+            info.setProperty(property.getString(PropertyHolder.NAME), property.getString(PropertyHolder.VALUE));
+        }
+    }
+
     public static JSONObject serializeRelations(Enumeration<SemanticTag> tagEnum) {
 
 
@@ -680,9 +721,16 @@ public class ASIPMessageSerializerHelper {
 //            JSONObject jsonObject = (JSONObject) iterator.next();
         if (jsonObject.has(PropertyHolder.PROPERTIES) && !jsonObject.isNull(PropertyHolder.PROPERTIES)) {
 
-            if (!(jsonObject.get(PropertyHolder.PROPERTIES) instanceof JSONArray)) return;
-
-            JSONArray propertiesArray = jsonObject.getJSONArray(PropertyHolder.PROPERTIES);
+            Object serialized = jsonObject.get(PropertyHolder.PROPERTIES);
+            JSONArray propertiesArray;
+            if (serialized instanceof JSONArray) {
+                propertiesArray = (JSONArray) serialized;
+            } else if (serialized instanceof String) {
+                // serializeTag writes properties as string
+                propertiesArray = new JSONArray((String) serialized);
+            } else {
+                return;
+            }
             for (int i = 0; i < propertiesArray.length(); i++) {
 
                 JSONObject property = propertiesArray.getJSONObject(i);
@@ -2,6 +2,10 @@ package net.sharkfw.asip.serialization;
 
 import net.sharkfw.asip.engine.ASIPMessage;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -17,15 +21,18 @@ public class ASIPSerializationHolder {
 
     /**
      * Length of the Information standing before the JSON object.
-     * The first four bytes represent the format of the protocol. For ASIP it will be 'JSON'
+     * The first four bytes represent the format of the protocol. For ASIP it will be 'JSON' or 'BNRY'
      * The next seven bytes represent the versionof the protocol. For ASIP it will be 'ASIP1.0'
-     * The last nine bytes will represent the length of the actual json message. The value will be prepended with zeros
+     * The last nine bytes will represent the length of the actual json message in (UTF-8) bytes. The value will be prepended with zeros
      */
     private String protocolConfig = "";
     private int messageLength = 0;
 
     private String message;
+    private byte[] messageBytes;
     private byte[] content;
+    private ASIPKnowledgeConverter contentSource;
+    private InputStream contentStream;
     private String format;
     private String version;
 
@@ -46,17 +53,47 @@ public class ASIPSerializationHolder {
     }
 
     public ASIPSerializationHolder(ASIPMessage message, String jsonString, byte[] content) {
-        this.prepareProtocolConfig(message, jsonString);
+        this.prepareProtocolConfig(message, jsonString.getBytes(StandardCharsets.UTF_8).length);
         this.message = jsonString;
         this.content = content;
     }
 
-    private void prepareProtocolConfig(ASIPMessage message, String serializedMessage) {
+    /**
+     * Content is taken from the converter when streamed - it isn't copied.
+     * @param message
+     * @param jsonString
+     * @param contentSource
+     */
+    public ASIPSerializationHolder(ASIPMessage message, String jsonString, ASIPKnowledgeConverter contentSource) {
+        this.prepareProtocolConfig(message, jsonString.getBytes(StandardCharsets.UTF_8).length);
+        this.message = jsonString;
+        this.contentSource = contentSource;
+    }
+
+    /**
+     * Message header isn't a string, e.g. {@link ASIPMessage#FORMAT_BINARY}.
+     * @param message
+     * @param serializedMessage
+     * @param content
+     * @param contentSource content is taken from converter if set
+     */
+    public ASIPSerializationHolder(ASIPMessage message, byte[] serializedMessage, byte[] content,
+                                   ASIPKnowledgeConverter contentSource) {
+        this.prepareProtocolConfig(message, serializedMessage.length);
+        this.messageBytes = serializedMessage;
+        this.content = content;
+        this.contentSource = contentSource;
+    }
+
+    private void prepareProtocolConfig(ASIPMessage message, int serializedMessageLength) {
         this.protocolConfig += message.getFormat();
         this.protocolConfig += message.getVersion();
-        this.protocolConfig += String.format("%09d", serializedMessage.length());
+        this.protocolConfig += String.format("%09d", serializedMessageLength);
     }
 
+    /**
+     * @return json header or null if message has a binary format
+     */
     public String getMessage() {
         return this.message;
     }
@@ -65,18 +102,87 @@ public class ASIPSerializationHolder {
         this.message = message;
     }
 
+    /**
+     * @return header of a message with binary format
+     */
+    public byte[] getMessageBytes() {
+        return this.messageBytes;
+    }
+
+    public void setMessageBytes(byte[] messageBytes) {
+        this.messageBytes = messageBytes;
+    }
+
+    public String getFormat() {
+        return this.format;
+    }
+
+    public boolean isBinary() {
+        return ASIPMessage.FORMAT_BINARY.equals(this.format);
+    }
+
     public byte[] getContent() {
+        if(this.content == null && this.contentSource != null) {
+            return this.contentSource.getContent();
+        }
+        if(this.content == null && this.contentStream != null) {
+            // received content wasn't consumed as stream - read it now
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            try {
+                int n;
+                while((n = this.contentStream.read(buffer)) != -1) {
+                    baos.write(buffer, 0, n);
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            this.content = baos.toByteArray();
+            this.contentStream = null;
+        }
         return this.content;
     }
 
+    /**
+     * Content of a received frame. It is read lazily from the connection and
+     * can only be consumed once.
+     *
+     * @return content stream or null if content isn't received from a stream
+     */
+    public InputStream getContentStream() {
+        return this.contentStream;
+    }
+
+    public void setContentStream(InputStream contentStream) {
+        this.contentStream = contentStream;
+    }
+
     public void setContent(byte[] content) {
         this.content = content;
+        this.contentSource = null;
+        this.contentStream = null;
     }
 
     public long getContentLength() {
+        if(this.content == null && this.contentSource != null) {
+            return this.contentSource.getContentLength();
+        }
         return this.content!=null ? this.content.length : 0;
     }
 
+    /**
+     * Writes content to os without creating a copy of it.
+     * @param os
+     * @throws IOException
+     */
+    public void streamContent(OutputStream os) throws IOException {
+        if(this.content != null) {
+            os.write(this.content);
+        } else if(this.contentSource != null) {
+            this.contentSource.streamContent(os);
+        }
+    }
+
     public boolean isASIP() {
         return this.version.equals("ASIP1.0");
     }
@@ -86,6 +192,13 @@ public class ASIPSerializationHolder {
     }
 
     public byte[] messageAsUtf8Bytes(){
+        if(this.messageBytes != null) {
+            byte[] config = this.protocolConfig.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[config.length + this.messageBytes.length];
+            System.arraycopy(config, 0, bytes, 0, config.length);
+            System.arraycopy(this.messageBytes, 0, bytes, config.length, this.messageBytes.length);
+            return bytes;
+        }
         return (this.protocolConfig + this.message).getBytes(StandardCharsets.UTF_8);
     }
 
@@ -0,0 +1,84 @@
+package net.sharkfw.asip.serialization;
+
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An insert message serialized once for several receivers. Header and
+ * content are kept as bytes and are never changed - an object can be written
+ * by several threads at once. Only the receiver peer field is serialized for
+ * each message.
+ *
+ * @see ASIPMessageSerializer#serializeSharedInsert
+ */
+public class ASIPSharedInsert {
+
+    private static final byte[] NO_RECEIVER = "\"\"".getBytes(StandardCharsets.UTF_8);
+
+    private final String format;
+    private final String version;
+    private final byte[] headerPrefix;
+    private final byte[] headerSuffix;
+    private final byte[] content;
+
+    /**
+     * @param format
+     * @param version
+     * @param jsonString serialized header - receiver peer is placeholder
+     * @param placeholder json value which is replaced by the receiver
+     * @param content
+     * @throws SharkKBException placeholder isn't found exactly once
+     */
+    ASIPSharedInsert(String format, String version, String jsonString, String placeholder, byte[] content)
+            throws SharkKBException {
+
+        int index = jsonString.indexOf(placeholder);
+        if (index < 0 || jsonString.indexOf(placeholder, index + 1) >= 0) {
+            throw new SharkKBException("cannot find receiver in serialized message");
+        }
+
+        this.format = format;
+        this.version = version;
+        this.headerPrefix = jsonString.substring(0, index).getBytes(StandardCharsets.UTF_8);
+        this.headerSuffix = jsonString.substring(index + placeholder.length()).getBytes(StandardCharsets.UTF_8);
+        this.content = content != null ? content : new byte[0];
+    }
+
+    /**
+     * Writes a complete message frame for receiver.
+     *
+     * @param os
+     * @param receiver can be null
+     * @throws IOException
+     * @throws SharkKBException receiver cannot be serialized
+     */
+    public void writeTo(OutputStream os, PeerSemanticTag receiver) throws IOException, SharkKBException {
+        byte[] receiverBytes = NO_RECEIVER;
+        if (receiver != null) {
+            try {
+                receiverBytes = ASIPMessageSerializerHelper.serializeTag(receiver).toString()
+                        .getBytes(StandardCharsets.UTF_8);
+            } catch (JSONException e) {
+                throw new SharkKBException(e.getMessage());
+            }
+        }
+
+        int messageLength = this.headerPrefix.length + receiverBytes.length + this.headerSuffix.length;
+        String protocolConfig = this.format + this.version + String.format("%09d", messageLength);
+
+        os.write(protocolConfig.getBytes(StandardCharsets.UTF_8));
+        os.write(this.headerPrefix);
+        os.write(receiverBytes);
+        os.write(this.headerSuffix);
+        os.write(this.content);
+    }
+
+    public long getContentLength() {
+        return this.content.length;
+    }
+}
@@ -0,0 +1,155 @@
+package net.sharkfw.knowledgeBase;
+
+import net.sharkfw.asip.ASIPSpace;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical form of the subject identifiers of a tag. SIs are compared case
+ * insensitive - each SI is mapped to a canonical string which is interned:
+ * identical SIs are the same object. Keys are sorted by hash, two key sets
+ * are tested for a common SI by a merge of both without any allocation.
+ * <p>
+ * Keys are built once when SIs are set, see {@link Holder}.
+ *
+ * @see SharkCSAlgebra#identical(SemanticTag, SemanticTag)
+ */
+public final class SIKeys {
+
+    /**
+     * Tags which keep keys of their SIs.
+     */
+    public interface Holder {
+        /**
+         * @return keys of current SIs - never null
+         */
+        SIKeys getSIKeys();
+    }
+
+    // string -> itself, entries vanish with last user of that string
+    private static final Map<String, WeakReference<String>> INTERNED = new WeakHashMap<>();
+
+    private static final String ANY_KEY = intern(canonical(ASIPSpace.ANYURL));
+
+    public static final SIKeys ANY = new SIKeys(new String[0], new int[0], true);
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final boolean any;
+
+    private SIKeys(String[] keys, int[] hashes, boolean any) {
+        this.keys = keys;
+        this.hashes = hashes;
+        this.any = any;
+    }
+
+    /**
+     * @param sis can be null
+     * @return keys of sis - {@link #ANY} if sis stand for any
+     */
+    public static SIKeys of(String[] sis) {
+        if (sis == null || sis.length == 0) return ANY;
+
+        String[] keys = new String[sis.length];
+        int[] hashes = new int[sis.length];
+        for (int i = 0; i < sis.length; i++) {
+            if (sis[i] == null) return ANY;
+            String key = intern(canonical(sis[i]));
+            if (key == ANY_KEY) return ANY;
+
+            // insertion sort by hash - there are just a few sis
+            int j = i;
+            int hash = key.hashCode();
+            while (j > 0 && hashes[j - 1] > hash) {
+                keys[j] = keys[j - 1];
+                hashes[j] = hashes[j - 1];
+                j--;
+            }
+            keys[j] = key;
+            hashes[j] = hash;
+        }
+        return new SIKeys(keys, hashes, false);
+    }
+
+    /**
+     * Same characters are equal in {@link String#equalsIgnoreCase(String)}
+     * and in canonical form.
+     */
+    static String canonical(String si) {
+        int length = si.length();
+        for (int i = 0; i < length; i++) {
+            char c = si.charAt(i);
+            if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+                // at least one char changes - canonicalize all
+                char[] chars = si.toCharArray();
+                for (int j = i; j < length; j++) {
+                    chars[j] = Character.toLowerCase(Character.toUpperCase(chars[j]));
+                }
+                return new String(chars);
+            }
+        }
+        return si;
+    }
+
+    /**
+     * @param s
+     * @return equal string which is shared by all callers
+     */
+    public static String intern(String s) {
+        if (s == null) return null;
+        synchronized (INTERNED) {
+            WeakReference<String> reference = INTERNED.get(s);
+            String interned = reference != null ? reference.get() : null;
+            if (interned == null) {
+                INTERNED.put(s, new WeakReference<>(s));
+                interned = s;
+            }
+            return interned;
+        }
+    }
+
+    public boolean isAny() {
+        return this.any;
+    }
+
+    /**
+     * @param other
+     * @return true if both have at least one SI in common
+     */
+    public boolean intersects(SIKeys other) {
+        String[] keysA = this.keys;
+        String[] keysB = other.keys;
+        if (keysA.length == 1 && keysB.length == 1) {
+            return keysA[0] == keysB[0];
+        }
+
+        int[] hashesA = this.hashes;
+        int[] hashesB = other.hashes;
+        int a = 0;
+        int b = 0;
+        while (a < hashesA.length && b < hashesB.length) {
+            if (hashesA[a] < hashesB[b]) {
+                a++;
+            } else if (hashesA[a] > hashesB[b]) {
+                b++;
+            } else {
+                // same hash - compare all keys with that hash
+                int hash = hashesA[a];
+                int endA = a;
+                while (endA < hashesA.length && hashesA[endA] == hash) endA++;
+                int endB = b;
+                while (endB < hashesB.length && hashesB[endB] == hash) endB++;
+                for (int i = a; i < endA; i++) {
+                    for (int j = b; j < endB; j++) {
+                        if (keysA[i] == keysB[j]) return true;
+                    }
+                }
+                a = endA;
+                b = endB;
+            }
+        }
+        return false;
+    }
+}
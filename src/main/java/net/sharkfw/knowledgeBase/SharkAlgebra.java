@@ -3,11 +3,16 @@ package net.sharkfw.knowledgeBase;
 import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.geom.SharkGeometry;
 import net.sharkfw.knowledgeBase.inmemory.InMemoInterest;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.system.Util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.Iterator;
 
 /**
@@ -418,6 +423,111 @@ public class SharkAlgebra {
         return true;
     }
 
+    /**
+     * Creates a canonical fingerprint of an ASIP space. It is built from the
+     * sorted SIs of each tag in each dimension, the sender, the direction as well
+     * as time frames and geometries. Order of tags and SIs doesn't matter. A null
+     * dimension and an empty dimension produce the same fingerprint.
+     *
+     * <p>
+     * Spaces with the same fingerprint are identical. The opposite isn't
+     * necessarily true: identical() accepts any tags and partially matching SIs.
+     * Use it as hash key for exact lookups and confirm with identical() if the
+     * weaker semantics are required.
+     * </p>
+     *
+     * @param space
+     * @return fingerprint - never null
+     * @throws SharkKBException
+     */
+    public static String fingerprint(ASIPSpace space) throws SharkKBException {
+        StringBuilder buf = new StringBuilder();
+
+        if(space == null) {
+            return buf.append(ASIPSpace.DIRECTION_INOUT).toString();
+        }
+
+        buf.append(space.getDirection());
+        SharkAlgebra.appendFingerprint(buf, 'T', space.getTopics());
+        SharkAlgebra.appendFingerprint(buf, 'Y', space.getTypes());
+        SharkAlgebra.appendFingerprint(buf, 'A', space.getApprovers());
+        SharkAlgebra.appendFingerprint(buf, 'R', space.getReceivers());
+        SharkAlgebra.appendFingerprint(buf, 'I', space.getTimes());
+        SharkAlgebra.appendFingerprint(buf, 'L', space.getLocations());
+
+        buf.append('S');
+        PeerSemanticTag sender = space.getSender();
+        if(!SharkCSAlgebra.isAny(sender)) {
+            buf.append(SharkAlgebra.fingerprint(sender));
+        }
+
+        return buf.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder buf, char dimension, STSet set)
+            throws SharkKBException {
+
+        buf.append(dimension);
+        if(set == null) return;
+
+        Enumeration<SemanticTag> tags = set.tags();
+        if(tags == null || !tags.hasMoreElements()) return;
+
+        ArrayList<String> tagPrints = new ArrayList<>();
+        while(tags.hasMoreElements()) {
+            tagPrints.add(SharkAlgebra.fingerprint(tags.nextElement()));
+        }
+        Collections.sort(tagPrints);
+
+        buf.append(tagPrints.size()).append('[');
+        for(String tagPrint : tagPrints) {
+            buf.append(tagPrint);
+        }
+        buf.append(']');
+    }
+
+    private static String fingerprint(SemanticTag tag) {
+        StringBuilder buf = new StringBuilder();
+
+        String[] sis = tag.getSI();
+        if(sis != null) {
+            String[] sorted = Arrays.copyOf(sis, sis.length);
+            Arrays.sort(sorted, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    // null sis are ignored anyway
+                    if(a == null) return b == null ? 0 : -1;
+                    if(b == null) return 1;
+                    return a.compareTo(b);
+                }
+            });
+            for(String si : sorted) {
+                SharkAlgebra.appendLengthPrefixed(buf, si);
+            }
+        }
+
+        if(tag instanceof TimeSemanticTag) {
+            TimeSemanticTag tst = (TimeSemanticTag) tag;
+            buf.append('@').append(tst.getFrom()).append('+').append(tst.getDuration());
+        }
+
+        if(tag instanceof SpatialSemanticTag) {
+            SharkGeometry geom = ((SpatialSemanticTag) tag).getGeometry();
+            if(geom != null) {
+                buf.append('#');
+                SharkAlgebra.appendLengthPrefixed(buf, geom.getEWKT());
+            }
+        }
+
+        // length prefix keeps tags apart
+        return buf.length() + ":" + buf.toString();
+    }
+
+    private static void appendLengthPrefixed(StringBuilder buf, String s) {
+        if(s == null) return;
+        buf.append(s.length()).append(':').append(s);
+    }
+
     public static void mergeInformation(SharkKB target, ASIPInformation info) throws SharkKBException {
 
         Iterator<ASIPInformation> information = target.getInformation(info.getASIPSpace());
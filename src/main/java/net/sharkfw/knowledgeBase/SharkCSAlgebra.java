@@ -1,7 +1,10 @@
 package net.sharkfw.knowledgeBase;
 
 import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSpatialSTSet;
+import net.sharkfw.knowledgeBase.inmemory.InMemoTimeSTSet;
 import net.sharkfw.system.Iterator2Enumeration;
 import net.sharkfw.system.L;
 import net.sharkfw.system.Util;
@@ -74,6 +77,14 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
         // same object ?
         if (tagA == tagB) return true;
 
+        if (tagA instanceof SIKeys.Holder && tagB instanceof SIKeys.Holder
+                && !(tagA instanceof SpatialSemanticTag && tagB instanceof SpatialSemanticTag)) {
+            // keys were built with the tags - no allocation
+            SIKeys keysA = ((SIKeys.Holder) tagA).getSIKeys();
+            SIKeys keysB = ((SIKeys.Holder) tagB).getSIKeys();
+            return keysA.isAny() || keysB.isAny() || keysA.intersects(keysB);
+        }
+
         if (SharkCSAlgebra.isAny(tagA) || SharkCSAlgebra.isAny(tagB)) return true;
 
         // Geometries super overrule sis
@@ -134,7 +145,7 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
      * @return
      */
     public static boolean identical(String siA, String siB) {
-        return siA.equalsIgnoreCase(siB);
+        return siA == siB || siA.equalsIgnoreCase(siB);
     }
 
 
@@ -713,6 +724,10 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
     public static boolean isAny(SemanticTag tag) {
         if (tag == null) return true;
 
+        if (tag instanceof SIKeys.Holder) {
+            return ((SIKeys.Holder) tag).getSIKeys().isAny();
+        }
+
         String[] si = tag.getSI();
 
         if (si == null || si.length == 0) return true;
@@ -868,6 +883,58 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
         return true;
     }
 
+    /**
+     * Locations are in source if they can be found by their subject identifiers
+     * or if their geometry is covered by a geometry in source. Only parsable
+     * geometries are compared - other tags must match by subject identifiers.
+     *
+     * @param source
+     * @param checked
+     * @return
+     * @throws SharkKBException
+     */
+    public static boolean isIn(SpatialSTSet source, SpatialSTSet checked) throws SharkKBException {
+        if (checked == null || SharkCSAlgebra.isAny(source)) {
+            return true;
+        }
+
+        Iterator<SemanticTag> iterator = checked.stTags();
+        while (iterator.hasNext()) {
+            SemanticTag tag = iterator.next();
+            if (SharkCSAlgebra.isIn((STSet) source, tag)) {
+                continue;
+            }
+            if (!(tag instanceof SpatialSemanticTag)
+                    || !SharkCSAlgebra.coveredByGeometry(source, (SpatialSemanticTag) tag)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean coveredByGeometry(SpatialSTSet source, SpatialSemanticTag tag) throws SharkKBException {
+        if (source instanceof InMemoSpatialSTSet) {
+            // r-tree
+            return ((InMemoSpatialSTSet) source).covers(tag);
+        }
+
+        PlanarGeometry probe = PlanarGeometry.of(tag.getGeometry());
+        if (probe == null) {
+            return false;
+        }
+        Iterator<SemanticTag> iterator = source.stTags();
+        while (iterator.hasNext()) {
+            SemanticTag sourceTag = iterator.next();
+            if (sourceTag instanceof SpatialSemanticTag) {
+                PlanarGeometry g = PlanarGeometry.of(((SpatialSemanticTag) sourceTag).getGeometry());
+                if (g != null && g.covers(probe)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public static boolean isIn(SpatialSemanticTag sst1, SpatialSemanticTag sst2) throws SharkKBException {
         return SharkCSAlgebra.getSpatialAlgebra().isIn(sst1, sst2);
     }
@@ -878,6 +945,15 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
             return true; // means anytime
         }
 
+        if (tSet instanceof InMemoTimeSTSet) {
+            // interval tree - no need to check each time frame
+            InMemoTimeSTSet inMemoSet = (InMemoTimeSTSet) tSet;
+            if (inMemoSet.isEmpty()) {
+                return true;
+            }
+            return tst != null && inMemoSet.covers(tst);
+        }
+
         Enumeration<TimeSemanticTag> timeTags = tSet.timeTags();
         if (timeTags == null || !timeTags.hasMoreElements()) {
             return true;
@@ -918,11 +994,12 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
             return false;
         } // earlier
 
+        // a time frame lasting forever ends after all others
         long probeEnd = probe.getDuration() == TimeSemanticTag.FOREVER ?
-                TimeSemanticTag.FOREVER : probe.getFrom() + probe.getDuration();
+                Long.MAX_VALUE : probe.getFrom() + probe.getDuration();
 
         long targetEnd = target.getDuration() == TimeSemanticTag.FOREVER ?
-                TimeSemanticTag.FOREVER : target.getFrom() + target.getDuration();
+                Long.MAX_VALUE : target.getFrom() + target.getDuration();
 
         if (probeEnd == targetEnd) {
             return true;
@@ -5,6 +5,8 @@ import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.asip.engine.ASIPInMessage;
 import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.asip.serialization.ASIPMessageSerializer;
+import net.sharkfw.asip.serialization.ASIPSharedInsert;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSemanticNet;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
@@ -18,7 +20,9 @@ import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.routing.SemanticRoutingKP;
 import net.sharkfw.system.L;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -27,7 +31,21 @@ import java.util.concurrent.Executors;
  */
 public class BroadcastManager {
 
+    /**
+     * Informed about each message of a broadcast.
+     */
+    public interface BroadcastListener {
+        void broadcastSent(SyncComponent component, PeerSemanticTag peer);
+
+        void broadcastFailed(SyncComponent component, PeerSemanticTag peer, String reason);
+    }
+
+    public static final int SENDER_THREADS = 4;
+    public static final int MAX_PENDING_PER_PEER = 2;
+
     private final ExecutorService executor;
+    private final HashMap<String, Integer> pendingSends = new HashMap<>();
+    private final List<BroadcastListener> broadcastListeners = new CopyOnWriteArrayList<>();
     public static final String SHARK_BROADCAST_TYPE_SI = "http://www.sharksystem.net/broadcast";
     public static final SemanticTag SHARK_BROADCAST_TAG = InMemoSharkKB.createInMemoSemanticTag("BROADCAST", SHARK_BROADCAST_TYPE_SI);
 
@@ -51,7 +69,7 @@ public class BroadcastManager {
         this.activeOutProfile = null;
         this.mergeInfoSerializer = new SyncMergeInfoSerializer(this.engine.getStorage());
         this.broadcastComponent = null;
-        executor = Executors.newSingleThreadExecutor();
+        executor = Executors.newFixedThreadPool(SENDER_THREADS);
         sentMessages = new HashMap<>();
     }
 
@@ -138,26 +156,31 @@ public class BroadcastManager {
         }
     }
 
+    /**
+     * Sends knowledge of component to all peers. Knowledge is serialized once,
+     * messages are written in parallel. Not more than
+     * {@link #MAX_PENDING_PER_PEER} broadcasts wait for a peer - further
+     * broadcasts to that peer are dropped and reported as failed.
+     *
+     * @param component
+     * @param peers
+     */
     public void sendBroadcastMessage(final SyncComponent component, final List<PeerSemanticTag> peers) {
+        final SharedPayload payload = new SharedPayload(component.getKb());
         for (final PeerSemanticTag peer : peers) {
+            if (!this.reserveSend(peer)) {
+                this.notifyFailed(component, peer, "too many pending broadcasts");
+                continue;
+            }
+
             Runnable runnable = new Runnable() {
                 @Override
                 public void run() {
-                        SharkKB changes = component.getKb();
-                        L.d("Broadcast insert sent to: " + peer.getName(), this);
-                        System.out.println("Broadcast insert sent to: " + peer.getName());
-                        ASIPOutMessage outMessage = engine.createASIPOutMessage(
-                                peer.getAddresses(),
-                                engine.getOwner(),
-                                peer,
-                                null,
-                                null,
-                                component.getUniqueName(),
-                                SHARK_BROADCAST_TAG, 1);
-
-                        outMessage.insert(changes);
-                        mergeInfoSerializer.add(component.getUniqueName(), peer);
-
+                    try {
+                        BroadcastManager.this.send(component, peer, payload);
+                    } finally {
+                        BroadcastManager.this.releaseSend(peer);
+                    }
                 }
             };
             executor.submit(runnable);
@@ -165,29 +188,103 @@ public class BroadcastManager {
     }
 
     public void sendBroadcastMessage(final SyncComponent component, final PeerSemanticTag peer) {
+        this.sendBroadcastMessage(component, Collections.singletonList(peer));
+    }
 
-            Runnable runnable = new Runnable() {
-                @Override
-                public void run() {
-                    SharkKB changes = component.getKb();
-                    L.d("Broadcast insert sent to: " + peer.getName(), this);
-                    System.out.println("Broadcast insert sent to: " + peer.getName());
-                    ASIPOutMessage outMessage = engine.createASIPOutMessage(
-                            peer.getAddresses(),
-                            engine.getOwner(),
-                            peer,
-                            null,
-                            null,
-                            component.getUniqueName(),
-                            SHARK_BROADCAST_TAG, 1);
-
-                    outMessage.insert(changes);
-                    mergeInfoSerializer.add(component.getUniqueName(), peer);
+    private void send(SyncComponent component, PeerSemanticTag peer, SharedPayload payload) {
+        L.d("Broadcast insert sent to: " + peer.getName(), this);
+        ASIPOutMessage outMessage = engine.createASIPOutMessage(
+                peer.getAddresses(),
+                engine.getOwner(),
+                peer,
+                null,
+                null,
+                component.getUniqueName(),
+                SHARK_BROADCAST_TAG, 1);
+
+        if (outMessage == null) {
+            this.notifyFailed(component, peer, "peer not reachable");
+            return;
+        }
 
-                }
-            };
-            executor.submit(runnable);
+        try {
+            outMessage.insert(payload.get(outMessage));
+        } catch (SharkKBException | IOException e) {
+            this.notifyFailed(component, peer, e.getMessage());
+            return;
+        }
+
+        synchronized (mergeInfoSerializer) {
+            mergeInfoSerializer.add(component.getUniqueName(), peer);
+        }
+        for (BroadcastListener listener : this.broadcastListeners) {
+            listener.broadcastSent(component, peer);
+        }
+    }
+
+    /**
+     * Knowledge of a broadcast - serialized by the first message which is sent.
+     * Header of that message is taken for all receivers.
+     */
+    private static class SharedPayload {
+        private final SharkKB kb;
+        private ASIPSharedInsert sharedInsert;
+
+        SharedPayload(SharkKB kb) {
+            this.kb = kb;
+        }
+
+        synchronized ASIPSharedInsert get(ASIPOutMessage header) throws SharkKBException {
+            if (this.sharedInsert == null) {
+                this.sharedInsert = ASIPMessageSerializer.serializeSharedInsert(header, this.kb);
+            }
+            return this.sharedInsert;
+        }
+    }
+
+    private String peerKey(PeerSemanticTag peer) {
+        String[] sis = peer.getSI();
+        return sis != null && sis.length > 0 ? sis[0] : peer.getName();
+    }
+
+    private boolean reserveSend(PeerSemanticTag peer) {
+        String key = this.peerKey(peer);
+        synchronized (this.pendingSends) {
+            Integer pending = this.pendingSends.get(key);
+            int number = pending == null ? 0 : pending;
+            if (number >= MAX_PENDING_PER_PEER) {
+                return false;
+            }
+            this.pendingSends.put(key, number + 1);
+            return true;
+        }
+    }
+
+    private void releaseSend(PeerSemanticTag peer) {
+        String key = this.peerKey(peer);
+        synchronized (this.pendingSends) {
+            Integer pending = this.pendingSends.get(key);
+            if (pending == null || pending <= 1) {
+                this.pendingSends.remove(key);
+            } else {
+                this.pendingSends.put(key, pending - 1);
+            }
+        }
+    }
+
+    private void notifyFailed(SyncComponent component, PeerSemanticTag peer, String reason) {
+        L.w("Broadcast to " + peer.getName() + " failed: " + reason, this);
+        for (BroadcastListener listener : this.broadcastListeners) {
+            listener.broadcastFailed(component, peer, reason);
+        }
+    }
+
+    public void addBroadcastListener(BroadcastListener listener) {
+        this.broadcastListeners.add(listener);
+    }
 
+    public void removeBroadcastListener(BroadcastListener listener) {
+        this.broadcastListeners.remove(listener);
     }
 
     public void addSemanticRoutingListener(SemanticRoutingKP.SemanticRoutingListener listener){
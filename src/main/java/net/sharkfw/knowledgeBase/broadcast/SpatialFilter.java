@@ -3,7 +3,9 @@ package net.sharkfw.knowledgeBase.broadcast;
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.engine.ASIPInMessage;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
 import net.sharkfw.knowledgeBase.geom.SharkPoint;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSpatialSTSet;
 import net.sharkfw.knowledgeBase.spatial.ISharkLocationProfile;
 import net.sharkfw.knowledgeBase.spatial.ISpatialInformation;
 import net.sharkfw.knowledgeBase.spatial.ISpatialProbability;
@@ -38,31 +40,48 @@ public class SpatialFilter implements SemanticFilter {
 
     @Override
     public boolean filter(ASIPInMessage message, SharkKB newKnowledge, ASIPInterest activeEntryProfile) {
-        boolean isInteresting = false;
-
         Enumeration<SpatialSemanticTag> dimensionTags = null;
+        SpatialSTSet profileLocations = null;
         try {
-            if (dimension == Dimension.SPATIAL) {
-                dimensionTags = newKnowledge.getSpatialSTSet().spatialTags();
-            }
-            else {
-                dimensionTags = newKnowledge.getSpatialSTSet().spatialTags();
+            dimensionTags = newKnowledge.getSpatialSTSet().spatialTags();
+            if (activeEntryProfile != null && !SharkCSAlgebra.isAny(activeEntryProfile.getLocations())) {
+                profileLocations = activeEntryProfile.getLocations();
             }
         } catch (SharkKBException e) {
             e.printStackTrace();
             return false;
         }
 
-
         SpatialSemanticTag currentElement;
         while (dimensionTags.hasMoreElements()) {
             currentElement = dimensionTags.nextElement();
 
+            // probabilities are only calculated for locations near the profile
+            if (!this.nearProfile(currentElement, profileLocations)) {
+                continue;
+            }
             if (checkSpatialSemanticTag(currentElement)) {
-                isInteresting = true;
+                return true;
             }
         }
-        return isInteresting;
+        return false;
+    }
+
+    /**
+     * @return false if tag has a parsable geometry which doesn't share a single
+     * point with the profile locations.
+     */
+    private boolean nearProfile(SpatialSemanticTag tag, SpatialSTSet profileLocations) {
+        if (profileLocations == null || !(profileLocations instanceof InMemoSpatialSTSet)
+                || PlanarGeometry.of(tag.getGeometry()) == null) {
+            return true;
+        }
+        InMemoSpatialSTSet inMemoLocations = (InMemoSpatialSTSet) profileLocations;
+        try {
+            return inMemoLocations.intersecting(tag).hasNext() || inMemoLocations.unparsableTags().hasNext();
+        } catch (SharkKBException e) {
+            return true;
+        }
     }
 
     private boolean checkSpatialSemanticTag(SpatialSemanticTag spatialSemanticTag) {
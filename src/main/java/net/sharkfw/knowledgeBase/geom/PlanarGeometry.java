@@ -0,0 +1,693 @@
+package net.sharkfw.knowledgeBase.geom;
+
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Geometry parsed from (Extended) Well-Known Text. Coordinates are kept in
+ * primitive arrays - points as x/y pairs, line strings as x0,y0,x1,y1,... and
+ * polygons as rings (shell first, holes follow). Multi geometries and
+ * collections are flattened into their parts.
+ *
+ * Coordinates are compared in the plane - like JTS does - with boundaries
+ * belonging to a geometry. A multi geometry covers another one if each part
+ * of the other is covered by a single part.
+ *
+ * Supported: POINT, LINESTRING, POLYGON, MULTIPOINT, MULTILINESTRING,
+ * MULTIPOLYGON and GEOMETRYCOLLECTION with optional Z/M values (ignored).
+ */
+public final class PlanarGeometry {
+
+    private static final double EPSILON = 1e-12;
+
+    private final double[] points;
+    private final double[][] lines;
+    private final double[][][] polygons;
+
+    private final double minX, minY, maxX, maxY;
+
+    private PlanarGeometry(double[] points, double[][] lines, double[][][] polygons) {
+        this.points = points;
+        this.lines = lines;
+        this.polygons = polygons;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        List<double[]> all = new ArrayList<>();
+        all.add(points);
+        for (double[] line : lines) {
+            all.add(line);
+        }
+        for (double[][] polygon : polygons) {
+            // holes are inside the shell
+            all.add(polygon[0]);
+        }
+        for (double[] coords : all) {
+            for (int i = 0; i < coords.length; i += 2) {
+                minX = Math.min(minX, coords[i]);
+                maxX = Math.max(maxX, coords[i]);
+                minY = Math.min(minY, coords[i + 1]);
+                maxY = Math.max(maxY, coords[i + 1]);
+            }
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * @param geometry
+     * @return parsed geometry or null if it isn't valid (E)WKT. Geometries of
+     * {@link InMemoSharkGeometry} are parsed only once.
+     */
+    public static PlanarGeometry of(SharkGeometry geometry) {
+        if (geometry == null) {
+            return null;
+        }
+        if (geometry instanceof InMemoSharkGeometry) {
+            return ((InMemoSharkGeometry) geometry).getPlanarGeometry();
+        }
+        try {
+            return PlanarGeometry.parseWKT(geometry.getWKT());
+        } catch (SharkKBException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param wkt Well-Known Text - an EWKT SRID prefix is ignored
+     * @return
+     * @throws SharkKBException malformed or unsupported text
+     */
+    public static PlanarGeometry parseWKT(String wkt) throws SharkKBException {
+        if (wkt == null) {
+            throw new SharkKBException("WKT must not be null");
+        }
+        String text = wkt.trim();
+        int semicolon = text.indexOf(';');
+        if (text.toUpperCase(Locale.ROOT).startsWith("SRID") && semicolon > 0) {
+            text = text.substring(semicolon + 1);
+        }
+
+        Parser parser = new Parser(text);
+        List<Double> points = new ArrayList<>();
+        List<double[]> lines = new ArrayList<>();
+        List<double[][]> polygons = new ArrayList<>();
+        parser.geometry(points, lines, polygons);
+        parser.end();
+
+        double[] pointArray = new double[points.size()];
+        for (int i = 0; i < pointArray.length; i++) {
+            pointArray[i] = points.get(i);
+        }
+        return new PlanarGeometry(pointArray,
+                lines.toArray(new double[lines.size()][]),
+                polygons.toArray(new double[polygons.size()][][]));
+    }
+
+    public boolean isEmpty() {
+        return this.points.length == 0 && this.lines.length == 0 && this.polygons.length == 0;
+    }
+
+    public double getMinX() {
+        return this.minX;
+    }
+
+    public double getMinY() {
+        return this.minY;
+    }
+
+    public double getMaxX() {
+        return this.maxX;
+    }
+
+    public double getMaxY() {
+        return this.maxY;
+    }
+
+    /**
+     * @param other
+     * @return true if envelopes of both geometries share at least one point
+     */
+    public boolean envelopeIntersects(PlanarGeometry other) {
+        return !this.isEmpty() && !other.isEmpty()
+                && other.minX <= this.maxX && other.maxX >= this.minX
+                && other.minY <= this.maxY && other.maxY >= this.minY;
+    }
+
+    /**
+     * @param other
+     * @return true if envelope of other is inside envelope of this geometry
+     */
+    public boolean envelopeCovers(PlanarGeometry other) {
+        return !this.isEmpty() && !other.isEmpty()
+                && other.minX >= this.minX && other.maxX <= this.maxX
+                && other.minY >= this.minY && other.maxY <= this.maxY;
+    }
+
+    /**
+     * @param other
+     * @return true if both geometries share at least one point
+     */
+    public boolean intersects(PlanarGeometry other) {
+        if (!this.envelopeIntersects(other)) {
+            return false;
+        }
+        for (int i = 0; i < other.points.length; i += 2) {
+            if (this.coversPoint(other.points[i], other.points[i + 1])) {
+                return true;
+            }
+        }
+        for (double[] line : other.lines) {
+            if (this.intersectsLine(line)) {
+                return true;
+            }
+        }
+        for (double[][] polygon : other.polygons) {
+            if (this.intersectsPolygon(polygon)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param other
+     * @return true if no point of other lies outside of this geometry
+     */
+    public boolean covers(PlanarGeometry other) {
+        if (other.isEmpty()) {
+            return true;
+        }
+        if (!this.envelopeCovers(other)) {
+            return false;
+        }
+        for (int i = 0; i < other.points.length; i += 2) {
+            if (!this.coversPoint(other.points[i], other.points[i + 1])) {
+                return false;
+            }
+        }
+        for (double[] line : other.lines) {
+            if (!this.coversLine(line)) {
+                return false;
+            }
+        }
+        for (double[][] polygon : other.polygons) {
+            if (!this.coversPolygon(polygon)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param other
+     * @return true if both geometries cover the same area
+     */
+    public boolean equalsTopologically(PlanarGeometry other) {
+        return this.covers(other) && other.covers(this);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                        part predicates                            //
+    ///////////////////////////////////////////////////////////////////////
+
+    private boolean coversPoint(double x, double y) {
+        for (int i = 0; i < this.points.length; i += 2) {
+            if (this.points[i] == x && this.points[i + 1] == y) {
+                return true;
+            }
+        }
+        for (double[] line : this.lines) {
+            if (onLine(line, x, y)) {
+                return true;
+            }
+        }
+        for (double[][] polygon : this.polygons) {
+            if (inPolygon(polygon, x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean coversLine(double[] line) {
+        // points can't cover lines - except degenerated ones
+        for (double[] own : this.lines) {
+            if (lineOnLine(own, line)) {
+                return true;
+            }
+        }
+        for (double[][] polygon : this.polygons) {
+            if (lineInPolygon(polygon, line)) {
+                return true;
+            }
+        }
+        return degenerated(line) && this.coversPoint(line[0], line[1]);
+    }
+
+    private boolean coversPolygon(double[][] polygon) {
+        for (double[][] own : this.polygons) {
+            if (polygonInPolygon(own, polygon)) {
+                return true;
+            }
+        }
+        return degenerated(polygon[0]) && this.coversPoint(polygon[0][0], polygon[0][1]);
+    }
+
+    private boolean intersectsLine(double[] line) {
+        for (int i = 0; i < this.points.length; i += 2) {
+            if (onLine(line, this.points[i], this.points[i + 1])) {
+                return true;
+            }
+        }
+        for (double[] own : this.lines) {
+            if (linesIntersect(own, line)) {
+                return true;
+            }
+        }
+        for (double[][] polygon : this.polygons) {
+            if (inPolygon(polygon, line[0], line[1])) {
+                return true;
+            }
+            for (double[] ring : polygon) {
+                if (linesIntersect(ring, line)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean intersectsPolygon(double[][] polygon) {
+        for (int i = 0; i < this.points.length; i += 2) {
+            if (inPolygon(polygon, this.points[i], this.points[i + 1])) {
+                return true;
+            }
+        }
+        for (double[] line : this.lines) {
+            if (inPolygon(polygon, line[0], line[1])) {
+                return true;
+            }
+            for (double[] ring : polygon) {
+                if (linesIntersect(ring, line)) {
+                    return true;
+                }
+            }
+        }
+        for (double[][] own : this.polygons) {
+            if (inPolygon(polygon, own[0][0], own[0][1]) || inPolygon(own, polygon[0][0], polygon[0][1])) {
+                return true;
+            }
+            for (double[] ownRing : own) {
+                for (double[] ring : polygon) {
+                    if (linesIntersect(ownRing, ring)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                          primitives                               //
+    ///////////////////////////////////////////////////////////////////////
+
+    private static boolean degenerated(double[] coords) {
+        for (int i = 2; i < coords.length; i += 2) {
+            if (coords[i] != coords[0] || coords[i + 1] != coords[1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        double cross = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        double scale = Math.abs(bx - ax) + Math.abs(by - ay) + Math.abs(cx - ax) + Math.abs(cy - ay);
+        return Math.abs(cross) <= EPSILON * scale * scale ? 0 : cross;
+    }
+
+    private static boolean onSegment(double ax, double ay, double bx, double by, double x, double y) {
+        return orientation(ax, ay, bx, by, x, y) == 0
+                && x >= Math.min(ax, bx) && x <= Math.max(ax, bx)
+                && y >= Math.min(ay, by) && y <= Math.max(ay, by);
+    }
+
+    private static boolean onLine(double[] line, double x, double y) {
+        if (line.length == 2) {
+            return line[0] == x && line[1] == y;
+        }
+        for (int i = 0; i + 3 < line.length; i += 2) {
+            if (onSegment(line[i], line[i + 1], line[i + 2], line[i + 3], x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 1 inside, 0 on boundary, -1 outside of ring
+     */
+    private static int locate(double[] ring, double x, double y) {
+        boolean inside = false;
+        int n = ring.length;
+        for (int i = 0, j = n - 2; i < n; j = i, i += 2) {
+            double xi = ring[i], yi = ring[i + 1], xj = ring[j], yj = ring[j + 1];
+            if (onSegment(xi, yi, xj, yj, x, y)) {
+                return 0;
+            }
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside ? 1 : -1;
+    }
+
+    private static boolean inPolygon(double[][] polygon, double x, double y) {
+        if (locate(polygon[0], x, y) < 0) {
+            return false;
+        }
+        for (int h = 1; h < polygon.length; h++) {
+            if (locate(polygon[h], x, y) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+                                             double cx, double cy, double dx, double dy) {
+        double o1 = orientation(ax, ay, bx, by, cx, cy);
+        double o2 = orientation(ax, ay, bx, by, dx, dy);
+        double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        double o4 = orientation(cx, cy, dx, dy, bx, by);
+
+        if (((o1 > 0 && o2 < 0) || (o1 < 0 && o2 > 0)) && ((o3 > 0 && o4 < 0) || (o3 < 0 && o4 > 0))) {
+            return true;
+        }
+        return (o1 == 0 && onSegment(ax, ay, bx, by, cx, cy))
+                || (o2 == 0 && onSegment(ax, ay, bx, by, dx, dy))
+                || (o3 == 0 && onSegment(cx, cy, dx, dy, ax, ay))
+                || (o4 == 0 && onSegment(cx, cy, dx, dy, bx, by));
+    }
+
+    /**
+     * @return true if segments cross in a single point inside both of them
+     */
+    private static boolean segmentsCross(double ax, double ay, double bx, double by,
+                                         double cx, double cy, double dx, double dy) {
+        double o1 = orientation(ax, ay, bx, by, cx, cy);
+        double o2 = orientation(ax, ay, bx, by, dx, dy);
+        double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        double o4 = orientation(cx, cy, dx, dy, bx, by);
+        return ((o1 > 0 && o2 < 0) || (o1 < 0 && o2 > 0)) && ((o3 > 0 && o4 < 0) || (o3 < 0 && o4 > 0));
+    }
+
+    private static boolean linesIntersect(double[] a, double[] b) {
+        if (a.length == 2) {
+            return onLine(b, a[0], a[1]);
+        }
+        if (b.length == 2) {
+            return onLine(a, b[0], b[1]);
+        }
+        for (int i = 0; i + 3 < a.length; i += 2) {
+            for (int k = 0; k + 3 < b.length; k += 2) {
+                if (segmentsIntersect(a[i], a[i + 1], a[i + 2], a[i + 3], b[k], b[k + 1], b[k + 2], b[k + 3])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean lineOnLine(double[] own, double[] line) {
+        // each segment must lie on own - checked at both ends and in the middle
+        for (int i = 0; i < line.length; i += 2) {
+            if (!onLine(own, line[i], line[i + 1])) {
+                return false;
+            }
+            if (i + 3 < line.length
+                    && !onLine(own, (line[i] + line[i + 2]) / 2, (line[i + 1] + line[i + 3]) / 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean lineInPolygon(double[][] polygon, double[] line) {
+        for (int i = 0; i < line.length; i += 2) {
+            if (!inPolygon(polygon, line[i], line[i + 1])) {
+                return false;
+            }
+        }
+        for (int i = 0; i + 3 < line.length; i += 2) {
+            for (double[] ring : polygon) {
+                for (int k = 0; k + 3 < ring.length; k += 2) {
+                    if (segmentsCross(line[i], line[i + 1], line[i + 2], line[i + 3],
+                            ring[k], ring[k + 1], ring[k + 2], ring[k + 3])) {
+                        return false;
+                    }
+                }
+            }
+            // segment can leave a concave polygon between two boundary points
+            if (!inPolygon(polygon, (line[i] + line[i + 2]) / 2, (line[i + 1] + line[i + 3]) / 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean polygonInPolygon(double[][] own, double[][] polygon) {
+        if (!lineInPolygon(own, polygon[0])) {
+            return false;
+        }
+        // holes of own must not lie inside polygon - unless covered by holes of polygon
+        for (int h = 1; h < own.length; h++) {
+            double[] hole = own[h];
+            for (int i = 0; i < hole.length; i += 2) {
+                if (locate(polygon[0], hole[i], hole[i + 1]) > 0) {
+                    boolean inPolygonHole = false;
+                    for (int p = 1; p < polygon.length && !inPolygonHole; p++) {
+                        inPolygonHole = locate(polygon[p], hole[i], hole[i + 1]) >= 0;
+                    }
+                    if (!inPolygonHole) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                            parser                                 //
+    ///////////////////////////////////////////////////////////////////////
+
+    private static class Parser {
+        private final String text;
+        private int pos = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        void geometry(List<Double> points, List<double[]> lines, List<double[][]> polygons)
+                throws SharkKBException {
+
+            String type = this.word();
+            this.dimensionSuffix();
+            if (this.emptyKeyword()) {
+                return;
+            }
+
+            switch (type) {
+                case "POINT":
+                    this.expect('(');
+                    this.coordinate(points);
+                    this.expect(')');
+                    break;
+                case "LINESTRING":
+                    lines.add(this.coordinateList());
+                    break;
+                case "POLYGON":
+                    polygons.add(this.polygon());
+                    break;
+                case "MULTIPOINT":
+                    this.expect('(');
+                    do {
+                        // both MULTIPOINT(1 2, 3 4) and MULTIPOINT((1 2), (3 4)) are used
+                        if (this.peek() == '(') {
+                            this.expect('(');
+                            this.coordinate(points);
+                            this.expect(')');
+                        } else {
+                            this.coordinate(points);
+                        }
+                    } while (this.comma());
+                    this.expect(')');
+                    break;
+                case "MULTILINESTRING":
+                    this.expect('(');
+                    do {
+                        lines.add(this.coordinateList());
+                    } while (this.comma());
+                    this.expect(')');
+                    break;
+                case "MULTIPOLYGON":
+                    this.expect('(');
+                    do {
+                        polygons.add(this.polygon());
+                    } while (this.comma());
+                    this.expect(')');
+                    break;
+                case "GEOMETRYCOLLECTION":
+                    this.expect('(');
+                    do {
+                        this.geometry(points, lines, polygons);
+                    } while (this.comma());
+                    this.expect(')');
+                    break;
+                default:
+                    throw new SharkKBException("unsupported geometry type: " + type);
+            }
+        }
+
+        void end() throws SharkKBException {
+            this.skipWhitespace();
+            if (this.pos != this.text.length()) {
+                throw new SharkKBException("unexpected text at position " + this.pos + ": " + this.text);
+            }
+        }
+
+        private double[][] polygon() throws SharkKBException {
+            List<double[]> rings = new ArrayList<>();
+            this.expect('(');
+            do {
+                double[] ring = this.coordinateList();
+                if (ring.length < 8) {
+                    throw new SharkKBException("polygon ring needs at least four points: " + this.text);
+                }
+                if (ring[0] != ring[ring.length - 2] || ring[1] != ring[ring.length - 1]) {
+                    throw new SharkKBException("polygon ring isn't closed: " + this.text);
+                }
+                rings.add(ring);
+            } while (this.comma());
+            this.expect(')');
+            return rings.toArray(new double[rings.size()][]);
+        }
+
+        private double[] coordinateList() throws SharkKBException {
+            List<Double> coords = new ArrayList<>();
+            this.expect('(');
+            do {
+                this.coordinate(coords);
+            } while (this.comma());
+            this.expect(')');
+
+            double[] result = new double[coords.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = coords.get(i);
+            }
+            return result;
+        }
+
+        private void coordinate(List<Double> coords) throws SharkKBException {
+            coords.add(this.number());
+            coords.add(this.number());
+            // z and m values are ignored
+            this.skipWhitespace();
+            while (this.pos < this.text.length() && this.isNumberStart(this.text.charAt(this.pos))) {
+                this.number();
+                this.skipWhitespace();
+            }
+        }
+
+        private double number() throws SharkKBException {
+            this.skipWhitespace();
+            int start = this.pos;
+            while (this.pos < this.text.length()) {
+                char c = this.text.charAt(this.pos);
+                if (!this.isNumberStart(c) && c != 'e' && c != 'E') {
+                    break;
+                }
+                this.pos++;
+            }
+            try {
+                return Double.parseDouble(this.text.substring(start, this.pos));
+            } catch (NumberFormatException e) {
+                throw new SharkKBException("number expected at position " + start + ": " + this.text);
+            }
+        }
+
+        private boolean isNumberStart(char c) {
+            return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+        }
+
+        private String word() throws SharkKBException {
+            this.skipWhitespace();
+            int start = this.pos;
+            while (this.pos < this.text.length() && Character.isLetter(this.text.charAt(this.pos))) {
+                this.pos++;
+            }
+            if (start == this.pos) {
+                throw new SharkKBException("geometry type expected at position " + start + ": " + this.text);
+            }
+            return this.text.substring(start, this.pos).toUpperCase(Locale.ROOT);
+        }
+
+        private void dimensionSuffix() {
+            // type and suffix can be written without blank, e.g. POINTZ - handled by word()
+            this.skipWhitespace();
+            int start = this.pos;
+            while (this.pos < this.text.length() && Character.isLetter(this.text.charAt(this.pos))) {
+                this.pos++;
+            }
+            String suffix = this.text.substring(start, this.pos).toUpperCase(Locale.ROOT);
+            if (!suffix.equals("Z") && !suffix.equals("M") && !suffix.equals("ZM")) {
+                this.pos = start;
+            }
+        }
+
+        private boolean emptyKeyword() {
+            this.skipWhitespace();
+            if (this.text.regionMatches(true, this.pos, "EMPTY", 0, 5)) {
+                this.pos += 5;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            this.skipWhitespace();
+            return this.pos < this.text.length() ? this.text.charAt(this.pos) : 0;
+        }
+
+        private boolean comma() {
+            if (this.peek() == ',') {
+                this.pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws SharkKBException {
+            if (this.peek() != c) {
+                throw new SharkKBException("'" + c + "' expected at position " + this.pos + ": " + this.text);
+            }
+            this.pos++;
+        }
+
+        private void skipWhitespace() {
+            while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos))) {
+                this.pos++;
+            }
+        }
+    }
+}
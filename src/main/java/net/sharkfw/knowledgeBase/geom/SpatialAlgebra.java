@@ -1,15 +1,22 @@
 package net.sharkfw.knowledgeBase.geom;
 
+import java.util.Enumeration;
+import java.util.Iterator;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SpatialSTSet;
 import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSpatialSTSet;
 
 /**
- * That class is just a placeholder. It allows defining a spatial algebra in
- * SharkCSAlgebra. The actual implementation with J2SE is made by means of Java
- * Topology Suite (JTS).
+ * Default spatial algebra. It allows defining a spatial algebra in
+ * SharkCSAlgebra. An alternative implementation with J2SE can be made by means
+ * of Java Topology Suite (JTS).
  *
  * That class will be used on every device which can't or don't want to use JTS.
+ * Geometries are parsed by {@link PlanarGeometry} and compared in the plane.
+ * Geometries which cannot be parsed are treated optimistically - they match.
  *
  * @author thsc, Fabian Schmöker (s0542541), Tino Herrmann (s0542709)
  * @version 1.0
@@ -43,9 +50,9 @@ public class SpatialAlgebra {
     }
 
     ////////////////////////////////////////////////////////////////////////
-    //           very optimistic dummy implementation start here.         //
+    //  planar geometry - tags without parsable geometry always match.    //
     ////////////////////////////////////////////////////////////////////////
-    
+
     /**
      * Checks if two Shark-SpatialSemanticTags
      * are identical. In that case, it checkes whether the geometries of both
@@ -53,12 +60,17 @@ public class SpatialAlgebra {
      *
      * @param a     SpatialSemanticTag which is to be checked
      * @param b     SpatialSemanticTag which is to be checked
-     * 
+     *
      * @throws SharkKBException   Is thrown if an error has occurred during proccessing.
      * @return Returns true if both SpatialSemanticTags are identical - otherwise false.
-     */    
+     */
     public boolean identical(SpatialSemanticTag a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        PlanarGeometry ga = PlanarGeometry.of(a.getGeometry());
+        PlanarGeometry gb = PlanarGeometry.of(b.getGeometry());
+        if (ga == null || gb == null) {
+            return true;
+        }
+        return ga.equalsTopologically(gb);
     }
 
     /**
@@ -75,6 +87,16 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean identical(SpatialSTSet a, SpatialSemanticTag b) throws SharkKBException {
+        if (!this.isIn(a, b)) {
+            return false;
+        }
+        // no tag of a may exceed b
+        Enumeration<SpatialSemanticTag> tags = a.spatialTags();
+        while (tags.hasMoreElements()) {
+            if (!this.isIn(b, tags.nextElement())) {
+                return false;
+            }
+        }
         return true;
     }
 
@@ -90,7 +112,7 @@ public class SpatialAlgebra {
      * @return Returns true if both SpatialSTSets are identical - otherwise false.
      */    
     public boolean identical(SpatialSTSet a, SpatialSTSet b) throws SharkKBException {
-        return true;
+        return this.isIn(a, b) && this.isIn(b, a);
     }
 
     /**
@@ -109,7 +131,12 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSemanticTag a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        PlanarGeometry ga = PlanarGeometry.of(a.getGeometry());
+        PlanarGeometry gb = PlanarGeometry.of(b.getGeometry());
+        if (ga == null || gb == null) {
+            return true;
+        }
+        return ga.covers(gb);
     }
 
     /**
@@ -127,7 +154,24 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSTSet a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        if (a == null || b == null || SharkCSAlgebra.isAny(a) || SharkCSAlgebra.isAny(b)) {
+            // no location restriction
+            return true;
+        }
+        if (a instanceof InMemoSpatialSTSet) {
+            // r-tree - no need to check each tag
+            InMemoSpatialSTSet inMemoSet = (InMemoSpatialSTSet) a;
+            return PlanarGeometry.of(b.getGeometry()) == null
+                    || inMemoSet.covers(b)
+                    || inMemoSet.unparsableTags().hasNext();
+        }
+        Enumeration<SpatialSemanticTag> tags = a.spatialTags();
+        while (tags.hasMoreElements()) {
+            if (this.isIn(tags.nextElement(), b)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -145,6 +189,15 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSTSet a, SpatialSTSet b) throws SharkKBException {
+        if (b == null) {
+            return true;
+        }
+        Enumeration<SpatialSemanticTag> tags = b.spatialTags();
+        while (tags.hasMoreElements()) {
+            if (!this.isIn(a, tags.nextElement())) {
+                return false;
+            }
+        }
         return true;
     }
 
@@ -165,7 +218,36 @@ public class SpatialAlgebra {
      *         fragment was null, then an empty SpatialSTSet will returned.
      */    
     public SpatialSTSet fragment(SpatialSTSet fragment, SpatialSTSet source, SpatialSemanticTag anchor) throws SharkKBException {
-        return null;
+        if (fragment == null) {
+            fragment = InMemoSharkKB.createInMemoSpatialSTSet();
+        }
+        if (source == null || anchor == null) {
+            return fragment;
+        }
+
+        PlanarGeometry anchorGeometry = PlanarGeometry.of(anchor.getGeometry());
+        if (source instanceof InMemoSpatialSTSet && anchorGeometry != null) {
+            InMemoSpatialSTSet inMemoSource = (InMemoSpatialSTSet) source;
+            Iterator<SpatialSemanticTag> tagIter = inMemoSource.intersecting(anchor);
+            while (tagIter.hasNext()) {
+                fragment.merge(tagIter.next());
+            }
+            tagIter = inMemoSource.unparsableTags();
+            while (tagIter.hasNext()) {
+                fragment.merge(tagIter.next());
+            }
+            return fragment;
+        }
+
+        Enumeration<SpatialSemanticTag> tags = source.spatialTags();
+        while (tags.hasMoreElements()) {
+            SpatialSemanticTag tag = tags.nextElement();
+            PlanarGeometry g = PlanarGeometry.of(tag.getGeometry());
+            if (anchorGeometry == null || g == null || anchorGeometry.intersects(g)) {
+                fragment.merge(tag);
+            }
+        }
+        return fragment;
     }
 
 }
@@ -2,6 +2,7 @@ package net.sharkfw.knowledgeBase.geom.inmemory;
 
 import net.sharkfw.knowledgeBase.SharkCSAlgebra;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
 import net.sharkfw.knowledgeBase.geom.SharkGeometry;
 import net.sharkfw.knowledgeBase.geom.SpatialAlgebra;
 //import net.sharkfw.knowledgeBase.geom.jts.SpatialAlgebra; //use this for JTS!
@@ -23,6 +24,10 @@ public class InMemoSharkGeometry implements SharkGeometry {
     private final String wkt;
     private final int srs;
 
+    // parsed once on demand - wkt never changes
+    private PlanarGeometry planarGeometry = null;
+    private boolean parsed = false;
+
     private InMemoSharkGeometry(String wkt, int srs) {
         this.wkt = wkt;
         this.srs = srs;
@@ -110,4 +115,20 @@ public class InMemoSharkGeometry implements SharkGeometry {
         return this.srs;
     }
 
+    /**
+     *
+     * @return parsed geometry - null if WKT cannot be parsed
+     */
+    public synchronized PlanarGeometry getPlanarGeometry() {
+        if (!this.parsed) {
+            try {
+                this.planarGeometry = PlanarGeometry.parseWKT(this.wkt);
+            } catch (SharkKBException e) {
+                this.planarGeometry = null;
+            }
+            this.parsed = true;
+        }
+        return this.planarGeometry;
+    }
+
 }
@@ -10,20 +10,54 @@ import net.sharkfw.system.L;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
+ * Information spaces of an in memory kb. Can be read by any number of
+ * threads without locking: iterators are snapshots, lookups by fingerprint
+ * are lock free. Writers are serialized on this knowledge - the index is
+ * only probed under that lock, contextualization and extraction of the
+ * candidates run outside.
+ * <p>
+ * {@link #getInformationSpace(ASIPSpace)} returns the first identical space
+ * in insertion order. A fingerprint hit answers it only as long as no space
+ * is identical to another one with a different fingerprint (any tags,
+ * partially matching SIs) - otherwise the ordered candidate scan is used.
  *
  * @author j4rvis
  */
 public class InMemoASIPKnowledge implements Knowledge {
-    private ArrayList<ASIPInformationSpace> infoSpacesList;
+    private InMemoSnapshotList<ASIPInformationSpace> infoSpacesList;
+    private InMemoInformationSpaceIndex index;
+    private ConcurrentHashMap<String, List<InMemoInformationSpace>> fingerprints;
+    // spaces identical to another space with a different fingerprint
+    private Set<InMemoInformationSpace> ambiguous;
     private SharkVocabulary cm = null;
 
+    private final InMemoInformationSpace.ChangeListener spaceListener =
+            new InMemoInformationSpace.ChangeListener() {
+        @Override
+        public void spaceChanged(InMemoInformationSpace space, String oldFingerprint) {
+            // tags changed - index and fingerprint are outdated
+            InMemoASIPKnowledge.this.unregister(space, oldFingerprint);
+            try {
+                InMemoASIPKnowledge.this.register(space);
+            } catch (SharkKBException e) {
+                L.w("cannot re-index information space: " + e.getMessage(), InMemoASIPKnowledge.this);
+            }
+        }
+    };
 
     public InMemoASIPKnowledge() {
-        this.infoSpacesList = new ArrayList<>();
+        this.infoSpacesList = new InMemoSnapshotList<>();
+        this.index = new InMemoInformationSpaceIndex();
+        this.fingerprints = new ConcurrentHashMap<>();
+        this.ambiguous = Collections.newSetFromMap(new ConcurrentHashMap<InMemoInformationSpace, Boolean>());
     }
 
     public InMemoASIPKnowledge(SharkVocabulary background) {
@@ -31,35 +65,71 @@ public class InMemoASIPKnowledge implements Knowledge {
         this.cm = background;
     }
 
-    public ASIPInformationSpace addInformationSpace(ASIPSpace space) throws SharkKBException {
+    public synchronized ASIPInformationSpace addInformationSpace(ASIPSpace space) throws SharkKBException {
         InMemoInformationSpace infoSpace = new InMemoInformationSpace(space);
         infoSpacesList.add(infoSpace);
+        this.register(infoSpace);
         return infoSpace;
     }
 
+    private synchronized void register(InMemoInformationSpace infoSpace) throws SharkKBException {
+        this.index.add(infoSpace);
+
+        String fingerprint = infoSpace.getFingerprint();
+        for(InMemoInformationSpace other : this.index.identicalCandidates(infoSpace.getASIPSpace())) {
+            if(other != infoSpace && !fingerprint.equals(other.getFingerprint())
+                    && SharkCSAlgebra.identical(other.getASIPSpace(), infoSpace.getASIPSpace())) {
+                this.ambiguous.add(infoSpace);
+                break;
+            }
+        }
+
+        List<InMemoInformationSpace> spaces = this.fingerprints.get(fingerprint);
+        if(spaces == null) {
+            spaces = new CopyOnWriteArrayList<>();
+            this.fingerprints.put(fingerprint, spaces);
+        }
+        spaces.add(infoSpace);
+
+        infoSpace.setChangeListener(this.spaceListener);
+    }
+
+    private synchronized void unregister(InMemoInformationSpace infoSpace, String fingerprint) {
+        this.index.remove(infoSpace);
+        this.ambiguous.remove(infoSpace);
+
+        if(fingerprint == null) return;
+
+        List<InMemoInformationSpace> spaces = this.fingerprints.get(fingerprint);
+        if(spaces != null) {
+            spaces.remove(infoSpace);
+            if(spaces.isEmpty()) {
+                this.fingerprints.remove(fingerprint);
+            }
+        }
+    }
+
     private void addInfoToInformationSpace(Information info, ASIPSpace space) throws SharkKBException {
         InMemoInformationSpace infoSpace = this.createInformationSpace(space);
         infoSpace.addInformation(info);
     }
 
-    private InMemoInformationSpace createInformationSpace(ASIPSpace space) throws SharkKBException {
-        Iterator<ASIPInformationSpace> infoIter = this.informationSpaces();
-        while(infoIter.hasNext()){
-            ASIPInformationSpace current = infoIter.next();
-            if(SharkCSAlgebra.identical(current.getASIPSpace(), space)){
+    private synchronized InMemoInformationSpace createInformationSpace(ASIPSpace space) throws SharkKBException {
+        ASIPInformationSpace current = this.getInformationSpace(space);
+        if(current != null){
 //                current.setProperty(SyncKB.TIME_PROPERTY_NAME, String.valueOf(System.currentTimeMillis()), true);
-                return (InMemoInformationSpace) current;
-            }
+            return (InMemoInformationSpace) current;
         }
-        ASIPInformationSpace infoSpace = new InMemoInformationSpace(space);
+        InMemoInformationSpace infoSpace = new InMemoInformationSpace(space);
 //        infoSpace.setProperty(SyncKB.TIME_PROPERTY_NAME, String.valueOf(System.currentTimeMillis()), true);
         infoSpacesList.add(infoSpace);
-        return (InMemoInformationSpace) infoSpace;
+        this.register(infoSpace);
+        return infoSpace;
     }
 
 
     @Override
-    public void removeInformation(ASIPSpace space) {
+    public synchronized void removeInformation(ASIPSpace space) {
         InMemoInformationSpace informationSpace = null;
         try {
             informationSpace = (InMemoInformationSpace) this.getInformationSpace(space);
@@ -89,9 +159,20 @@ public class InMemoASIPKnowledge implements Knowledge {
     }
 
     public ASIPInformationSpace getInformationSpace(ASIPSpace space) throws SharkKBException {
-        Iterator<ASIPInformationSpace> iterator = informationSpaces();
-        while(iterator.hasNext()){
-            ASIPInformationSpace current = iterator.next();
+        // same fingerprint means identical - and first in order if no space is ambiguous
+        String fingerprint = space instanceof InMemoInformationSpace ?
+                ((InMemoInformationSpace) space).getFingerprint() : SharkAlgebra.fingerprint(space);
+
+        List<InMemoInformationSpace> sameFingerprint = this.fingerprints.get(fingerprint);
+        if(sameFingerprint != null && this.ambiguous.isEmpty()){
+            Iterator<InMemoInformationSpace> sameIter = sameFingerprint.iterator();
+            if(sameIter.hasNext()) {
+                return sameIter.next();
+            }
+        }
+
+        // identical() is weaker, e.g. any tags - index returns candidates only - check them
+        for(InMemoInformationSpace current : this.identicalCandidates(space)){
             if(SharkCSAlgebra.identical(current.getASIPSpace(), space)){
                 return current;
             }
@@ -99,10 +180,38 @@ public class InMemoASIPKnowledge implements Knowledge {
         return null;
     }
 
+    /**
+     * @param space
+     * @return all information spaces which are identical to space
+     * @throws SharkKBException
+     */
+    public Iterator<ASIPInformationSpace> getIdenticalInformationSpaces(ASIPSpace space) throws SharkKBException {
+        List<ASIPInformationSpace> resultSet = new ArrayList<>();
+        for(InMemoInformationSpace current : this.identicalCandidates(space)){
+            if(SharkCSAlgebra.identical(current.getASIPSpace(), space)){
+                resultSet.add(current);
+            }
+        }
+        return resultSet.iterator();
+    }
+
+    private synchronized List<InMemoInformationSpace> identicalCandidates(ASIPSpace space) throws SharkKBException {
+        return this.index.identicalCandidates(space);
+    }
+
+    private synchronized List<InMemoInformationSpace> mutualCandidates(ASIPSpace space) throws SharkKBException {
+        return this.index.mutualCandidates(space);
+    }
+
     @Override
-    public void removeInformationSpace(ASIPSpace space) throws SharkKBException {
+    public synchronized void removeInformationSpace(ASIPSpace space) throws SharkKBException {
         ASIPInformationSpace informationSpace = getInformationSpace(space);
-        this.infoSpacesList.remove(informationSpace);
+        if(informationSpace == null) return;
+
+        InMemoInformationSpace inMemoSpace = (InMemoInformationSpace) informationSpace;
+        this.infoSpacesList.remove(inMemoSpace);
+        this.unregister(inMemoSpace, inMemoSpace.getFingerprint());
+        inMemoSpace.setChangeListener(null);
     }
 
     @Override
@@ -134,7 +243,7 @@ public class InMemoASIPKnowledge implements Knowledge {
     }
     
     @Override
-    public void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
+    public synchronized void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
         InMemoInformationSpace informationSpace = (InMemoInformationSpace) this.getInformationSpace(infoSpace);
         informationSpace.removeInformation((Information) info);
     }
@@ -146,10 +255,9 @@ public class InMemoASIPKnowledge implements Knowledge {
 
     @Override
     public Iterator<ASIPInformationSpace> getInformationSpaces(ASIPSpace space) throws SharkKBException {
-        Iterator<ASIPInformationSpace> informationSpaces = informationSpaces();
         List<ASIPInformationSpace> resultSet = new ArrayList<>();
-        while(informationSpaces.hasNext()) {
-            ASIPInformationSpace next = informationSpaces.next();
+        // only spaces that share something with space in each dimension are contextualized
+        for(InMemoInformationSpace next : this.mutualCandidates(space)) {
 
             ASIPSpace asipSpace = next.getASIPSpace();
 
@@ -169,11 +277,13 @@ public class InMemoASIPKnowledge implements Knowledge {
     public Iterator<ASIPInformation> getInformation(ASIPSpace infoSpace, boolean fullyInside, boolean matchAny) throws SharkKBException {
         // iterate information and see what space fits..
 
-        if(this.getInformationSpace(infoSpace)==null){
+        // looked up once - space could be removed meanwhile
+        ASIPInformationSpace informationSpace = this.getInformationSpace(infoSpace);
+        if(informationSpace==null){
             return null;
         }
 
-        return this.getInformationSpace(infoSpace).informations();
+        return informationSpace.informations();
 //
 //        List<ASIPInformation> resultSet = new ArrayList<>();
 //
@@ -214,67 +324,70 @@ public class InMemoASIPKnowledge implements Knowledge {
         return this.addInformation(null, contentIS, numberOfBytes, semanticAnnotations);
     }
 
-    @Override
-    public ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        Iterator<ASIPInformation> information = this.getInformation(semanticAnnotations);
-        if(information!=null){
-            while (information.hasNext()){
-                ASIPInformation next = information.next();
-
-                if((next.getName() == null && name == null) || next.getName().equals(name)){
-                    if (next.getContentAsString().equals(content)){
-                        return next;
-                    }
-                }
+    /**
+     * @return information of space with same name and content - content is
+     * compared by its digest
+     */
+    private ASIPInformation findDuplicate(InMemoInformation info, ASIPSpace space) throws SharkKBException {
+        Iterator<ASIPInformation> information = this.getInformation(space);
+        if(information == null) return null;
+
+        String name = info.getName();
+        while (information.hasNext()){
+            ASIPInformation next = information.next();
+            if(next.getName() == null ? name != null : !next.getName().equals(name)) continue;
+            if(next.getContentLength() != info.getContentLength()) continue;
+
+            if(next instanceof InMemoInformation
+                    ? ((InMemoInformation) next).getContentDigest().equals(info.getContentDigest())
+                    : Arrays.equals(next.getContentAsByte(), info.getContentAsByte())){
+                return next;
             }
         }
+        return null;
+    }
+
+    /**
+     * Adds info unless space already contains same information.
+     */
+    private synchronized ASIPInformation addOrFindDuplicate(InMemoInformation info, ASIPSpace semanticAnnotations) throws SharkKBException {
+        ASIPInformation duplicate = this.findDuplicate(info, semanticAnnotations);
+        if(duplicate != null){
+            info.releaseContent();
+            return duplicate;
+        }
+        this.addInfoToInformationSpace(info, semanticAnnotations);
+        return info;
+    }
+
+    @Override
+    public ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
         InMemoInformation info = new InMemoInformation(semanticAnnotations);
         if(name!=null){
             info.setName(name);
         }
         info.setContent(content);
-        this.addInfoToInformationSpace(info, semanticAnnotations);
-
-        return info;
+        return this.addOrFindDuplicate(info, semanticAnnotations);
     }
 
     @Override
     public ASIPInformation addInformation(String name, byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        Iterator<ASIPInformation> information = this.getInformation(semanticAnnotations);
-        if(information!=null){
-            while (information.hasNext()){
-                ASIPInformation next = information.next();
-                if((next.getName() == null && name == null) || next.getName().equals(name)){
-                    if (Arrays.equals(next.getContentAsByte(), content)){
-                        return next;
-                    }
-                }
-            }
-        }
-
         InMemoInformation info = new InMemoInformation(semanticAnnotations);
         if(name!=null){
             info.setName(name);
         }
         info.setContent(content);
-        this.addInfoToInformationSpace(info, semanticAnnotations);
-
-        return info;
+        return this.addOrFindDuplicate(info, semanticAnnotations);
     }
 
     @Override
     public ASIPInformation addInformation(String name, InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
-
-        // TODO check if information already exists
-
         InMemoInformation info = new InMemoInformation(semanticAnnotations);
         if(name!=null){
             info.setName(name);
         }
         info.setContent(contentIS, numberOfBytes);
-        this.addInfoToInformationSpace(info, semanticAnnotations);
-
-        return info;
+        return this.addOrFindDuplicate(info, semanticAnnotations);
     }
 
     @Override
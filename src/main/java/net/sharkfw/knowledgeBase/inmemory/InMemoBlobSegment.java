@@ -0,0 +1,116 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+/**
+ * Append only file which keeps content of blobs outside the heap. Blobs are
+ * memory mapped regions of that file. The file is deleted when none of its
+ * blobs is used any longer.
+ *
+ * @see InMemoBlobStore#setMappingThreshold(long)
+ */
+class InMemoBlobSegment {
+
+    static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    private long end = 0;
+    // reserved regions which aren't retired yet
+    private int live = 0;
+
+    InMemoBlobSegment(File directory) throws IOException {
+        this.file = File.createTempFile("shark-blobs-", ".seg", directory);
+        this.file.deleteOnExit();
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.channel = this.raf.getChannel();
+    }
+
+    /**
+     * @return true if content of that length can be appended - an empty
+     * segment takes content of any length
+     */
+    boolean fits(long length) {
+        return this.end == 0 || this.end + length <= SEGMENT_SIZE;
+    }
+
+    /**
+     * @return position of a region of that length
+     */
+    long reserve(long length) {
+        long position = this.end;
+        this.end += length;
+        this.live++;
+        return position;
+    }
+
+    /**
+     * Region isn't used any longer.
+     *
+     * @return true if no region is used
+     */
+    boolean retire() {
+        this.live--;
+        return this.live == 0;
+    }
+
+    boolean isUnused() {
+        return this.live == 0;
+    }
+
+    void write(long position, ByteBuffer content) throws IOException {
+        while (content.hasRemaining()) {
+            position += this.channel.write(content, position);
+        }
+    }
+
+    /**
+     * Copies exactly length bytes from is into region at position.
+     *
+     * @param digest is updated with copied bytes
+     * @throws EOFException stream ended before
+     */
+    void write(long position, InputStream is, long length, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, length)];
+        long left = length;
+        while (left > 0) {
+            int n = is.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (n < 0) {
+                throw new EOFException("stream ended " + left + " bytes too early");
+            }
+            digest.update(buffer, 0, n);
+            this.write(position, ByteBuffer.wrap(buffer, 0, n));
+            position += n;
+            left -= n;
+        }
+    }
+
+    ByteBuffer map(long position, long length) throws IOException {
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    /**
+     * Closes and removes file. Mapped regions stay readable on most
+     * platforms but must not be used any longer.
+     */
+    void delete() {
+        try {
+            this.channel.close();
+            this.raf.close();
+        } catch (IOException e) {
+            // file is removed anyway
+        }
+        this.file.delete();
+    }
+}
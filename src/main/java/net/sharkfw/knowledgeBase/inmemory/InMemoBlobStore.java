@@ -0,0 +1,429 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.system.L;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content addressed store of information content. Content is identified by
+ * its SHA-256 digest - each distinct content is kept once no matter how many
+ * information (e.g. received from several peers) hold it.
+ * <p>
+ * Blobs are immutable and counted by their holders: {@link #put(byte[])}
+ * acquires a blob, {@link #release(Blob)} gives it back. A blob is removed if
+ * it isn't held any longer. The store references blobs weakly - content of
+ * information which are just dropped is collected anyway.
+ * <p>
+ * Content above a threshold can be kept outside the heap in memory mapped
+ * segment files, see {@link #setMappingThreshold(long)}.
+ */
+public class InMemoBlobStore {
+
+    private static final InMemoBlobStore DEFAULT = new InMemoBlobStore();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Immutable content. Views on it are read only - content isn't copied.
+     */
+    public static class Blob {
+        private final ByteBuffer data;
+        private final byte[] digest;
+        private final String key;
+        private final InMemoBlobSegment segment;
+        private int references = 0;
+
+        private Blob(ByteBuffer data, byte[] digest, InMemoBlobSegment segment) {
+            this.data = data;
+            this.digest = digest;
+            this.key = toHex(digest);
+            this.segment = segment;
+        }
+
+        /**
+         * @return SHA-256 digest of content as hex string
+         */
+        public String getDigest() {
+            return this.key;
+        }
+
+        public int length() {
+            return this.data.remaining();
+        }
+
+        /**
+         * @return true if content is kept in a memory mapped file
+         */
+        public boolean isMapped() {
+            return this.segment != null;
+        }
+
+        public InputStream getInputStream() {
+            if (this.data.hasArray()) {
+                return new ByteArrayInputStream(this.data.array(),
+                        this.data.arrayOffset() + this.data.position(), this.data.remaining());
+            }
+            return new BufferInputStream(this.data.duplicate());
+        }
+
+        public ByteBuffer getBuffer() {
+            return this.data.asReadOnlyBuffer();
+        }
+
+        public void writeTo(OutputStream os) throws IOException {
+            if (this.data.hasArray()) {
+                os.write(this.data.array(), this.data.arrayOffset() + this.data.position(), this.data.remaining());
+                return;
+            }
+            ByteBuffer source = this.data.duplicate();
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, source.remaining())];
+            while (source.hasRemaining()) {
+                int n = Math.min(buffer.length, source.remaining());
+                source.get(buffer, 0, n);
+                os.write(buffer, 0, n);
+            }
+        }
+
+        /**
+         * @return copy of content
+         */
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[this.data.remaining()];
+            this.data.duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((this.digest[0] & 0xff) << 24) | ((this.digest[1] & 0xff) << 16)
+                    | ((this.digest[2] & 0xff) << 8) | (this.digest[3] & 0xff);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Blob && Arrays.equals(this.digest, ((Blob) o).digest));
+        }
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!this.buffer.hasRemaining()) return -1;
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+    private static class BlobReference extends WeakReference<Blob> {
+        private final String key;
+        private final InMemoBlobSegment segment;
+        private boolean retired = false;
+
+        BlobReference(Blob blob, ReferenceQueue<Blob> queue) {
+            super(blob, queue);
+            this.key = blob.key;
+            this.segment = blob.segment;
+        }
+    }
+
+    private final Map<String, BlobReference> blobs = new HashMap<>();
+    private final ReferenceQueue<Blob> collected = new ReferenceQueue<>();
+
+    private long mappingThreshold = Long.MAX_VALUE;
+    private File segmentDirectory = null;
+    private InMemoBlobSegment currentSegment = null;
+
+    /**
+     * @return store shared by all in memory information
+     */
+    public static InMemoBlobStore getDefault() {
+        return DEFAULT;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // each java platform provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] digest(byte[] content) {
+        return createDigest().digest(content);
+    }
+
+    /**
+     * @param content
+     * @return digest like {@link Blob#getDigest()} - content isn't stored
+     */
+    public static String digestOf(byte[] content) {
+        return toHex(digest(content));
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Content of at least that size is kept in memory mapped segment files
+     * instead of the heap. Already stored content isn't moved.
+     *
+     * @param threshold in bytes - {@link Long#MAX_VALUE} (default) keeps all content on heap
+     */
+    public synchronized void setMappingThreshold(long threshold) {
+        this.mappingThreshold = Math.max(1, threshold);
+    }
+
+    public synchronized long getMappingThreshold() {
+        return this.mappingThreshold;
+    }
+
+    /**
+     * @param directory directory of segment files - null for the default temporary directory
+     */
+    public synchronized void setSegmentDirectory(File directory) {
+        this.segmentDirectory = directory;
+        // following content is written into new directory
+        this.retireSegment(null);
+    }
+
+    private synchronized boolean isMapped(long length) {
+        return length >= this.mappingThreshold;
+    }
+
+    /**
+     * Acquires blob of content. Content is copied if it isn't stored yet.
+     *
+     * @param content
+     * @return
+     */
+    public Blob put(byte[] content) {
+        return this.put(content, true);
+    }
+
+    /**
+     * @param content
+     * @param copy false if content is owned by the store - caller must not change it
+     * @return
+     */
+    synchronized Blob put(byte[] content, boolean copy) {
+        this.purge();
+
+        byte[] digest = digest(content);
+        Blob blob = this.lookup(toHex(digest));
+        if (blob == null) {
+            if (this.isMapped(content.length)) {
+                try {
+                    InMemoBlobSegment segment = this.segmentFor(content.length);
+                    long position = segment.reserve(content.length);
+                    try {
+                        segment.write(position, ByteBuffer.wrap(content));
+                        blob = new Blob(segment.map(position, content.length), digest, segment);
+                    } catch (IOException e) {
+                        this.retire(segment);
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    L.w("cannot map content - it is kept on heap: " + e.getMessage(), this);
+                }
+            }
+            if (blob == null) {
+                blob = new Blob(ByteBuffer.wrap(copy ? Arrays.copyOf(content, content.length) : content), digest, null);
+            }
+            this.blobs.put(blob.key, new BlobReference(blob, this.collected));
+        }
+        blob.references++;
+        return blob;
+    }
+
+    /**
+     * Acquires blob of exactly length bytes read from is. Content above
+     * mapping threshold is copied straight into a segment file - it is never
+     * kept on heap as a whole.
+     *
+     * @param is
+     * @param length
+     * @return
+     * @throws IOException stream failed or ended before
+     */
+    public Blob put(InputStream is, long length) throws IOException {
+        if (!this.isMapped(length)) {
+            byte[] content = new byte[(int) length];
+            int offset = 0;
+            while (offset < content.length) {
+                int n = is.read(content, offset, content.length - offset);
+                if (n < 0) {
+                    throw new EOFException("stream ended " + (content.length - offset) + " bytes too early");
+                }
+                offset += n;
+            }
+            // buffer is owned by the store now
+            return this.put(content, false);
+        }
+
+        // region is reserved - stream is read without holding the store
+        InMemoBlobSegment segment;
+        long position;
+        synchronized (this) {
+            segment = this.segmentFor(length);
+            position = segment.reserve(length);
+        }
+
+        MessageDigest messageDigest = createDigest();
+        try {
+            segment.write(position, is, length, messageDigest);
+        } catch (IOException e) {
+            synchronized (this) {
+                this.retire(segment);
+            }
+            throw e;
+        }
+        byte[] digest = messageDigest.digest();
+
+        synchronized (this) {
+            this.purge();
+            Blob blob = this.lookup(toHex(digest));
+            if (blob == null) {
+                try {
+                    blob = new Blob(segment.map(position, length), digest, segment);
+                } catch (IOException e) {
+                    this.retire(segment);
+                    throw e;
+                }
+                this.blobs.put(blob.key, new BlobReference(blob, this.collected));
+            } else {
+                // content is already stored - region isn't used
+                this.retire(segment);
+            }
+            blob.references++;
+            return blob;
+        }
+    }
+
+    private Blob lookup(String key) {
+        BlobReference reference = this.blobs.get(key);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Gives blob back - it is removed if nobody holds it any longer.
+     *
+     * @param blob can be null
+     */
+    public synchronized void release(Blob blob) {
+        if (blob == null || blob.references <= 0) return;
+
+        blob.references--;
+        if (blob.references == 0) {
+            BlobReference reference = this.blobs.get(blob.key);
+            if (reference != null && reference.get() == blob) {
+                this.blobs.remove(blob.key);
+                this.retire(reference);
+            }
+        }
+    }
+
+    /**
+     * @param digest
+     * @return true if content with that digest is stored
+     */
+    public synchronized boolean contains(String digest) {
+        this.purge();
+        return this.lookup(digest) != null;
+    }
+
+    /**
+     * @return number of distinct contents
+     */
+    public synchronized int size() {
+        this.purge();
+        return this.blobs.size();
+    }
+
+    /**
+     * Removes entries of blobs which are collected.
+     */
+    private void purge() {
+        BlobReference reference;
+        while ((reference = (BlobReference) this.collected.poll()) != null) {
+            if (this.blobs.get(reference.key) == reference) {
+                this.blobs.remove(reference.key);
+            }
+            this.retire(reference);
+        }
+    }
+
+    private void retire(BlobReference reference) {
+        if (reference.retired) return;
+        reference.retired = true;
+        this.retire(reference.segment);
+    }
+
+    private void retire(InMemoBlobSegment segment) {
+        if (segment != null && segment.retire() && segment != this.currentSegment) {
+            segment.delete();
+        }
+    }
+
+    /**
+     * @param newSegment becomes current segment - can be null
+     */
+    private void retireSegment(InMemoBlobSegment newSegment) {
+        InMemoBlobSegment old = this.currentSegment;
+        this.currentSegment = newSegment;
+        if (old != null && old.isUnused()) {
+            old.delete();
+        }
+    }
+
+    private InMemoBlobSegment segmentFor(long length) throws IOException {
+        if (this.currentSegment == null || !this.currentSegment.fits(length)) {
+            this.retireSegment(new InMemoBlobSegment(this.segmentDirectory));
+        }
+        return this.currentSegment;
+    }
+}
@@ -1,29 +1,43 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.system.Iterator2Enumeration;
 
 /**
+ * Tags of a semantic tag set. Readers don't lock: enumerations are snapshots
+ * of the tags when created, lookups by si are lock free. Writers are
+ * serialized on this storage.
  *
  * @author thsc
  * @param <ST>
  */
 public class InMemoGenericTagStorage<ST extends SemanticTag> {
         // A Hashtable containing all tags in this stset
-    private ArrayList<ST> tags;
+    private InMemoSnapshotList<ST> tags;
 
     // local table for mapping si strings to id values
-    private HashMap<String, ST> si2tag;
+    private ConcurrentHashMap<String, ST> si2tag;
     
-    private boolean hide = false;
+    private volatile boolean hide = false;
+
+    /**
+     * Notified when subject identifiers of a stored tag change.
+     */
+    interface SIListener {
+        void sisChanged(SemanticTag tag);
+    }
+
+    // late binding - most storages have no listener at all
+    private volatile List<SIListener> siListener;
     
     public InMemoGenericTagStorage() {
-        this.tags = new ArrayList<ST>();
-        this.si2tag = new HashMap<String, ST>();
+        this.tags = new InMemoSnapshotList<ST>();
+        this.si2tag = new ConcurrentHashMap<String, ST>();
 //        this.initSi();
     }
     
@@ -58,11 +72,18 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         }
     }
     
+    /**
+     * @return all tags - hidden or not
+     */
+    Iterator<ST> allTags() {
+        return this.tags.iterator();
+    }
+
     void setEnumerateHiddenTags(boolean hide) {
         this.hide = hide;
     }
     
-    protected final void put(ST tag) {
+    protected final synchronized void put(ST tag) {
         this.tags.add(tag);
         
         // recreate si list - not a very performant implementation have to confess...
@@ -72,11 +93,13 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         if(sis == null) { return; }
 
         for(int i = 0; i < sis.length; i++) {
-            this.si2tag.put(sis[i], tag);
+            if(sis[i] != null) {
+                this.si2tag.put(sis[i], tag);
+            }
         }
     }
     
-    protected void add(ST tag) throws SharkKBException {
+    protected synchronized void add(ST tag) throws SharkKBException {
         // only add if not yet in storage
         ST st = this.getSemanticTag(tag.getSI());
         
@@ -89,7 +112,7 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         this.put(tag);
     }
 
-    protected void removeSemanticTag(ST tag) {
+    protected synchronized void removeSemanticTag(ST tag) {
         this.tags.remove(tag);
         
         // tag is removed - remove reference in si2tag list
@@ -98,11 +121,13 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         if(sis == null | sis.length == 0) { return; }
         
         for(int i = 0; i < sis.length; i++) {
-            this.si2tag.remove(sis[i]);
+            if(sis[i] != null) {
+                this.si2tag.remove(sis[i]);
+            }
         }
     }
 
-    ST merge(ST source) throws SharkKBException {
+    synchronized ST merge(ST source) throws SharkKBException {
         SemanticTag copyTag = null;
         
         if(source == null) {
@@ -151,12 +176,40 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
 
     public void siAdded(String addSI, ST tag) {
         if(addSI == null) { return; }
-        this.si2tag.put(addSI, tag);
+        synchronized(this) {
+            this.si2tag.put(addSI, tag);
+        }
+        this.notifySIsChanged(tag);
     }
 
     public void siRemoved(String deleteSI, ST tag) {
         if(deleteSI == null) { return; }
-        this.si2tag.remove(deleteSI);
+        synchronized(this) {
+            this.si2tag.remove(deleteSI);
+        }
+        this.notifySIsChanged(tag);
+    }
+
+    synchronized void addSIListener(SIListener listener) {
+        if(this.siListener == null) {
+            this.siListener = new CopyOnWriteArrayList<>();
+        }
+        this.siListener.add(listener);
+    }
+
+    void removeSIListener(SIListener listener) {
+        if(this.siListener != null) {
+            this.siListener.remove(listener);
+        }
+    }
+
+    private void notifySIsChanged(ST tag) {
+        List<SIListener> listeners = this.siListener;
+        if(listeners == null) { return; }
+
+        for(SIListener listener : listeners) {
+            listener.sisChanged(tag);
+        }
     }
 
     private class HideEnumeration implements Enumeration<ST> {
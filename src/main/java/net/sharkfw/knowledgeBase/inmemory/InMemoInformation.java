@@ -3,15 +3,18 @@ package net.sharkfw.knowledgeBase.inmemory;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.system.L;
-import net.sharkfw.system.Streamer;
 import net.sharkfw.system.TimeLong;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 /**
  * An in memory implementation of the <code>Information</code> interface.
  * <p>
- * This implementation stores its content in a <code>ByteArrayInputStream</code> to allow easy stream based access to it.
+ * This implementation stores its content in the {@link InMemoBlobStore} - identical content of several
+ * information is kept once. Content is immutable, setting it replaces it. Large content can be kept
+ * outside the heap, see {@link InMemoBlobStore#setMappingThreshold(long)}.
  * <p>
  * It also keeps a <code>Hashtable</code> to manage its properties.
  *
@@ -28,8 +31,9 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     public static final String INFO_ORIGINATOR = "info_originator";
     public static final String INFO_ID_PROPERTY_NAME = "SharkNet_InfoID";
 
-    // Save the content. Manages internal byte array automatically.
-    private ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private static final InMemoBlobStore STORE = InMemoBlobStore.getDefault();
+
+    private InMemoBlobStore.Blob content = STORE.put(new byte[0], false);
     private ASIPSpace space;
 
     /**
@@ -39,11 +43,7 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
      */
     public InMemoInformation(byte contentArray[]) {
         this();
-        try {
-            content.write(contentArray);
-        } catch (IOException ex) {
-            L.e(ex.getMessage(), this);
-        }
+        this.setContentBlob(contentArray, true);
     }
 
     /**
@@ -126,21 +126,37 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     }
 
     /**
-     * Writes the content of the internal ByteArrayInputStream to the given <code>OutputStream</code>.
-     * <p>
-     * Behaves like:      <code>
-     * os.write(content.getByteArray());
-     * </code>
+     * Replaces content by a blob of the store. Old content is released.
+     *
+     * @param bytes
+     * @param copy false if bytes aren't used by anybody else
+     */
+    private void setContentBlob(byte[] bytes, boolean copy) {
+        this.setContentBlob(STORE.put(bytes, copy));
+    }
+
+    private void setContentBlob(InMemoBlobStore.Blob blob) {
+        InMemoBlobStore.Blob old = this.content;
+        this.content = blob;
+        STORE.release(old);
+    }
+
+    /**
+     * Gives content back to the store - information is dropped.
+     */
+    void releaseContent() {
+        this.setContentBlob(new byte[0], false);
+    }
+
+    /**
+     * Writes the content to the given <code>OutputStream</code> - it isn't copied.
      *
      * @param os The <code>OutputStream</code> to write to.
      */
     @Override
     public void streamContent(OutputStream os) {
         try {
-            // vllt mit Streamer.stream arbeiten?
-            //os.write(content.toByteArray());
-            ByteArrayInputStream bais = new ByteArrayInputStream(content.toByteArray());
-            Streamer.stream(bais, os, 1024 /*TODO MAX BUFFER SIZE*/, content.size());
+            content.writeTo(os);
         } catch (IOException ex) {
             L.e(ex.getMessage(), this);
         }
@@ -156,40 +172,72 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     public void setContent(InputStream is, long len) {
         this.setTimes();
 
-        // Problems when casting long to int? Maybe use Streamer?
-        byte[] contentIs = new byte[(int) len];
+        // read exactly len bytes - large content is written straight into a mapped segment
         try {
-
-            is.read(contentIs);
-            // Remove old content. This is not a must! One could also append.
-            this.content = new ByteArrayOutputStream();
-            this.content.write(contentIs);
+            this.setContentBlob(STORE.put(is, len));
         } catch (IOException ex) {
             throw new RuntimeException(ex.getMessage());
         }
     }
 
     /**
-     * Returns a reference to the internal <code>ByteArrayOutputStream</code>
+     * Content is immutable - bytes written to the returned stream are appended
+     * to the content when the stream is flushed or closed.
      *
-     * @return A <code>ByteArrayOutputStream</code> holding the content of this information.
+     * @return stream to append content
      */
     @Override
     public OutputStream getOutputStream() throws SharkKBException {
-        return content;
+        final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        return new FilterOutputStream(appended) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                appended.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (appended.size() == 0) return;
+
+                InMemoBlobStore.Blob old = InMemoInformation.this.content;
+                InputStream newContent = new SequenceInputStream(old.getInputStream(),
+                        new ByteArrayInputStream(appended.toByteArray()));
+                long length = old.length() + appended.size();
+                appended.reset();
+                InMemoInformation.this.setTimes();
+                InMemoInformation.this.setContentBlob(STORE.put(newContent, length));
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.flush();
+            }
+        };
     }
 
     /**
-     * Returning the content of this information as a byte array. Behaves like calling:      <code>
-     * return content.toByteArray();
-     * </code>
+     * Returns a copy of the content of this information.
      *
      * @return
      */
     @Override
     public byte[] getContentAsByte() {
-        byte[] ba = content.toByteArray();
-        return ba;
+        return content.toByteArray();
+    }
+
+    /**
+     * @return read only view on content - it isn't copied
+     */
+    public ByteBuffer getContentBuffer() {
+        return content.getBuffer();
+    }
+
+    /**
+     * @return SHA-256 digest of content - information with equal digests have equal content
+     * @see InMemoBlobStore#digestOf(byte[])
+     */
+    public String getContentDigest() {
+        return content.getDigest();
     }
 
     /**
@@ -200,8 +248,7 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     @Override
     public long getContentLength() {
         if (this.content != null) {
-            int sz = this.content.size();
-            return sz;
+            return this.content.length();
         }
         return 0;
     }
@@ -226,82 +273,27 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     }
 
     /**
-     * Overridden hashcode method. This method implements a simple algorithm for determining the hashcode of an Information object taking the content of the object into account as well.
-     * <p>
-     * It takes the size of the content into account when computing the value to prevent a too-high CPU load:
-     * <p>
-     * <ul>
-     * <li> Below 100 bytes, every byte of the content becomes part of the hashcode </li>
-     * <li> Between 100 bytes and 1MB, the first 100 byte are becoming part of the hascode, plus, every 100th bytes becomes part of the hashcode. </li>
-     * <li> Bigger than 1MB, the first 500 bytes will become part of the hashcode, plus, every 1000th bytes becomes part of the hascode </li>
-     * </ul>
+     * Hashcode is taken from content digest - content isn't read.
      *
      * @return A hashcode for this Information object, taking the content of the Information into account.
      */
     @Override
     public int hashCode() {
-        int result = 0; //hashCode;
-        if (result == 0) {
-            byte[] contentArray = content.toByteArray();
-            long size = contentArray.length;
-
-            result = 17;
-            if (size > 100 && size < 1024 * 1024) {
-                // Medium sized, between 100 byte and 1MB
-
-                int cur = 100;
-                // compute hash of first 100 byte
-                for (int i = 0; i < cur; i++) {
-                    result = 31 * result + (int) contentArray[i];
-                }
-
-                while (cur < size) {
-                    result = 31 * result + (int) contentArray[cur];
-                    cur = cur + 100;
-                }
-
-            } else if (size > 1024 * 1024) {
-                // Bigger than 1MB
-                int cur = 500;
-                // compute hash of first 500 byte
-                for (int i = 0; i < cur; i++) {
-                    result = 31 * result + (int) contentArray[i];
-                }
-
-                while (cur < size) {
-                    result = 31 * result + (int) contentArray[cur];
-                    cur = cur + 1000;
-                }
-
-            } else {
-                // Small sized
-                // Arrays.hashcode is not available in JavaME
-                for (int i = 0; i < contentArray.length; i++) {
-                    result = 31 * result + (int) contentArray[i];
-                }
-            }
-        }
-        return result;
+        return content.hashCode();
     }
 
     // API rev. methods
 
     /**
-     * Set the given byte[] to be the content for this Information object. Internally, the content will be written into a newly created ByteArrayOutputStream. Calling this method will erase previously
-     * set content on this object.
+     * Set the given byte[] to be the content for this Information object. Content is copied into the store
+     * unless it is already stored. Calling this method will erase previously set content on this object.
      *
      * @param content The content to be set.
      */
     @Override
     public void setContent(byte[] content) {
         this.setTimes();
-        this.content = new ByteArrayOutputStream();
-
-        try {
-            this.content.write(content);
-        } catch (IOException ex) {
-            L.e(ex.getMessage(), this);
-        }
+        this.setContentBlob(content, true);
     }
 
 
@@ -317,7 +309,7 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     }
 
     /**
-     * This method will set the content-string to be the content of this Information object. Internally, the content will be written into a newly created ByteArrayOutputStream. Calling this method
+     * This method will set the content-string to be the content of this Information object. Calling this method
      * will erase previously set content on this object. The content-string will be read as UTF8.
      *
      * @param content The content to be set.
@@ -325,7 +317,9 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     @Override
     public void setContent(String content) {
         try {
-            setContent(content.getBytes("UTF-8"));
+            this.setTimes();
+            // encoded bytes aren't used by anybody else
+            this.setContentBlob(content.getBytes("UTF-8"), false);
         } catch (UnsupportedEncodingException e) {
             //FIXME: Catch unknown encoding exception?!
             e.printStackTrace();
@@ -333,12 +327,12 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
     }
 
     /**
-     * Create a new ByteArrayOutputStream and set it as the content of this object.
+     * Set empty content.
      */
     @Override
     public void removeContent() {
         this.setTimes();
-        this.content = new ByteArrayOutputStream();
+        this.setContentBlob(new byte[0], false);
     }
 
     /**
@@ -422,9 +416,8 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
      * @throws SharkKBException
      */
     public InputStream getInputStream() throws SharkKBException {
-        byte[] ba = content.toByteArray();
-        ByteArrayInputStream is = new ByteArrayInputStream(ba);
-        return is;
+        // content is immutable - stream reads it without a copy
+        return content.getInputStream();
     }
 
 	/* size() was a duplicate to getContentLength() */
@@ -450,9 +443,7 @@ public class InMemoInformation extends PropertyHolderDelegate implements Informa
 
     @Override
     public String getContentAsString() {
-        byte[] cBytes = getContentAsByte();
-        String cString = new String(cBytes);
-        return cString;
+        return Charset.defaultCharset().decode(content.getBuffer()).toString();
     }
 
     public void obtainLock(InputStream i) {
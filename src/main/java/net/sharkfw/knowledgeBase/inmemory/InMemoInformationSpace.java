@@ -1,6 +1,5 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
-import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
@@ -23,7 +22,20 @@ public class InMemoInformationSpace implements ASIPInformationSpace, ASIPSpace {
     private SpatialSTSet locations;
     private int direction;
 
-    private List<ASIPInformation> infoList = new ArrayList<>();
+    // iterators are snapshots - information can be added while others read
+    private final List<ASIPInformation> infoList = new InMemoSnapshotList<>();
+
+    // cached - see getFingerprint()
+    private volatile String fingerprint = null;
+    private volatile ChangeListener changeListener = null;
+
+    /**
+     * Notified if tags of this space changed their SIs. The fingerprint
+     * was valid before that change.
+     */
+    interface ChangeListener {
+        void spaceChanged(InMemoInformationSpace space, String oldFingerprint);
+    }
 
     public InMemoInformationSpace() {}
 
@@ -39,6 +51,8 @@ public class InMemoInformationSpace implements ASIPInformationSpace, ASIPSpace {
         this.times = times;
         this.locations = locations;
         this.direction = direction;
+
+        this.listenToTags();
     }
     
     InMemoInformationSpace(SemanticTag topic, SemanticTag type,
@@ -67,6 +81,8 @@ public class InMemoInformationSpace implements ASIPInformationSpace, ASIPSpace {
         this.times.merge(time);
         
         this.direction = direction;
+
+        this.listenToTags();
     }
     
     InMemoInformationSpace(ASIPSpace space) throws SharkKBException {
@@ -83,6 +99,53 @@ public class InMemoInformationSpace implements ASIPInformationSpace, ASIPSpace {
     }
 
 
+    private void listenToTags() {
+        InMemoGenericTagStorage.SIListener listener = new InMemoGenericTagStorage.SIListener() {
+            @Override
+            public void sisChanged(SemanticTag tag) {
+                InMemoInformationSpace.this.sisChanged();
+            }
+        };
+
+        STSet[] sets = new STSet[] {this.topics, this.types, this.approvers,
+            this.senders, this.receivers, this.times, this.locations};
+
+        for(STSet set : sets) {
+            if(set instanceof InMemoSTSet) {
+                ((InMemoSTSet) set).getTagStorage().addSIListener(listener);
+            }
+        }
+    }
+
+    private void sisChanged() {
+        String oldFingerprint = this.fingerprint;
+        this.fingerprint = null;
+
+        ChangeListener listener = this.changeListener;
+        if(listener != null) {
+            listener.spaceChanged(this, oldFingerprint);
+        }
+    }
+
+    void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Canonical fingerprint of this space. It is calculated once and
+     * recalculated only after a tag of this space changed its SIs.
+     *
+     * @return
+     * @throws SharkKBException
+     * @see SharkAlgebra#fingerprint(ASIPSpace)
+     */
+    public String getFingerprint() throws SharkKBException {
+        if(this.fingerprint == null) {
+            this.fingerprint = SharkAlgebra.fingerprint(this);
+        }
+        return this.fingerprint;
+    }
+
     public void addInformation(Information info) {
         this.infoList.add(info);
     }
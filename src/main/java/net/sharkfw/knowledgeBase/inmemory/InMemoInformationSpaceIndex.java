@@ -0,0 +1,404 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.*;
+
+/**
+ * Inverted index over the information spaces of an InMemoASIPKnowledge.
+ *
+ * <p>
+ * Each dimension of an ASIP space keeps posting lists from subject identifiers
+ * to the spaces holding a tag with that SI. Time tags are additionally kept
+ * in a map sorted by start time, direction is bucketed. Queries intersect the
+ * postings of all constrained dimensions and return <i>candidates</i> only.
+ * Candidates are a superset of the actual result - callers still have to run
+ * the exact algebra check on them. Nothing but those checks becomes cheaper.
+ * </p>
+ *
+ * <p>
+ * Spaces are indexed with the tags they have when being added. Stored spaces
+ * are private in memory copies and are not meant to be changed afterwards.
+ * </p>
+ */
+class InMemoInformationSpaceIndex {
+
+    private static final int[] SET_DIMENSIONS = new int[] {
+        ASIPSpace.DIM_TOPIC,
+        ASIPSpace.DIM_TYPE,
+        ASIPSpace.DIM_APPROVERS,
+        ASIPSpace.DIM_RECEIVER,
+        ASIPSpace.DIM_TIME,
+        ASIPSpace.DIM_LOCATION
+    };
+
+    // insertion order and postings of each indexed space
+    private final HashMap<InMemoInformationSpace, Entry> entries = new HashMap<>();
+    private long nextSerial = 0;
+
+    // si -> spaces, one map for each tag set dimension (exact SI strings like STSet lookup)
+    private final HashMap<Integer, HashMap<String, Set<InMemoInformationSpace>>> siPostings = new HashMap<>();
+
+    // spaces without any tag in a dimension
+    private final HashMap<Integer, Set<InMemoInformationSpace>> emptyPostings = new HashMap<>();
+
+    // spaces with an any dimension: empty or containing an any tag
+    private final HashMap<Integer, Set<InMemoInformationSpace>> anyPostings = new HashMap<>();
+
+    // sender - lower case SIs because tag identity ignores case
+    private final HashMap<String, Set<InMemoInformationSpace>> senderPostings = new HashMap<>();
+    private final Set<InMemoInformationSpace> anySender = new HashSet<>();
+
+    // time start -> time intervals starting at that moment
+    private final TreeMap<Long, List<TimeEntry>> timeStarts = new TreeMap<>();
+
+    private final HashMap<Integer, Set<InMemoInformationSpace>> directions = new HashMap<>();
+
+    InMemoInformationSpaceIndex() {
+        for (int dim : SET_DIMENSIONS) {
+            this.siPostings.put(dim, new HashMap<String, Set<InMemoInformationSpace>>());
+            this.emptyPostings.put(dim, new HashSet<InMemoInformationSpace>());
+            this.anyPostings.put(dim, new HashSet<InMemoInformationSpace>());
+        }
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    void add(InMemoInformationSpace space) throws SharkKBException {
+        if (space == null || this.entries.containsKey(space)) return;
+
+        Entry entry = new Entry(this.nextSerial++);
+        this.entries.put(space, entry);
+
+        for (int dim : SET_DIMENSIONS) {
+            STSet set = InMemoInformationSpaceIndex.getSet(space, dim);
+            Enumeration<SemanticTag> tags = set == null ? null : set.tags();
+
+            if (tags == null || !tags.hasMoreElements()) {
+                this.emptyPostings.get(dim).add(space);
+                this.anyPostings.get(dim).add(space);
+                continue;
+            }
+
+            HashMap<String, Set<InMemoInformationSpace>> postings = this.siPostings.get(dim);
+            while (tags.hasMoreElements()) {
+                SemanticTag tag = tags.nextElement();
+                if (tag.isAny()) {
+                    this.anyPostings.get(dim).add(space);
+                }
+
+                String[] sis = tag.getSI();
+                if (sis != null) {
+                    for (String si : sis) {
+                        entry.post(postings, si, space);
+                    }
+                }
+
+                if (dim == ASIPSpace.DIM_TIME && tag instanceof TimeSemanticTag) {
+                    this.addTime((TimeSemanticTag) tag, space, entry);
+                }
+            }
+        }
+
+        PeerSemanticTag sender = space.getSender();
+        if (SharkCSAlgebra.isAny(sender)) {
+            this.anySender.add(space);
+        } else {
+            for (String si : sender.getSI()) {
+                entry.post(this.senderPostings, si.toLowerCase(), space);
+            }
+        }
+
+        entry.post(this.directions, space.getDirection(), space);
+    }
+
+    void remove(InMemoInformationSpace space) {
+        if (space == null) return;
+
+        Entry entry = this.entries.remove(space);
+        if (entry == null) return;
+
+        for (int dim : SET_DIMENSIONS) {
+            this.emptyPostings.get(dim).remove(space);
+            this.anyPostings.get(dim).remove(space);
+        }
+        this.anySender.remove(space);
+
+        entry.unpostAll(space);
+
+        for (TimeEntry timeEntry : entry.times) {
+            List<TimeEntry> starting = this.timeStarts.get(timeEntry.from);
+            if (starting != null) {
+                starting.remove(timeEntry);
+                if (starting.isEmpty()) this.timeStarts.remove(timeEntry.from);
+            }
+        }
+    }
+
+    /**
+     * Candidates for SharkCSAlgebra.identical(ASIPSpace, ASIPSpace)
+     *
+     * @param query
+     * @return spaces that could be identical with query in insertion order
+     * @throws SharkKBException
+     */
+    List<InMemoInformationSpace> identicalCandidates(ASIPSpace query) throws SharkKBException {
+        if (query == null) return this.all();
+
+        List<Set<InMemoInformationSpace>> constraints = new ArrayList<>();
+
+        constraints.add(InMemoInformationSpaceIndex.nonNull(this.directions.get(query.getDirection())));
+
+        for (int dim : SET_DIMENSIONS) {
+            STSet set = InMemoInformationSpaceIndex.getSet(query, dim);
+            Enumeration<SemanticTag> tags = set == null ? null : set.tags();
+
+            if (tags == null || !tags.hasMoreElements()) {
+                // empty sets are only identical with empty sets
+                constraints.add(this.emptyPostings.get(dim));
+                continue;
+            }
+
+            // each tag of the query must be found in a stored space
+            HashMap<String, Set<InMemoInformationSpace>> postings = this.siPostings.get(dim);
+            while (tags.hasMoreElements()) {
+                constraints.add(InMemoInformationSpaceIndex.union(postings, tags.nextElement().getSI(), false));
+            }
+        }
+
+        PeerSemanticTag sender = query.getSender();
+        if (!SharkCSAlgebra.isAny(sender)) {
+            Set<InMemoInformationSpace> senders =
+                    InMemoInformationSpaceIndex.union(this.senderPostings, sender.getSI(), true);
+            senders.addAll(this.anySender);
+            constraints.add(senders);
+        }
+
+        return this.intersect(constraints);
+    }
+
+    /**
+     * Candidates for contextualization with query. A dimension matches if
+     * either side is any or if at least one SI (overlapping time frame) is shared.
+     * The sender dimension isn't part of contextualization.
+     *
+     * @param query
+     * @return spaces that could have a mutual interest with query in insertion order
+     * @throws SharkKBException
+     */
+    List<InMemoInformationSpace> mutualCandidates(ASIPSpace query) throws SharkKBException {
+        if (query == null) return this.all();
+
+        List<Set<InMemoInformationSpace>> constraints = new ArrayList<>();
+
+        Set<InMemoInformationSpace> directionMatches = new HashSet<>();
+        for (Map.Entry<Integer, Set<InMemoInformationSpace>> entry : this.directions.entrySet()) {
+            if (InMemoInformationSpaceIndex.mutualDirection(entry.getKey(), query.getDirection())) {
+                directionMatches.addAll(entry.getValue());
+            }
+        }
+        constraints.add(directionMatches);
+
+        for (int dim : SET_DIMENSIONS) {
+            STSet set = InMemoInformationSpaceIndex.getSet(query, dim);
+            if (SharkCSAlgebra.isAny(set)) continue; // no constraint
+
+            Set<InMemoInformationSpace> matches = new HashSet<>(this.anyPostings.get(dim));
+
+            Enumeration<SemanticTag> tags = set.tags();
+            while (tags.hasMoreElements()) {
+                SemanticTag tag = tags.nextElement();
+                if (dim == ASIPSpace.DIM_TIME && tag instanceof TimeSemanticTag) {
+                    this.addOverlapping((TimeSemanticTag) tag, matches);
+                } else {
+                    matches.addAll(InMemoInformationSpaceIndex.union(this.siPostings.get(dim), tag.getSI(), false));
+                }
+            }
+
+            constraints.add(matches);
+        }
+
+        return this.intersect(constraints);
+    }
+
+    private List<InMemoInformationSpace> all() {
+        return this.sorted(this.entries.keySet());
+    }
+
+    private List<InMemoInformationSpace> intersect(List<Set<InMemoInformationSpace>> constraints) {
+        if (constraints.isEmpty()) return this.all();
+
+        // start with smallest set
+        Set<InMemoInformationSpace> smallest = constraints.get(0);
+        for (Set<InMemoInformationSpace> c : constraints) {
+            if (c.size() < smallest.size()) smallest = c;
+        }
+
+        List<InMemoInformationSpace> result = new ArrayList<>();
+        for (InMemoInformationSpace space : smallest) {
+            boolean inAll = true;
+            for (Set<InMemoInformationSpace> c : constraints) {
+                if (c != smallest && !c.contains(space)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) result.add(space);
+        }
+
+        return this.sorted(result);
+    }
+
+    private List<InMemoInformationSpace> sorted(Collection<InMemoInformationSpace> spaces) {
+        List<InMemoInformationSpace> result = new ArrayList<>(spaces);
+        Collections.sort(result, new Comparator<InMemoInformationSpace>() {
+            @Override
+            public int compare(InMemoInformationSpace a, InMemoInformationSpace b) {
+                long sa = entries.get(a).serial;
+                long sb = entries.get(b).serial;
+                return sa < sb ? -1 : (sa == sb ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                             time                                  //
+    ///////////////////////////////////////////////////////////////////////
+
+    private void addTime(TimeSemanticTag tag, InMemoInformationSpace space, Entry entry) {
+        long from = tag.getFrom();
+        List<TimeEntry> starting = this.timeStarts.get(from);
+        if (starting == null) {
+            starting = new ArrayList<>();
+            this.timeStarts.put(from, starting);
+        }
+        // same arithmetic as InMemoTimeSTSet.fragment()
+        TimeEntry timeEntry = new TimeEntry(from, from + tag.getDuration(), space);
+        starting.add(timeEntry);
+        entry.times.add(timeEntry);
+    }
+
+    private void addOverlapping(TimeSemanticTag tag, Set<InMemoInformationSpace> result) {
+        long aFrom = tag.getFrom();
+        long aEnd = aFrom + tag.getDuration();
+
+        // intervals starting after end of tag cannot overlap
+        for (List<TimeEntry> starting : this.timeStarts.headMap(aEnd, true).values()) {
+            for (TimeEntry timeEntry : starting) {
+                if (timeEntry.end >= aFrom) result.add(timeEntry.space);
+            }
+        }
+    }
+
+    private static class TimeEntry {
+        private final long from;
+        private final long end;
+        private final InMemoInformationSpace space;
+
+        TimeEntry(long from, long end, InMemoInformationSpace space) {
+            this.from = from;
+            this.end = end;
+            this.space = space;
+        }
+    }
+
+    /**
+     * Remembers where a space was posted - removal doesn't need to scan
+     * the whole index.
+     */
+    private static class Entry {
+        private final long serial;
+        private final List<Map<?, Set<InMemoInformationSpace>>> maps = new ArrayList<>();
+        private final List<Object> keys = new ArrayList<>();
+        private final List<TimeEntry> times = new ArrayList<>();
+
+        Entry(long serial) {
+            this.serial = serial;
+        }
+
+        <K> void post(Map<K, Set<InMemoInformationSpace>> postings,
+                      K key, InMemoInformationSpace space) {
+            if (key == null) return;
+
+            Set<InMemoInformationSpace> spaces = postings.get(key);
+            if (spaces == null) {
+                spaces = new HashSet<>();
+                postings.put(key, spaces);
+            }
+            spaces.add(space);
+
+            this.maps.add(postings);
+            this.keys.add(key);
+        }
+
+        void unpostAll(InMemoInformationSpace space) {
+            for (int i = 0; i < this.maps.size(); i++) {
+                Map<?, Set<InMemoInformationSpace>> postings = this.maps.get(i);
+                Object key = this.keys.get(i);
+                Set<InMemoInformationSpace> spaces = postings.get(key);
+                if (spaces != null && spaces.remove(space) && spaces.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                             helper                                //
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Mirrors the direction rules in SharkAlgebra.contextualize()
+     */
+    private static boolean mutualDirection(int s, int c) {
+        if (s == ASIPSpace.DIRECTION_NOTHING || c == ASIPSpace.DIRECTION_NOTHING) return false;
+        if (s == ASIPSpace.DIRECTION_INOUT && c == ASIPSpace.DIRECTION_INOUT) return true;
+        if (s == c) return false;
+        if (c == ASIPSpace.DIRECTION_IN || c == ASIPSpace.DIRECTION_OUT) return true;
+
+        return s == ASIPSpace.DIRECTION_IN || s == ASIPSpace.DIRECTION_OUT;
+    }
+
+    private static STSet getSet(ASIPSpace space, int dim) {
+        switch (dim) {
+            case ASIPSpace.DIM_TOPIC: return space.getTopics();
+            case ASIPSpace.DIM_TYPE: return space.getTypes();
+            case ASIPSpace.DIM_APPROVERS: return space.getApprovers();
+            case ASIPSpace.DIM_RECEIVER: return space.getReceivers();
+            case ASIPSpace.DIM_TIME: return space.getTimes();
+            case ASIPSpace.DIM_LOCATION: return space.getLocations();
+        }
+        return null;
+    }
+
+    private static Set<InMemoInformationSpace> union(Map<String, Set<InMemoInformationSpace>> postings,
+                                                     String[] sis, boolean lowerCase) {
+        Set<InMemoInformationSpace> result = new HashSet<>();
+        if (sis == null) return result;
+
+        for (String si : sis) {
+            if (si == null) continue;
+            Set<InMemoInformationSpace> spaces = postings.get(lowerCase ? si.toLowerCase() : si);
+            if (spaces != null) result.addAll(spaces);
+        }
+        return result;
+    }
+
+    private static Set<InMemoInformationSpace> nonNull(Set<InMemoInformationSpace> set) {
+        if (set == null) return Collections.emptySet();
+        return set;
+    }
+}
@@ -1,6 +1,7 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
 import net.sharkfw.knowledgeBase.AbstractSemanticTag;
+import net.sharkfw.knowledgeBase.SIKeys;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SystemPropertyHolder;
 import net.sharkfw.system.Util;
@@ -14,10 +15,12 @@ import java.io.Serializable;
  *
  * @author thsc
  */
-public class InMemoSemanticTag extends AbstractSemanticTag implements Serializable {
+public class InMemoSemanticTag extends AbstractSemanticTag implements Serializable, SIKeys.Holder {
 
     private String name;
     private String[] si;
+    // built when sis change - tags are compared without allocation
+    private transient volatile SIKeys siKeys;
     private InMemoGenericTagStorage storage;
 
     //TODO: Serializable only needed because PKI is not migrated to new SharkFW Version
@@ -32,7 +35,7 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
     InMemoSemanticTag(String name, String[] si, InMemoGenericTagStorage storage) {
         super();
         this.name = name;
-        this.si = this.checkNullAndDuplicates(si);
+        this.setSIs(this.checkNullAndDuplicates(si));
         this.storage = storage;
     }
 
@@ -104,6 +107,22 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
         return this.si;
     }
 
+    @Override
+    public SIKeys getSIKeys() {
+        SIKeys keys = this.siKeys;
+        if (keys == null) {
+            // deserialized
+            keys = SIKeys.of(this.si);
+            this.siKeys = keys;
+        }
+        return keys;
+    }
+
+    private void setSIs(String[] sis) {
+        this.si = sis;
+        this.siKeys = SIKeys.of(sis);
+    }
+
     @Override
     public void removeSI(String deleteSI) throws SharkKBException {
         if(si == null || si.length == 0) {
@@ -118,7 +137,7 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
             }
         }
 
-        this.si = Util.removeSI(this.si, deleteSI);
+        this.setSIs(Util.removeSI(this.si, deleteSI));
         if(this.storage != null) {
             this.storage.siRemoved(deleteSI, this);
             super.sisChanged();
@@ -142,7 +161,7 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
             }
         }
 
-        this.si = Util.addString(this.si, addSI);
+        this.setSIs(Util.addString(this.si, addSI));
         if(this.storage != null) {
             this.storage.siAdded(addSI, this);
             super.sisChanged();
@@ -193,7 +212,7 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
         if(sisString != null) {
             String[] newSIs = Util.string2array(sisString);
             if(newSIs != null) {
-                this.si = newSIs;
+                this.setSIs(newSIs);
             }
         }
     }
@@ -647,6 +647,11 @@ public class InMemoSharkKB extends AbstractSharkKB implements SharkKB, SystemPro
             return informationSpaces();
         }
 
+        if (this.knowledge instanceof InMemoASIPKnowledge) {
+            // indexed lookup
+            return ((InMemoASIPKnowledge) this.knowledge).getIdenticalInformationSpaces(as);
+        }
+
         ArrayList<ASIPInformationSpace> list = new ArrayList<>();
 
         Iterator<ASIPInformationSpace> iterator = informationSpaces();
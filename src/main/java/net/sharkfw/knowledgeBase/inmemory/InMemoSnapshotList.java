@@ -0,0 +1,120 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * List with snapshot reads. Iterators see the list as it was when they were
+ * created - they neither lock nor fail when the list changes meanwhile.
+ * Writers are serialized on the list.
+ * <p>
+ * Unlike {@link java.util.concurrent.CopyOnWriteArrayList} appending isn't a
+ * copy: the array has spare capacity, a snapshot only reads elements below
+ * its own size. Only remove and clear create a new array. Most in memory
+ * structures are appended far more often than shrunk.
+ *
+ * @param <E>
+ */
+class InMemoSnapshotList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * Immutable view: elements below size are never changed again.
+     */
+    private static final class Version {
+        final Object[] elements;
+        final int size;
+
+        Version(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+    }
+
+    private static final Version EMPTY = new Version(new Object[0], 0);
+
+    private volatile Version version = EMPTY;
+
+    InMemoSnapshotList() {}
+
+    @Override
+    public int size() {
+        return this.version.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Version v = this.version;
+        if (index < 0 || index >= v.size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + v.size);
+        }
+        return (E) v.elements[index];
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        Version v = this.version;
+        Object[] elements = v.elements;
+        if (v.size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(4, elements.length * 2));
+        }
+        // slot isn't visible to any snapshot yet
+        elements[v.size] = e;
+        this.version = new Version(elements, v.size + 1);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        Version v = this.version;
+        for (int i = 0; i < v.size; i++) {
+            Object current = v.elements[i];
+            if (o == null ? current == null : o.equals(current)) {
+                Object[] elements = new Object[Math.max(4, v.size - 1)];
+                System.arraycopy(v.elements, 0, elements, 0, i);
+                System.arraycopy(v.elements, i + 1, elements, i, v.size - i - 1);
+                this.version = new Version(elements, v.size - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.version = EMPTY;
+    }
+
+    /**
+     * @return iterator over current snapshot - remove isn't supported
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final Version v = this.version;
+        return new Iterator<E>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < v.size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (this.next >= v.size) {
+                    throw new NoSuchElementException();
+                }
+                return (E) v.elements[this.next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("snapshot iterator");
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
+
+/**
+ * R-tree of spatial semantic tags. The tree is packed once by sort-tile-recursive
+ * (STR) - a set is read far more often than changed. Queries only descend
+ * into nodes whose bounding box fits the probe and check exact geometries
+ * of candidates in leaves.
+ *
+ * Tags without parsable geometry are kept aside - they never match a probe
+ * but can be listed.
+ *
+ * @see InMemoSpatialSTSet
+ */
+class InMemoSpatialIndex {
+
+    static final int NODE_CAPACITY = 8;
+
+    private static class Node {
+        private double minX = Double.POSITIVE_INFINITY;
+        private double minY = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.NEGATIVE_INFINITY;
+
+        // either children (inner node) or tags (leaf) are set
+        private Node[] children;
+        private SpatialSemanticTag[] tags;
+        private PlanarGeometry[] geometries;
+
+        private void expand(double minX, double minY, double maxX, double maxY) {
+            this.minX = Math.min(this.minX, minX);
+            this.minY = Math.min(this.minY, minY);
+            this.maxX = Math.max(this.maxX, maxX);
+            this.maxY = Math.max(this.maxY, maxY);
+        }
+
+        private double centerX() {
+            return (this.minX + this.maxX) / 2;
+        }
+
+        private double centerY() {
+            return (this.minY + this.maxY) / 2;
+        }
+
+        private boolean intersects(PlanarGeometry g) {
+            return g.getMinX() <= this.maxX && g.getMaxX() >= this.minX
+                    && g.getMinY() <= this.maxY && g.getMaxY() >= this.minY;
+        }
+
+        private boolean covers(PlanarGeometry g) {
+            return g.getMinX() >= this.minX && g.getMaxX() <= this.maxX
+                    && g.getMinY() >= this.minY && g.getMaxY() <= this.maxY;
+        }
+    }
+
+    private static final Comparator<Node> BY_X = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return Double.compare(a.centerX(), b.centerX());
+        }
+    };
+
+    private static final Comparator<Node> BY_Y = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return Double.compare(a.centerY(), b.centerY());
+        }
+    };
+
+    private final Node root;
+    private final List<SpatialSemanticTag> unknown;
+    private final int size;
+
+    /**
+     * Packs an index of tags.
+     *
+     * @param tags
+     * @param size number of tags in set - set can contain non spatial tags
+     */
+    InMemoSpatialIndex(List<SpatialSemanticTag> tags, int size) {
+        this.size = size;
+        this.unknown = new ArrayList<>();
+
+        // leaves hold a single tag first - they are packed level by level
+        List<Node> level = new ArrayList<>();
+        for (SpatialSemanticTag tag : tags) {
+            PlanarGeometry g = PlanarGeometry.of(tag.getGeometry());
+            if (g == null || g.isEmpty()) {
+                this.unknown.add(tag);
+                continue;
+            }
+            Node entry = new Node();
+            entry.expand(g.getMinX(), g.getMinY(), g.getMaxX(), g.getMaxY());
+            entry.tags = new SpatialSemanticTag[]{tag};
+            entry.geometries = new PlanarGeometry[]{g};
+            level.add(entry);
+        }
+
+        if (level.isEmpty()) {
+            this.root = null;
+            return;
+        }
+
+        level = pack(level, true);
+        while (level.size() > 1) {
+            level = pack(level, false);
+        }
+        this.root = level.get(0);
+    }
+
+    /**
+     * Groups nodes into parents of at most {@link #NODE_CAPACITY} entries:
+     * sorted by x into vertical slices, each slice sorted by y.
+     */
+    private static List<Node> pack(List<Node> nodes, boolean leaves) {
+        int parentCount = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        Collections.sort(nodes, BY_X);
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int sliceStart = 0; sliceStart < nodes.size(); sliceStart += sliceSize) {
+            List<Node> slice = new ArrayList<>(
+                    nodes.subList(sliceStart, Math.min(sliceStart + sliceSize, nodes.size())));
+            Collections.sort(slice, BY_Y);
+
+            for (int start = 0; start < slice.size(); start += NODE_CAPACITY) {
+                List<Node> group = slice.subList(start, Math.min(start + NODE_CAPACITY, slice.size()));
+                Node parent = new Node();
+                for (Node node : group) {
+                    parent.expand(node.minX, node.minY, node.maxX, node.maxY);
+                }
+                if (leaves) {
+                    parent.tags = new SpatialSemanticTag[group.size()];
+                    parent.geometries = new PlanarGeometry[group.size()];
+                    for (int i = 0; i < group.size(); i++) {
+                        parent.tags[i] = group.get(i).tags[0];
+                        parent.geometries[i] = group.get(i).geometries[0];
+                    }
+                } else {
+                    parent.children = group.toArray(new Node[group.size()]);
+                }
+                parents.add(parent);
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * @return size of the set this index was packed for
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds each tag whose geometry shares at least one point with probe.
+     *
+     * @param probe
+     * @param result
+     */
+    void intersecting(PlanarGeometry probe, List<SpatialSemanticTag> result) {
+        if (this.root != null && !probe.isEmpty()) {
+            this.intersecting(this.root, probe, result);
+        }
+    }
+
+    /**
+     * @param probe
+     * @return true if at least one tag covers probe completely
+     */
+    boolean isCovered(PlanarGeometry probe) {
+        if (probe.isEmpty()) {
+            return true;
+        }
+        return this.root != null && this.isCovered(this.root, probe);
+    }
+
+    /**
+     * @return tags without parsable geometry
+     */
+    List<SpatialSemanticTag> unknown() {
+        return this.unknown;
+    }
+
+    private void intersecting(Node node, PlanarGeometry probe, List<SpatialSemanticTag> result) {
+        if (!node.intersects(probe)) {
+            return;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                this.intersecting(child, probe, result);
+            }
+            return;
+        }
+        for (int i = 0; i < node.tags.length; i++) {
+            if (node.geometries[i].intersects(probe)) {
+                result.add(node.tags[i]);
+            }
+        }
+    }
+
+    private boolean isCovered(Node node, PlanarGeometry probe) {
+        // a covering tag lies in a node which covers probe as well
+        if (!node.covers(probe)) {
+            return false;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (this.isCovered(child, probe)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = 0; i < node.tags.length; i++) {
+            if (node.geometries[i].covers(probe)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,9 +1,13 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.Iterator;
+import java.util.List;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
 import net.sharkfw.knowledgeBase.geom.SharkGeometry;
+import net.sharkfw.knowledgeBase.geom.SpatialAlgebra;
 
 /**
  *
@@ -11,6 +15,8 @@ import net.sharkfw.knowledgeBase.geom.SharkGeometry;
  */
 public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STSet {
 
+    private InMemoSpatialIndex index = null;
+
     InMemoSpatialSTSet() {
         super(new InMemoGenericTagStorage<SpatialSemanticTag>());
     }
@@ -26,12 +32,74 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
      * @param gst
      */
     public void addGeoSemanticTag(SpatialSemanticTag gst) throws SharkKBException {
-        super.add(gst);
+        this.add(gst);
+    }
+
+    @Override
+    public void add(SemanticTag tag) throws SharkKBException {
+        super.add(tag);
+        this.index = null;
+    }
+
+    @Override
+    public void removeSemanticTag(SemanticTag tag) {
+        super.removeSemanticTag(tag);
+        this.index = null;
+    }
+
+    /**
+     * @return r-tree of all tags - packed again after the set was changed.
+     */
+    private synchronized InMemoSpatialIndex getIndex() throws SharkKBException {
+        if (this.index == null || this.index.size() != this.size()) {
+            // plain tags can be created in this set as well - they aren't indexed
+            List<SpatialSemanticTag> tags = new ArrayList<>();
+            int size = 0;
+            Iterator<?> tagIter = this.getTagStorage().allTags();
+            while (tagIter.hasNext()) {
+                Object tag = tagIter.next();
+                if (tag instanceof SpatialSemanticTag) {
+                    tags.add((SpatialSemanticTag) tag);
+                }
+                size++;
+            }
+            this.index = new InMemoSpatialIndex(tags, size);
+        }
+        return this.index;
+    }
+
+    /**
+     * @param probe
+     * @return true if geometry of at least one tag covers geometry of probe
+     * completely. Tags or probes without parsable geometry are never covered.
+     * @throws SharkKBException
+     */
+    public boolean covers(SpatialSemanticTag probe) throws SharkKBException {
+        PlanarGeometry g = PlanarGeometry.of(probe.getGeometry());
+        return g != null && this.getIndex().isCovered(g);
     }
 
-    // TODO
-    public static SpatialSTSet fragmentSpatialSTSet(Enumeration<String> anchor, SpatialSTSet gsts, double range) throws SharkKBException {
-        return gsts;
+    /**
+     * @param probe
+     * @return all tags whose geometry shares at least one point with geometry
+     * of probe - empty if probe has no parsable geometry.
+     * @throws SharkKBException
+     */
+    public Iterator<SpatialSemanticTag> intersecting(SpatialSemanticTag probe) throws SharkKBException {
+        PlanarGeometry g = PlanarGeometry.of(probe.getGeometry());
+        List<SpatialSemanticTag> result = new ArrayList<>();
+        if (g != null) {
+            this.getIndex().intersecting(g, result);
+        }
+        return result.iterator();
+    }
+
+    /**
+     * @return spatial tags whose geometry cannot be parsed
+     * @throws SharkKBException
+     */
+    public Iterator<SpatialSemanticTag> unparsableTags() throws SharkKBException {
+        return new ArrayList<>(this.getIndex().unknown()).iterator();
     }
 
     @Override
@@ -48,7 +116,9 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
     }
 
     /**
-     * TODO
+     * Returns all tags which share at least one point with a tag in context.
+     * Tags without parsable geometry are kept - see {@link SpatialAlgebra}.
+     * No (or an empty) context means any location - the set itself is returned.
      *
      * @param context
      * @param fp
@@ -57,7 +127,20 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
      */
     @Override
     public SpatialSTSet contextualize(SpatialSTSet context, FragmentationParameter fp) throws SharkKBException {
-        return this;
+        if (context == null || context.isEmpty()) {
+            return this;
+        }
+
+        SpatialSTSet result = null;
+        Enumeration<SpatialSemanticTag> contextTags = context.spatialTags();
+        while (contextTags.hasMoreElements()) {
+            SpatialSemanticTag contextTag = contextTags.nextElement();
+            if (SharkCSAlgebra.isAny(contextTag)) {
+                return this;
+            }
+            result = SharkCSAlgebra.getSpatialAlgebra().fragment(result, this, contextTag);
+        }
+        return result;
     }
 
     private SpatialSemanticTag castGST(SemanticTag st) throws SharkKBException {
@@ -0,0 +1,280 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import net.sharkfw.knowledgeBase.TimeSemanticTag;
+
+/**
+ * Balanced (AVL) search tree of time intervals ordered by their start. Each
+ * node knows the latest end in its subtree - overlap, containment and point
+ * queries skip subtrees which end too early and find k results in
+ * O(log n + k).
+ *
+ * Intervals are closed: [from, from + duration]. A duration of
+ * {@link TimeSemanticTag#FOREVER} never ends.
+ *
+ * Thread safe - each operation locks the tree for O(log n + k) at most.
+ *
+ * @see InMemoTimeSTSet
+ */
+class InMemoTimeIntervalTree {
+
+    private static class Node {
+        private final long from;
+        private final long end;
+        private final long serial;
+        private final TimeSemanticTag tag;
+
+        private long maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        Node(TimeSemanticTag tag, long serial) {
+            this.from = tag.getFrom();
+            this.end = InMemoTimeIntervalTree.end(tag);
+            this.serial = serial;
+            this.tag = tag;
+            this.maxEnd = this.end;
+        }
+    }
+
+    private Node root = null;
+    private long nextSerial = 0;
+
+    // tags are kept by identity - same interval can be added more than once
+    private final IdentityHashMap<TimeSemanticTag, Node> nodes = new IdentityHashMap<>();
+
+    /**
+     * @param tag
+     * @return last millisecond of tag - Long.MAX_VALUE if it lasts forever
+     */
+    static long end(TimeSemanticTag tag) {
+        return end(tag.getFrom(), tag.getDuration());
+    }
+
+    static long end(long from, long duration) {
+        if (duration == TimeSemanticTag.FOREVER) {
+            return Long.MAX_VALUE;
+        }
+        long end = from + duration;
+        // overflow means forever as well
+        return end < from ? Long.MAX_VALUE : end;
+    }
+
+    /**
+     * @return duration of an interval from start to end - reverts {@link #end(long, long)}
+     */
+    static long duration(long from, long end) {
+        if (end == Long.MAX_VALUE) {
+            return TimeSemanticTag.FOREVER;
+        }
+        return end - from;
+    }
+
+    synchronized int size() {
+        return this.nodes.size();
+    }
+
+    synchronized void clear() {
+        this.root = null;
+        this.nodes.clear();
+    }
+
+    synchronized boolean contains(TimeSemanticTag tag) {
+        return this.nodes.containsKey(tag);
+    }
+
+    synchronized void add(TimeSemanticTag tag) {
+        if (this.nodes.containsKey(tag)) {
+            return;
+        }
+        Node node = new Node(tag, this.nextSerial++);
+        this.nodes.put(tag, node);
+        this.root = this.insert(this.root, node);
+    }
+
+    synchronized boolean remove(TimeSemanticTag tag) {
+        Node node = this.nodes.remove(tag);
+        if (node == null) {
+            return false;
+        }
+        this.root = this.delete(this.root, node);
+        return true;
+    }
+
+    /**
+     * Adds each interval sharing at least one millisecond with [from, end]
+     * to result - ordered by start.
+     */
+    synchronized void overlapping(long from, long end, List<TimeSemanticTag> result) {
+        this.overlapping(this.root, from, end, result);
+    }
+
+    /**
+     * Adds each interval which contains [from, end] completely to result.
+     */
+    synchronized void containing(long from, long end, List<TimeSemanticTag> result) {
+        this.containing(this.root, from, end, result);
+    }
+
+    /**
+     * @return true if at least one interval contains [from, end] completely
+     */
+    synchronized boolean containsInterval(long from, long end) {
+        Node node = this.root;
+        while (node != null) {
+            if (node.from > from) {
+                // this node and its right subtree start too late
+                node = node.left;
+                continue;
+            }
+            // whole left subtree starts early enough - one of them must end late enough
+            if (node.end >= end || (node.left != null && node.left.maxEnd >= end)) {
+                return true;
+            }
+            node = node.right;
+        }
+        return false;
+    }
+
+    private void overlapping(Node node, long from, long end, List<TimeSemanticTag> result) {
+        if (node == null || node.maxEnd < from) {
+            return;
+        }
+        this.overlapping(node.left, from, end, result);
+        if (node.from <= end) {
+            if (node.end >= from) {
+                result.add(node.tag);
+            }
+            this.overlapping(node.right, from, end, result);
+        }
+    }
+
+    private void containing(Node node, long from, long end, List<TimeSemanticTag> result) {
+        if (node == null || node.maxEnd < end) {
+            return;
+        }
+        this.containing(node.left, from, end, result);
+        if (node.from <= from) {
+            if (node.end >= end) {
+                result.add(node.tag);
+            }
+            this.containing(node.right, from, end, result);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                        AVL maintenance                            //
+    ///////////////////////////////////////////////////////////////////////
+
+    private static int compare(Node a, Node b) {
+        if (a.from != b.from) {
+            return a.from < b.from ? -1 : 1;
+        }
+        if (a.end != b.end) {
+            return a.end < b.end ? -1 : 1;
+        }
+        return a.serial < b.serial ? -1 : (a.serial == b.serial ? 0 : 1);
+    }
+
+    private Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (compare(newNode, node) < 0) {
+            node.left = this.insert(node.left, newNode);
+        } else {
+            node.right = this.insert(node.right, newNode);
+        }
+        return this.balance(node);
+    }
+
+    private Node delete(Node node, Node target) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(target, node);
+        if (c < 0) {
+            node.left = this.delete(node.left, target);
+        } else if (c > 0) {
+            node.right = this.delete(node.right, target);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // replace by smallest node of right subtree
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = this.deleteMin(node.right);
+            successor.left = node.left;
+            return this.balance(successor);
+        }
+        return this.balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = this.deleteMin(node.left);
+        return this.balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd > maxEnd) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd > maxEnd) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private Node balance(Node node) {
+        update(node);
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (diff < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+}
@@ -1,19 +1,26 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import net.sharkfw.knowledgeBase.*;
 
 /**
  * In-Memory implementation of a TimeSTSet featuring the internal interfaces and
  * the simplifed interface for external programmers.
  *
+ * Tags are indexed by an interval tree. Fragmentation, contextualization and
+ * the queries of this class don't scan the whole set.
+ *
  * TODO: Override addSemanticTag and check the type of the tag to be created.
  * Allow only TimeSemanticTags.
  * 
  * @author mfi, thsc
  */
 public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
+
+    private final InMemoTimeIntervalTree intervals = new InMemoTimeIntervalTree();
     
     InMemoTimeSTSet() {
         super(new InMemoGenericTagStorage<TimeSemanticTag>());
@@ -24,6 +31,25 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
         super(storage);
     }
 
+    /**
+     * @return interval tree of all tags - rebuilt if the storage was changed
+     * without this set.
+     */
+    private InMemoTimeIntervalTree getIntervals() throws SharkKBException {
+        // concurrent readers must not rebuild twice
+        synchronized(this.intervals) {
+            if(this.intervals.size() != this.size()) {
+                this.intervals.clear();
+                // storage isn't typed - tags are checked by castTST
+                Iterator<?> tagIter = this.getTagStorage().allTags();
+                while(tagIter.hasNext()) {
+                    this.intervals.add(this.castTST((SemanticTag) tagIter.next()));
+                }
+            }
+        }
+        return this.intervals;
+    }
+
     private TimeSemanticTag castTST(SemanticTag st) throws SharkKBException {
         if(st == null) return null;
 
@@ -34,54 +60,74 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
 
     @Override
     public TimeSTSet fragment(TimeSemanticTag anchor) throws SharkKBException {
-        Enumeration<SemanticTag> tagEnum = this.tags();
-        if(tagEnum == null) return null;
+        if(this.isEmpty()) return null;
         
         // create a fragment
         InMemoTimeSTSet fragment = new InMemoTimeSTSet();
         
-        // no enumerate all tags and look for intersection
+        // fragment contains intersections with all overlapping tags
         long aFrom = anchor.getFrom();
-        long aEnd = anchor.getDuration() + aFrom;
+        long aEnd = InMemoTimeIntervalTree.end(anchor);
 
-        while(tagEnum.hasMoreElements()) {
-            TimeSemanticTag tst = this.castTST(tagEnum.nextElement());
+        List<TimeSemanticTag> overlapping = new ArrayList<>();
+        this.getIntervals().overlapping(aFrom, aEnd, overlapping);
+
+        for(TimeSemanticTag tst : overlapping) {
             long bFrom = tst.getFrom();
-            long bEnd = tst.getDuration() + bFrom;
+            long bEnd = InMemoTimeIntervalTree.end(tst);
             
-            /**
-            * 1. Dont overlap:
-            * aFrom > bEnd || aEnd < bFrom
-            * 
-            * 2. A before B
-            * aFrom <= bFrom && aEnd <= bEnd
-            * -> bFrom, lt(aEnd, bEnd)
-            * 
-            * 3. B before A
-            * bFrom <= aFrom && bEnd <= aEnd
-            * -> bFrom
-            */
-            
-            // case 1
-            if(aFrom > bEnd || aEnd < bFrom) continue;
-            
-            if(aFrom <= bFrom && aEnd <= bEnd) {
-                long earliestEnd = aEnd < bEnd ? aEnd : bEnd;
-                fragment.createTimeSemanticTag(bFrom, earliestEnd - bFrom);
-            } 
-            else if(bFrom <= aFrom && bEnd <= aEnd) {
-                long earliestEnd = aEnd < bEnd ? aEnd : bEnd;
-                fragment.createTimeSemanticTag(aFrom, earliestEnd - aFrom);
-            }
+            long latestFrom = aFrom > bFrom ? aFrom : bFrom;
+            long earliestEnd = aEnd < bEnd ? aEnd : bEnd;
+            fragment.createTimeSemanticTag(latestFrom,
+                    InMemoTimeIntervalTree.duration(latestFrom, earliestEnd));
         }
         
-        if(fragment.tags() == null) {
+        if(fragment.isEmpty()) {
             return null;
         } 
         
         return fragment;
         
     }
+
+    /**
+     * @param probe
+     * @return true if probe fits into the time frame of at least one tag
+     * @see SharkCSAlgebra#isIn(TimeSemanticTag, TimeSemanticTag)
+     */
+    public boolean covers(TimeSemanticTag probe) throws SharkKBException {
+        return this.getIntervals().containsInterval(probe.getFrom(), InMemoTimeIntervalTree.end(probe));
+    }
+
+    /**
+     * @param from
+     * @param duration
+     * @return tags sharing at least one millisecond with that time frame - ordered by start
+     */
+    public Iterator<TimeSemanticTag> overlapping(long from, long duration) throws SharkKBException {
+        List<TimeSemanticTag> result = new ArrayList<>();
+        this.getIntervals().overlapping(from, InMemoTimeIntervalTree.end(from, duration), result);
+        return result.iterator();
+    }
+
+    /**
+     * @param from
+     * @param duration
+     * @return tags which contain that time frame completely
+     */
+    public Iterator<TimeSemanticTag> containing(long from, long duration) throws SharkKBException {
+        List<TimeSemanticTag> result = new ArrayList<>();
+        this.getIntervals().containing(from, InMemoTimeIntervalTree.end(from, duration), result);
+        return result.iterator();
+    }
+
+    /**
+     * @param time
+     * @return tags which contain that point in time
+     */
+    public Iterator<TimeSemanticTag> at(long time) throws SharkKBException {
+        return this.overlapping(time, 1);
+    }
     
     /**
      * Both tags are assumed to be already in the set. Concepts can be deleted
@@ -120,10 +166,10 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
             */
 
         long aFrom = a.getFrom();
-        long aEnd = a.getDuration() + aFrom;
+        long aEnd = InMemoTimeIntervalTree.end(a);
 
         long bFrom = b.getFrom();
-        long bEnd = b.getDuration() + bFrom;
+        long bEnd = InMemoTimeIntervalTree.end(b);
 
         // case 1 and 2
         if(aEnd < bFrom || bEnd < aFrom) return null;
@@ -145,7 +191,7 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
             long longestEnd = aEnd > bEnd ? aEnd : bEnd;
             this.removeSemanticTag(a);
             this.removeSemanticTag(b);
-            return this.createTimeSemanticTag(aFrom, longestEnd - aFrom);
+            return this.createTimeSemanticTag(aFrom, InMemoTimeIntervalTree.duration(aFrom, longestEnd));
         }
 
         // case 6 (overlaps slightly with 4 but 4 is already done)
@@ -153,7 +199,7 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
             long longestEnd = aEnd > bEnd ? aEnd : bEnd;
             this.removeSemanticTag(a);
             this.removeSemanticTag(b);
-            return this.createTimeSemanticTag(bFrom, longestEnd - bFrom);
+            return this.createTimeSemanticTag(bFrom, InMemoTimeIntervalTree.duration(bFrom, longestEnd));
         }
         
         return null;
@@ -166,18 +212,20 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
     private boolean fitin(TimeSemanticTag tst) throws SharkKBException {
         boolean changed = false;
         
-        Enumeration<SemanticTag> tagEnum = this.tags();
-        if(tagEnum == null) {
-            // impossible - at least tst should be in
-            return false;
-        }
+        List<TimeSemanticTag> overlapping = new ArrayList<>();
+        this.getIntervals().overlapping(tst.getFrom(), InMemoTimeIntervalTree.end(tst), overlapping);
         
-        while(tagEnum.hasMoreElements()) {
-            TimeSemanticTag tag = this.castTST(tagEnum.nextElement());
+        for(TimeSemanticTag tag : overlapping) {
+            if(tag == tst) continue;
             
             TimeSemanticTag result = this.merge(tag, tst);
+            if(result == null) continue;
             
-            changed = result != tag && result != tst;
+            changed = true;
+            if(result != tst) {
+                // tst is gone - replacing tag was fit in when added
+                return changed;
+            }
         }
         
         return changed;
@@ -186,14 +234,28 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
     @Override
     public void add(SemanticTag st) throws SharkKBException {
         TimeSemanticTag tst = this.castTST(st);
+        InMemoTimeIntervalTree tree = this.getIntervals();
 
         // add tag at first
         super.add(st);
+        if(this.getSemanticTag(tst.getSI()) != tst) {
+            // an identical tag is already in
+            return;
+        }
+        tree.add(tst);
         
         // duplicate supression
         this.fitin(tst);
     }
 
+    @Override
+    public void removeSemanticTag(SemanticTag tag) {
+        super.removeSemanticTag(tag);
+        if(tag instanceof TimeSemanticTag) {
+            this.intervals.remove((TimeSemanticTag) tag);
+        }
+    }
+
     @Override
     public TimeSTSet fragment(SemanticTag anchor) throws SharkKBException {
         return this.fragment(this.castTST(anchor));
@@ -269,14 +331,15 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public Enumeration<TimeSemanticTag> timeTags() throws SharkKBException {
-        Enumeration tags = super.tags();
-        return tags;
+        // tags of a time set are time semantic tags
+        return (Enumeration<TimeSemanticTag>) (Enumeration<?>) super.tags();
     }
     
     @Override
+    @SuppressWarnings("unchecked")
     public Iterator<TimeSemanticTag> tstTags() throws SharkKBException {
-        Iterator stTags = super.stTags();
-        return stTags;
+        return (Iterator<TimeSemanticTag>) (Iterator<?>) super.stTags();
     }
 }
@@ -19,6 +19,15 @@ public class DumpASIPInformation extends DumpPropertyHolder implements ASIPInfor
         this.info = info;
     }
 
+    ASIPInformation getWrappedInformation() {
+        return this.info;
+    }
+
+    @Override
+    protected void changed() {
+        this.kb.informationChanged(this.info);
+    }
+
     @Override
     public ASIPSpace getASIPSpace() throws SharkKBException {
         return new DumpASIPSpace(kb, info.getASIPSpace());
@@ -36,32 +45,42 @@ public class DumpASIPInformation extends DumpPropertyHolder implements ASIPInfor
 
     @Override
     public void setContent(InputStream is, long len) {
-        info.setContent(is, len);
-        kb.persist();
+        synchronized (this.kb) {
+            info.setContent(is, len);
+            this.changed();
+        }
     }
 
     @Override
     public void setContent(byte[] content) {
-        info.setContent(content);
-        kb.persist();
+        synchronized (this.kb) {
+            info.setContent(content);
+            this.changed();
+        }
     }
 
     @Override
     public void setContent(String content) {
-        info.setContent(content);
-        kb.persist();
+        synchronized (this.kb) {
+            info.setContent(content);
+            this.changed();
+        }
     }
 
     @Override
     public void removeContent() {
-        info.removeContent();
-        kb.persist();
+        synchronized (this.kb) {
+            info.removeContent();
+            this.changed();
+        }
     }
 
     @Override
     public void setContentType(String mimetype) {
-        info.setContentType(mimetype);
-        kb.persist();
+        synchronized (this.kb) {
+            info.setContentType(mimetype);
+            this.changed();
+        }
     }
 
     @Override
@@ -96,7 +115,9 @@ public class DumpASIPInformation extends DumpPropertyHolder implements ASIPInfor
 
     @Override
     public void setName(String name) throws SharkKBException {
-        info.setName(name);
-        kb.persist();
+        synchronized (this.kb) {
+            info.setName(name);
+            this.changed();
+        }
     }
 }
@@ -5,6 +5,8 @@ import net.sharkfw.knowledgeBase.*;
 
 /**
  * Created by j4rvis on 2/28/17.
+ *
+ * Dimensions of an interest refer to tag sets - setting them doesn't change the kb.
  */
 public class DumpASIPInterest extends DumpASIPSpace implements ASIPInterest {
 
@@ -18,48 +20,40 @@ public class DumpASIPInterest extends DumpASIPSpace implements ASIPInterest {
     @Override
     public void setTopics(STSet topics) {
         interest.setTopics(topics);
-        kb.persist();
     }
 
     @Override
     public void setTypes(STSet types) {
         interest.setTypes(types);
-        kb.persist();
     }
 
     @Override
     public void setDirection(int direction) {
         interest.setDirection(direction);
-        kb.persist();
     }
 
     @Override
     public void setSender(PeerSemanticTag originator) {
         interest.setSender(originator);
-        kb.persist();
     }
 
     @Override
     public void setReceivers(PeerSTSet remotePeers) {
         interest.setReceivers(remotePeers);
-        kb.persist();
     }
 
     @Override
     public void setApprovers(PeerSTSet peers) {
         interest.setApprovers(peers);
-        kb.persist();
     }
 
     @Override
     public void setTimes(TimeSTSet times) {
         interest.setTimes(times);
-        kb.persist();
     }
 
     @Override
     public void setLocations(SpatialSTSet location) {
         interest.setLocations(location);
-        kb.persist();
     }
 }
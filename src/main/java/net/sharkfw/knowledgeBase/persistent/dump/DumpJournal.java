@@ -0,0 +1,330 @@
+package net.sharkfw.knowledgeBase.persistent.dump;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.system.L;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes of a {@link DumpSharkKB}. Each record is
+ * written as
+ *
+ * <pre>
+ * type (1 byte) | header length (int) | json header | content length (long) | content | crc32 (int)
+ * </pre>
+ *
+ * Records are written at the end of the journal - costs depend on the size of
+ * the change, not on the size of the knowledge base. A record which isn't
+ * written completely (e.g. a crash during writing) is detected by its checksum
+ * and cut off when the journal is replayed.
+ * <p>
+ * While a snapshot is written, the journal is rotated: records so far are
+ * moved to a second file ({@link #ROTATED_EXTENSION}), new records are appended
+ * to an empty journal. The rotated file is dropped once the snapshot is stored.
+ * Replay reads the rotated file first.
+ */
+public class DumpJournal {
+
+    /**
+     * When appended records are forced to the storage device.
+     */
+    public enum FsyncPolicy {
+        /** after each record - nothing is lost */
+        ALWAYS,
+        /** at most once per sync interval - recent records can get lost by a crash */
+        PERIODIC,
+        /** never - the operating system decides */
+        NEVER
+    }
+
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    public static final String ROTATED_EXTENSION = ".old";
+
+    /**
+     * Called for each valid record while replaying.
+     */
+    public interface RecordHandler {
+        void handleRecord(byte type, JSONObject header, byte[] content) throws Exception;
+    }
+
+    private final File file;
+    private final File rotatedFile;
+    private final FsyncPolicy fsyncPolicy;
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+
+    private FileOutputStream fileStream = null;
+    private DataOutputStream out = null;
+    private long size = 0;
+    private long lastSync = 0;
+
+    public DumpJournal(File file, FsyncPolicy fsyncPolicy) {
+        this.file = file;
+        this.rotatedFile = new File(file.getPath() + ROTATED_EXTENSION);
+        this.fsyncPolicy = fsyncPolicy;
+        this.size = file.length();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return this.fsyncPolicy;
+    }
+
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * @return bytes in journal
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param type
+     * @param header
+     * @param info content of that information is added - can be null
+     * @throws IOException
+     */
+    public synchronized void append(byte type, JSONObject header, ASIPInformation info) throws IOException {
+        if (this.out == null) {
+            this.fileStream = new FileOutputStream(this.file, true);
+            this.out = new DataOutputStream(new BufferedOutputStream(this.fileStream));
+        }
+
+        // record is assembled first - crc and length must fit the content
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+        long contentLength = info != null ? info.getContentLength() : 0;
+
+        recordOut.writeByte(type);
+        recordOut.writeInt(headerBytes.length);
+        recordOut.write(headerBytes);
+        recordOut.writeLong(contentLength);
+        if (info != null) {
+            info.streamContent(recordOut);
+        }
+        if (recordOut.size() != 1 + 4 + headerBytes.length + 8 + contentLength) {
+            throw new IOException("information content doesn't fit its length");
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] recordBytes = record.toByteArray();
+        crc.update(recordBytes, 0, recordBytes.length);
+
+        this.out.write(recordBytes);
+        this.out.writeInt((int) crc.getValue());
+        this.out.flush();
+        this.size += recordBytes.length + 4;
+
+        long now = System.currentTimeMillis();
+        if (this.fsyncPolicy == FsyncPolicy.ALWAYS
+                || (this.fsyncPolicy == FsyncPolicy.PERIODIC && now - this.lastSync >= this.syncInterval)) {
+            this.fileStream.getFD().sync();
+            this.lastSync = now;
+        }
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        if (this.out != null) {
+            this.out.flush();
+            this.fileStream.getFD().sync();
+            this.lastSync = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Reads all records - of a rotated journal first - and passes them to handler.
+     * Reading stops at the first incomplete or corrupted record of a file - it is
+     * cut off at that position.
+     *
+     * @param handler
+     * @return number of replayed records
+     * @throws IOException
+     */
+    public synchronized int replay(RecordHandler handler) throws IOException {
+        int count = this.replay(this.rotatedFile, handler);
+        count += this.replay(this.file, handler);
+        this.size = this.file.length();
+        return count;
+    }
+
+    private int replay(File file, RecordHandler handler) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+        long validLength = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                byte[] headerBytes;
+                byte[] content;
+                try {
+                    int headerLength = in.readInt();
+                    if (headerLength < 0 || validLength + headerLength > file.length()) {
+                        break;
+                    }
+                    headerBytes = new byte[headerLength];
+                    in.readFully(headerBytes);
+                    long contentLength = in.readLong();
+                    if (contentLength < 0 || validLength + headerLength + contentLength > file.length()) {
+                        break;
+                    }
+                    content = new byte[(int) contentLength];
+                    in.readFully(content);
+
+                    ByteArrayOutputStream record = new ByteArrayOutputStream();
+                    DataOutputStream recordOut = new DataOutputStream(record);
+                    recordOut.writeByte(type);
+                    recordOut.writeInt(headerLength);
+                    recordOut.write(headerBytes);
+                    recordOut.writeLong(contentLength);
+                    recordOut.write(content);
+                    crc.update(record.toByteArray());
+
+                    if (in.readInt() != (int) crc.getValue()) {
+                        L.w("corrupted journal record at " + validLength + " - journal is cut off", this);
+                        break;
+                    }
+                    validLength += record.size() + 4;
+                } catch (EOFException e) {
+                    L.w("incomplete journal record at " + validLength + " - journal is cut off", this);
+                    break;
+                }
+
+                try {
+                    handler.handleRecord(type, new JSONObject(new String(headerBytes, StandardCharsets.UTF_8)), content);
+                    count++;
+                } catch (Exception e) {
+                    L.w("cannot replay journal record: " + e.getMessage(), this);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        if (validLength < file.length()) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(validLength);
+            } finally {
+                raf.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves all records to the rotated file - new records go to an empty
+     * journal. Records of a rotated file which hasn't been dropped yet are
+     * kept: current records are appended to it.
+     *
+     * @throws IOException
+     */
+    public synchronized void rotate() throws IOException {
+        this.close();
+        if (!this.file.exists() || this.file.length() == 0) {
+            return;
+        }
+        if (!this.rotatedFile.exists()) {
+            if (!this.file.renameTo(this.rotatedFile)) {
+                throw new IOException("cannot rotate journal " + this.file);
+            }
+        } else {
+            FileInputStream in = new FileInputStream(this.file);
+            FileOutputStream out = new FileOutputStream(this.rotatedFile, true);
+            try {
+                byte[] buffer = new byte[16384];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                out.getFD().sync();
+            } finally {
+                in.close();
+                out.close();
+            }
+            this.truncateFile();
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Removes rotated records - a snapshot containing them has been stored.
+     */
+    public synchronized void dropRotated() {
+        if (this.rotatedFile.exists() && !this.rotatedFile.delete()) {
+            L.w("cannot delete rotated journal " + this.rotatedFile, this);
+        }
+    }
+
+    /**
+     * Removes all records, rotated ones as well - called after a snapshot
+     * has been written.
+     *
+     * @throws IOException
+     */
+    public synchronized void truncate() throws IOException {
+        this.close();
+        this.dropRotated();
+        this.truncateFile();
+        this.size = 0;
+    }
+
+    private void truncateFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        try {
+            raf.setLength(0);
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.out != null) {
+            try {
+                this.sync();
+                this.out.close();
+            } finally {
+                this.out = null;
+                this.fileStream = null;
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.Knowledge;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SharkVocabulary;
+import net.sharkfw.knowledgeBase.inmemory.InMemoInformation;
 
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -13,6 +14,9 @@ import java.util.Iterator;
 
 /**
  * Created by j4rvis on 2/28/17.
+ *
+ * Changes are journaled by the kb if that knowledge is the kb itself.
+ * Knowledge extracted from the kb is a copy - its changes aren't stored.
  */
 public class DumpKnowledge implements Knowledge {
 
@@ -26,57 +30,94 @@ public class DumpKnowledge implements Knowledge {
 
     @Override
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
-        ASIPInformationSpace asipInformationSpace = knowledge.mergeInformation(information, space);
-        kb.persist();
+        ASIPInformationSpace asipInformationSpace;
+        synchronized (this.kb) {
+            asipInformationSpace = this.knowledge.mergeInformation(information, space);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationMerged(asipInformationSpace);
+            }
+        }
         return new DumpASIPInformationSpace(kb, asipInformationSpace);
     }
 
     @Override
     public ASIPInformation addInformation(byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(content, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(content, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public ASIPInformation addInformation(InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(contentIS, numberOfBytes, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(contentIS, numberOfBytes, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public ASIPInformation addInformation(String content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(content, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(content, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(name, content, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(name, content, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public ASIPInformation addInformation(String name, byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(name, content, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(name, content, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public ASIPInformation addInformation(String name, InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
-        ASIPInformation asipInformation = knowledge.addInformation(name, contentIS, numberOfBytes, semanticAnnotations);
-        kb.persist();
-        return new DumpASIPInformation(kb, asipInformation);
+        synchronized (this.kb) {
+            ASIPInformation asipInformation = knowledge.addInformation(name, contentIS, numberOfBytes, semanticAnnotations);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationChanged(asipInformation);
+            }
+            return new DumpASIPInformation(kb, asipInformation);
+        }
     }
 
     @Override
     public void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
-        this.knowledge.removeInformation(info, infoSpace);
-        kb.persist();
+        if (info instanceof DumpASIPInformation) {
+            info = ((DumpASIPInformation) info).getWrappedInformation();
+        }
+        synchronized (this.kb) {
+            String id = info.getProperty(InMemoInformation.INFO_ID_PROPERTY_NAME);
+            this.knowledge.removeInformation(info, infoSpace);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationRemoved(id);
+            }
+        }
     }
 
     @Override
@@ -121,14 +162,22 @@ public class DumpKnowledge implements Knowledge {
 
     @Override
     public void removeInformationSpace(ASIPSpace space) throws SharkKBException {
-        knowledge.removeInformationSpace(space);
-        kb.persist();
+        synchronized (this.kb) {
+            this.knowledge.removeInformationSpace(space);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationSpaceRemoved(space);
+            }
+        }
     }
 
     @Override
     public void removeInformation(ASIPSpace space) throws SharkKBException {
-        knowledge.removeInformation(space);
-        kb.persist();
+        synchronized (this.kb) {
+            this.knowledge.removeInformation(space);
+            if (this.kb.holds(this.knowledge)) {
+                this.kb.informationRemoved(space);
+            }
+        }
     }
 
     @Override
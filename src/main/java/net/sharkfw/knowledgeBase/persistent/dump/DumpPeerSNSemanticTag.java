@@ -27,20 +27,26 @@ public class DumpPeerSNSemanticTag extends DumpSNSemanticTag implements PeerSNSe
 
     @Override
     public void setAddresses(String[] addresses) {
-        this.peerSNSemanticTag.setAddresses(addresses);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSNSemanticTag.setAddresses(addresses);
+            this.changed();
+        }
     }
 
     @Override
     public void removeAddress(String address) {
-        this.peerSNSemanticTag.removeAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSNSemanticTag.removeAddress(address);
+            this.changed();
+        }
     }
 
     @Override
     public void addAddress(String address) {
-        this.peerSNSemanticTag.addAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSNSemanticTag.addAddress(address);
+            this.changed();
+        }
     }
 
 
@@ -71,14 +77,23 @@ public class DumpPeerSNSemanticTag extends DumpSNSemanticTag implements PeerSNSe
 
     @Override
     public void move(TXSemanticTag supertag) {
-        this.peerSNSemanticTag.move(supertag);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange()
+                    .changed(this.peerSNSemanticTag)
+                    .changed(this.peerSNSemanticTag.getSuperTag())
+                    .changed(supertag);
+            this.peerSNSemanticTag.move((TXSemanticTag) DumpSemanticTag.unwrap(supertag));
+            change.commit();
+        }
     }
 
     @Override
     public void merge(TXSemanticTag toMerge) {
-        this.peerSNSemanticTag.merge(toMerge);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.peerSNSemanticTag);
+            this.peerSNSemanticTag.merge(toMerge);
+            change.changed(this.peerSNSemanticTag.getSuperTag()).commit();
+        }
     }
 
 }
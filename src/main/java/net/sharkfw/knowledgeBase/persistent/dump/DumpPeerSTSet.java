@@ -21,86 +21,86 @@ public class DumpPeerSTSet extends DumpSTSet implements PeerSTSet {
 
     @Override
     public PeerSemanticTag createPeerSemanticTag(String name, String[] sis, String[] addresses) throws SharkKBException {
-        PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, sis, addresses);
-        this.kb.persist();
-        return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        synchronized (this.kb) {
+            PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, sis, addresses);
+            this.created(peerSemanticTag);
+            return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        }
     }
 
     @Override
     public PeerSemanticTag createPeerSemanticTag(String name, String[] sis, String address) throws SharkKBException {
-        PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, sis, address);
-        this.kb.persist();
-        return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        synchronized (this.kb) {
+            PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, sis, address);
+            this.created(peerSemanticTag);
+            return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        }
 
     }
 
     @Override
     public PeerSemanticTag createPeerSemanticTag(String name, String si, String[] addresses) throws SharkKBException {
-        PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, si, addresses);
-        this.kb.persist();
-        return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        synchronized (this.kb) {
+            PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, si, addresses);
+            this.created(peerSemanticTag);
+            return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        }
     }
 
     @Override
     public PeerSemanticTag createPeerSemanticTag(String name, String si, String address) throws SharkKBException {
-        PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, si, address);
-        this.kb.persist();
-        return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        synchronized (this.kb) {
+            PeerSemanticTag peerSemanticTag = this.peerSTSet.createPeerSemanticTag(name, si, address);
+            this.created(peerSemanticTag);
+            return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
+        }
     }
 
     @Override
     public PeerSemanticTag getSemanticTag(String[] sis) throws SharkKBException {
         PeerSemanticTag peerSemanticTag = this.peerSTSet.getSemanticTag(sis);
-        this.kb.persist();
         return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
     }
 
     @Override
     public PeerSemanticTag getSemanticTag(String si) throws SharkKBException {
         PeerSemanticTag peerSemanticTag = this.peerSTSet.getSemanticTag(si);
-        this.kb.persist();
         return new DumpPeerSemanticTag(this.kb, peerSemanticTag);
     }
 
     @Override
     public PeerSTSet fragment(SemanticTag anchor) throws SharkKBException{
         PeerSTSet fragment = this.peerSTSet.fragment(anchor);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, fragment);
     }
 
     @Override
     public PeerSTSet fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
         PeerSTSet fragment = this.peerSTSet.fragment(anchor, fp);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, fragment);
     }
 
     @Override
     public PeerSTSet contextualize(Enumeration<SemanticTag> anchor, FragmentationParameter fp) throws SharkKBException {
         PeerSTSet contextualize = this.peerSTSet.contextualize(anchor, fp);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, contextualize);
     }
 
     @Override
     public PeerSTSet contextualize(Enumeration<SemanticTag> anchor) throws SharkKBException {
         PeerSTSet contextualize = this.peerSTSet.contextualize(anchor);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, contextualize);
     }
 
     @Override
     public PeerSTSet contextualize(STSet context) throws SharkKBException {
         PeerSTSet contextualize = this.peerSTSet.contextualize(context);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, contextualize);
     }
 
     @Override
     public PeerSTSet contextualize(STSet context, FragmentationParameter fp) throws SharkKBException {
         PeerSTSet contextualize = this.peerSTSet.contextualize(context, fp);
-        this.kb.persist();
         return new DumpPeerSTSet(this.kb, contextualize);
     }
 
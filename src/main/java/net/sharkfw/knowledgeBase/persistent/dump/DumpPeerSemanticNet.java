@@ -25,31 +25,39 @@ public class DumpPeerSemanticNet extends DumpSemanticNet implements PeerSemantic
 
     @Override
     public PeerSNSemanticTag createSemanticTag(String name, String[] sis, String[] addresses) throws SharkKBException {
-        PeerSNSemanticTag semanticTag = net.createSemanticTag(name, sis, addresses);
-        kb.persist();
-        return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            PeerSNSemanticTag semanticTag = net.createSemanticTag(name, sis, addresses);
+            this.created(semanticTag);
+            return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public PeerSNSemanticTag createSemanticTag(String name, String si, String[] addresses) throws SharkKBException {
-        PeerSNSemanticTag semanticTag = net.createSemanticTag(name, si, addresses);
-        kb.persist();
-        return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            PeerSNSemanticTag semanticTag = net.createSemanticTag(name, si, addresses);
+            this.created(semanticTag);
+            return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        }
 
     }
 
     @Override
     public PeerSNSemanticTag createSemanticTag(String name, String si, String address) throws SharkKBException {
-        PeerSNSemanticTag semanticTag = net.createSemanticTag(name, si, address);
-        kb.persist();
-        return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            PeerSNSemanticTag semanticTag = net.createSemanticTag(name, si, address);
+            this.created(semanticTag);
+            return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public PeerSNSemanticTag createSemanticTag(String name, String[] sis, String address) throws SharkKBException {
-        PeerSNSemanticTag semanticTag = net.createSemanticTag(name, sis, address);
-        kb.persist();
-        return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            PeerSNSemanticTag semanticTag = net.createSemanticTag(name, sis, address);
+            this.created(semanticTag);
+            return new DumpPeerSNSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
@@ -66,21 +74,18 @@ public class DumpPeerSemanticNet extends DumpSemanticNet implements PeerSemantic
     @Override
     public PeerSNSemanticTag getSemanticTag(String[] si) throws SharkKBException {
         PeerSNSemanticTag semanticTag = this.net.getSemanticTag(si);
-        this.kb.persist();
         return new DumpPeerSNSemanticTag(this.kb, semanticTag);
     }
 
     @Override
     public PeerSNSemanticTag getSemanticTag(String si) throws SharkKBException {
         PeerSNSemanticTag semanticTag = this.net.getSemanticTag(si);
-        this.kb.persist();
         return new DumpPeerSNSemanticTag(this.kb, semanticTag);
     }
 
     @Override
     public PeerSemanticNet fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
         PeerSemanticNet fragment = this.net.fragment(anchor, fp);
-        this.kb.persist();
         return new DumpPeerSemanticNet(this.kb, fragment);
     }
 }
@@ -21,19 +21,25 @@ public class DumpPeerSemanticTag extends DumpSemanticTag implements PeerSemantic
 
     @Override
     public void setAddresses(String[] addresses) {
-        this.peerSemanticTag.setAddresses(addresses);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSemanticTag.setAddresses(addresses);
+            this.changed();
+        }
     }
 
     @Override
     public void removeAddress(String address) {
-        this.peerSemanticTag.removeAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSemanticTag.removeAddress(address);
+            this.changed();
+        }
     }
 
     @Override
     public void addAddress(String address) {
-        this.peerSemanticTag.addAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerSemanticTag.addAddress(address);
+            this.changed();
+        }
     }
 }
@@ -21,19 +21,25 @@ public class DumpPeerTXSemanticTag extends DumpTXSemanticTag implements PeerTXSe
 
     @Override
     public void setAddresses(String[] addresses) {
-        this.peerTXSemanticTag.setAddresses(addresses);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerTXSemanticTag.setAddresses(addresses);
+            this.changed();
+        }
     }
 
     @Override
     public void removeAddress(String address) {
-        this.peerTXSemanticTag.removeAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerTXSemanticTag.removeAddress(address);
+            this.changed();
+        }
     }
 
     @Override
     public void addAddress(String address) {
-        this.peerTXSemanticTag.addAddress(address);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.peerTXSemanticTag.addAddress(address);
+            this.changed();
+        }
     }
 }
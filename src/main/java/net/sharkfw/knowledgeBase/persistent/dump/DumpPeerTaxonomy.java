@@ -21,7 +21,6 @@ public class DumpPeerTaxonomy extends DumpTaxonomy implements PeerTaxonomy {
     @Override
     public PeerTaxonomy resolveSuperPeers(PeerTXSemanticTag pstGroup) throws SharkKBException {
         PeerTaxonomy peerTaxonomy = this.peerTaxonomy.resolveSuperPeers(pstGroup);
-        kb.persist();
         return new DumpPeerTaxonomy(kb, peerTaxonomy);
     }
 
@@ -32,42 +31,53 @@ public class DumpPeerTaxonomy extends DumpTaxonomy implements PeerTaxonomy {
 
     @Override
     public PeerTXSemanticTag createPeerTXSemanticTag(String name, String[] sis, String[] addresses) throws SharkKBException {
-        PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, sis, addresses);
-        kb.persist();
-        return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        synchronized (this.kb) {
+            PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, sis, addresses);
+            this.created(peerTXSemanticTag);
+            return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        }
     }
 
     @Override
     public PeerTXSemanticTag createPeerTXSemanticTag(String name, String si, String[] addresses) throws SharkKBException {
-        PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, si, addresses);
-        kb.persist();
-        return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        synchronized (this.kb) {
+            PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, si, addresses);
+            this.created(peerTXSemanticTag);
+            return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        }
     }
 
     @Override
     public PeerTXSemanticTag createPeerTXSemanticTag(String name, String[] sis, String address) throws SharkKBException {
-        PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, sis, address);
-        kb.persist();
-        return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        synchronized (this.kb) {
+            PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, sis, address);
+            this.created(peerTXSemanticTag);
+            return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        }
     }
 
     @Override
     public PeerTXSemanticTag createPeerTXSemanticTag(String name, String si, String address) throws SharkKBException {
-        PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, si, address);
-        kb.persist();
-        return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        synchronized (this.kb) {
+            PeerTXSemanticTag peerTXSemanticTag = peerTaxonomy.createPeerTXSemanticTag(name, si, address);
+            this.created(peerTXSemanticTag);
+            return new DumpPeerTXSemanticTag(kb, peerTXSemanticTag);
+        }
     }
 
     @Override
     public void move(PeerTXSemanticTag superPST, PeerTXSemanticTag subPST) throws SharkKBException {
-        peerTaxonomy.move(superPST, subPST);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.moved(superPST, subPST);
+            this.peerTaxonomy.move((PeerTXSemanticTag) DumpSemanticTag.unwrap(superPST),
+                    (PeerTXSemanticTag) DumpSemanticTag.unwrap(subPST));
+            change.commit();
+        }
     }
 
     @Override
     public PeerTaxonomy contextualize(PeerSTSet context, FragmentationParameter fp) throws SharkKBException {
         PeerTaxonomy contextualize = peerTaxonomy.contextualize(context, fp);
-        kb.persist();
         return new DumpPeerTaxonomy(kb, contextualize);
     }
 
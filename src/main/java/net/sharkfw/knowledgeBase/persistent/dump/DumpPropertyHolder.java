@@ -8,7 +8,7 @@ import java.util.Enumeration;
 /**
  * Created by j4rvis on 2/27/17.
  */
-public class DumpPropertyHolder implements PropertyHolder {
+public abstract class DumpPropertyHolder implements PropertyHolder {
 
     protected final DumpSharkKB kb;
     private final PropertyHolder propertyHolder;
@@ -20,8 +20,10 @@ public class DumpPropertyHolder implements PropertyHolder {
 
     @Override
     public void setProperty(String name, String value) throws SharkKBException {
-        this.propertyHolder.setProperty(name, value);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.propertyHolder.setProperty(name, value);
+            this.changed();
+        }
     }
 
     @Override
@@ -31,14 +33,18 @@ public class DumpPropertyHolder implements PropertyHolder {
 
     @Override
     public void setProperty(String name, String value, boolean transfer) throws SharkKBException {
-        this.propertyHolder.setProperty(name, value, transfer);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.propertyHolder.setProperty(name, value, transfer);
+            this.changed();
+        }
     }
 
     @Override
     public void removeProperty(String name) throws SharkKBException {
-        this.propertyHolder.removeProperty(name);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.propertyHolder.removeProperty(name);
+            this.changed();
+        }
     }
 
     @Override
@@ -50,4 +56,9 @@ public class DumpPropertyHolder implements PropertyHolder {
     public Enumeration<String> propertyNames(boolean all) throws SharkKBException {
         return this.propertyHolder.propertyNames(all);
     }
+
+    /**
+     * Properties were changed - called with the lock of the kb.
+     */
+    protected abstract void changed();
 }
@@ -51,19 +51,28 @@ public class DumpSNSemanticTag extends DumpSemanticTag implements SNSemanticTag
 
     @Override
     public void setPredicate(String type, SNSemanticTag target) {
-        this.snSemanticTag.setPredicate(type, target);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.snSemanticTag);
+            this.snSemanticTag.setPredicate(type, (SNSemanticTag) DumpSemanticTag.unwrap(target));
+            change.commit();
+        }
     }
 
     @Override
     public void removePredicate(String type, SNSemanticTag target) {
-        this.snSemanticTag.removePredicate(type, target);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.snSemanticTag);
+            this.snSemanticTag.removePredicate(type, (SNSemanticTag) DumpSemanticTag.unwrap(target));
+            change.commit();
+        }
     }
 
     @Override
     public void merge(SNSemanticTag toMerge) {
-        this.snSemanticTag.merge(toMerge);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.snSemanticTag);
+            this.snSemanticTag.merge(toMerge);
+            change.commit();
+        }
     }
 }
@@ -22,47 +22,61 @@ public class DumpSTSet implements STSet {
 
     @Override
     public SemanticTag merge(SemanticTag tag) throws SharkKBException {
-        SemanticTag merge = this.set.merge(tag);
-        this.kb.persist();
-        return new DumpSemanticTag(this.kb, merge);
+        synchronized (this.kb) {
+            SemanticTag merge = this.set.merge(tag);
+            this.created(merge);
+            return new DumpSemanticTag(this.kb, merge);
+        }
     }
 
     @Override
     public SemanticTag createSemanticTag(String name, String[] sis) throws SharkKBException {
-        SemanticTag semanticTag = this.set.createSemanticTag(name, sis);
-        this.kb.persist();
-        return new DumpSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            SemanticTag semanticTag = this.set.createSemanticTag(name, sis);
+            this.created(semanticTag);
+            return new DumpSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public SemanticTag createSemanticTag(String name, String si) throws SharkKBException {
-        SemanticTag semanticTag = this.set.createSemanticTag(name, si);
-        this.kb.persist();
-        return new DumpSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            SemanticTag semanticTag = this.set.createSemanticTag(name, si);
+            this.created(semanticTag);
+            return new DumpSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public void removeSemanticTag(SemanticTag tag) throws SharkKBException {
-        this.set.removeSemanticTag(tag);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().removed(tag);
+            this.set.removeSemanticTag(tag);
+            change.commit();
+        }
     }
 
     @Override
     public void removeSemanticTag(String si) throws SharkKBException {
-        this.set.removeSemanticTag(si);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().removed(this.set.getSemanticTag(si));
+            this.set.removeSemanticTag(si);
+            change.commit();
+        }
     }
 
     @Override
     public void removeSemanticTag(String[] sis) throws SharkKBException {
-        this.set.removeSemanticTag(sis);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().removed(this.set.getSemanticTag(sis));
+            this.set.removeSemanticTag(sis);
+            change.commit();
+        }
     }
 
     @Override
     public void setEnumerateHiddenTags(boolean hide) {
         this.set.setEnumerateHiddenTags(hide);
-        this.kb.persist();
     }
 
     @Override
@@ -78,14 +92,12 @@ public class DumpSTSet implements STSet {
     @Override
     public SemanticTag getSemanticTag(String[] si) throws SharkKBException {
         SemanticTag semanticTag = this.set.getSemanticTag(si);
-        this.kb.persist();
         return new DumpSemanticTag(this.kb, semanticTag);
     }
 
     @Override
     public SemanticTag getSemanticTag(String si) throws SharkKBException {
         SemanticTag semanticTag = this.set.getSemanticTag(si);
-        this.kb.persist();
         return new DumpSemanticTag(this.kb, semanticTag);
     }
 
@@ -102,7 +114,6 @@ public class DumpSTSet implements STSet {
     @Override
     public STSet fragment(SemanticTag anchor) throws SharkKBException {
         STSet fragment = this.set.fragment(anchor);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
     }
 
@@ -115,27 +126,23 @@ public class DumpSTSet implements STSet {
     @Override
     public void setDefaultFP(FragmentationParameter fp) {
         this.set.setDefaultFP(fp);
-        this.kb.persist();
     }
 
     @Override
     public STSet fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
         STSet fragment = this.set.fragment(anchor, fp);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
     }
 
     @Override
     public STSet contextualize(Enumeration<SemanticTag> anchorSet, FragmentationParameter fp) throws SharkKBException {
         STSet fragment = this.set.contextualize(anchorSet, fp);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
     }
 
     @Override
     public STSet contextualize(Enumeration<SemanticTag> anchorSet) throws SharkKBException {
         STSet fragment = this.set.contextualize(anchorSet);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
 
     }
@@ -143,33 +150,50 @@ public class DumpSTSet implements STSet {
     @Override
     public STSet contextualize(STSet context, FragmentationParameter fp) throws SharkKBException {
         STSet fragment = this.set.contextualize(context, fp);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
     }
 
     @Override
     public STSet contextualize(STSet context) throws SharkKBException {
         STSet fragment = this.set.contextualize(context);
-        this.kb.persist();
         return new DumpSTSet(this.kb, fragment);
     }
 
     @Override
     public void merge(STSet stSet) throws SharkKBException {
-        this.set.contextualize(stSet);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.set.merge(stSet);
+            this.merged(stSet);
+        }
     }
 
     @Override
     public void addListener(STSetListener listen) {
         this.set.addListener(listen);
-        this.kb.persist();
     }
 
     @Override
     public void removeListener(STSetListener listener) throws SharkKBException {
         this.set.removeListener(listener);
-        this.kb.persist();
+    }
+
+    /**
+     * Journals a tag created or merged by this set.
+     */
+    protected void created(SemanticTag tag) {
+        this.kb.tagChange().changed(tag).commit();
+    }
+
+    /**
+     * Journals tags of this set which were merged with those of source.
+     */
+    protected void merged(STSet source) throws SharkKBException {
+        DumpSharkKB.TagChange change = this.kb.tagChange();
+        Enumeration<SemanticTag> tags = source.tags();
+        while (tags != null && tags.hasMoreElements()) {
+            change.changed(this.set.getSemanticTag(tags.nextElement().getSI()));
+        }
+        change.commit();
     }
 
     @Override
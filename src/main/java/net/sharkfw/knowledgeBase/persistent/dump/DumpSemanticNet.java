@@ -23,87 +23,100 @@ public class DumpSemanticNet extends DumpSTSet implements SemanticNet {
 
     @Override
     public void removeSemanticTag(SNSemanticTag tag) throws SharkKBException {
-        net.removeSemanticTag(tag);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().removed(tag);
+            this.net.removeSemanticTag((SNSemanticTag) DumpSemanticTag.unwrap(tag));
+            change.commit();
+        }
     }
 
     @Override
     public void setPredicate(SNSemanticTag source, SNSemanticTag target, String type) throws SharkKBException {
-        net.setPredicate(source, target, type);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(source);
+            this.net.setPredicate((SNSemanticTag) DumpSemanticTag.unwrap(source),
+                    (SNSemanticTag) DumpSemanticTag.unwrap(target), type);
+            change.commit();
+        }
     }
 
     @Override
     public void removePredicate(SNSemanticTag source, SNSemanticTag target, String type) throws SharkKBException {
-        net.removePredicate(source, target, type);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(source);
+            this.net.removePredicate((SNSemanticTag) DumpSemanticTag.unwrap(source),
+                    (SNSemanticTag) DumpSemanticTag.unwrap(target), type);
+            change.commit();
+        }
     }
 
     @Override
     public void merge(SemanticNet remoteSemanticNet) throws SharkKBException {
-        net.merge(remoteSemanticNet);
-        kb.persist();
+        synchronized (this.kb) {
+            this.net.merge(remoteSemanticNet);
+            this.merged(remoteSemanticNet);
+        }
     }
 
     @Override
     public void add(SemanticTag tag) throws SharkKBException {
-        net.add(tag);
-        kb.persist();
+        synchronized (this.kb) {
+            this.net.add(tag);
+            this.created(this.net.getSemanticTag(tag.getSI()));
+        }
     }
 
     @Override
     public SNSemanticTag createSemanticTag(String name, String[] sis) throws SharkKBException {
-        SNSemanticTag semanticTag = this.net.createSemanticTag(name, sis);
-        this.kb.persist();
-        return new DumpSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            SNSemanticTag semanticTag = this.net.createSemanticTag(name, sis);
+            this.created(semanticTag);
+            return new DumpSNSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public SNSemanticTag createSemanticTag(String name, String si) throws SharkKBException {
-        SNSemanticTag semanticTag = this.net.createSemanticTag(name, si);
-        this.kb.persist();
-        return new DumpSNSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            SNSemanticTag semanticTag = this.net.createSemanticTag(name, si);
+            this.created(semanticTag);
+            return new DumpSNSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public SNSemanticTag getSemanticTag(String[] si) throws SharkKBException {
         SNSemanticTag semanticTag = this.net.getSemanticTag(si);
-        this.kb.persist();
         return new DumpSNSemanticTag(this.kb, semanticTag);
     }
 
     @Override
     public SNSemanticTag getSemanticTag(String si) throws SharkKBException {
         SNSemanticTag semanticTag = this.net.getSemanticTag(si);
-        this.kb.persist();
         return new DumpSNSemanticTag(this.kb, semanticTag);
     }
 
     @Override
     public SemanticNet fragment(SemanticTag anchor) throws SharkKBException {
         SemanticNet fragment = this.net.fragment(anchor);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
     }
 
     @Override
     public SemanticNet fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
         SemanticNet fragment = this.net.fragment(anchor, fp);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
     }
 
     @Override
     public SemanticNet contextualize(Enumeration<SemanticTag> anchorSet, FragmentationParameter fp) throws SharkKBException {
         SemanticNet fragment = this.net.contextualize(anchorSet, fp);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
     }
 
     @Override
     public SemanticNet contextualize(Enumeration<SemanticTag> anchorSet) throws SharkKBException {
         SemanticNet fragment = this.net.contextualize(anchorSet);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
 
     }
@@ -111,27 +124,29 @@ public class DumpSemanticNet extends DumpSTSet implements SemanticNet {
     @Override
     public SemanticNet contextualize(STSet context, FragmentationParameter fp) throws SharkKBException {
         SemanticNet fragment = this.net.contextualize(context, fp);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
     }
 
     @Override
     public SemanticNet contextualize(STSet context) throws SharkKBException {
         SemanticNet fragment = this.net.contextualize(context);
-        this.kb.persist();
         return new DumpSemanticNet(this.kb, fragment);
     }
 
     @Override
     public SNSemanticTag merge(SemanticTag source) throws SharkKBException{
-        SNSemanticTag merge = this.net.merge(source);
-        kb.persist();
-        return new DumpSNSemanticTag(this.kb, merge);
+        synchronized (this.kb) {
+            SNSemanticTag merge = this.net.merge(source);
+            this.created(merge);
+            return new DumpSNSemanticTag(this.kb, merge);
+        }
     }
 
     @Override
     public void merge(STSet stSet) throws SharkKBException {
-        this.net.contextualize(stSet);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.net.merge(stSet);
+            this.merged(stSet);
+        }
     }
 }
@@ -16,6 +16,23 @@ public class DumpSemanticTag extends DumpSystemPropertyHolder implements Semanti
         semanticTag = tag;
     }
 
+    SemanticTag getWrappedTag() {
+        return this.semanticTag;
+    }
+
+    /**
+     * @param tag
+     * @return tag wrapped by tag or tag itself
+     */
+    static SemanticTag unwrap(SemanticTag tag) {
+        return tag instanceof DumpSemanticTag ? ((DumpSemanticTag) tag).getWrappedTag() : tag;
+    }
+
+    @Override
+    protected void changed() {
+        this.kb.tagChange().changed(this.semanticTag).commit();
+    }
+
     @Override
     public String getName() {
         return this.semanticTag.getName();
@@ -28,32 +45,43 @@ public class DumpSemanticTag extends DumpSystemPropertyHolder implements Semanti
 
     @Override
     public void removeSI(String si) throws SharkKBException {
-        this.semanticTag.removeSI(si);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.semanticTag);
+            this.semanticTag.removeSI(si);
+            change.commit();
+        }
     }
 
     @Override
     public void addSI(String si) throws SharkKBException {
-        this.semanticTag.addSI(si);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.semanticTag);
+            this.semanticTag.addSI(si);
+            change.commit();
+        }
     }
 
     @Override
     public void setName(String newName) {
-        this.semanticTag.setName(newName);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.semanticTag.setName(newName);
+            this.changed();
+        }
     }
 
     @Override
     public void merge(SemanticTag st) {
-        this.semanticTag.merge(st);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.semanticTag);
+            this.semanticTag.merge(st);
+            change.commit();
+        }
     }
 
     @Override
     public void setHidden(boolean isHidden) {
+        // hidden flag isn't part of a dump
         this.semanticTag.setHidden(isHidden);
-        this.kb.persist();
     }
 
     @Override
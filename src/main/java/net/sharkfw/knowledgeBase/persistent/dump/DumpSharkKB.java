@@ -8,24 +8,92 @@ import net.sharkfw.asip.serialization.ASIPKnowledgeConverter;
 import net.sharkfw.asip.serialization.ASIPMessageSerializerHelper;
 import net.sharkfw.asip.serialization.ASIPSerializerException;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.inmemory.InMemoInformation;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.system.L;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by j4rvis on 2/27/17.
+ *
+ * Without journal each change rewrites the whole file. With a journal
+ * ({@link DumpJournal}) information and properties changes are appended to
+ * a journal file next to the dump file. The dump file becomes a snapshot: it
+ * is rewritten in background when the journal exceeds the compaction
+ * threshold. Opening a journaled kb reads the snapshot and replays the journal.
+ *
+ * Changes of vocabulary tags made through the wrappers of this kb (e.g.
+ * {@link DumpSemanticTag}, {@link DumpSTSet}) are journaled as well: a record
+ * holds the state of changed tags - including their predicates - and the
+ * subject identifiers of removed tags. Only changes of tags which aren't part
+ * of the vocabulary (e.g. of a fragment) still write a whole snapshot.
  */
 public class DumpSharkKB implements SharkKB {
 
     private final int CONFIG_JSON_LENGTH = 9;
 
+    public static final String JOURNAL_EXTENSION = ".journal";
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    // journal records - replaying a record twice doesn't change the result
+    static final byte INFORMATION_PUT = 1;
+    static final byte INFORMATION_REMOVE = 2;
+    static final byte SPACE_INFORMATION_REMOVE = 3;
+    static final byte SPACE_REMOVE = 4;
+    static final byte PROPERTY = 5;
+    static final byte SYSTEM_PROPERTY = 6;
+    static final byte OWNER = 7;
+    static final byte TAGS = 8;
+
+    private static final String ID = "ID";
+    private static final String NAME = "NAME";
+    private static final String VALUE = "VALUE";
+    private static final String TRANSFER = "TRANSFER";
+    private static final String CONTENT_TYPE = "CONTENT_TYPE";
+    private static final String SPACE = "SPACE";
+    private static final String OWNER_TAG = "OWNER";
+    private static final String DIMENSION = "DIMENSION";
+    private static final String SIS = "SIS";
+    private static final String TAG = "TAG";
+    private static final String PREDICATES = "PREDICATES";
+    private static final String CHANGED = "CHANGED";
+    private static final String REMOVED = "REMOVED";
+
+    // vocabulary dimensions - named like in a serialized vocabulary
+    private static final String[] DIMENSIONS = {
+            SharkVocabulary.TOPICS, SharkVocabulary.TYPES, SharkVocabulary.PEERS,
+            SharkVocabulary.LOCATIONS, SharkVocabulary.TIMES};
+
     private SharkKB sharkKB;
     private final File file;
 
+    private DumpJournal journal = null;
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private ExecutorService compactor = null;
+    private boolean compactionScheduled = false;
+    // incremented with each stored snapshot
+    private long snapshotGeneration = 0;
+
     public DumpSharkKB(InMemoSharkKB sharkKB, File file) {
         this.sharkKB = sharkKB;
         this.file = file;
@@ -39,7 +107,46 @@ public class DumpSharkKB implements SharkKB {
         read();
     }
 
+    /**
+     * Creates a journaled kb - an existing journal is dropped.
+     *
+     * @param sharkKB
+     * @param file snapshot file - journal is stored with {@link #JOURNAL_EXTENSION}
+     * @param fsyncPolicy
+     */
+    public DumpSharkKB(InMemoSharkKB sharkKB, File file, DumpJournal.FsyncPolicy fsyncPolicy) {
+        this.sharkKB = sharkKB;
+        this.file = file;
+        this.journal = new DumpJournal(new File(file.getPath() + JOURNAL_EXTENSION), fsyncPolicy);
+        createFileIfNotExists();
+        this.persist();
+    }
+
+    /**
+     * Opens a journaled kb: snapshot is read and journal is replayed.
+     *
+     * @param file snapshot file - journal is stored with {@link #JOURNAL_EXTENSION}
+     * @param fsyncPolicy
+     */
+    public DumpSharkKB(File file, DumpJournal.FsyncPolicy fsyncPolicy) {
+        this.file = file;
+        this.journal = new DumpJournal(new File(file.getPath() + JOURNAL_EXTENSION), fsyncPolicy);
+        createFileIfNotExists();
+        read();
+        try {
+            this.journal.replay(new JournalReplay());
+        } catch (IOException e) {
+            L.w("cannot replay journal: " + e.getMessage(), this);
+        }
+    }
+
     private void read(){
+        if(this.file.length() == 0) {
+            // nothing persisted yet
+            this.sharkKB = new InMemoSharkKB();
+            return;
+        }
+
         FileInputStream stream = null;
         ByteArrayOutputStream buffer = null;
         try {
@@ -107,12 +214,95 @@ public class DumpSharkKB implements SharkKB {
         }
     }
 
-    public void persist(){
-        FileOutputStream stream = null;
+    /**
+     * Writes the whole kb. A journaled kb writes a new snapshot and clears the journal.
+     */
+    public synchronized void persist(){
+        if(this.journal == null) {
+            this.writeSnapshot(this.file, false);
+            return;
+        }
+
+        File tmpFile = new File(this.file.getPath() + ".tmp");
+        if(!this.writeSnapshot(tmpFile, true)) {
+            // journal still contains all changes
+            return;
+        }
         try {
-            ASIPKnowledgeConverter converter = ASIPMessageSerializerHelper.serializeKB(this.sharkKB);
+            this.moveSnapshot(tmpFile);
+            // rotated records of a running compaction are included as well
+            this.journal.truncate();
+        } catch (IOException e) {
+            L.w("cannot write snapshot: " + e.getMessage(), this);
+        }
+    }
 
-            stream = new FileOutputStream(this.file);
+    private void moveSnapshot(File tmpFile) throws IOException {
+        try {
+            Files.move(tmpFile.toPath(), this.file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.snapshotGeneration++;
+    }
+
+    /**
+     * Writes a snapshot without blocking writers for the whole time: the
+     * journal is rotated and the kb is serialized with the lock held, content
+     * is written and synced without it. Changes meanwhile go to the new
+     * journal. If content changes before it is written, or writing fails,
+     * the snapshot is dropped and the rotated journal is kept.
+     */
+    private void compact() {
+        ASIPKnowledgeConverter converter;
+        long generation;
+        synchronized (this) {
+            this.compactionScheduled = false;
+            try {
+                converter = ASIPMessageSerializerHelper.serializeKB(this.sharkKB, true);
+                this.journal.rotate();
+            } catch (SharkKBException | IOException e) {
+                L.w("cannot compact journal: " + e.getMessage(), this);
+                return;
+            }
+            generation = this.snapshotGeneration;
+        }
+
+        File tmpFile = new File(this.file.getPath() + ".compact");
+        if(!this.writeSnapshot(converter, tmpFile, true)) {
+            tmpFile.delete();
+            return;
+        }
+
+        synchronized (this) {
+            if(generation != this.snapshotGeneration) {
+                // a newer snapshot was stored meanwhile
+                tmpFile.delete();
+                return;
+            }
+            try {
+                this.moveSnapshot(tmpFile);
+                this.journal.dropRotated();
+            } catch (IOException e) {
+                L.w("cannot write snapshot: " + e.getMessage(), this);
+            }
+        }
+    }
+
+    private boolean writeSnapshot(File target, boolean sync){
+        try {
+            return this.writeSnapshot(ASIPMessageSerializerHelper.serializeKB(this.sharkKB, true), target, sync);
+        } catch (SharkKBException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private boolean writeSnapshot(ASIPKnowledgeConverter converter, File target, boolean sync){
+        FileOutputStream stream = null;
+        try {
+            stream = new FileOutputStream(target);
 
             // Write length of serialized kb
             String format = String.format("%09d", converter.getSerializedKnowledge().length());
@@ -122,30 +312,612 @@ public class DumpSharkKB implements SharkKB {
             stream.write(converter.getSerializedKnowledge().getBytes(StandardCharsets.UTF_8));
 
             // Write content
-            stream.write(converter.getContent());
+            converter.streamContent(stream);
             stream.flush();
+            if(sync) {
+                stream.getFD().sync();
+            }
 
 //                L.d("Flushed to file: " + this.file.getName(), this);
+            return true;
 
-        } catch (SharkKBException e) {
-            e.printStackTrace();
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
             try {
-                stream.close();
+                if(stream != null) {
+                    stream.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        return false;
+    }
+
+    public boolean isJournaled() {
+        return this.journal != null;
+    }
+
+    /**
+     * @param compactionThreshold journal size in bytes which triggers
+     * writing a new snapshot in background
+     */
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @return journal size in bytes - 0 if kb isn't journaled
+     */
+    public long getJournalSize() {
+        return this.journal != null ? this.journal.size() : 0;
+    }
+
+    /**
+     * Waits for a running compaction and forces the journal to storage.
+     */
+    public void close() {
+        ExecutorService compactor;
+        synchronized (this) {
+            compactor = this.compactor;
+            this.compactor = null;
+        }
+        if(compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                L.w("cannot close journal: " + e.getMessage(), this);
+            }
+        }
+    }
+
+    /**
+     * Information was added or changed - called with the lock of this kb.
+     */
+    synchronized void informationChanged(ASIPInformation info) {
+        if(this.journal == null) {
+            this.persist();
+            return;
+        }
+        try {
+            String id = info.getProperty(InMemoInformation.INFO_ID_PROPERTY_NAME);
+            if(id == null) {
+                this.persist();
+                return;
+            }
+            JSONObject record = new JSONObject();
+            record.put(ID, id);
+            record.put(NAME, info.getName());
+            record.put(CONTENT_TYPE, info.getContentType());
+            record.put(SPACE, ASIPMessageSerializerHelper.serializeASIPSpace(info.getASIPSpace()).toString());
+            record.put(PropertyHolder.PROPERTIES, ASIPMessageSerializerHelper.serializeInformationProperties(info));
+            this.journal.append(INFORMATION_PUT, record, info);
+            this.compactLater();
+        } catch (SharkKBException | IOException | JSONException e) {
+            L.w("cannot journal information - write snapshot: " + e.getMessage(), this);
+            this.persist();
+        }
+    }
+
+    /**
+     * @param space information space information were merged into - may be null
+     */
+    synchronized void informationMerged(ASIPInformationSpace space) throws SharkKBException {
+        if(space == null) {
+            return;
+        }
+        Iterator<ASIPInformation> information = space.informations();
+        while(information != null && information.hasNext()) {
+            this.informationChanged(information.next());
+        }
+    }
+
+    /**
+     * @param id id of removed information - kb is written if null
+     */
+    synchronized void informationRemoved(String id) {
+        if(id == null) {
+            this.persist();
+            return;
+        }
+        JSONObject record = new JSONObject();
+        record.put(ID, id);
+        this.journal(INFORMATION_REMOVE, record);
+    }
+
+    /**
+     * Information inside that space were removed.
+     */
+    synchronized void informationRemoved(ASIPSpace space) throws SharkKBException {
+        this.journal(SPACE_INFORMATION_REMOVE, this.spaceRecord(space));
+    }
+
+    synchronized void informationSpaceRemoved(ASIPSpace space) throws SharkKBException {
+        this.journal(SPACE_REMOVE, this.spaceRecord(space));
+    }
+
+    /**
+     * @return true if that knowledge is this kb - extracted knowledge is a copy
+     */
+    boolean holds(Knowledge knowledge) {
+        return knowledge == this.sharkKB;
+    }
+
+    private synchronized void journal(byte type, JSONObject record) {
+        if(this.journal == null) {
+            this.persist();
+            return;
+        }
+        try {
+            this.journal.append(type, record, null);
+            this.compactLater();
+        } catch (IOException e) {
+            L.w("cannot journal change - write snapshot: " + e.getMessage(), this);
+            this.persist();
+        }
+    }
+
+    private JSONObject spaceRecord(ASIPSpace space) throws SharkKBException {
+        JSONObject record = new JSONObject();
+        record.put(SPACE, ASIPMessageSerializerHelper.serializeASIPSpace(space).toString());
+        return record;
+    }
+
+    private JSONObject propertyRecord(String name, String value, boolean transfer) {
+        JSONObject record = new JSONObject();
+        record.put(NAME, name);
+        if(value != null) {
+            record.put(VALUE, value);
+        }
+        record.put(TRANSFER, transfer);
+        return record;
+    }
+
+    /**
+     * Starts a change of vocabulary tags - see {@link TagChange}.
+     */
+    TagChange tagChange() {
+        return new TagChange();
+    }
+
+    /**
+     * Tags of one vocabulary change - journaled as a single record. Tags are
+     * to be passed before they are changed or removed, tags created by that
+     * change afterwards. Changing and committing requires the lock of this kb.
+     */
+    class TagChange {
+        private final List<TagEntry> changed = new ArrayList<>();
+        private final List<TagEntry> removed = new ArrayList<>();
+        // a tag isn't part of the vocabulary - a snapshot is written
+        private boolean snapshot = false;
+
+        /**
+         * @param tag state of that tag is journaled when the change is committed - ignored if null
+         */
+        TagChange changed(SemanticTag tag) {
+            this.add(this.changed, tag);
+            return this;
+        }
+
+        /**
+         * Tag and its neighbours in a semantic net - their predicates change as well.
+         */
+        TagChange removed(SemanticTag tag) {
+            tag = DumpSemanticTag.unwrap(tag);
+            if(this.add(this.removed, tag) && tag instanceof SNSemanticTag) {
+                SNSemanticTag snTag = (SNSemanticTag) tag;
+                Enumeration<String> names = snTag.predicateNames();
+                while(names != null && names.hasMoreElements()) {
+                    this.changed(snTag.targetTags(names.nextElement()));
+                }
+                names = snTag.targetPredicateNames();
+                while(names != null && names.hasMoreElements()) {
+                    this.changed(snTag.sourceTags(names.nextElement()));
+                }
+            }
+            return this;
+        }
+
+        private void changed(Enumeration<SNSemanticTag> tags) {
+            while(tags != null && tags.hasMoreElements()) {
+                this.changed(tags.nextElement());
+            }
+        }
+
+        private boolean add(List<TagEntry> entries, SemanticTag tag) {
+            if(tag == null) {
+                return false;
+            }
+            tag = DumpSemanticTag.unwrap(tag);
+            for(TagEntry entry : this.removed) {
+                if(entry.tag == tag) return false;
+            }
+            Iterator<TagEntry> changedEntries = this.changed.iterator();
+            while(changedEntries.hasNext()) {
+                if(changedEntries.next().tag == tag) {
+                    if(entries == this.changed) return false;
+                    // neighbour of a removed tag is removed as well
+                    changedEntries.remove();
+                }
+            }
+            String[] sis = tag.getSI();
+            String dimension = DumpSharkKB.this.dimensionOf(sis, tag);
+            if(dimension == null) {
+                this.snapshot = true;
+                return false;
+            }
+            entries.add(new TagEntry(tag, sis, dimension));
+            return true;
+        }
+
+        void commit() {
+            DumpSharkKB.this.journal(this);
+        }
+    }
+
+    private static class TagEntry {
+        private final SemanticTag tag;
+        // subject identifiers before that change - they find the tag when replayed
+        private final String[] sis;
+        private final String dimension;
+
+        private TagEntry(SemanticTag tag, String[] sis, String dimension) {
+            this.tag = tag;
+            this.sis = sis;
+            this.dimension = dimension;
+        }
+
+        private JSONObject serialize(boolean withState) throws SharkKBException {
+            JSONObject entry = new JSONObject();
+            entry.put(DIMENSION, this.dimension);
+            entry.put(SIS, new JSONArray(Arrays.asList(this.sis)));
+            if(!withState) {
+                return entry;
+            }
+            entry.put(TAG, ASIPMessageSerializerHelper.serializeTag(this.tag).toString());
+            if(this.tag instanceof SNSemanticTag && !SharkVocabulary.LOCATIONS.equals(this.dimension)
+                    && !SharkVocabulary.TIMES.equals(this.dimension)) {
+                entry.put(PREDICATES, serializePredicates((SNSemanticTag) this.tag));
+            }
+            return entry;
+        }
+    }
+
+    private static JSONObject serializePredicates(SNSemanticTag tag) {
+        JSONObject predicates = new JSONObject();
+        Enumeration<String> names = tag.predicateNames();
+        while(names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            JSONArray targets = new JSONArray();
+            Enumeration<SNSemanticTag> targetTags = tag.targetTags(name);
+            while(targetTags != null && targetTags.hasMoreElements()) {
+                targets.put(new JSONArray(Arrays.asList(targetTags.nextElement().getSI())));
+            }
+            predicates.put(name, targets);
+        }
+        return predicates;
+    }
+
+    private synchronized void journal(TagChange change) {
+        if(this.journal == null || change.snapshot) {
+            this.persist();
+            return;
+        }
+        if(change.changed.isEmpty() && change.removed.isEmpty()) {
+            return;
+        }
+        try {
+            JSONArray changed = new JSONArray();
+            for(TagEntry entry : change.changed) {
+                changed.put(entry.serialize(true));
+            }
+            JSONArray removed = new JSONArray();
+            for(TagEntry entry : change.removed) {
+                removed.put(entry.serialize(false));
+            }
+            JSONObject record = new JSONObject();
+            record.put(CHANGED, changed);
+            record.put(REMOVED, removed);
+            this.journal(TAGS, record);
+        } catch (SharkKBException | JSONException e) {
+            L.w("cannot journal tags - write snapshot: " + e.getMessage(), this);
+            this.persist();
+        }
+    }
+
+    /**
+     * @return dimension of the vocabulary holding exactly that tag - null if
+     * it isn't part of the vocabulary
+     */
+    private String dimensionOf(String[] sis, SemanticTag tag) {
+        if(sis == null || sis.length == 0) {
+            return null;
+        }
+        for(String dimension : DIMENSIONS) {
+            try {
+                if(getSTSet(this.sharkKB, dimension).getSemanticTag(sis) == tag) {
+                    return dimension;
+                }
+            } catch (SharkKBException e) {
+                // dimension not available - try next one
+            }
+        }
+        return null;
+    }
+
+    private static STSet getSTSet(SharkKB kb, String dimension) throws SharkKBException {
+        switch(dimension) {
+            case SharkVocabulary.TOPICS:
+                return kb.getTopicSTSet();
+            case SharkVocabulary.TYPES:
+                return kb.getTypeSTSet();
+            case SharkVocabulary.PEERS:
+                // peer set view wraps tags - taxonomy holds them
+                return kb.getPeersAsTaxonomy();
+            case SharkVocabulary.LOCATIONS:
+                return kb.getSpatialSTSet();
+            case SharkVocabulary.TIMES:
+                return kb.getTimeSTSet();
+            default:
+                throw new SharkKBException("unknown dimension: " + dimension);
+        }
+    }
+
+    private void compactLater() {
+        if(this.compactionScheduled || this.journal.size() < this.compactionThreshold) {
+            return;
+        }
+        if(this.compactor == null) {
+            this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "DumpSharkKB compaction " + DumpSharkKB.this.file.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        this.compactionScheduled = true;
+        this.compactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                DumpSharkKB.this.compact();
+            }
+        });
+    }
+
+    /**
+     * Applies journal records to the in memory kb.
+     */
+    private class JournalReplay implements DumpJournal.RecordHandler {
+
+        // information by id - built with the first record which needs it
+        private Map<String, ASIPInformation> information = null;
+
+        @Override
+        public void handleRecord(byte type, JSONObject record, byte[] content) throws Exception {
+            SharkKB kb = DumpSharkKB.this.sharkKB;
+            switch (type) {
+                case INFORMATION_PUT:
+                    String id = record.getString(ID);
+                    this.remove(id);
+                    ASIPSpace space = ASIPMessageSerializerHelper.deserializeASIPInterest(record.getString(SPACE));
+                    ASIPInformation info = kb.addInformation(record.optString(NAME, null), content, space);
+                    if(record.has(CONTENT_TYPE)) {
+                        info.setContentType(record.getString(CONTENT_TYPE));
+                    }
+                    ASIPMessageSerializerHelper.deserializeInformationProperties(info,
+                            record.getJSONArray(PropertyHolder.PROPERTIES));
+                    info.setProperty(InMemoInformation.INFO_ID_PROPERTY_NAME, id);
+                    this.getInformation().put(id, info);
+                    break;
+                case INFORMATION_REMOVE:
+                    this.remove(record.getString(ID));
+                    break;
+                case SPACE_INFORMATION_REMOVE:
+                    kb.removeInformation(ASIPMessageSerializerHelper.deserializeASIPInterest(record.getString(SPACE)));
+                    this.information = null;
+                    break;
+                case SPACE_REMOVE:
+                    kb.removeInformationSpace(ASIPMessageSerializerHelper.deserializeASIPInterest(record.getString(SPACE)));
+                    this.information = null;
+                    break;
+                case PROPERTY:
+                    if(record.has(VALUE)) {
+                        kb.setProperty(record.getString(NAME), record.getString(VALUE), record.getBoolean(TRANSFER));
+                    } else {
+                        kb.removeProperty(record.getString(NAME));
+                    }
+                    break;
+                case SYSTEM_PROPERTY:
+                    kb.setSystemProperty(record.getString(NAME), record.optString(VALUE, null));
+                    break;
+                case OWNER:
+                    kb.setOwner(ASIPMessageSerializerHelper.deserializePeerTag(record.getString(OWNER_TAG)));
+                    break;
+                case TAGS:
+                    this.replayTags(kb, record);
+                    break;
+                default:
+                    L.w("unknown journal record: " + type, this);
+            }
+        }
+
+        private void replayTags(SharkKB kb, JSONObject record) throws SharkKBException {
+            JSONArray removed = record.getJSONArray(REMOVED);
+            for(int i = 0; i < removed.length(); i++) {
+                JSONObject entry = removed.getJSONObject(i);
+                STSet set = getSTSet(kb, entry.getString(DIMENSION));
+                SemanticTag tag = set.getSemanticTag(strings(entry.getJSONArray(SIS)));
+                if(tag != null) {
+                    set.removeSemanticTag(tag);
+                }
+            }
+
+            JSONArray changed = record.getJSONArray(CHANGED);
+            SemanticTag[] tags = new SemanticTag[changed.length()];
+            for(int i = 0; i < changed.length(); i++) {
+                tags[i] = this.putTag(kb, changed.getJSONObject(i));
+            }
+            // predicates last - their targets can be part of that record
+            for(int i = 0; i < changed.length(); i++) {
+                JSONObject entry = changed.getJSONObject(i);
+                if(tags[i] instanceof SNSemanticTag && entry.has(PREDICATES)) {
+                    this.setPredicates(getSTSet(kb, entry.getString(DIMENSION)),
+                            (SNSemanticTag) tags[i], entry.getJSONObject(PREDICATES));
+                }
+            }
+        }
+
+        private SemanticTag putTag(SharkKB kb, JSONObject entry) throws SharkKBException {
+            String dimension = entry.getString(DIMENSION);
+            STSet set = getSTSet(kb, dimension);
+            String tagString = entry.getString(TAG);
+            JSONObject state = new JSONObject(tagString);
+            String[] sis = strings(state.getJSONArray(SemanticTag.SI));
+
+            SemanticTag tag = set.getSemanticTag(strings(entry.getJSONArray(SIS)));
+            if(tag == null) {
+                tag = set.getSemanticTag(sis);
+            }
+            if(tag == null) {
+                switch(dimension) {
+                    case SharkVocabulary.PEERS:
+                        ASIPMessageSerializerHelper.deserializePeerTag(set, tagString);
+                        break;
+                    case SharkVocabulary.LOCATIONS:
+                        ASIPMessageSerializerHelper.deserializeSpatialTag(set, tagString);
+                        break;
+                    case SharkVocabulary.TIMES:
+                        ASIPMessageSerializerHelper.deserializeTimeTag(set, tagString);
+                        break;
+                    default:
+                        ASIPMessageSerializerHelper.deserializeTag(set, tagString);
+                }
+                tag = set.getSemanticTag(sis);
+                if(tag == null) {
+                    return null;
+                }
+            }
+
+            if(state.has(SemanticTag.NAME)) {
+                tag.setName(state.getString(SemanticTag.NAME));
+            }
+            List<String> newSIs = Arrays.asList(sis);
+            for(String si : sis) {
+                if(!Arrays.asList(tag.getSI()).contains(si)) {
+                    tag.addSI(si);
+                }
+            }
+            for(String si : tag.getSI()) {
+                if(!newSIs.contains(si)) {
+                    tag.removeSI(si);
+                }
+            }
+            if(tag instanceof PeerSemanticTag && state.has(PeerSemanticTag.ADDRESSES)) {
+                ((PeerSemanticTag) tag).setAddresses(strings(state.getJSONArray(PeerSemanticTag.ADDRESSES)));
+            }
+
+            // same properties as in a snapshot - those to be transferred
+            Map<String, String> properties = new HashMap<>();
+            JSONArray propertyArray = new JSONArray(state.getString(PropertyHolder.PROPERTIES));
+            for(int i = 0; i < propertyArray.length(); i++) {
+                JSONObject property = propertyArray.getJSONObject(i);
+                properties.put(property.getString(PropertyHolder.NAME), property.getString(PropertyHolder.VALUE));
+            }
+            Enumeration<String> names = tag.propertyNames(false);
+            if(names != null) {
+                for(String name : Collections.list(names)) {
+                    if(!properties.containsKey(name)) {
+                        tag.removeProperty(name);
+                    }
+                }
+            }
+            for(Map.Entry<String, String> property : properties.entrySet()) {
+                tag.setProperty(property.getKey(), property.getValue());
+            }
+            return tag;
+        }
+
+        private void setPredicates(STSet set, SNSemanticTag tag, JSONObject predicates) throws SharkKBException {
+            Enumeration<String> names = tag.predicateNames();
+            if(names != null) {
+                for(String name : Collections.list(names)) {
+                    Enumeration<SNSemanticTag> targets = tag.targetTags(name);
+                    if(targets == null) continue;
+                    for(SNSemanticTag target : Collections.list(targets)) {
+                        tag.removePredicate(name, target);
+                    }
+                }
+            }
+
+            Iterator<String> recorded = predicates.keys();
+            while(recorded.hasNext()) {
+                String name = recorded.next();
+                JSONArray targets = predicates.getJSONArray(name);
+                for(int i = 0; i < targets.length(); i++) {
+                    SemanticTag target = set.getSemanticTag(strings(targets.getJSONArray(i)));
+                    if(target instanceof SNSemanticTag) {
+                        tag.setPredicate(name, (SNSemanticTag) target);
+                    }
+                }
+            }
+        }
+
+        private String[] strings(JSONArray array) {
+            String[] strings = new String[array.length()];
+            for(int i = 0; i < array.length(); i++) {
+                strings[i] = array.getString(i);
+            }
+            return strings;
+        }
+
+        private Map<String, ASIPInformation> getInformation() throws SharkKBException {
+            if(this.information == null) {
+                this.information = new HashMap<>();
+                Iterator<ASIPInformationSpace> spaces = DumpSharkKB.this.sharkKB.informationSpaces();
+                while(spaces.hasNext()) {
+                    Iterator<ASIPInformation> infos = spaces.next().informations();
+                    while(infos.hasNext()) {
+                        ASIPInformation info = infos.next();
+                        String id = info.getProperty(InMemoInformation.INFO_ID_PROPERTY_NAME);
+                        if(id != null) {
+                            this.information.put(id, info);
+                        }
+                    }
+                }
+            }
+            return this.information;
+        }
+
+        private void remove(String id) throws SharkKBException {
+            ASIPInformation info = this.getInformation().remove(id);
+            if(info != null) {
+                DumpSharkKB.this.sharkKB.removeInformation(info, info.getASIPSpace());
+            }
+        }
     }
 
     @Override
-    public void setSystemProperty(String name, String value) {
+    public synchronized void setSystemProperty(String name, String value) {
         this.sharkKB.setSystemProperty(name, value);
-        this.persist();
+        JSONObject record = new JSONObject();
+        record.put(NAME, name);
+        if(value != null) {
+            record.put(VALUE, value);
+        }
+        this.journal(SYSTEM_PROPERTY, record);
     }
 
     @Override
@@ -154,9 +926,19 @@ public class DumpSharkKB implements SharkKB {
     }
 
     @Override
-    public void setOwner(PeerSemanticTag owner) {
+    public synchronized void setOwner(PeerSemanticTag owner) {
         sharkKB.setOwner(owner);
-        this.persist();
+        if(this.journal == null || owner == null) {
+            this.persist();
+            return;
+        }
+        try {
+            JSONObject record = new JSONObject();
+            record.put(OWNER_TAG, ASIPMessageSerializerHelper.serializeTag(owner).toString());
+            this.journal(OWNER, record);
+        } catch (SharkKBException | JSONException e) {
+            this.persist();
+        }
     }
 
     @Override
@@ -167,7 +949,9 @@ public class DumpSharkKB implements SharkKB {
     @Override
     public ArrayList<ASIPSpace> assimilate(SharkKB target, ASIPSpace interest, FragmentationParameter[] backgroundFP, Knowledge knowledge, boolean learnTags, boolean deleteAssimilated) throws SharkKBException {
         ArrayList<ASIPSpace> assimilate = this.sharkKB.assimilate(target, interest, backgroundFP, knowledge, learnTags, deleteAssimilated);
-        this.persist();
+        if(deleteAssimilated) {
+            this.persist();
+        }
         ArrayList<ASIPSpace> list = new ArrayList<>();
         for (ASIPSpace asipSpace : assimilate) {
             list.add(new DumpASIPSpace(this, asipSpace));
@@ -178,35 +962,30 @@ public class DumpSharkKB implements SharkKB {
     @Override
     public Knowledge extract(ASIPSpace context) throws SharkKBException {
         Knowledge extract = this.sharkKB.extract(context);
-        persist();
         return new DumpKnowledge(this, extract);
     }
 
     @Override
     public Knowledge extract(ASIPSpace context, FragmentationParameter[] fp) throws SharkKBException {
         Knowledge extract = this.sharkKB.extract(context, fp);
-        persist();
         return new DumpKnowledge(this, extract);
     }
 
     @Override
     public Knowledge extract(ASIPSpace context, FragmentationParameter[] backgroundFP, PeerSemanticTag recipient) throws SharkKBException {
         Knowledge extract = this.sharkKB.extract(context, backgroundFP, recipient);
-        persist();
         return new DumpKnowledge(this, extract);
     }
 
     @Override
     public Knowledge extract(ASIPSpace context, FragmentationParameter[] backgroundFP, boolean cutGroups) throws SharkKBException {
         Knowledge extract = this.sharkKB.extract(context, backgroundFP, cutGroups);
-        persist();
         return new DumpKnowledge(this, extract);
     }
 
     @Override
     public Knowledge extract(SharkKB target, ASIPSpace context, FragmentationParameter[] backgroundFP, boolean cutGroups, PeerSemanticTag recipient) throws SharkKBException {
         Knowledge extract = this.sharkKB.extract(context, backgroundFP, recipient);
-        persist();
         return new DumpKnowledge(this, extract);
     }
 
@@ -223,14 +1002,12 @@ public class DumpSharkKB implements SharkKB {
     @Override
     public ASIPSpace createASIPSpace(SemanticTag topic, SemanticTag type, PeerSemanticTag approver, PeerSemanticTag sender, PeerSemanticTag receiver, TimeSemanticTag time, SpatialSemanticTag location, int direction) throws SharkKBException {
         ASIPSpace asipSpace = this.sharkKB.createASIPSpace(topic, type, approver, sender, receiver, time, location, direction);
-        persist();
         return new DumpASIPSpace(this, asipSpace);
     }
 
     @Override
     public ASIPSpace createASIPSpace(STSet topics, STSet types, PeerSTSet approvers, PeerSemanticTag sender, PeerSTSet receiver, TimeSTSet times, SpatialSTSet locations, int direction) throws SharkKBException {
         ASIPSpace asipSpace = this.sharkKB.createASIPSpace(topics, types, approvers, sender, receiver, times, locations, direction);
-        persist();
         return new DumpASIPSpace(this, asipSpace);
     }
 
@@ -312,70 +1089,75 @@ public class DumpSharkKB implements SharkKB {
     @Override
     public ASIPInterest contextualize(ASIPSpace as) throws SharkKBException {
         ASIPInterest contextualize = sharkKB.contextualize(as);
-        this.persist();
         return new DumpASIPInterest(this, contextualize);
     }
 
     @Override
     public ASIPInterest contextualize(ASIPSpace as, FPSet fps) throws SharkKBException {
         ASIPInterest contextualize = sharkKB.contextualize(as, fps);
-        this.persist();
         return new DumpASIPInterest(this, contextualize);
     }
 
     @Override
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
-        ASIPInformationSpace asipInformationSpace = sharkKB.mergeInformation(information, space);
-        this.persist();
+        ASIPInformationSpace asipInformationSpace;
+        synchronized (this) {
+            asipInformationSpace = sharkKB.mergeInformation(information, space);
+            this.informationMerged(asipInformationSpace);
+        }
         return new DumpASIPInformationSpace(this, asipInformationSpace);
     }
 
     @Override
-    public ASIPInformation addInformation(byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(content, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public ASIPInformation addInformation(InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(contentIS, numberOfBytes, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public ASIPInformation addInformation(String content, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(String content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(content, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(name, content, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public ASIPInformation addInformation(String name, byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(String name, byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(name, content, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public ASIPInformation addInformation(String name, InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
+    public synchronized ASIPInformation addInformation(String name, InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = sharkKB.addInformation(name, contentIS, numberOfBytes, semanticAnnotations);
-        this.persist();
+        this.informationChanged(asipInformation);
         return new DumpASIPInformation(this, asipInformation);
     }
 
     @Override
-    public void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
+    public synchronized void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
+        if(info instanceof DumpASIPInformation) {
+            info = ((DumpASIPInformation) info).getWrappedInformation();
+        }
+        String id = info.getProperty(InMemoInformation.INFO_ID_PROPERTY_NAME);
         this.sharkKB.removeInformation(info, infoSpace);
-        this.persist();
+        this.informationRemoved(id);
     }
 
     @Override
@@ -419,9 +1201,9 @@ public class DumpSharkKB implements SharkKB {
     }
 
     @Override
-    public void removeInformationSpace(ASIPSpace space) throws SharkKBException {
+    public synchronized void removeInformationSpace(ASIPSpace space) throws SharkKBException {
         sharkKB.removeInformationSpace(space);
-        this.persist();
+        this.informationSpaceRemoved(space);
     }
 
     @Override
@@ -445,9 +1227,9 @@ public class DumpSharkKB implements SharkKB {
     }
 
     @Override
-    public void removeInformation(ASIPSpace space) throws SharkKBException {
+    public synchronized void removeInformation(ASIPSpace space) throws SharkKBException {
         sharkKB.removeInformation(space);
-        this.persist();
+        this.informationRemoved(space);
     }
 
     @Override
@@ -461,9 +1243,9 @@ public class DumpSharkKB implements SharkKB {
     }
 
     @Override
-    public void setProperty(String name, String value) throws SharkKBException {
+    public synchronized void setProperty(String name, String value) throws SharkKBException {
         this.sharkKB.setProperty(name, value);
-        this.persist();
+        this.journal(PROPERTY, this.propertyRecord(name, value, true));
     }
 
     @Override
@@ -472,15 +1254,15 @@ public class DumpSharkKB implements SharkKB {
     }
 
     @Override
-    public void setProperty(String name, String value, boolean transfer) throws SharkKBException {
+    public synchronized void setProperty(String name, String value, boolean transfer) throws SharkKBException {
         this.sharkKB.setProperty(name, value, transfer);
-        this.persist();
+        this.journal(PROPERTY, this.propertyRecord(name, value, transfer));
     }
 
     @Override
-    public void removeProperty(String name) throws SharkKBException {
+    public synchronized void removeProperty(String name) throws SharkKBException {
         this.sharkKB.removeProperty(name);
-        this.persist();
+        this.journal(PROPERTY, this.propertyRecord(name, null, true));
     }
 
     @Override
@@ -496,18 +1278,15 @@ public class DumpSharkKB implements SharkKB {
     @Override
     public void semanticTagCreated(SemanticTag tag, STSet stset) {
         this.sharkKB.semanticTagCreated(tag, stset);
-        this.persist();
     }
 
     @Override
     public void semanticTagRemoved(SemanticTag tag, STSet stset) {
         this.sharkKB.semanticTagRemoved(tag, stset);
-        this.persist();
     }
 
     @Override
     public void semanticTagChanged(SemanticTag tag, STSet stset) {
         this.sharkKB.semanticTagChanged(tag, stset);
-        this.persist();
     }
 }
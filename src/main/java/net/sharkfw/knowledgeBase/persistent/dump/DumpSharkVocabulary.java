@@ -90,14 +90,12 @@ public class DumpSharkVocabulary implements SharkVocabulary {
     @Override
     public ASIPInterest contextualize(ASIPSpace as) throws SharkKBException {
         ASIPInterest contextualize = vocabulary.contextualize(as);
-        kb.persist();
         return new DumpASIPInterest(kb, contextualize);
     }
 
     @Override
     public ASIPInterest contextualize(ASIPSpace as, FPSet fps) throws SharkKBException {
         ASIPInterest contextualize = vocabulary.contextualize(as, fps);
-        kb.persist();
         return new DumpASIPInterest(kb, contextualize);
     }
 }
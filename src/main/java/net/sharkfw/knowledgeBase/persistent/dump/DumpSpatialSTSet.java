@@ -22,7 +22,6 @@ public class DumpSpatialSTSet extends DumpSTSet implements SpatialSTSet {
     @Override
     public SpatialSTSet contextualize(SpatialSTSet context, FragmentationParameter fp) throws SharkKBException {
         SpatialSTSet contextualize = this.spatialSTSet.contextualize(context, fp);
-        this.kb.persist();
         return new DumpSpatialSTSet(this.kb, contextualize);
     }
 
@@ -38,30 +37,32 @@ public class DumpSpatialSTSet extends DumpSTSet implements SpatialSTSet {
 
     @Override
     public SpatialSemanticTag createSpatialSemanticTag(String name, String[] sis, SharkGeometry geometry) throws SharkKBException {
-        SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.createSpatialSemanticTag(name, sis, geometry);
-        this.kb.persist();
-        return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
+        synchronized (this.kb) {
+            SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.createSpatialSemanticTag(name, sis, geometry);
+            this.created(spatialSemanticTag);
+            return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
+        }
     }
 
     @Override
     public SpatialSemanticTag createSpatialSemanticTag(String name, String[] sis, SharkGeometry[] geometries) throws SharkKBException {
-        SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.createSpatialSemanticTag(name, sis, geometries);
-        this.kb.persist();
-        return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
+        synchronized (this.kb) {
+            SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.createSpatialSemanticTag(name, sis, geometries);
+            this.created(spatialSemanticTag);
+            return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
+        }
 
     }
 
     @Override
     public SpatialSemanticTag getSpatialSemanticTag(String[] sis) throws SharkKBException {
         SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.getSpatialSemanticTag(sis);
-        this.kb.persist();
         return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
     }
 
     @Override
     public SpatialSemanticTag getSpatialSemanticTag(String si) throws SharkKBException {
         SpatialSemanticTag spatialSemanticTag = this.spatialSTSet.getSpatialSemanticTag(si);
-        this.kb.persist();
         return new DumpSpatialSemanticTag(this.kb, spatialSemanticTag);
     }
 
@@ -5,7 +5,7 @@ import net.sharkfw.knowledgeBase.SystemPropertyHolder;
 /**
  * Created by j4rvis on 2/28/17.
  */
-public class DumpSystemPropertyHolder extends DumpPropertyHolder implements SystemPropertyHolder{
+public abstract class DumpSystemPropertyHolder extends DumpPropertyHolder implements SystemPropertyHolder{
     private final SystemPropertyHolder systemPropertyHolder;
 
     public DumpSystemPropertyHolder(DumpSharkKB dumpSharkKB, SystemPropertyHolder systemPropertyHolder) {
@@ -15,8 +15,8 @@ public class DumpSystemPropertyHolder extends DumpPropertyHolder implements Syst
 
     @Override
     public void setSystemProperty(String name, String value) {
+        // system properties aren't part of a dump
         this.systemPropertyHolder.setSystemProperty(name, value);
-        this.kb.persist();
     }
 
     @Override
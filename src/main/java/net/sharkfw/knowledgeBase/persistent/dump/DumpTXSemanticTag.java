@@ -46,13 +46,22 @@ public class DumpTXSemanticTag extends DumpSemanticTag implements TXSemanticTag{
 
     @Override
     public void move(TXSemanticTag supertag) {
-        this.txSemanticTag.move(supertag);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange()
+                    .changed(this.txSemanticTag)
+                    .changed(this.txSemanticTag.getSuperTag())
+                    .changed(supertag);
+            this.txSemanticTag.move((TXSemanticTag) DumpSemanticTag.unwrap(supertag));
+            change.commit();
+        }
     }
 
     @Override
     public void merge(TXSemanticTag toMerge) {
-        this.txSemanticTag.merge(toMerge);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().changed(this.txSemanticTag);
+            this.txSemanticTag.merge(toMerge);
+            change.changed(this.txSemanticTag.getSuperTag()).commit();
+        }
     }
 }
@@ -20,33 +20,78 @@ public class DumpTaxonomy extends DumpSTSet implements Taxonomy {
 
     @Override
     public void merge(TXSemanticTag tag) throws SharkKBException {
-        this.taxonomy.merge(tag);
-        this.kb.persist();
+        synchronized (this.kb) {
+            this.taxonomy.merge(tag);
+            // merged tag with its super tags
+            DumpSharkKB.TagChange change = this.kb.tagChange();
+            TXSemanticTag merged = this.taxonomy.getSemanticTag(tag.getSI());
+            while (merged != null) {
+                change.changed(merged);
+                merged = merged.getSuperTag();
+            }
+            change.commit();
+        }
     }
 
     @Override
     public void move(TXSemanticTag superTag, TXSemanticTag subTag) throws SharkKBException {
-        this.taxonomy.move(superTag, subTag);
-        this.kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.moved(superTag, subTag);
+            this.taxonomy.move((TXSemanticTag) DumpSemanticTag.unwrap(superTag),
+                    (TXSemanticTag) DumpSemanticTag.unwrap(subTag));
+            change.commit();
+        }
     }
 
     @Override
     public TXSemanticTag createSemanticTag(TXSemanticTag superTag, String name, String[] sis) throws SharkKBException {
-        TXSemanticTag semanticTag = this.taxonomy.createSemanticTag(superTag, name, sis);
-        this.kb.persist();
-        return new DumpTXSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            TXSemanticTag semanticTag = this.taxonomy.createSemanticTag(
+                    (TXSemanticTag) DumpSemanticTag.unwrap(superTag), name, sis);
+            this.kb.tagChange().changed(semanticTag).changed(semanticTag.getSuperTag()).commit();
+            return new DumpTXSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public void removeSemanticTag(TXSemanticTag tag) throws SharkKBException {
-        this.taxonomy.removeSemanticTag(tag);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange().removed(tag);
+            this.taxonomy.removeSemanticTag((TXSemanticTag) DumpSemanticTag.unwrap(tag));
+            change.commit();
+        }
     }
 
     @Override
     public void removeSubTree(TXSemanticTag tag) throws SharkKBException {
-        taxonomy.removeSubTree(tag);
-        kb.persist();
+        synchronized (this.kb) {
+            DumpSharkKB.TagChange change = this.kb.tagChange();
+            this.removed(change, (TXSemanticTag) DumpSemanticTag.unwrap(tag));
+            this.taxonomy.removeSubTree((TXSemanticTag) DumpSemanticTag.unwrap(tag));
+            change.commit();
+        }
+    }
+
+    /**
+     * Sub tag changes its super tag - old and new super tag change as well.
+     */
+    protected DumpSharkKB.TagChange moved(TXSemanticTag superTag, TXSemanticTag subTag) {
+        subTag = (TXSemanticTag) DumpSemanticTag.unwrap(subTag);
+        return this.kb.tagChange()
+                .changed(subTag)
+                .changed(subTag != null ? subTag.getSuperTag() : null)
+                .changed(superTag);
+    }
+
+    private void removed(DumpSharkKB.TagChange change, TXSemanticTag tag) {
+        if (tag == null) {
+            return;
+        }
+        Enumeration<TXSemanticTag> subTags = tag.getSubTags();
+        while (subTags != null && subTags.hasMoreElements()) {
+            this.removed(change, subTags.nextElement());
+        }
+        change.removed(tag);
     }
 
     @Override
@@ -66,29 +111,31 @@ public class DumpTaxonomy extends DumpSTSet implements Taxonomy {
 
     @Override
     public TXSemanticTag createTXSemanticTag(String name, String[] sis) throws SharkKBException {
-        TXSemanticTag semanticTag = this.taxonomy.createTXSemanticTag(name, sis);
-        this.kb.persist();
-        return new DumpTXSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            TXSemanticTag semanticTag = this.taxonomy.createTXSemanticTag(name, sis);
+            this.created(semanticTag);
+            return new DumpTXSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public TXSemanticTag createTXSemanticTag(String name, String si) throws SharkKBException {
-        TXSemanticTag semanticTag = this.taxonomy.createTXSemanticTag(name, si);
-        this.kb.persist();
-        return new DumpTXSemanticTag(this.kb, semanticTag);
+        synchronized (this.kb) {
+            TXSemanticTag semanticTag = this.taxonomy.createTXSemanticTag(name, si);
+            this.created(semanticTag);
+            return new DumpTXSemanticTag(this.kb, semanticTag);
+        }
     }
 
     @Override
     public Taxonomy contextualizeTaxonomy(STSet context, FragmentationParameter fp) throws SharkKBException {
         Taxonomy taxonomy = this.taxonomy.contextualizeTaxonomy(context, fp);
-        kb.persist();
         return new DumpTaxonomy(this.kb, taxonomy);
     }
 
     @Override
     public Taxonomy fragmentTaxonomy(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
         Taxonomy taxonomy = this.taxonomy.fragmentTaxonomy(anchor, fp);
-        kb.persist();
         return new DumpTaxonomy(this.kb, taxonomy);
 
     }
@@ -19,23 +19,23 @@ public class DumpTimeSTSet extends DumpSTSet implements TimeSTSet {
     @Override
     public TimeSTSet fragment(TimeSemanticTag anchor) throws SharkKBException {
         TimeSTSet fragment = this.timeSTSet.fragment(anchor);
-        this.kb.persist();
         return new DumpTimeSTSet(this.kb, fragment);
     }
 
     @Override
     public TimeSTSet contextualize(TimeSTSet context, FragmentationParameter fp) throws SharkKBException {
         TimeSTSet contextualize = this.timeSTSet.contextualize(context, fp);
-        this.kb.persist();
         return new DumpTimeSTSet(this.kb, contextualize);
 
     }
 
     @Override
     public TimeSemanticTag createTimeSemanticTag(long from, long duration) throws SharkKBException {
-        TimeSemanticTag timeSemanticTag = this.timeSTSet.createTimeSemanticTag(from, duration);
-        this.kb.persist();
-        return new DumpTimeSemanticTag(this.kb, timeSemanticTag);
+        synchronized (this.kb) {
+            TimeSemanticTag timeSemanticTag = this.timeSTSet.createTimeSemanticTag(from, duration);
+            this.created(timeSemanticTag);
+            return new DumpTimeSemanticTag(this.kb, timeSemanticTag);
+        }
     }
 
     @Override
@@ -3,7 +3,11 @@ package net.sharkfw.knowledgeBase.persistent.sql;
 import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.system.L;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -11,17 +15,44 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.*;
 
+/**
+ * Content is not kept in memory. It is stored as rows of {@link #CHUNK_SIZE}
+ * bytes - streaming reads one row after another, so costs grow linearly with
+ * the content length. Content written before chunk rows were introduced is
+ * read from the content column of the information.
+ */
 public class SqlAsipInformation extends SqlSharkPropertyHolder implements ASIPInformation {
 
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Name and content description of an information - kept in the cache of the kb.
+     */
+    private static class Metadata {
+        private final String name;
+        private final String contentType;
+        private final long contentLength;
+
+        Metadata(String name, String contentType, long contentLength) {
+            this.name = name;
+            this.contentType = contentType;
+            this.contentLength = contentLength;
+        }
+
+        long estimatedSize() {
+            return 48 + SqlCache.sizeOf(this.name) + SqlCache.sizeOf(this.contentType);
+        }
+    }
+
     private ASIPSpace asipSpace;
     private int id;
     private SqlSharkKB sharkKB;
-    private byte[] content;
     private String contentType;
     private String name;
     private long contentLength;
@@ -30,24 +61,94 @@ public class SqlAsipInformation extends SqlSharkPropertyHolder implements ASIPIn
         super(TABLE_INFORMATION);
         this.sharkKB = sharkKB;
         this.asipSpace = space;
-        this.content = information.getContentAsByte();
         this.name = information.getName();
         this.contentLength = information.getContentLength();
         this.contentType = information.getContentType();
 
-        String sql = INSERTINTO + TABLE_INFORMATION + BO + FIELD_CONTENT_TYPE + "," + FIELD_CONTENT_LENGTH + "," + FIELD_CONTENT_STREAM + "," + FIELD_NAME + BC + VALUES + BO + "\"" + contentType + "\"" + "," + "\"" + contentLength + "\"" + "," + "?" + "," + "\"" + name + "\"" + BC;
+        String sql = INSERTINTO + TABLE_INFORMATION + BO + FIELD_CONTENT_TYPE + "," + FIELD_CONTENT_LENGTH + "," + FIELD_NAME + BC + VALUES + BO + "?,?,?" + BC;
+
+        this.id = SqlHelper.executeInsert(this.getConnection(), sql, contentType, contentLength, name);
 
-        SqlHelper.executeSQLCommand(this.getConnection(), sql, content);
-        this.id = SqlHelper.getLastCreatedEntry(this.getConnection(), "information");
+        // copy without reading all of it into memory
+        ChunkOutputStream chunks = new ChunkOutputStream();
+        information.streamContent(chunks);
+        chunks.finish();
+        if (chunks.length != this.contentLength) {
+            throw new SQLException("cannot write content: " + chunks.length + " of " + this.contentLength + " bytes");
+        }
         this.setProperties(information);
     }
 
+    /**
+     * Writes content as chunk rows of this information - a failure is
+     * reported by {@link #finish()}.
+     */
+    private class ChunkOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int position = 0;
+        private int index = 0;
+        private long length = 0;
+        private SQLException failure = null;
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK_SIZE - this.position);
+                System.arraycopy(b, off, this.buffer, this.position, n);
+                this.position += n;
+                off += n;
+                len -= n;
+                if (this.position == CHUNK_SIZE) {
+                    this.writeChunk();
+                }
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            if (this.failure != null) {
+                throw new IOException(this.failure.getMessage());
+            }
+            String sql = INSERTINTO + TABLE_INFORMATION_CHUNK + BO + FIELD_INFO_ID + "," + FIELD_CHUNK_INDEX + "," + FIELD_CHUNK_DATA + BC + VALUES + BO + "?,?,?" + BC;
+            try {
+                SqlHelper.executeUpdate(SqlAsipInformation.this.getConnection(), sql,
+                        SqlAsipInformation.this.id, this.index, Arrays.copyOf(this.buffer, this.position));
+            } catch (SQLException e) {
+                this.failure = e;
+                throw new IOException(e.getMessage());
+            }
+            this.index++;
+            this.length += this.position;
+            this.position = 0;
+        }
+
+        /**
+         * Writes the last chunk.
+         */
+        void finish() throws SQLException {
+            if (this.position > 0) {
+                try {
+                    this.writeChunk();
+                } catch (IOException e) {
+                    // failure is kept
+                }
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+
     public SqlAsipInformation(int id, ASIPSpace space, SqlSharkKB sharkKB) throws SharkKBException {
         super(TABLE_INFORMATION);
         this.asipSpace = space;
         this.id = id;
         this.sharkKB = sharkKB;
-        getDataFromDB();
+        getMetadata();
     }
 
     public int getId() {
@@ -69,55 +170,110 @@ public class SqlAsipInformation extends SqlSharkPropertyHolder implements ASIPIn
         return 0;
     }
 
+    /**
+     * Content is streamed into the database - former content is replaced
+     * in a single transaction.
+     */
     @Override
     public void setContent(InputStream is, long len) {
-
+        String deleteChunks = DELETE + FROM + TABLE_INFORMATION_CHUNK + WHERE + FIELD_INFO_ID + EQ + "?";
+        String update = UPDATE + TABLE_INFORMATION + SET + FIELD_CONTENT_STREAM + EQ + "NULL," + FIELD_CONTENT_LENGTH + EQ + "?" + WHERE + FIELD_ID + EQ + "?";
+        Connection connection = this.getConnection();
+        try {
+            SqlHelper.beginTransaction(connection);
+            try {
+                SqlHelper.executeUpdate(connection, deleteChunks, this.id);
+                ChunkOutputStream chunks = new ChunkOutputStream();
+                byte[] buffer = new byte[CHUNK_SIZE];
+                long remaining = len;
+                int n;
+                while (remaining > 0 && (n = is.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    chunks.write(buffer, 0, n);
+                    remaining -= n;
+                }
+                chunks.finish();
+                if (remaining > 0) {
+                    throw new SQLException("stream ended before content was complete");
+                }
+                SqlHelper.executeUpdate(connection, update, len, this.id);
+                SqlHelper.commitTransaction(connection);
+            } catch (SQLException | IOException e) {
+                SqlHelper.rollbackTransaction(connection);
+                throw new SQLException(e.getMessage());
+            }
+            this.contentLength = len;
+            this.sharkKB.getCache().remove(SqlCache.informationKey(this.id));
+        } catch (SQLException e) {
+            L.e("cannot write content: " + e.getMessage(), this);
+        }
     }
 
     @Override
     public void setContent(byte[] content) {
-
+        this.setContent(new ByteArrayInputStream(content), content.length);
     }
 
+    /**
+     * Reads the whole content into memory. Prefer {@link #streamContent(OutputStream)}.
+     */
     @Override
     public byte[] getContentAsByte() {
-        if (content != null) {
-            return content;
-        } else {
-            try {
-                getDataFromDB();
-            } catch (SharkKBException e) {
-                e.printStackTrace();
-                return null;
-            }
-            return content;
-        }
-
+        ByteArrayOutputStream baos = new ByteArrayOutputStream((int) Math.max(0, this.contentLength));
+        this.streamContent(baos);
+        return baos.toByteArray();
     }
 
     @Override
     public void setContent(String content) {
-
+        this.setContent(content.getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
     public void removeContent() {
-
+        this.setContent(new byte[0]);
     }
 
-    private void getDataFromDB() throws SharkKBException {
+    /**
+     * Name and content description are read through the cache of the kb,
+     * content is read when needed.
+     */
+    private void getMetadata() {
+        SqlCache cache = this.sharkKB.getCache();
+        Metadata metadata = cache.get(SqlCache.informationKey(id), Metadata.class);
+        if (metadata == null) {
+            String sql = SELECT + FIELD_NAME + "," + FIELD_CONTENT_TYPE + "," + FIELD_CONTENT_LENGTH + FROM + TABLE_INFORMATION + WHERE + FIELD_ID + EQ + "?";
+            try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), sql, id)) {
+                if (!rs.next()) return;
+                metadata = new Metadata(rs.getString("name"), rs.getString("content_type"), rs.getLong("content_length"));
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return;
+            }
+            cache.put(SqlCache.informationKey(id), metadata, metadata.estimatedSize());
+        }
+        this.name = metadata.name;
+        this.contentType = metadata.contentType;
+        this.contentLength = metadata.contentLength;
+    }
 
-        String sql = SELECT + ALL + FROM + TABLE_INFORMATION + WHERE + FIELD_ID + EQ + id;
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), sql)) {
+    /**
+     * @param offset first byte - a multiple of CHUNK_SIZE
+     * @return at most CHUNK_SIZE bytes of content - empty if offset is behind its end
+     */
+    private byte[] getContentChunk(long offset) throws SQLException {
+        String sql = SELECT + FIELD_CHUNK_DATA + FROM + TABLE_INFORMATION_CHUNK + WHERE + FIELD_INFO_ID + EQ + "?" + AND + FIELD_CHUNK_INDEX + EQ + "?";
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), sql, this.id, offset / CHUNK_SIZE)) {
             if (rs.next()) {
-                this.id = rs.getInt("id");
-                this.content = rs.getBytes("content_stream");
-                this.contentType = rs.getString("content_type");
-                this.name = rs.getString("name");
-                this.contentLength = rs.getInt("content_length");
+                byte[] chunk = rs.getBytes(1);
+                return chunk != null ? chunk : new byte[0];
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }
+
+        // content written without chunk rows
+        String legacy = SELECT + " substr(content_stream, ?, ?) AS chunk" + FROM + TABLE_INFORMATION + WHERE + FIELD_ID + EQ + "?";
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), legacy, offset + 1, CHUNK_SIZE, this.id)) {
+            byte[] chunk = rs.next() ? rs.getBytes("chunk") : null;
+            return chunk != null ? chunk : new byte[0];
         }
     }
 
@@ -141,12 +297,74 @@ public class SqlAsipInformation extends SqlSharkPropertyHolder implements ASIPIn
 
     @Override
     public void setContentType(String mimetype) {
-
+        String update = UPDATE + TABLE_INFORMATION + SET + FIELD_CONTENT_TYPE + EQ + "?" + WHERE + FIELD_ID + EQ + "?";
+        try {
+            SqlHelper.executeUpdate(this.getConnection(), update, mimetype, this.id);
+            this.contentType = mimetype;
+            this.sharkKB.getCache().remove(SqlCache.informationKey(this.id));
+        } catch (SQLException e) {
+            L.e("cannot write content type: " + e.getMessage(), this);
+        }
     }
 
+    /**
+     * Content is read chunk by chunk - at most {@link #CHUNK_SIZE} bytes are
+     * held in memory.
+     */
     @Override
     public void streamContent(OutputStream os) {
+        try {
+            long offset = 0;
+            while (true) {
+                byte[] chunk = this.getContentChunk(offset);
+                os.write(chunk);
+                offset += chunk.length;
+                if (chunk.length < CHUNK_SIZE) break;
+            }
+        } catch (SQLException | IOException e) {
+            L.e("cannot stream content: " + e.getMessage(), this);
+        }
+    }
+
+    /**
+     * @return content which is read from the database while reading the stream
+     */
+    public InputStream getContentAsStream() {
+        return new InputStream() {
+            private byte[] chunk = new byte[0];
+            private int position = 0;
+            private long offset = 0;
+            private boolean end = false;
+
+            private boolean fill() throws IOException {
+                if (this.position < this.chunk.length) return true;
+                if (this.end) return false;
+                try {
+                    this.chunk = SqlAsipInformation.this.getContentChunk(this.offset);
+                } catch (SQLException e) {
+                    throw new IOException(e.getMessage());
+                }
+                this.position = 0;
+                this.offset += this.chunk.length;
+                this.end = this.chunk.length < CHUNK_SIZE;
+                return this.chunk.length > 0;
+            }
 
+            @Override
+            public int read() throws IOException {
+                return this.fill() ? this.chunk[this.position++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!this.fill()) return -1;
+                int n = Math.min(len, this.chunk.length - this.position);
+                System.arraycopy(this.chunk, this.position, b, off, n);
+                this.position += n;
+                return n;
+            }
+        };
     }
 
     @Override
@@ -166,7 +384,7 @@ public class SqlAsipInformation extends SqlSharkPropertyHolder implements ASIPIn
 
     @Override
     public String getContentAsString() throws SharkKBException {
-        return new String(content, StandardCharsets.UTF_8);
+        return new String(this.getContentAsByte(), StandardCharsets.UTF_8);
     }
 
     @Override
@@ -0,0 +1,165 @@
+package net.sharkfw.knowledgeBase.persistent.sql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded read-through cache of objects materialized from the database of a
+ * {@link SqlSharkKB}. Entries have an estimated size in bytes - least recently
+ * used entries are evicted when the cache exceeds its maximum size.
+ * <p>
+ * Entries are removed by the setters of cached objects whenever they write to
+ * the database.
+ *
+ * @see SqlSharkKB#getCache()
+ */
+public class SqlCache {
+
+    public static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private static class Entry {
+        private final Object value;
+        private final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    // access order - first entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize;
+    private long size = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SqlCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize estimated size of all entries in bytes - 0 disables the cache
+     */
+    public SqlCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    static String tagKey(String si) {
+        return "si:" + si;
+    }
+
+    static String tagKey(int id) {
+        return "tag:" + id;
+    }
+
+    static String informationKey(int id) {
+        return "info:" + id;
+    }
+
+    /**
+     * @return estimated size of a string
+     */
+    static long sizeOf(String s) {
+        return s == null ? 0 : 40 + 2 * s.length();
+    }
+
+    static long sizeOf(String[] strings) {
+        long size = 16;
+        if (strings != null) {
+            for (String s : strings) {
+                size += 8 + sizeOf(s);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param key
+     * @param type expected type - entries of other types are treated as missing
+     * @return cached object or null
+     */
+    synchronized <T> T get(String key, Class<T> type) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && type.isInstance(entry.value)) {
+            this.hits++;
+            return type.cast(entry.value);
+        }
+        this.misses++;
+        return null;
+    }
+
+    synchronized void put(String key, Object value, long size) {
+        if (size > this.maxSize) return;
+
+        Entry old = this.entries.put(key, new Entry(value, size));
+        if (old != null) {
+            this.size -= old.size;
+        }
+        this.size += size;
+        this.evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            this.size -= eldest.size;
+            this.evictions++;
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry old = this.entries.remove(key);
+        if (old != null) {
+            this.size -= old.size;
+        }
+    }
+
+    /**
+     * Removes all entries. Counters are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    /**
+     * @param maxSize estimated size of all entries in bytes - 0 disables the cache
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.evict();
+    }
+
+    public synchronized long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return estimated size of all entries in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    public synchronized int getNumberOfEntries() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+}
@@ -7,6 +7,7 @@ import java.io.InputStream;
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -19,6 +20,18 @@ import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FIELD_ID;
  */
 public class SqlHelper {
 
+    /**
+     * Prepared statements and transaction scope of a connection.
+     */
+    private static class ConnectionState {
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final Map<PreparedStatement, ResultSet> results = new HashMap<>();
+        private int depth = 0;
+        private boolean rollbackOnly = false;
+    }
+
+    private static final Map<Connection, ConnectionState> states = new HashMap<>();
+
     private SqlHelper() {
         //static usage only
     }
@@ -49,7 +62,6 @@ public class SqlHelper {
 
     public static void executeSQLCommand(Connection conn, String sql, byte[] blob) throws SQLException {
         PreparedStatement st = null;
-        conn.setAutoCommit(true);
         try {
             st = conn.prepareStatement(sql);
             st.setBytes(1, blob);
@@ -60,7 +72,6 @@ public class SqlHelper {
     }
     public static void executeSQLCommand(Connection conn, String sql) throws SQLException {
         Statement st = null;
-        conn.setAutoCommit(true);
         try {
             st = conn.createStatement();
             st.executeUpdate(sql);
@@ -70,27 +81,203 @@ public class SqlHelper {
     }
 
     public static ResultSet executeSQLCommandWithResult(Connection conn, String sql) throws SQLException {
-        conn.setAutoCommit(true);
         Statement st = conn.createStatement();
+        // statement is closed with its result set
+        st.closeOnCompletion();
         return st.executeQuery(sql);
     }
 
-    public static int getLastCreatedEntry(Connection conn, String tableName) throws SQLException {
-        int id = -1;
-        String sql = "SELECT id FROM " + tableName + " ORDER BY id DESC LIMIT 1";
-        Statement st = conn.createStatement();
+    ///////////////////////////////////////////////////////////////////////
+    //                        prepared statements                        //
+    ///////////////////////////////////////////////////////////////////////
+
+    private static ConnectionState getState(Connection conn) {
+        ConnectionState state = states.get(conn);
+        if (state == null) {
+            state = new ConnectionState();
+            states.put(conn, state);
+        }
+        return state;
+    }
+
+    /**
+     * Statements are prepared once per connection and sql string and reused
+     * afterwards. Use parameters instead of values within the sql string.
+     */
+    private static PreparedStatement prepare(Connection conn, String sql, boolean generatedKeys) throws SQLException {
+        ConnectionState state = getState(conn);
+        String key = generatedKeys ? "#" + sql : sql;
+        PreparedStatement st = state.statements.get(key);
+        if (st == null || st.isClosed()) {
+            st = generatedKeys
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql);
+            state.statements.put(key, st);
+        }
+        st.clearParameters();
+        return st;
+    }
+
+    private static void setParameters(PreparedStatement st, Object[] params) throws SQLException {
+        if (params == null) return;
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            if (param == null) {
+                st.setNull(i + 1, Types.NULL);
+            } else if (param instanceof byte[]) {
+                st.setBytes(i + 1, (byte[]) param);
+            } else {
+                st.setObject(i + 1, param);
+            }
+        }
+    }
+
+    /**
+     * @return number of changed rows
+     */
+    public static synchronized int executeUpdate(Connection conn, String sql, Object... params) throws SQLException {
+        PreparedStatement st = prepare(conn, sql, false);
+        setParameters(st, params);
+        return st.executeUpdate();
+    }
+
+    /**
+     * Inserts a single row.
+     *
+     * @return the key generated for that row
+     */
+    public static synchronized int executeInsert(Connection conn, String sql, Object... params) throws SQLException {
+        PreparedStatement st = prepare(conn, sql, true);
+        setParameters(st, params);
+        st.executeUpdate();
+        try (ResultSet keys = st.getGeneratedKeys()) {
+            if (keys.next()) {
+                return keys.getInt(1);
+            }
+        }
+        throw new SQLException("no key generated: " + sql);
+    }
+
+    /**
+     * Executes a statement once for each row of parameters in a single batch.
+     */
+    public static synchronized void executeBatch(Connection conn, String sql, List<Object[]> rows) throws SQLException {
+        if (rows == null || rows.isEmpty()) return;
+        PreparedStatement st = prepare(conn, sql, false);
         try {
-            ResultSet resultSet = st.executeQuery(sql);
-            if(resultSet.next()){
-                id = resultSet.getInt("id");
-            } else throw new SQLException("No results");
+            for (Object[] row : rows) {
+                setParameters(st, row);
+                st.addBatch();
+            }
+            st.executeBatch();
+        } finally {
+            st.clearBatch();
+        }
+    }
+
+    /**
+     * The result set has to be closed by the caller. If the statement is still
+     * in use by an open result set a new statement is prepared for this query.
+     */
+    public static synchronized ResultSet executeQuery(Connection conn, String sql, Object... params) throws SQLException {
+        ConnectionState state = getState(conn);
+        PreparedStatement st = prepare(conn, sql, false);
+        ResultSet open = state.results.get(st);
+        if (open != null && !open.isClosed()) {
+            // nested query - e.g. while iterating the results of that statement
+            st = conn.prepareStatement(sql);
+            st.closeOnCompletion();
+            setParameters(st, params);
+            return st.executeQuery();
+        }
+        setParameters(st, params);
+        ResultSet rs = st.executeQuery();
+        state.results.put(st, rs);
+        return rs;
+    }
+
+    /**
+     * Closes all statements prepared for that connection.
+     */
+    public static synchronized void releaseStatements(Connection conn) {
+        ConnectionState state = states.remove(conn);
+        if (state == null) return;
+        for (PreparedStatement st : state.statements.values()) {
+            try {
+                st.close();
+            } catch (SQLException e) {
+                // closed anyway
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                            transactions                           //
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Opens a transaction scope. Scopes can be nested - changes are committed
+     * when the outermost scope is committed.
+     * <pre>
+     * SqlHelper.beginTransaction(conn);
+     * try {
+     *     ...
+     *     SqlHelper.commitTransaction(conn);
+     * } catch (SQLException e) {
+     *     SqlHelper.rollbackTransaction(conn);
+     *     throw e;
+     * }
+     * </pre>
+     */
+    public static synchronized void beginTransaction(Connection conn) throws SQLException {
+        ConnectionState state = getState(conn);
+        if (state.depth == 0) {
+            conn.setAutoCommit(false);
+            state.rollbackOnly = false;
+        }
+        state.depth++;
+    }
+
+    /**
+     * Closes a transaction scope. The transaction is committed if it was the
+     * outermost scope.
+     *
+     * @throws SQLException if an inner scope was rolled back - the whole
+     *                      transaction is rolled back in that case
+     */
+    public static synchronized void commitTransaction(Connection conn) throws SQLException {
+        ConnectionState state = getState(conn);
+        if (state.depth == 0) throw new SQLException("no transaction open");
+        state.depth--;
+        if (state.depth > 0) return;
+        try {
+            if (state.rollbackOnly) {
+                conn.rollback();
+                throw new SQLException("transaction was rolled back by an inner scope");
+            }
+            conn.commit();
         } finally {
-            st.close();
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Closes a transaction scope. All changes of the transaction are dismissed
+     * when the outermost scope is closed.
+     */
+    public static synchronized void rollbackTransaction(Connection conn) {
+        ConnectionState state = getState(conn);
+        if (state.depth == 0) return;
+        state.depth--;
+        if (state.depth > 0) {
+            state.rollbackOnly = true;
+            return;
         }
-        if (id >= 0) {
-            return id;
-        } else {
-            throw new SQLException();
+        try {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            L.e("rollback failed: " + e.getMessage(), SqlHelper.class);
         }
     }
 
@@ -64,7 +64,7 @@ public class SqlPeerSTSet extends SqlSTSet implements PeerSTSet {
 //            rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), tags);
             while (rs.next()) {
                 id = rs.getInt("id");
-                list.add(new SqlPeerSemanticTag(id, getSqlSharkKB()));
+                list.add(SqlSharkHelper.getPeerSemanticTag(getSqlSharkKB(), id));
             }
 
         } catch (SQLException e) {
@@ -79,12 +79,12 @@ public class SqlPeerSTSet extends SqlSTSet implements PeerSTSet {
 
     @Override
     public PeerSemanticTag getSemanticTag(String si) throws SharkKBException {
-        return new SqlPeerSemanticTag(si, getSqlSharkKB());
+        return SqlSharkHelper.getPeerSemanticTag(getSqlSharkKB(), si);
     }
 
     @Override
     public PeerSemanticTag getSemanticTag(String[] sis) throws SharkKBException {
-        return new SqlPeerSemanticTag(sis[0], getSqlSharkKB());
+        return SqlSharkHelper.getPeerSemanticTag(getSqlSharkKB(), sis[0]);
     }
 
     @Override
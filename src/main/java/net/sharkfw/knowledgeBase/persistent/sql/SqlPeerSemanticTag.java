@@ -15,16 +15,10 @@ import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.AND;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.DELETE;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.EQ;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FIELD_ADDRESS_NAME;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FIELD_ID;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FIELD_SYSTEM_PROPERTY;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FIELD_TAG_ID;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FROM;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.QU;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.SELECT;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.SET;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.TABLE_ADDRESS;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.TABLE_SEMANTIC_TAG;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.UPDATE;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.WHERE;
 
 /**
@@ -46,19 +40,17 @@ public class SqlPeerSemanticTag extends SqlSemanticTag implements PeerSemanticTa
     public SqlPeerSemanticTag(String[] sis, String name, SqlSharkKB sharkKB, String[] addresses) throws SQLException {
         super(sis, name, "peer", sharkKB);
         this.addresses = addresses;
-        StringBuilder sql = new StringBuilder();
-//        sql.append("PRAGMA foreign_keys = ON; ");
-        sql.append("INSERT INTO semantic_tag (name, tag_kind) VALUES " + "(\'" + this.getName() + "\'" + ",\"" + this.getTagKind() + "\");");
-        SqlHelper.executeSQLCommand(this.getConnection(), sql.toString());
-        this.setId(SqlHelper.getLastCreatedEntry(this.getConnection(), "semantic_tag"));
-        SqlHelper.executeSQLCommand(this.getConnection(), this.getSqlForSIs());
-        setAddresses(this.addresses);
-        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_SYSTEM_PROPERTY + EQ + Integer.toString(this.getId()) + WHERE + FIELD_ID + EQ + Integer.toString(this.getId());
-        try {
-            SqlHelper.executeSQLCommand(this.getConnection(), update);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.insertTag("");
+    }
+
+    @Override
+    long estimatedSize() {
+        return super.estimatedSize() + SqlCache.sizeOf(this.addresses);
+    }
+
+    @Override
+    protected void insertFurtherValues() throws SQLException {
+        this.insertAddresses(this.addresses);
     }
 
     /**
@@ -83,9 +75,9 @@ public class SqlPeerSemanticTag extends SqlSemanticTag implements PeerSemanticTa
 
     @Override
     public String[] getAddresses() {
-        String tags = SELECT + ALL + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + this.id;
+        String tags = SELECT + ALL + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + "?";
         List<String> list = new ArrayList<>();
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), tags);){
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), tags, this.id)){
             while (rs.next()) {
                 list.add(rs.getString("address_name"));
             }
@@ -101,9 +93,10 @@ public class SqlPeerSemanticTag extends SqlSemanticTag implements PeerSemanticTa
 
     @Override
     public void setAddresses(String[] addresses) {
-        String sql = DELETE + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + this.id;
+        String sql = DELETE + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + "?";
+        this.invalidate();
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), sql);
+            SqlHelper.executeUpdate(this.getConnection(), sql, this.id);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -112,9 +105,10 @@ public class SqlPeerSemanticTag extends SqlSemanticTag implements PeerSemanticTa
 
     @Override
     public void removeAddress(String address) {
-        String sql = DELETE + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + this.id + AND + FIELD_ADDRESS_NAME + EQ + QU + address + QU;
+        String sql = DELETE + FROM + TABLE_ADDRESS + WHERE + FIELD_TAG_ID + EQ + "?" + AND + FIELD_ADDRESS_NAME + EQ + "?";
+        this.invalidate();
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), sql);
+            SqlHelper.executeUpdate(this.getConnection(), sql, this.id, address);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -139,24 +133,21 @@ public class SqlPeerSemanticTag extends SqlSemanticTag implements PeerSemanticTa
         String[] stringArr = new String[strings.size()];
         stringArr = strings.toArray(stringArr);
 
-        if (stringArr.length > 0) {
-            StringBuilder sqlAddresses = new StringBuilder();
-            sqlAddresses.append("INSERT INTO address (address_name, tag_id) VALUES ");
-            for (int i = 0; i < this.addresses.length; i++) {
-                if (i == 0) {
-                    sqlAddresses.append("(\'" + stringArr[i] + "\'," + this.getId() + ")");
-                } else {
-                    sqlAddresses.append(",(\'" + stringArr[i] + "\'," + this.getId() + ")");
-                }
-            }
-            sqlAddresses.append(";");
-            try {
-                SqlHelper.executeSQLCommand(this.getConnection(), sqlAddresses.toString());
-                this.addresses = getAddresses();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+        this.invalidate();
+        try {
+            this.insertAddresses(stringArr);
+            this.addresses = getAddresses();
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
+    }
 
+    private void insertAddresses(String[] addresses) throws SQLException {
+        if (addresses == null) return;
+        List<Object[]> rows = new ArrayList<>();
+        for (String address : addresses) {
+            rows.add(new Object[]{address, this.getId()});
+        }
+        SqlHelper.executeBatch(this.getConnection(), "INSERT INTO address (address_name, tag_id) VALUES (?, ?)", rows);
     }
 }
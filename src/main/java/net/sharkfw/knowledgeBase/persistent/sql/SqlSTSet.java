@@ -7,7 +7,6 @@ import net.sharkfw.knowledgeBase.SemanticTag;
 import net.sharkfw.knowledgeBase.SharkKBException;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -27,18 +26,9 @@ public class SqlSTSet extends AbstractSTSet implements STSet {
      * Write StSet to database
      */
     public SqlSTSet(SqlSharkKB sharkKB, String type, SqlAsipInformationSpace sqlAsipInformationSpace) throws SQLException {
-        try {
-            Class.forName(sharkKB.getDialect());
-            connection = DriverManager.getConnection(sharkKB.getDbAddress());
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        connection = sharkKB.getConnection();
         this.sqlSharkKB = sharkKB;
-        StringBuilder sql = new StringBuilder();
-//        sql.append("PRAGMA foreign_keys = ON; ");
-        sql.append("INSERT INTO tag_set (set_kind) VALUES (\"" + type + "\");");
-        SqlHelper.executeSQLCommand(connection, sql.toString());
-        stSetID = SqlHelper.getLastCreatedEntry(connection, "tag_set");
+        stSetID = SqlHelper.executeInsert(connection, "INSERT INTO tag_set (set_kind) VALUES (?)", type);
     }
 
     public SqlSTSet(SqlSharkKB kb, int id) {
@@ -125,12 +115,12 @@ public class SqlSTSet extends AbstractSTSet implements STSet {
 
     @Override
     public SemanticTag getSemanticTag(String[] si) throws SharkKBException {
-        return new SqlSemanticTag(si[0], sqlSharkKB, "topic"); //TODO: multiple SIs ?
+        return SqlSharkHelper.getSemanticTag(sqlSharkKB, si[0]); //TODO: multiple SIs ?
     }
 
     @Override
     public SemanticTag getSemanticTag(String si) throws SharkKBException {
-        return new SqlSemanticTag(si, sqlSharkKB, "topic");
+        return SqlSharkHelper.getSemanticTag(sqlSharkKB, si);
     }
 
     @Override
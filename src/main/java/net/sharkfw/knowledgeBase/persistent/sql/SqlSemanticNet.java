@@ -3,7 +3,6 @@ package net.sharkfw.knowledgeBase.persistent.sql;
 import net.sharkfw.knowledgeBase.*;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -18,18 +17,9 @@ public class SqlSemanticNet implements SemanticNet {
      * Write SemanticNet to database
      */
     public SqlSemanticNet(SqlSharkKB sharkKB) throws SQLException {
-        try {
-            Class.forName(sharkKB.getDialect());
-            connection = DriverManager.getConnection(sharkKB.getDbAddress());
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        connection = sharkKB.getConnection();
         this.sqlSharkKB = sharkKB;
-        StringBuilder sql = new StringBuilder();
-//        sql.append("PRAGMA foreign_keys = ON; ");
-        sql.append("INSERT INTO semantic_net VALUES (NULL);");
-        SqlHelper.executeSQLCommand(connection, sql.toString());
-        stSetID = SqlHelper.getLastCreatedEntry(connection, "semantic_net");
+        stSetID = SqlHelper.executeInsert(connection, "INSERT INTO semantic_net VALUES (NULL)");
     }
 
 
@@ -34,7 +34,6 @@ import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.FROM;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.INSERTINTO;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.JOIN;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.ON;
-import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.QU;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.SELECT;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.SET;
 import static net.sharkfw.knowledgeBase.persistent.sql.SqlSharkHelper.TABLE_SEMANTIC_TAG;
@@ -73,25 +72,104 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
     public SqlSemanticTag(String[] sis, String name, SqlSharkKB sharkKB) throws SQLException {
         this(sis, name, "normal", sharkKB);
 
-        String sql = INSERTINTO + TABLE_SEMANTIC_TAG + BO + FIELD_NAME + BC + VALUES + BO + QU + this.name + QU + BC;
-        SqlHelper.executeSQLCommand(this.getConnection(), sql);
-        id = SqlHelper.getLastCreatedEntry(this.getConnection(), "semantic_tag");
+        String sql = INSERTINTO + TABLE_SEMANTIC_TAG + BO + FIELD_NAME + BC + VALUES + BO + "?" + BC;
+        this.insert(sql, this.name);
         ID = Integer.toString(id);
+    }
+
+    /**
+     * Inserts name and kind and further columns of a new tag, its subject
+     * identifiers and the system property in one transaction.
+     *
+     * @param columns further columns of table semantic_tag - may be empty
+     * @param values values of those columns
+     */
+    protected void insertTag(String columns, Object... values) throws SQLException {
+        Object[] params = new Object[values.length + 2];
+        params[0] = this.getName();
+        params[1] = this.getTagKind();
+        System.arraycopy(values, 0, params, 2, values.length);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO semantic_tag (name, tag_kind").append(columns).append(") VALUES (?, ?");
+        for (int i = 0; i < values.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(")");
+
+        this.insert(sql.toString(), params);
+    }
 
-        String sqlSIs = getSqlForSIs();
-        if (sqlSIs != null) SqlHelper.executeSQLCommand(this.getConnection(), getSqlForSIs());
-        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_SYSTEM_PROPERTY + EQ + Integer.toString(this.getId()) + WHERE + FIELD_ID + EQ + Integer.toString(this.getId());
+    private void insert(String sql, Object... params) throws SQLException {
+        Connection connection = this.getConnection();
+        SqlHelper.beginTransaction(connection);
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), update);
+            this.setId(SqlHelper.executeInsert(connection, sql, params));
+            this.insertSIs();
+            this.insertFurtherValues();
+            this.updateSystemProperty();
+            SqlHelper.commitTransaction(connection);
         } catch (SQLException e) {
-            e.printStackTrace();
+            SqlHelper.rollbackTransaction(connection);
+            throw e;
         }
     }
 
+    /**
+     * Called within the insert transaction after the tag got its id.
+     */
+    protected void insertFurtherValues() throws SQLException {
+    }
+
+    private void updateSystemProperty() throws SQLException {
+        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_SYSTEM_PROPERTY + EQ + "?" + WHERE + FIELD_ID + EQ + "?";
+        SqlHelper.executeUpdate(this.getConnection(), update, this.getId(), this.getId());
+    }
+
     public Connection getConnection(){
         return this.connectionHolder.getConnection();
     }
 
+    SqlCache getCache() {
+        if (this.connectionHolder instanceof SqlSharkKB) {
+            return ((SqlSharkKB) this.connectionHolder).getCache();
+        }
+        return null;
+    }
+
+    /**
+     * @return estimated size of this tag within a cache
+     */
+    long estimatedSize() {
+        long size = 64 + SqlCache.sizeOf(this.name) + SqlCache.sizeOf(this.sis);
+        if (this.properties != null) {
+            for (Map.Entry<String, String> property : this.properties.entrySet()) {
+                size += 32 + SqlCache.sizeOf(property.getKey()) + SqlCache.sizeOf(property.getValue());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes this tag from the cache of the kb. Called by each setter which
+     * writes to the database.
+     */
+    protected void invalidate() {
+        SqlCache cache = this.getCache();
+        if (cache == null) return;
+        cache.remove(SqlCache.tagKey(this.getId()));
+        if (this.sis != null) {
+            for (String si : this.sis) {
+                cache.remove(SqlCache.tagKey(si));
+            }
+        }
+    }
+
+    @Override
+    protected void propertiesChanged() {
+        this.invalidate();
+    }
+
     /**
      * Get SemanticTag from database with SI
      *
@@ -101,12 +179,12 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
         this(null, null, tagKind, sharkKB);
         String sql;
         if (si != null) {
-            sql = SELECT + ALL + FROM + TABLE_SEMANTIC_TAG + JOIN + TABLE_SUBJECT_IDENTIFIER + ON + TABLE_SEMANTIC_TAG + DOT + "id" + EQ + FIELD_TAG_ID + WHERE + FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + QU + si + QU;
+            sql = SELECT + ALL + FROM + TABLE_SEMANTIC_TAG + JOIN + TABLE_SUBJECT_IDENTIFIER + ON + TABLE_SEMANTIC_TAG + DOT + "id" + EQ + FIELD_TAG_ID + WHERE + FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + "?";
         } else {
             throw new SharkKBException();
         }
         String propertyString = null;
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), sql)) {
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), sql, si)) {
             if (rs.next()) {
                 this.name = rs.getString("name");
                 this.id = Integer.parseInt(rs.getString("system_property"));
@@ -160,19 +238,20 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
         return map;
     }
 
-    protected String getSqlForSIs() {
-        if (sis == null) return null;
-        StringBuilder sql = new StringBuilder();
-//        sql.append("PRAGMA foreign_keys = ON; ");
-        sql.append("INSERT INTO subject_identifier (identifier, tag_id) VALUES ");
-        for (int i = 0; i < sis.length; i++) {
-            if (i != sis.length - 1) {
-                sql.append("(\'" + sis[i] + "\'," + id + ")" + ',');
-            } else {
-                sql.append("(\'" + sis[i] + "\'," + id + ")" + "; ");
-            }
+    /**
+     * Inserts all subject identifiers of this tag in a single batch.
+     */
+    protected void insertSIs() throws SQLException {
+        insertSIs(this.sis);
+    }
+
+    private void insertSIs(String[] sis) throws SQLException {
+        if (sis == null) return;
+        List<Object[]> rows = new ArrayList<>();
+        for (String si : sis) {
+            rows.add(new Object[]{si, this.getId()});
         }
-        return sql.toString();
+        SqlHelper.executeBatch(this.getConnection(), "INSERT INTO subject_identifier (identifier, tag_id) VALUES (?, ?)", rows);
     }
 
     public int getId() {
@@ -188,9 +267,9 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
     }
 
     private String[] getSisFromDB() {
-        String tags = SELECT + ALL + FROM + TABLE_SUBJECT_IDENTIFIER + WHERE + FIELD_TAG_ID + EQ + this.getSystemProperty("id");
+        String tags = SELECT + ALL + FROM + TABLE_SUBJECT_IDENTIFIER + WHERE + FIELD_TAG_ID + EQ + "?";
         List<String> list = new ArrayList<>();
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), tags)){
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), tags, this.getId())){
             while (rs.next()) {
                 list.add(rs.getString("identifier"));
             }
@@ -224,9 +303,10 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
 
     @Override
     public void removeSI(String si) throws SharkKBException {
-        String sql = DELETE + FROM + TABLE_SUBJECT_IDENTIFIER + WHERE + FIELD_TAG_ID + EQ + this.getSystemProperty("id") + AND + FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + QU + si + QU;
+        String sql = DELETE + FROM + TABLE_SUBJECT_IDENTIFIER + WHERE + FIELD_TAG_ID + EQ + "?" + AND + FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + "?";
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), sql);
+            this.invalidate();
+            SqlHelper.executeUpdate(this.getConnection(), sql, this.getId(), si);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -239,9 +319,10 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
 
     @Override
     public void setName(String newName) {
-        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_NAME + EQ + QU + newName + QU + WHERE + FIELD_ID + EQ + Integer.toString(this.getId());
+        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_NAME + EQ + "?" + WHERE + FIELD_ID + EQ + "?";
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), update);
+            SqlHelper.executeUpdate(this.getConnection(), update, newName, this.getId());
+            this.invalidate();
             name = newName;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -286,19 +367,10 @@ public class SqlSemanticTag extends SqlSharkPropertyHolder implements SemanticTa
     }
 
     private void addSIsToDB(String[] sis) {
-        StringBuilder sqlAddresses = new StringBuilder();
+        this.invalidate();
         this.sis = sis;
-        sqlAddresses.append("INSERT INTO subject_identifier (identifier, tag_id) VALUES ");
-        for (int i = 0; i < this.sis.length; i++) {
-            if (i != this.sis.length - 1) {
-                sqlAddresses.append("(\'" + this.sis[i] + "\'," + this.getId() + ")" + ',');
-            } else {
-                sqlAddresses.append("(\'" + this.sis[i] + "\'," + this.getId() + ")" + "; ");
-            }
-        }
         try {
-            SqlHelper.executeSQLCommand(this.getConnection(), sqlAddresses.toString());
-
+            this.insertSIs(sis);
         } catch (SQLException e) {
             e.printStackTrace();
         }
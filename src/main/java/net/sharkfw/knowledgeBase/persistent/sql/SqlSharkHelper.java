@@ -6,7 +6,6 @@ import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.*;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -23,6 +22,7 @@ public class SqlSharkHelper {
 
     // TABLE
     public final static String TABLE_INFORMATION = " information";
+    public final static String TABLE_INFORMATION_CHUNK = " information_chunk";
     public final static String TABLE_TAG_SET = " tag_set";
     public final static String TABLE_SEMANTIC_TAG = " semantic_tag";
     public final static String TABLE_ADDRESS = " address";
@@ -50,6 +50,8 @@ public class SqlSharkHelper {
     public final static String FIELD_CONTENT_STREAM = " content_stream";
     public final static String FIELD_CONTENT_TYPE = " content_type";
     public final static String FIELD_CONTENT_LENGTH = " content_length";
+    public final static String FIELD_CHUNK_INDEX = " chunk_index";
+    public final static String FIELD_CHUNK_DATA = " data";
     public final static String FIELD_OWNER_TAG = " owner_tag";
     public final static String FIELD_FOREIGN_KEYS = " foreign_keys";
 
@@ -82,17 +84,85 @@ public class SqlSharkHelper {
 
     static SqlSemanticTag getSemanticTag(SqlSharkKB sharkKB, SemanticTag semanticTag) throws SharkKBException {
         if (semanticTag == null) throw new SharkKBException("No SemanticTag given.");
-        return new SqlSemanticTag(semanticTag.getSI()[0], sharkKB, "topic");
+        return getSemanticTag(sharkKB, semanticTag.getSI()[0]);
     }
 
     static SqlPeerSemanticTag getPeerSemanticTag(SqlSharkKB sharkKB, SemanticTag semanticTag) throws SharkKBException {
         if (semanticTag == null) throw new SharkKBException("No SemanticTag given.");
-        return new SqlPeerSemanticTag(semanticTag.getSI()[0], sharkKB);
+        return getPeerSemanticTag(sharkKB, semanticTag.getSI()[0]);
     }
 
     static SqlTimeSemanticTag getTimeSemanticTag(SqlSharkKB sharkKB, SemanticTag semanticTag) throws SharkKBException {
         if (semanticTag == null) throw new SharkKBException("No SemanticTag given.");
-        return new SqlTimeSemanticTag(semanticTag.getSI()[0], sharkKB);
+        return getTimeSemanticTag(sharkKB, semanticTag.getSI()[0]);
+    }
+
+    /**
+     * Tags are read through the cache of the kb.
+     */
+    static SqlSemanticTag getSemanticTag(SqlSharkKB sharkKB, String si) throws SharkKBException {
+        SqlSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(si), SqlSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlSemanticTag(si, sharkKB, "topic"));
+        }
+        return tag;
+    }
+
+    static SqlPeerSemanticTag getPeerSemanticTag(SqlSharkKB sharkKB, String si) throws SharkKBException {
+        SqlPeerSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(si), SqlPeerSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlPeerSemanticTag(si, sharkKB));
+        }
+        return tag;
+    }
+
+    static SqlTimeSemanticTag getTimeSemanticTag(SqlSharkKB sharkKB, String si) throws SharkKBException {
+        SqlTimeSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(si), SqlTimeSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlTimeSemanticTag(si, sharkKB));
+        }
+        return tag;
+    }
+
+    static SqlSemanticTag getSemanticTag(SqlSharkKB sharkKB, int id) throws SharkKBException {
+        SqlSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(id), SqlSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlSemanticTag(id, sharkKB));
+        }
+        return tag;
+    }
+
+    static SqlPeerSemanticTag getPeerSemanticTag(SqlSharkKB sharkKB, int id) throws SharkKBException {
+        SqlPeerSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(id), SqlPeerSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlPeerSemanticTag(id, sharkKB));
+        }
+        return tag;
+    }
+
+    static SqlTimeSemanticTag getTimeSemanticTag(SqlSharkKB sharkKB, int id) throws SharkKBException {
+        SqlTimeSemanticTag tag = sharkKB.getCache().get(SqlCache.tagKey(id), SqlTimeSemanticTag.class);
+        if (tag == null) {
+            tag = cache(sharkKB, new SqlTimeSemanticTag(id, sharkKB));
+        }
+        return tag;
+    }
+
+    /**
+     * Puts a tag into the cache of the kb - it can be found by id and by
+     * each of its subject identifiers.
+     */
+    private static <T extends SqlSemanticTag> T cache(SqlSharkKB sharkKB, T tag) {
+        if (tag == null) return null;
+        SqlCache cache = sharkKB.getCache();
+        cache.put(SqlCache.tagKey(tag.getId()), tag, tag.estimatedSize());
+        String[] sis = tag.getSI();
+        if (sis != null) {
+            for (String si : sis) {
+                cache.put(SqlCache.tagKey(si), tag, 32 + SqlCache.sizeOf(si));
+            }
+        }
+        return tag;
     }
 
     static SqlSemanticTag createSemanticTag(SqlSharkKB sharkKB, SemanticTag semanticTag) {
@@ -100,7 +170,7 @@ public class SqlSharkHelper {
             return getSemanticTag(sharkKB, semanticTag);
         } catch (SharkKBException e) {
             try {
-                return new SqlSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB);
+                return cache(sharkKB, new SqlSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB));
             } catch (SQLException e1) {
                 e1.printStackTrace();
             }
@@ -113,7 +183,7 @@ public class SqlSharkHelper {
             return getPeerSemanticTag(sharkKB, semanticTag);
         } catch (SharkKBException e) {
             try {
-                return new SqlPeerSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB, semanticTag.getAddresses());
+                return cache(sharkKB, new SqlPeerSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB, semanticTag.getAddresses()));
             } catch (SQLException e1) {
                 e1.printStackTrace();
             }
@@ -125,7 +195,7 @@ public class SqlSharkHelper {
             return getTimeSemanticTag(sharkKB, semanticTag);
         } catch (SharkKBException e) {
             try {
-                return new SqlTimeSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB, semanticTag.getDuration(), semanticTag.getFrom());
+                return cache(sharkKB, new SqlTimeSemanticTag(semanticTag.getSI(), semanticTag.getName(), sharkKB, semanticTag.getDuration(), semanticTag.getFrom()));
             } catch (SQLException e1) {
                 e1.printStackTrace();
             }
@@ -133,38 +203,34 @@ public class SqlSharkHelper {
         return null;
     }
 
+    /**
+     * All statements of a kb use the same connection - transactions span all
+     * of them and prepared statements are reused.
+     */
     static Connection createConnection(SqlSharkKB sharkKB) throws SQLException {
-        try {
-            Class.forName(sharkKB.getDialect());
-            return DriverManager.getConnection(sharkKB.getDbAddress());
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw new SQLException(e.getCause());
+        Connection connection = sharkKB.getConnection();
+        if (connection == null) {
+            throw new SQLException("no connection to " + sharkKB.getDbAddress());
         }
-        return null;
+        return connection;
     }
 
     static SqlAsipInformation addInformation(SqlSharkKB sharkKB, ASIPSpace space, ASIPInformation information) throws SQLException, SharkKBException {
-        Connection connection = createConnection(sharkKB);
-        List<TagContainer> containerList = getTags(sharkKB, space, true);
-        SqlAsipInformation sqlAsipInformation = new SqlAsipInformation(information, space, sharkKB);
-        String insertSet = prepareSqlInsertSet(connection, containerList, space, Collections.singletonList(sqlAsipInformation));
-        return executeInsertSuccess(connection, insertSet) ? sqlAsipInformation : null;
+        List<SqlAsipInformation> informationList = addInformation(sharkKB, space, Collections.singletonList(information).iterator());
+        return informationList != null ? informationList.get(0) : null;
     }
 
-    private static String prepareSqlInsertSet(Connection connection, List<TagContainer> containerList, ASIPSpace asipSpace, List<SqlAsipInformation> informationList) {
+    private static void insertTagSets(Connection connection, List<TagContainer> containerList, ASIPSpace asipSpace, List<SqlAsipInformation> informationList) throws SQLException {
 
-        String sql = INSERTINTO + TABLE_TAG_SET + BO + FIELD_SET_KIND + "," + FIELD_INFO_ID + "," + FIELD_TAG_ID + "," + FIELD_DIRECTION + BC + VALUES;
+        String sql = INSERTINTO + TABLE_TAG_SET + BO + FIELD_SET_KIND + "," + FIELD_INFO_ID + "," + FIELD_TAG_ID + "," + FIELD_DIRECTION + BC + VALUES + BO + "?,?,?,?" + BC;
 
+        List<Object[]> rows = new ArrayList<>();
         for (SqlAsipInformation sqlAsipInformation : informationList) {
             for (TagContainer tagContainer : containerList) {
-                sql = sql + BO + tagContainer.setKind + "," + sqlAsipInformation.getId() + "," + tagContainer.id + "," + asipSpace.getDirection() + BC + ",";
+                rows.add(new Object[]{tagContainer.setKind, sqlAsipInformation.getId(), tagContainer.id, asipSpace.getDirection()});
             }
-            sql = sql.substring(0, sql.length() - 1);
         }
-        return sql;
+        SqlHelper.executeBatch(connection, sql, rows);
     }
 
     static SqlAsipInformation getInformation(SqlSharkKB sharkKB, ASIPSpace space, ASIPInformation information) {
@@ -211,6 +277,7 @@ public class SqlSharkHelper {
         try {
             Connection connection = SqlSharkHelper.createConnection(sharkKB);
             String deleteInformation = DELETE + FROM + TABLE_INFORMATION;
+            String deleteChunks = DELETE + FROM + TABLE_INFORMATION_CHUNK;
             String deleteTagSet = DELETE + FROM + TABLE_TAG_SET;
 
             String chainedTagIds = "";
@@ -225,6 +292,7 @@ public class SqlSharkHelper {
             }
 
             for (SqlAsipInformation sqlAsipInformation : informationList) {
+                sharkKB.getCache().remove(SqlCache.informationKey(sqlAsipInformation.getId()));
                 String infoId = FIELD_INFO_ID + EQ + sqlAsipInformation.getId();
                 String id = FIELD_ID + EQ + sqlAsipInformation.getId();
 
@@ -239,6 +307,10 @@ public class SqlSharkHelper {
                     SqlHelper.executeSQLCommand(connection, deleteTagSet + WHERE + chainedTagIds);
                 } catch (SQLException e) {
                 }
+                try {
+                    SqlHelper.executeSQLCommand(connection, deleteChunks + WHERE + chainedTagIds);
+                } catch (SQLException e) {
+                }
             }
             if (!chainedIds.isEmpty()) {
                 try {
@@ -251,30 +323,33 @@ public class SqlSharkHelper {
         }
     }
 
+    /**
+     * Tags of that space, the information and their tag sets are written in a
+     * single transaction.
+     */
     static List<SqlAsipInformation> addInformation(SqlSharkKB sharkKB, ASIPSpace space, Iterator<ASIPInformation> informationIterator) throws SQLException, SharkKBException {
         Connection connection = createConnection(sharkKB);
 
-        List<TagContainer> containerList = getTags(sharkKB, space, true);
+        SqlHelper.beginTransaction(connection);
+        try {
+            List<TagContainer> containerList = getTags(sharkKB, space, true);
 
-        ArrayList<SqlAsipInformation> informationList = new ArrayList<>();
+            ArrayList<SqlAsipInformation> informationList = new ArrayList<>();
 
-        while (informationIterator.hasNext()) {
-            ASIPInformation next = informationIterator.next();
-            informationList.add(new SqlAsipInformation(next, space, sharkKB));
-        }
+            while (informationIterator.hasNext()) {
+                ASIPInformation next = informationIterator.next();
+                informationList.add(new SqlAsipInformation(next, space, sharkKB));
+            }
 
-        String insertSet = prepareSqlInsertSet(connection, containerList, space, informationList);
+            insertTagSets(connection, containerList, space, informationList);
 
-        return executeInsertSuccess(connection, insertSet) ? informationList : null;
-    }
-
-    private static boolean executeInsertSuccess(Connection connection, String sql) {
-        try {
-            SqlHelper.executeSQLCommand(connection, sql);
-            return true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+            SqlHelper.commitTransaction(connection);
+            return informationList;
+        } catch (SQLException | SharkKBException | RuntimeException e) {
+            SqlHelper.rollbackTransaction(connection);
+            // tags created within that transaction are gone
+            sharkKB.getCache().clear();
+            throw e;
         }
     }
 
@@ -423,22 +498,22 @@ public class SqlSharkHelper {
                 switch (container.setKind) {
                     case ASIPSpace.DIM_TOPIC:
                     case ASIPSpace.DIM_TYPE:
-                        SqlSemanticTag tag = new SqlSemanticTag(container.id, sharkKB);
+                        SqlSemanticTag tag = getSemanticTag(sharkKB, container.id);
                         sqlAsipSpace.addTag(tag, container.setKind);
                         break;
                     case ASIPSpace.DIM_APPROVERS:
                     case ASIPSpace.DIM_RECEIVER:
                     case ASIPSpace.DIM_SENDER:
-                        SqlPeerSemanticTag peer = new SqlPeerSemanticTag(container.id, sharkKB);
+                        SqlPeerSemanticTag peer = getPeerSemanticTag(sharkKB, container.id);
                         sqlAsipSpace.addTag(peer, container.setKind);
                         break;
                     case DIM_TIME:
-                        SqlTimeSemanticTag time = new SqlTimeSemanticTag(container.id, sharkKB);
+                        SqlTimeSemanticTag time = getTimeSemanticTag(sharkKB, container.id);
                         sqlAsipSpace.addTag(time, container.setKind);
                         break;
                     case DIM_LOCATION:
                         // TODO Implement Spatial
-                        SqlSemanticTag location = new SqlSemanticTag(container.id, sharkKB);
+                        SqlSemanticTag location = getSemanticTag(sharkKB, container.id);
                         sqlAsipSpace.addTag(location, container.setKind);
                         break;
                 }
@@ -32,6 +32,7 @@ public class SqlSharkKB extends SqlSharkPropertyHolder implements SharkKB {
     private SharkKB sharkKB;
     private InMemoSharkKB inMemoSharkKB = new InMemoSharkKB();
     private Connection connection;
+    private final SqlCache cache = new SqlCache();
     private String dbAddress;
     private String password;
     private String dialect;
@@ -82,6 +83,26 @@ public class SqlSharkKB extends SqlSharkPropertyHolder implements SharkKB {
         return connection;
     }
 
+    /**
+     * @return cache of tags and information read from the database
+     */
+    public SqlCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Releases prepared statements and closes the connection to the database.
+     */
+    public void close() throws SharkKBException {
+        cache.clear();
+        SqlHelper.releaseStatements(connection);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
     @Override
     public int getId() {
         return 1;
@@ -269,27 +290,33 @@ public class SqlSharkKB extends SqlSharkPropertyHolder implements SharkKB {
     @Override
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
         try {
-            List<SqlAsipInformation> informationList = SqlSharkHelper.getInformation(this, space, true);
-            if (informationList.isEmpty()) {
+            SqlHelper.beginTransaction(connection);
+            try {
+                List<SqlAsipInformation> informationList = SqlSharkHelper.getInformation(this, space, true);
+                List<ASIPInformation> newInformation = new ArrayList<>();
                 while (information.hasNext()) {
                     ASIPInformation next = information.next();
-                    new SqlAsipInformation(next, space, this);
-                }
-            } else {
-                for (SqlAsipInformation sqlAsipInformation : informationList) {
-                    while (information.hasNext()) {
-                        ASIPInformation next = information.next();
-                        boolean merged = false;
+                    boolean merged = false;
+                    for (SqlAsipInformation sqlAsipInformation : informationList) {
                         if (sqlAsipInformation.getName().equals(next.getName())) {
                             sqlAsipInformation.setContent(next.getContentAsByte());
                             sqlAsipInformation.setContentType(next.getContentType());
                             merged = true;
                         }
-                        if (!merged) {
-                            new SqlAsipInformation(next, space, this);
-                        }
                     }
+                    if (!merged) {
+                        newInformation.add(next);
+                    }
+                }
+                if (!newInformation.isEmpty()) {
+                    SqlSharkHelper.addInformation(this, space, newInformation.iterator());
                 }
+                SqlHelper.commitTransaction(connection);
+            } catch (SQLException | SharkKBException | RuntimeException e) {
+                SqlHelper.rollbackTransaction(connection);
+                // tags created within that transaction are gone
+                cache.clear();
+                throw e;
             }
             List<ASIPInformationSpace> infoSpaces = SqlSharkHelper.getInfoSpaces(this, space);
             if (infoSpaces != null && !infoSpaces.isEmpty()) {
@@ -84,17 +84,23 @@ public abstract class SqlSharkPropertyHolder implements PropertyHolder, Connecti
             Map.Entry pair = (Map.Entry) it.next();
             sb.append(pair.getKey() + "<" + pair.getValue() + ">");
         }
-        String update = UPDATE + table + SET + FIELD_PROPERTY + EQ + "'" + sb.toString() + "'"
-                + WHERE + FIELD_ID + EQ + Integer.toString(id);
+        String update = UPDATE + table + SET + FIELD_PROPERTY + EQ + "?" + WHERE + FIELD_ID + EQ + "?";
         try {
-            SqlHelper.executeSQLCommand(connection, update);
+            SqlHelper.executeUpdate(connection, update, sb.toString(), id);
             this.properties = properties;
+            this.propertiesChanged();
         } catch (SQLException e) {
             e.printStackTrace();
             throw new SharkKBException();
         }
     }
 
+    /**
+     * Called after properties were written to the database.
+     */
+    protected void propertiesChanged() {
+    }
+
     protected void setProperties(PropertyHolder propertyHolder) throws SharkKBException {
         if(propertyHolder==null) return;
         Enumeration<String> enumeration = propertyHolder.propertyNames();
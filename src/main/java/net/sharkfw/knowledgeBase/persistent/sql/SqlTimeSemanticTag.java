@@ -25,20 +25,7 @@ public class SqlTimeSemanticTag extends SqlSemanticTag implements TimeSemanticTa
         super(sis, name, "time", sharkKB);
         this.tagDuration = tagDuration;
         this.tagStart = tagStart;
-        StringBuilder sql = new StringBuilder();
-        sql.append("INSERT INTO semantic_tag (name, tag_kind, t_duration, t_start) VALUES "
-                + "(\'" + this.getName() + "\'" + ",\"" + this.getTagKind() + "\"," + tagDuration + "," + tagStart + ");");
-        SqlHelper.executeSQLCommand(this.getConnection(), sql.toString());
-        this.setId(SqlHelper.getLastCreatedEntry(this.getConnection(), "semantic_tag"));
-        SqlHelper.executeSQLCommand(this.getConnection(), this.getSqlForSIs());
-        String update = UPDATE + TABLE_SEMANTIC_TAG + SET + FIELD_SYSTEM_PROPERTY + EQ + Integer.toString(this.getId())
-                + WHERE + FIELD_ID + EQ + Integer.toString(this.getId());
-
-        try {
-            SqlHelper.executeSQLCommand(this.getConnection(), update);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.insertTag(", t_duration, t_start", tagDuration, tagStart);
     }
 
     public SqlTimeSemanticTag(String si, SqlSharkKB sharkKB) throws SharkKBException {
@@ -46,12 +33,12 @@ public class SqlTimeSemanticTag extends SqlSemanticTag implements TimeSemanticTa
         String sql = null;
         if (si != null) {
             sql = SELECT + ALL + FROM + TABLE_SEMANTIC_TAG + JOIN + TABLE_SUBJECT_IDENTIFIER + ON +
-                    FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + QU + si + QU + WHERE + TABLE_SEMANTIC_TAG + DOT + FIELD_ID + EQ + FIELD_TAG_ID;
+                    FIELD_SUBJECT_IDENTIFIER_IDENTIFIER + EQ + "?" + WHERE + TABLE_SEMANTIC_TAG + DOT + FIELD_ID + EQ + FIELD_TAG_ID;
         }
         else {
             throw new SharkKBException();
         }
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), sql)) {
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), sql, si)) {
 
             if (rs != null) {
                 rs.next();
@@ -65,8 +52,8 @@ public class SqlTimeSemanticTag extends SqlSemanticTag implements TimeSemanticTa
 
     public SqlTimeSemanticTag(int id, SqlSharkKB sharkKB) throws SharkKBException {
         super(id, sharkKB);
-        String sql = SELECT + ALL + FROM + TABLE_SEMANTIC_TAG + WHERE + FIELD_ID + EQ + id;
-        try (ResultSet rs = SqlHelper.executeSQLCommandWithResult(this.getConnection(), sql)) {
+        String sql = SELECT + ALL + FROM + TABLE_SEMANTIC_TAG + WHERE + FIELD_ID + EQ + "?";
+        try (ResultSet rs = SqlHelper.executeQuery(this.getConnection(), sql, id)) {
             if (rs != null) {
                 rs.next();
                 this.tagDuration = rs.getLong("t_duration");
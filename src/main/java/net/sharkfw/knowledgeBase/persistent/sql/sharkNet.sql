@@ -52,6 +52,13 @@ CREATE TABLE IF NOT EXISTS information (
 	property text
 );
 
+CREATE TABLE IF NOT EXISTS information_chunk (
+	info_id integer,
+	chunk_index integer,
+	data BLOB,
+	PRIMARY KEY (info_id, chunk_index)
+);
+
 CREATE TABLE IF NOT EXISTS knowledge_base (
 	id integer PRIMARY KEY autoincrement,
 	property text,
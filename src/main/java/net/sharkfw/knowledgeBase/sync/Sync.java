@@ -10,7 +10,29 @@ import java.util.Iterator;
  * @param <SyncEntity>
  */
 public abstract class Sync<SyncEntity extends Sync> {
-    
+
+    // changes of wrapped entities are recorded here - null if not tracked
+    SyncChangeLog changeLog = null;
+    int changeLogKind;
+
+    /**
+     * Wrappers created by creator record their changes in the same log.
+     *
+     * @param creator
+     * @param wrapper
+     * @return wrapper
+     */
+    static <W extends Sync<?>> W logTo(Sync<?> creator, W wrapper) {
+        if (wrapper != null && creator.changeLog != null) {
+            wrapper.changeLog = creator.changeLog;
+            wrapper.changeLogKind = creator.changeLogKind;
+            if (wrapper instanceof SyncPropertyHolder) {
+                ((SyncPropertyHolder) wrapper).logTimeStamp();
+            }
+        }
+        return wrapper;
+    }
+
     // must be overwritten by each inheriting class
     SyncEntity wrapSyncObject(Object target) {
         throw new RuntimeException("you really MUST overwrite wrapTag in your class :)");
@@ -0,0 +1,312 @@
+package net.sharkfw.knowledgeBase.sync;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.knowledgeBase.Information;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SystemPropertyHolder;
+import net.sharkfw.system.L;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of changed entities of a {@link SyncKB} ordered by modification
+ * time. Changes since a point in time are found by a range scan - no need to
+ * walk through the whole knowledge base and to parse each time stamp again.
+ *
+ * Entities are tags and information of the target knowledge base, kept by
+ * identity. The log can be persisted as system property of the target
+ * knowledge base. Tags are stored by their subject identifiers, information
+ * by their unique id.
+ */
+class SyncChangeLog {
+
+    static final int TOPICS = 0;
+    static final int TYPES = 1;
+    static final int PEERS = 2;
+    static final int LOCATIONS = 3;
+    static final int TIMES = 4;
+    static final int INFORMATION = 5;
+
+    static final String LOG_PROPERTY = "Shark_System_Change_Log";
+    static final String LOG_STATE_PROPERTY = "Shark_System_Change_Log_State";
+    private static final String STATE_CLEAN = "clean";
+    private static final String STATE_DIRTY = "dirty";
+
+    private static final String KIND = "kind";
+    private static final String TIME = "time";
+    private static final String SIS = "sis";
+    private static final String ID = "id";
+
+    private static class Entry {
+        private final int kind;
+        private final Object entity;
+        private final long time;
+        private final long serial;
+
+        Entry(int kind, Object entity, long time, long serial) {
+            this.kind = kind;
+            this.entity = entity;
+            this.time = time;
+            this.serial = serial;
+        }
+    }
+
+    /**
+     * Is told about each change of a logged entity.
+     */
+    interface Listener {
+        void recorded(int kind, Object entity);
+
+        void removed(Object entity);
+
+        /**
+         * Log was cleared - all entities must be considered changed.
+         */
+        void cleared();
+    }
+
+    // time -> entries changed at that time, in order of recording
+    private final TreeMap<Long, Map<Long, Entry>> byTime = new TreeMap<>();
+    private final IdentityHashMap<Object, Entry> entries = new IdentityHashMap<>();
+    private final SystemPropertyHolder holder;
+    private Listener listener = null;
+    private long nextSerial = 0;
+    private boolean dirty = true;
+
+    /**
+     * @param holder log is persisted in that holder - usually target kb
+     */
+    SyncChangeLog(SystemPropertyHolder holder) {
+        this.holder = holder;
+    }
+
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    synchronized void clear() {
+        this.byTime.clear();
+        this.entries.clear();
+        this.markDirty();
+        if (this.listener != null) {
+            this.listener.cleared();
+        }
+    }
+
+    /**
+     * Remembers that entity has been changed at time. An earlier change of
+     * that entity is forgotten.
+     *
+     * @param kind
+     * @param entity tag or information - not a sync wrapper
+     * @param time
+     */
+    synchronized void record(int kind, Object entity, long time) {
+        if (entity == null) {
+            return;
+        }
+        // entity could have been changed twice within the same millisecond
+        if (this.listener != null) {
+            this.listener.recorded(kind, entity);
+        }
+        if (time == SyncPropertyHolder.UNKNOWN_TIME) {
+            return;
+        }
+        Entry old = this.entries.get(entity);
+        if (old != null) {
+            if (old.time == time && old.kind == kind) {
+                return;
+            }
+            this.unlink(old);
+        }
+        Entry entry = new Entry(kind, entity, time, this.nextSerial++);
+        this.entries.put(entity, entry);
+        Map<Long, Entry> bucket = this.byTime.get(time);
+        if (bucket == null) {
+            bucket = new LinkedHashMap<>();
+            this.byTime.put(time, bucket);
+        }
+        bucket.put(entry.serial, entry);
+        this.markDirty();
+    }
+
+    synchronized void remove(Object entity) {
+        if (this.listener != null) {
+            this.listener.removed(entity);
+        }
+        Entry entry = this.entries.remove(entity);
+        if (entry != null) {
+            this.unlink(entry);
+            this.markDirty();
+        }
+    }
+
+    /**
+     * @param kind
+     * @param since
+     * @return entities of that kind which have been changed after since
+     */
+    synchronized List<Object> changedSince(int kind, long since) {
+        List<Object> result = new ArrayList<>();
+        for (Map<Long, Entry> bucket : this.byTime.tailMap(since, false).values()) {
+            for (Entry entry : bucket.values()) {
+                if (entry.kind == kind) {
+                    result.add(entry.entity);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void unlink(Entry entry) {
+        Map<Long, Entry> bucket = this.byTime.get(entry.time);
+        if (bucket != null) {
+            bucket.remove(entry.serial);
+            if (bucket.isEmpty()) {
+                this.byTime.remove(entry.time);
+            }
+        }
+    }
+
+    private void markDirty() {
+        if (!this.dirty) {
+            this.dirty = true;
+            // a persisted log isn't valid anymore
+            this.holder.setSystemProperty(LOG_STATE_PROPERTY, STATE_DIRTY);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                          persistence                              //
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Resolves persisted keys to entities of the knowledge base.
+     */
+    interface Resolver {
+        SemanticTag getTag(int kind, String[] sis);
+
+        ASIPInformation getInformation(String id);
+    }
+
+    /**
+     * Writes log into holder - nothing is done if the log hasn't changed
+     * since last call or if an entity cannot be identified.
+     */
+    synchronized void persist() {
+        if (!this.dirty) {
+            return;
+        }
+
+        JSONArray jsonEntries = new JSONArray();
+        try {
+            for (Map<Long, Entry> bucket : this.byTime.values()) {
+                for (Entry entry : bucket.values()) {
+                    JSONObject jsonEntry = new JSONObject();
+                    jsonEntry.put(KIND, entry.kind);
+                    jsonEntry.put(TIME, entry.time);
+                    if (entry.entity instanceof SemanticTag) {
+                        jsonEntry.put(SIS, new JSONArray(((SemanticTag) entry.entity).getSI()));
+                    } else if (uniqueID(entry.entity) != null) {
+                        jsonEntry.put(ID, uniqueID(entry.entity));
+                    } else {
+                        // cannot be found again - log stays dirty
+                        return;
+                    }
+                    jsonEntries.put(jsonEntry);
+                }
+            }
+        } catch (JSONException e) {
+            L.w("cannot serialize change log: " + e.getMessage(), this);
+            return;
+        }
+
+        this.holder.setSystemProperty(LOG_PROPERTY, jsonEntries.toString());
+        this.holder.setSystemProperty(LOG_STATE_PROPERTY, STATE_CLEAN);
+        this.dirty = false;
+    }
+
+    /**
+     * Reads a log written by {@link #persist()}.
+     *
+     * @param resolver
+     * @return false if there is no valid persisted log - log remains empty
+     */
+    synchronized boolean restore(Resolver resolver) {
+        String state = this.holder.getSystemProperty(LOG_STATE_PROPERTY);
+        String serialized = this.holder.getSystemProperty(LOG_PROPERTY);
+        if (!STATE_CLEAN.equals(state) || serialized == null) {
+            return false;
+        }
+
+        try {
+            JSONArray jsonEntries = new JSONArray(serialized);
+            for (int i = 0; i < jsonEntries.length(); i++) {
+                JSONObject jsonEntry = jsonEntries.getJSONObject(i);
+                int kind = jsonEntry.getInt(KIND);
+                Object entity;
+                if (jsonEntry.has(SIS)) {
+                    JSONArray jsonSIs = jsonEntry.getJSONArray(SIS);
+                    String[] sis = new String[jsonSIs.length()];
+                    for (int s = 0; s < sis.length; s++) {
+                        sis[s] = jsonSIs.getString(s);
+                    }
+                    entity = resolver.getTag(kind, sis);
+                } else {
+                    entity = resolver.getInformation(jsonEntry.getString(ID));
+                }
+                // entities removed in the meantime are dropped
+                if (entity != null) {
+                    this.record(kind, entity, jsonEntry.getLong(TIME));
+                }
+            }
+        } catch (JSONException e) {
+            L.w("cannot read persisted change log: " + e.getMessage(), this);
+            this.byTime.clear();
+            this.entries.clear();
+            return false;
+        }
+        this.dirty = false;
+        return true;
+    }
+
+    /**
+     * @param information
+     * @return information by their unique ids
+     */
+    static Map<String, ASIPInformation> informationById(Iterator<ASIPInformation> information) {
+        Map<String, ASIPInformation> result = new HashMap<>();
+        while (information.hasNext()) {
+            ASIPInformation info = information.next();
+            String id = uniqueID(info);
+            if (id != null) {
+                result.put(id, info);
+            }
+        }
+        return result;
+    }
+
+    private static String uniqueID(Object entity) {
+        if (entity instanceof Information) {
+            String id = ((Information) entity).getUniqueID();
+            if (id != null && !id.isEmpty()) {
+                return id;
+            }
+        }
+        return null;
+    }
+}
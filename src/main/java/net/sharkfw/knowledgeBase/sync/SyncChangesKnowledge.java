@@ -0,0 +1,192 @@
+package net.sharkfw.knowledgeBase.sync;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.SharkAlgebra;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SharkVocabulary;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Read only view of changes of a {@link SyncKB}. Changed information aren't
+ * copied - the view refers to the information of the synchronized knowledge
+ * base. A serializer streams their content straight to the connection.
+ *
+ * Information are grouped by their semantic annotation.
+ *
+ * @see SyncKB#getChangesToSend(Long)
+ */
+class SyncChangesKnowledge implements ASIPKnowledge {
+
+    private final SharkVocabulary vocabulary;
+    private final List<ChangedInformationSpace> spaces = new ArrayList<>();
+    private int informationNumber = 0;
+
+    private static class ChangedInformationSpace implements ASIPInformationSpace {
+        private final ASIPSpace space;
+        private final List<ASIPInformation> information = new ArrayList<>();
+
+        ChangedInformationSpace(ASIPSpace space) {
+            this.space = space;
+        }
+
+        @Override
+        public ASIPSpace getASIPSpace() throws SharkKBException {
+            return this.space;
+        }
+
+        @Override
+        public int numberOfInformations() {
+            return this.information.size();
+        }
+
+        @Override
+        public Iterator<ASIPInformation> informations() throws SharkKBException {
+            return this.information.iterator();
+        }
+    }
+
+    /**
+     * @param vocabulary changed tags
+     * @param information changed information
+     * @throws SharkKBException
+     */
+    SyncChangesKnowledge(SharkVocabulary vocabulary, List<Object> information) throws SharkKBException {
+        this.vocabulary = vocabulary;
+
+        IdentityHashMap<ASIPSpace, ChangedInformationSpace> bySpace = new IdentityHashMap<>();
+        for (Object entity : information) {
+            ASIPInformation info = (ASIPInformation) entity;
+            ASIPSpace space = info.getASIPSpace();
+            ChangedInformationSpace infoSpace = bySpace.get(space);
+            if (infoSpace == null) {
+                infoSpace = new ChangedInformationSpace(space);
+                bySpace.put(space, infoSpace);
+                this.spaces.add(infoSpace);
+            }
+            infoSpace.information.add(info);
+            this.informationNumber++;
+        }
+    }
+
+    @Override
+    public SharkVocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+    @Override
+    public int getNumberInformation() throws SharkKBException {
+        return this.informationNumber;
+    }
+
+    @Override
+    public Iterator<ASIPInformationSpace> informationSpaces() throws SharkKBException {
+        return new ArrayList<ASIPInformationSpace>(this.spaces).iterator();
+    }
+
+    @Override
+    public Iterator<ASIPInformationSpace> getInformationSpaces(ASIPSpace space) throws SharkKBException {
+        List<ASIPInformationSpace> result = new ArrayList<>();
+        for (ChangedInformationSpace infoSpace : this.spaces) {
+            if (SharkAlgebra.identical(infoSpace.space, space)) {
+                result.add(infoSpace);
+            }
+        }
+        return result.iterator();
+    }
+
+    @Override
+    public Iterator<ASIPInformation> getInformation(ASIPSpace infoSpace) throws SharkKBException {
+        List<ASIPInformation> result = new ArrayList<>();
+        Iterator<ASIPInformationSpace> infoSpaceIter = this.getInformationSpaces(infoSpace);
+        while (infoSpaceIter.hasNext()) {
+            result.addAll(((ChangedInformationSpace) infoSpaceIter.next()).information);
+        }
+        return result.iterator();
+    }
+
+    @Override
+    public Iterator<ASIPInformation> getInformation(ASIPSpace infoSpace, boolean fullyInside,
+            boolean matchAny) throws SharkKBException {
+        List<ASIPInformation> result = new ArrayList<>();
+        for (ChangedInformationSpace changedSpace : this.spaces) {
+            if (SharkCSAlgebra.isIn(infoSpace, changedSpace.space)) {
+                result.addAll(changedSpace.information);
+            }
+        }
+        return result.iterator();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                    changes cannot be modified                     //
+    ///////////////////////////////////////////////////////////////////////
+
+    private SharkKBException readOnly() {
+        return new SharkKBException("changes of a sync kb cannot be modified");
+    }
+
+    @Override
+    public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information,
+            ASIPSpace space) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(byte[] content, ASIPSpace semanticAnnotations)
+            throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(InputStream contentIS, int numberOfBytes,
+            ASIPSpace semanticAnnotations) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(String content, ASIPSpace semanticAnnotations)
+            throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(String name, String content,
+            ASIPSpace semanticAnnotations) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(String name, byte[] content,
+            ASIPSpace semanticAnnotations) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public ASIPInformation addInformation(String name, InputStream contentIS,
+            int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public void removeInformationSpace(ASIPSpace space) throws SharkKBException {
+        throw this.readOnly();
+    }
+
+    @Override
+    public void removeInformation(ASIPSpace space) throws SharkKBException {
+        throw this.readOnly();
+    }
+}
@@ -1,117 +1,245 @@
 package net.sharkfw.knowledgeBase.sync;
 
+import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.Information;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoInformation;
+import net.sharkfw.system.L;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Enumeration;
 
 /**
+ * Wraps information of a {@link SyncKB}. Changes of content, name or
+ * properties are recorded in the change log of that kb.
+ *
  * Created by thsc42 on 28.07.16.
  */
-class SyncInformation extends SyncPropertyHolder implements Information {
+class SyncInformation extends Sync<SyncInformation> implements Information {
+    private final ASIPInformation target;
 
-    SyncInformation(Information target) {
-        super(target);
+    /**
+     * @param target
+     * @param changeLog changes are recorded here - null if not tracked
+     */
+    SyncInformation(ASIPInformation target, SyncChangeLog changeLog) {
+        this.target = target;
+        this.changeLog = changeLog;
+        this.changeLogKind = SyncChangeLog.INFORMATION;
     }
 
-    SyncInformation wrapSyncObject(Information target) {
-        return new SyncInformation((Information) target);
+    SyncInformation wrapSyncObject(ASIPInformation target) {
+        return Sync.logTo(this, new SyncInformation(target, null));
     }
-    
-    @Override
-    protected SyncInformation getTarget() {
-        return (SyncInformation) super.getTarget();
+
+    ASIPInformation getTarget() {
+        return this.target;
+    }
+
+    /**
+     * @param info
+     * @return information wrapped by info or info itself
+     */
+    static ASIPInformation unwrap(ASIPInformation info) {
+        return info instanceof SyncInformation ? ((SyncInformation) info).getTarget() : info;
+    }
+
+    /**
+     * That method is to be called whenever a change occurred on that information.
+     */
+    private void changed() {
+        long time = System.currentTimeMillis();
+        try {
+            // same property SyncKB reads when rebuilding the change log
+            this.target.setProperty(InMemoInformation.INFO_LAST_MODIFED, Long.toString(time));
+        } catch (SharkKBException e) {
+            L.e("cannot write time stamp - sync won't work accordingly");
+        }
+        if (this.changeLog != null) {
+            this.changeLog.record(this.changeLogKind, this.target, time);
+        }
     }
 
     @Override
     public ASIPSpace getASIPSpace() throws SharkKBException {
-        return null;
+        return this.target.getASIPSpace();
     }
 
     @Override
     public long lastModified() {
-        return 0;
+        return this.target.lastModified();
     }
 
     @Override
     public long creationTime() {
-        return 0;
+        return this.target.creationTime();
     }
 
     @Override
     public void setContent(InputStream is, long len) {
-
+        this.target.setContent(is, len);
+        this.changed();
     }
 
     @Override
     public void setContent(byte[] content) {
-
+        this.target.setContent(content);
+        this.changed();
     }
 
     @Override
     public void setContent(String content) {
-
+        this.target.setContent(content);
+        this.changed();
     }
 
     @Override
     public void removeContent() {
-
+        this.target.removeContent();
+        this.changed();
     }
 
     @Override
     public void setContentType(String mimetype) {
-
+        this.target.setContentType(mimetype);
+        this.changed();
     }
 
     @Override
     public String getContentType() {
-        return null;
+        return this.target.getContentType();
     }
 
     @Override
     public byte[] getContentAsByte() {
-        return new byte[0];
+        return this.target.getContentAsByte();
     }
 
     @Override
     public void streamContent(OutputStream os) {
-
+        this.target.streamContent(os);
     }
 
     @Override
     public long getContentLength() {
-        return 0;
+        return this.target.getContentLength();
     }
 
     @Override
     public String getName() {
-        return null;
+        return this.target.getName();
     }
 
     @Override
     public String getContentAsString() throws SharkKBException {
-        return null;
+        return this.target.getContentAsString();
     }
 
     @Override
     public void setName(String name) throws SharkKBException {
-
+        this.target.setName(name);
+        this.changed();
     }
 
+    /**
+     * Content written to that stream is logged when the stream is closed.
+     */
     @Override
     public OutputStream getOutputStream() throws SharkKBException {
-        return null;
+        OutputStream os;
+        if (this.target instanceof Information) {
+            os = ((Information) this.target).getOutputStream();
+        } else {
+            os = new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    SyncInformation.this.target.setContent(this.toByteArray());
+                }
+            };
+        }
+
+        return new FilterOutputStream(os) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                SyncInformation.this.changed();
+            }
+        };
     }
 
     @Override
     public InputStream getInputStream() throws SharkKBException {
-        return null;
+        if (this.target instanceof Information) {
+            return ((Information) this.target).getInputStream();
+        }
+        return new ByteArrayInputStream(this.target.getContentAsByte());
     }
 
     @Override
     public String getUniqueID() {
+        if (this.target instanceof Information) {
+            return ((Information) this.target).getUniqueID();
+        }
+        return null;
+    }
+
+    @Override
+    public void setProperty(String name, String value) throws SharkKBException {
+        this.target.setProperty(name, value);
+        this.changed();
+    }
+
+    @Override
+    public String getProperty(String name) throws SharkKBException {
+        return this.target.getProperty(name);
+    }
+
+    @Override
+    public void setProperty(String name, String value, boolean transfer) throws SharkKBException {
+        this.target.setProperty(name, value, transfer);
+        this.changed();
+    }
+
+    @Override
+    public void removeProperty(String name) throws SharkKBException {
+        this.target.removeProperty(name);
+        this.changed();
+    }
+
+    @Override
+    public Enumeration<String> propertyNames() throws SharkKBException {
+        return this.target.propertyNames();
+    }
+
+    @Override
+    public Enumeration<String> propertyNames(boolean all) throws SharkKBException {
+        return this.target.propertyNames(all);
+    }
+
+    @Override
+    public void setSystemProperty(String name, String value) {
+        if (this.target instanceof Information) {
+            ((Information) this.target).setSystemProperty(name, value);
+        }
+    }
+
+    @Override
+    public String getSystemProperty(String name) {
+        if (this.target instanceof Information) {
+            return ((Information) this.target).getSystemProperty(name);
+        }
         return null;
     }
 }
@@ -10,20 +10,25 @@ import java.util.Iterator;
  * Created by j4rvis on 19.07.16.
  * author thsc42
  */
-class SyncInformationSpace extends SyncPropertyHolder implements ASIPInformationSpace {
+class SyncInformationSpace extends Sync<SyncInformationSpace> implements ASIPInformationSpace {
+    private final ASIPInformationSpace target;
 
-    SyncInformationSpace(ASIPInformationSpace target) {
-        //super(target);
-        super(null);
+    /**
+     * @param target
+     * @param changeLog changes of information are recorded here - null if not tracked
+     */
+    SyncInformationSpace(ASIPInformationSpace target, SyncChangeLog changeLog) {
+        this.target = target;
+        this.changeLog = changeLog;
+        this.changeLogKind = SyncChangeLog.INFORMATION;
     }
 
     SyncInformationSpace wrapSyncObject(ASIPInformationSpace target) {
-        return new SyncInformationSpace((ASIPInformationSpace) target);
+        return Sync.logTo(this, new SyncInformationSpace(target, null));
     }
 
-    @Override
-    protected SyncInformationSpace getTarget() {
-        return (SyncInformationSpace) super.getTarget();
+    protected ASIPInformationSpace getTarget() {
+        return this.target;
     }
 
     @Override
@@ -38,6 +43,62 @@ class SyncInformationSpace extends SyncPropertyHolder implements ASIPInformation
 
     @Override
     public Iterator<ASIPInformation> informations() throws SharkKBException {
-        return this.getTarget().informations();
+        return SyncInformationSpace.wrapInformation(this.changeLog, this.getTarget().informations());
+    }
+
+    /**
+     * @param changeLog wrapped information record their changes here
+     * @param information
+     * @return iterator over wrapped information
+     */
+    static Iterator<ASIPInformation> wrapInformation(final SyncChangeLog changeLog,
+            final Iterator<ASIPInformation> information) {
+
+        if (information == null) return null;
+
+        return new Iterator<ASIPInformation>() {
+            @Override
+            public boolean hasNext() {
+                return information.hasNext();
+            }
+
+            @Override
+            public ASIPInformation next() {
+                return new SyncInformation(information.next(), changeLog);
+            }
+
+            @Override
+            public void remove() {
+                information.remove();
+            }
+        };
+    }
+
+    /**
+     * @param changeLog wrapped spaces record changes of their information here
+     * @param spaces
+     * @return iterator over wrapped information spaces
+     */
+    static Iterator<ASIPInformationSpace> wrapSpaces(final SyncChangeLog changeLog,
+            final Iterator<ASIPInformationSpace> spaces) {
+
+        if (spaces == null) return null;
+
+        return new Iterator<ASIPInformationSpace>() {
+            @Override
+            public boolean hasNext() {
+                return spaces.hasNext();
+            }
+
+            @Override
+            public ASIPInformationSpace next() {
+                return new SyncInformationSpace(spaces.next(), changeLog);
+            }
+
+            @Override
+            public void remove() {
+                spaces.remove();
+            }
+        };
     }
 }
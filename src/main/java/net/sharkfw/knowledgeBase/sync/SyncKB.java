@@ -3,6 +3,7 @@ package net.sharkfw.knowledgeBase.sync;
 import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPInformationSpace;
 import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.knowledgeBase.inmemory.InMemoInformation;
@@ -13,6 +14,8 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by j4rvis on 19.07.16.
@@ -42,10 +45,15 @@ public class SyncKB implements SharkKB{
     private final SharkKB targetKB;
     public final static String TIME_PROPERTY_NAME = "Shark_System_Last_Modified";
 
+    // changed tags and information ordered by time
+    private final SyncChangeLog changeLog;
+    private SyncMerkleTree merkleTree = null;
+
     private ArrayList<SyncChangeListener> syncChangeListeners = new ArrayList<>();
 
     public SyncKB(SharkKB target) throws SharkKBException {
         this.targetKB = target;
+        this.changeLog = new SyncChangeLog(target);
         
         /* we make a decomposition of target knowledge base into
         its dimensions and information spaces and wrap it
@@ -74,15 +82,202 @@ public class SyncKB implements SharkKB{
 
         // times
         this.times = new SyncTimeSTSet(target.getTimeSTSet());
+
+        this.track(this.topics, SyncChangeLog.TOPICS);
+        this.track(this.snTopics, SyncChangeLog.TOPICS);
+        this.track(this.txTopics, SyncChangeLog.TOPICS);
+        this.track(this.types, SyncChangeLog.TYPES);
+        this.track(this.snTypes, SyncChangeLog.TYPES);
+        this.track(this.txTypes, SyncChangeLog.TYPES);
+        this.track(this.peers, SyncChangeLog.PEERS);
+        this.track(this.snPeers, SyncChangeLog.PEERS);
+        this.track(this.txPeers, SyncChangeLog.PEERS);
+        this.track(this.locations, SyncChangeLog.LOCATIONS);
+        this.track(this.times, SyncChangeLog.TIMES);
+
+        // a persisted change log saves a walk through the whole kb
+        if (!this.changeLog.restore(new ChangeLogResolver())) {
+            this.rebuildChangeLog();
+        }
         
-        /* NOTE also: We don't wrap information at all. Information alread
-        get a last modified tag at least in its in memo implementation.
-        
-        TODO: We have to wrap information as well here. We cannot ensure that
-        any kb implementation implements that modified time setting correctly.
+        /* NOTE also: Information are wrapped when handed out by this kb.
+        Changes of their content, name or properties are recorded in the
+        change log - we cannot ensure that any kb implementation sets a last
+        modified time correctly.
         */
     }
 
+    /**
+     * Changes made by means of that wrapper are recorded in change log.
+     */
+    private <S extends Sync<?>> S track(S wrapper, int kind) {
+        wrapper.changeLog = this.changeLog;
+        wrapper.changeLogKind = kind;
+        return wrapper;
+    }
+
+    private class ChangeLogResolver implements SyncChangeLog.Resolver {
+        private Map<String, ASIPInformation> information = null;
+
+        @Override
+        public SemanticTag getTag(int kind, String[] sis) {
+            try {
+                STSet set = SyncKB.this.targetSet(kind);
+                return set != null ? set.getSemanticTag(sis) : null;
+            } catch (SharkKBException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public ASIPInformation getInformation(String id) {
+            if (this.information == null) {
+                this.information = SyncChangeLog.informationById(SyncKB.this.allInformation().iterator());
+            }
+            return this.information.get(id);
+        }
+    }
+
+    private STSet targetSet(int kind) throws SharkKBException {
+        switch (kind) {
+            case SyncChangeLog.TOPICS: return this.targetKB.getTopicSTSet();
+            case SyncChangeLog.TYPES: return this.targetKB.getTypeSTSet();
+            case SyncChangeLog.PEERS: return this.targetKB.getPeerSTSet();
+            case SyncChangeLog.LOCATIONS: return this.targetKB.getSpatialSTSet();
+            case SyncChangeLog.TIMES: return this.targetKB.getTimeSTSet();
+            default: return null;
+        }
+    }
+
+    private List<ASIPInformation> allInformation() {
+        List<ASIPInformation> result = new ArrayList<>();
+        try {
+            Iterator<ASIPInformationSpace> infoSpaceIter = this.targetKB.getAllInformationSpaces();
+            while (infoSpaceIter != null && infoSpaceIter.hasNext()) {
+                Iterator<ASIPInformation> infoIter = infoSpaceIter.next().informations();
+                while (infoIter != null && infoIter.hasNext()) {
+                    result.add(infoIter.next());
+                }
+            }
+        } catch (SharkKBException e) {
+            L.e("cannot iterate information: " + e.getMessage(), this);
+        }
+        return result;
+    }
+
+    /**
+     * Walks through the whole target knowledge base and fills the change log
+     * with time stamps of all tags and information. That's done once
+     * when no valid change log is persisted. It must be called again if target
+     * knowledge base has been changed without this sync kb.
+     *
+     * @throws SharkKBException
+     */
+    public void rebuildChangeLog() throws SharkKBException {
+        this.changeLog.clear();
+
+        for (int kind = SyncChangeLog.TOPICS; kind <= SyncChangeLog.TIMES; kind++) {
+            STSet set = this.targetSet(kind);
+            Enumeration<SemanticTag> tags = set != null ? set.tags() : null;
+            while (tags != null && tags.hasMoreElements()) {
+                SemanticTag tag = tags.nextElement();
+                this.changeLog.record(kind, tag, SyncKB.getTimeStamp(tag));
+            }
+        }
+
+        for (ASIPInformation info : this.allInformation()) {
+            this.logInformation(info);
+        }
+    }
+
+    /**
+     * Hash tree over all tags and information of that kb. It is built once.
+     * Later, only entities changed since last call are hashed again. It is
+     * built again after {@link #rebuildChangeLog()}.
+     *
+     * @return hash tree for anti entropy sync
+     * @throws SharkKBException
+     */
+    public synchronized SyncMerkleTree getMerkleTree() throws SharkKBException {
+        if (this.merkleTree != null && !this.merkleTree.isStale()) {
+            this.merkleTree.update();
+            return this.merkleTree;
+        }
+
+        SyncMerkleTree tree = new SyncMerkleTree();
+        // changes made while walking through the kb are applied with next call
+        this.changeLog.setListener(tree);
+        for (int kind = SyncChangeLog.TOPICS; kind <= SyncChangeLog.TIMES; kind++) {
+            STSet set = this.targetSet(kind);
+            Enumeration<SemanticTag> tags = set != null ? set.tags() : null;
+            while (tags != null && tags.hasMoreElements()) {
+                tree.add(kind, tags.nextElement());
+            }
+        }
+        for (ASIPInformation info : this.allInformation()) {
+            tree.add(info);
+        }
+
+        this.merkleTree = tree;
+        return tree;
+    }
+
+    /**
+     * Changes made by means of returned information are recorded in change log.
+     */
+    private ASIPInformation wrap(ASIPInformation info) {
+        return info != null ? new SyncInformation(info, this.changeLog) : null;
+    }
+
+    /**
+     * Tags of space are added to vocabulary of target kb without this sync kb
+     * when creating spaces or adding information.
+     */
+    private void logTags(ASIPSpace space) throws SharkKBException {
+        if (space == null) return;
+
+        this.logTags(SyncChangeLog.TOPICS, space.getTopics());
+        this.logTags(SyncChangeLog.TYPES, space.getTypes());
+        this.logTags(SyncChangeLog.PEERS, space.getApprovers());
+        this.logTags(SyncChangeLog.PEERS, space.getReceivers());
+        if (space.getSender() != null) {
+            this.logTag(SyncChangeLog.PEERS, space.getSender());
+        }
+        this.logTags(SyncChangeLog.TIMES, space.getTimes());
+        this.logTags(SyncChangeLog.LOCATIONS, space.getLocations());
+    }
+
+    private void logTags(int kind, STSet tags) throws SharkKBException {
+        Enumeration<SemanticTag> tagEnum = tags != null ? tags.tags() : null;
+        while (tagEnum != null && tagEnum.hasMoreElements()) {
+            this.logTag(kind, tagEnum.nextElement());
+        }
+    }
+
+    private void logTag(int kind, SemanticTag tag) throws SharkKBException {
+        STSet set = this.targetSet(kind);
+        // log entity of target kb - not the one in space
+        SemanticTag targetTag = set != null ? set.getSemanticTag(tag.getSI()) : null;
+        if (targetTag != null) {
+            this.changeLog.record(kind, targetTag, SyncKB.getTimeStamp(targetTag));
+        }
+    }
+
+    private void logInformation(ASIPInformation info) {
+        try {
+            this.changeLog.record(SyncChangeLog.INFORMATION, info, SyncKB.getTimeStamp(info));
+        } catch (SharkKBException | NumberFormatException e) {
+            L.e("cannot read time stamp of information - sync won't work accordingly", this);
+        }
+    }
+
+    private void logInformationRemoval(ASIPSpace space) throws SharkKBException {
+        Iterator<ASIPInformation> infoIter = this.targetKB.getInformation(space);
+        while (infoIter != null && infoIter.hasNext()) {
+            this.changeLog.remove(infoIter.next());
+        }
+    }
+
     public void addSyncChangeListener(SyncChangeListener listener){
         this.syncChangeListeners.add(listener);
     }
@@ -129,12 +324,50 @@ public class SyncKB implements SharkKB{
      * when merging those changes into another knowledge base.
      * <p>
      * That's not a feature. That's a bug. TODO: Must be fixed.
+     * <p>
+     * Changed information are copied into the resulting knowledge base. Use
+     * {@link #getChangesToSend(Long)} if changes are to be transmitted.
      *
      * @param since
      * @return
      * @throws net.sharkfw.knowledgeBase.SharkKBException
      */
     public SharkKB getChanges(Long since) throws SharkKBException {
+        // Merge all together - we have a kb containing changed items
+        InMemoSharkKB changes = this.getChangedVocabulary(since);
+
+        // add information
+        int infoNumber = this.putKnowledgeChanges(since, changes);
+
+        // next sync kb on that target can start with that log
+        this.changeLog.persist();
+
+        return changes;
+    }
+
+    /**
+     * Changes since a date prepared for transmission. Changed tags are copied
+     * like in {@link #getChanges(Long)} but information are not. The returned
+     * knowledge refers to information of this kb - serializers stream their
+     * content straight to the connection.
+     * <p>
+     * The view cannot be modified and should be sent right away.
+     *
+     * @param since
+     * @return read only view of all changes
+     * @throws SharkKBException
+     */
+    public ASIPKnowledge getChangesToSend(Long since) throws SharkKBException {
+        SyncChangesKnowledge changes = new SyncChangesKnowledge(this.getChangedVocabulary(since),
+                this.changeLog.changedSince(SyncChangeLog.INFORMATION, since));
+
+        // next sync kb on that target can start with that log
+        this.changeLog.persist();
+
+        return changes;
+    }
+
+    private InMemoSharkKB getChangedVocabulary(Long since) throws SharkKBException {
         // get changes from topics
         SemanticNet cTopics = this.topics.getChangesAsSemanticNet(since);
 
@@ -150,28 +383,7 @@ public class SyncKB implements SharkKB{
         // get changes from times
         TimeSTSet cTimes = (TimeSTSet) this.times.getChanges(since);
 
-        // Merge all together - we have a kb containing changed items
-        InMemoSharkKB changes = new InMemoSharkKB(cTopics, cTypes, cPeers,
-                cLocations, cTimes);
-
-        // add information
-        int infoNumber = this.putKnowledgeChanges(since, changes);
-
-        /**
-         * I'm not happy with that implementation:
-         * In nearly any case, sync is performed between two peers.
-         * That implementation creates a copy of all changed information
-         * which are transmitted afterwards.
-         *
-         * A better implementation would not create a copy but
-         * stream the data directly to the other side.
-         *
-         * Anyway, that implementation could be made faster.
-         * Changing to a stream implementation shouldn't take longer
-         * than a day.
-         */
-
-        return changes;
+        return new InMemoSharkKB(cTopics, cTypes, cPeers, cLocations, cTimes);
     }
 
     /**
@@ -199,7 +411,8 @@ public class SyncKB implements SharkKB{
             while (cInfoSpacesIter.hasNext()) {
                 ASIPInformationSpace cInfoSpace = cInfoSpacesIter.next();
                 Iterator<ASIPInformation> cInfoIter = cInfoSpace.informations();
-                SharkAlgebra.mergeInformations(targetKB, cInfoIter);
+                // merged through this kb - new information are logged
+                SharkAlgebra.mergeInformations(this, cInfoIter);
             }
         }
     }
@@ -214,30 +427,14 @@ public class SyncKB implements SharkKB{
     private int putKnowledgeChanges(Long since, SharkKB kb) throws SharkKBException {
         int infoNumber = 0;
 
-        Iterator<ASIPInformationSpace> infoSpaceIter =
-                this.targetKB.getAllInformationSpaces();
-
-        if (infoSpaceIter != null) {
-            while (infoSpaceIter.hasNext()) {
-                ASIPInformationSpace infoSpace = infoSpaceIter.next();
-
-                Iterator<ASIPInformation> infoIter = infoSpace.informations();
-                if (infoIter != null) {
+        for (Object entity : this.changeLog.changedSince(SyncChangeLog.INFORMATION, since)) {
+            ASIPInformation info = (ASIPInformation) entity;
+            // add info - its a copy
+            ASIPInformation information = kb.addInformation(info.getContentAsByte(),
+                    info.getASIPSpace());
+            information.setName(info.getName());
 
-                    while (infoIter.hasNext()) {
-                        ASIPInformation info = infoIter.next();
-                        long changed = SyncKB.getTimeStamp(info);
-                        if (changed > since) {
-                            // add info - its a copy
-                            ASIPInformation information = kb.addInformation(info.getContentAsByte(),
-                                    info.getASIPSpace());
-                            information.setName(info.getName());
-
-                            infoNumber++;
-                        }
-                    }
-                }
-            }
+            infoNumber++;
         }
 
         return infoNumber;
@@ -333,7 +530,7 @@ public class SyncKB implements SharkKB{
         if (set == null) return null;
 
         // wrap it
-        return new SyncSTSet(set);
+        return this.track(new SyncSTSet(set), SyncChangeLog.TOPICS);
     }
 
     @Override
@@ -342,7 +539,7 @@ public class SyncKB implements SharkKB{
         if (net == null) return null;
 
         // wrap it
-        return new SyncSemanticNet(net);
+        return this.track(new SyncSemanticNet(net), SyncChangeLog.TOPICS);
     }
 
     @Override
@@ -351,12 +548,15 @@ public class SyncKB implements SharkKB{
         if (tx == null) return null;
 
         // wrap it
-        return new SyncTaxonomy(tx);
+        return this.track(new SyncTaxonomy(tx), SyncChangeLog.TOPICS);
     }
 
     @Override
     public STSet getTypeSTSet() throws SharkKBException {
-        return this.targetKB.getTypeSTSet();
+        STSet set = this.targetKB.getTypeSTSet();
+        if (set == null) return null;
+
+        return this.track(new SyncSTSet(set), SyncChangeLog.TYPES);
     }
 
     @Override
@@ -374,7 +574,7 @@ public class SyncKB implements SharkKB{
         PeerSTSet peers = this.targetKB.getPeerSTSet();
         if (peers == null) return null;
 
-        return new SyncPeerSTSet(peers);
+        return this.track(new SyncPeerSTSet(peers), SyncChangeLog.PEERS);
     }
 
     @Override
@@ -389,12 +589,18 @@ public class SyncKB implements SharkKB{
 
     @Override
     public TimeSTSet getTimeSTSet() throws SharkKBException {
-        return this.targetKB.getTimeSTSet();
+        TimeSTSet times = this.targetKB.getTimeSTSet();
+        if (times == null) return null;
+
+        return this.track(new SyncTimeSTSet(times), SyncChangeLog.TIMES);
     }
 
     @Override
     public SpatialSTSet getSpatialSTSet() throws SharkKBException {
-        return this.targetKB.getSpatialSTSet();
+        SpatialSTSet locations = this.targetKB.getSpatialSTSet();
+        if (locations == null) return null;
+
+        return this.track(new SyncSpatialSTSet(locations), SyncChangeLog.LOCATIONS);
     }
 
     @Override
@@ -410,6 +616,8 @@ public class SyncKB implements SharkKB{
     @Override
     public ArrayList<ASIPSpace> assimilate(SharkKB target, ASIPSpace interest, FragmentationParameter[] backgroundFP, Knowledge knowledge, boolean learnTags, boolean deleteAssimilated) throws SharkKBException {
         ArrayList<ASIPSpace> assimilate = this.targetKB.assimilate(target, interest, backgroundFP, knowledge, learnTags, deleteAssimilated);
+        // cannot tell what has been changed
+        this.rebuildChangeLog();
         this.changed();
         return assimilate;
     }
@@ -441,12 +649,13 @@ public class SyncKB implements SharkKB{
 
     @Override
     public Iterator<ASIPInformationSpace> informationSpaces(ASIPSpace as, boolean matchAny) throws SharkKBException {
-        return this.targetKB.informationSpaces(as, matchAny);
+        return SyncInformationSpace.wrapSpaces(this.changeLog, this.targetKB.informationSpaces(as, matchAny));
     }
 
     @Override
     public ASIPSpace createASIPSpace(SemanticTag topic, SemanticTag type, PeerSemanticTag approver, PeerSemanticTag sender, PeerSemanticTag receiver, TimeSemanticTag time, SpatialSemanticTag location, int direction) throws SharkKBException {
         ASIPSpace asipSpace = this.targetKB.createASIPSpace(topic, type, approver, sender, receiver, time, location, direction);
+        this.logTags(asipSpace);
         this.changed();
         return asipSpace;
     }
@@ -454,23 +663,25 @@ public class SyncKB implements SharkKB{
     @Override
     public ASIPSpace createASIPSpace(STSet topics, STSet types, PeerSTSet approvers, PeerSemanticTag sender, PeerSTSet receiver, TimeSTSet times, SpatialSTSet locations, int direction) throws SharkKBException {
         ASIPSpace asipSpace = this.targetKB.createASIPSpace(topics, types, approvers, sender, receiver, times, locations, direction);
+        this.logTags(asipSpace);
         this.changed();
         return asipSpace;
     }
 
     @Override
     public Iterator<ASIPInformationSpace> getAllInformationSpaces() throws SharkKBException {
-        return this.targetKB.getAllInformationSpaces();
+        return SyncInformationSpace.wrapSpaces(this.changeLog, this.targetKB.getAllInformationSpaces());
     }
 
     @Override
     public Iterator<ASIPInformationSpace> getInformationSpaces(ASIPSpace space) throws SharkKBException {
         if (this.targetKB == null) return null;
-        return this.targetKB.getInformationSpaces(space);
+        return SyncInformationSpace.wrapSpaces(this.changeLog, this.targetKB.getInformationSpaces(space));
     }
 
     @Override
     public void removeInformationSpace(ASIPSpace space) throws SharkKBException {
+        this.logInformationRemoval(space);
         this.targetKB.removeInformationSpace(space);
     }
 
@@ -497,8 +708,15 @@ public class SyncKB implements SharkKB{
     @Override
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
         ASIPInformationSpace informationSpace = this.targetKB.mergeInformation(information, space);
+        this.logTags(space);
+        if (informationSpace != null) {
+            Iterator<ASIPInformation> infoIter = informationSpace.informations();
+            while (infoIter != null && infoIter.hasNext()) {
+                this.logInformation(infoIter.next());
+            }
+        }
         this.changed();
-        return informationSpace;
+        return informationSpace != null ? new SyncInformationSpace(informationSpace, this.changeLog) : null;
     }
 
     @Override
@@ -519,47 +737,57 @@ public class SyncKB implements SharkKB{
     @Override
     public ASIPInformation addInformation(String name, String content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = this.targetKB.addInformation(name, content, semanticAnnotations);
+        this.logTags(semanticAnnotations);
+        this.logInformation(asipInformation);
         this.changed();
-        return asipInformation;
+        return this.wrap(asipInformation);
     }
 
     @Override
     public ASIPInformation addInformation(String name, byte[] content, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = this.targetKB.addInformation(name, content, semanticAnnotations);
+        this.logTags(semanticAnnotations);
+        this.logInformation(asipInformation);
         this.changed();
-        return asipInformation;
+        return this.wrap(asipInformation);
     }
 
     @Override
     public ASIPInformation addInformation(String name, InputStream contentIS, int numberOfBytes, ASIPSpace semanticAnnotations) throws SharkKBException {
         ASIPInformation asipInformation = this.targetKB.addInformation(name, contentIS, numberOfBytes, semanticAnnotations);
+        this.logTags(semanticAnnotations);
+        this.logInformation(asipInformation);
         this.changed();
-        return asipInformation;
+        return this.wrap(asipInformation);
     }
 
     @Override
     public void removeInformation(ASIPInformation info, ASIPSpace infoSpace) throws SharkKBException {
-        this.targetKB.removeInformation(info, infoSpace);
+        ASIPInformation target = SyncInformation.unwrap(info);
+        this.targetKB.removeInformation(target, infoSpace);
+        this.changeLog.remove(target);
         this.changed();
     }
 
     @Override
     public Iterator<ASIPInformation> getInformation(ASIPSpace infoSpace) throws SharkKBException {
-        return this.targetKB.getInformation(infoSpace);
+        return SyncInformationSpace.wrapInformation(this.changeLog, this.targetKB.getInformation(infoSpace));
     }
 
     @Override
     public Iterator<ASIPInformation> getInformation(ASIPSpace infoSpace, boolean fullyInside, boolean matchAny) throws SharkKBException {
-        return this.targetKB.getInformation(infoSpace, fullyInside, matchAny);
+        return SyncInformationSpace.wrapInformation(this.changeLog,
+                this.targetKB.getInformation(infoSpace, fullyInside, matchAny));
     }
 
     @Override
     public Iterator<ASIPInformationSpace> informationSpaces() throws SharkKBException {
-        return this.targetKB.informationSpaces();
+        return SyncInformationSpace.wrapSpaces(this.changeLog, this.targetKB.informationSpaces());
     }
 
     @Override
     public void removeInformation(ASIPSpace space) throws SharkKBException {
+        this.logInformationRemoval(space);
         this.targetKB.removeInformation(space);
         this.changed();
     }
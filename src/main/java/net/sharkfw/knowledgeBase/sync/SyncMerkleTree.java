@@ -0,0 +1,355 @@
+package net.sharkfw.knowledgeBase.sync;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkAlgebra;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.system.L;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hash tree over all tags and information of a {@link SyncKB}. Two peers
+ * compare their trees from root to leaves and only descend into nodes with
+ * different hashes - reconciliation costs are proportional to the divergence
+ * rather than the size of the knowledge bases.
+ * <p>
+ * Each item is identified by a 64 bit digest. Tags are identified by their
+ * dimension and subject identifiers, information by name, content and the
+ * fingerprint of their semantic annotation. Information ids aren't used - a
+ * merge creates new information with new ids on the receiving side.
+ * <p>
+ * Items are placed into {@link #BUCKETS} leaves by the leading bits of their
+ * digest. A node hash is the sum of all item digests below that node. Thus,
+ * a changed item is replaced by subtracting its old digest and adding the new
+ * one on the path to its bucket - the tree is kept up to date by the change
+ * log of its kb and not built again.
+ *
+ * @see SyncKB#getMerkleTree()
+ */
+public class SyncMerkleTree implements SyncChangeLog.Listener {
+
+    public static final int FANOUT = 16;
+    public static final int DEPTH = 3;
+    public static final int BUCKETS = FANOUT * FANOUT * FANOUT;
+
+    private static final int BUCKET_BITS = 12;
+
+    private static class Item {
+        private final int kind;
+        private final Object entity;
+
+        Item(int kind, Object entity) {
+            this.kind = kind;
+            this.entity = entity;
+        }
+    }
+
+    private static final int REMOVED = -1;
+
+    // levels[d] has FANOUT^d nodes, levels[DEPTH] are the buckets
+    private final long[][] levels = new long[DEPTH + 1][];
+    // entities with same digest - e.g. same information in two kbs - count once
+    private final Map<Long, List<Item>> items = new HashMap<>();
+    private final IdentityHashMap<Object, Long> digests = new IdentityHashMap<>();
+    private final Map<Integer, List<Long>> buckets = new HashMap<>();
+
+    // changes told by change log but not applied yet - entity -> kind or REMOVED
+    private final IdentityHashMap<Object, Integer> pending = new IdentityHashMap<>();
+    private boolean stale = false;
+
+    SyncMerkleTree() {
+        int nodes = 1;
+        for (int level = 0; level <= DEPTH; level++) {
+            this.levels[level] = new long[nodes];
+            nodes *= FANOUT;
+        }
+    }
+
+    @Override
+    public synchronized void recorded(int kind, Object entity) {
+        this.pending.put(entity, kind);
+    }
+
+    @Override
+    public synchronized void removed(Object entity) {
+        this.pending.put(entity, REMOVED);
+    }
+
+    @Override
+    public synchronized void cleared() {
+        this.pending.clear();
+        this.stale = true;
+    }
+
+    /**
+     * @return true if tree cannot be updated but must be built again
+     */
+    synchronized boolean isStale() {
+        return this.stale;
+    }
+
+    /**
+     * Applies changes told by change log since last call. Only changed
+     * items are hashed again.
+     */
+    synchronized void update() {
+        for (Map.Entry<Object, Integer> change : this.pending.entrySet()) {
+            Object entity = change.getKey();
+            this.remove(entity);
+            int kind = change.getValue();
+            if (kind == SyncChangeLog.INFORMATION) {
+                try {
+                    this.add((ASIPInformation) entity);
+                } catch (SharkKBException e) {
+                    L.w("cannot hash information - it is left out of hash tree: " + e.getMessage(), this);
+                }
+            } else if (kind != REMOVED) {
+                this.add(kind, (SemanticTag) entity);
+            }
+        }
+        this.pending.clear();
+    }
+
+    synchronized void add(int kind, SemanticTag tag) {
+        this.add(tagDigest(kind, tag), new Item(kind, tag));
+    }
+
+    synchronized void add(ASIPInformation info) throws SharkKBException {
+        this.add(informationDigest(info), new Item(SyncChangeLog.INFORMATION, info));
+    }
+
+    private void add(long digest, Item item) {
+        if (this.digests.containsKey(item.entity)) {
+            // same item twice - e.g. information in two spaces
+            return;
+        }
+        this.digests.put(item.entity, digest);
+
+        List<Item> sameDigest = this.items.get(digest);
+        if (sameDigest != null) {
+            sameDigest.add(item);
+            return;
+        }
+        sameDigest = new ArrayList<>();
+        sameDigest.add(item);
+        this.items.put(digest, sameDigest);
+
+        int bucket = bucket(digest);
+        List<Long> bucketItems = this.buckets.get(bucket);
+        if (bucketItems == null) {
+            bucketItems = new ArrayList<>();
+            this.buckets.put(bucket, bucketItems);
+        }
+        bucketItems.add(digest);
+        this.updatePath(bucket, digest);
+    }
+
+    private void remove(Object entity) {
+        Long digest = this.digests.remove(entity);
+        if (digest == null) {
+            return;
+        }
+
+        List<Item> sameDigest = this.items.get(digest);
+        Iterator<Item> itemIter = sameDigest.iterator();
+        while (itemIter.hasNext()) {
+            if (itemIter.next().entity == entity) {
+                itemIter.remove();
+            }
+        }
+        if (!sameDigest.isEmpty()) {
+            return;
+        }
+        this.items.remove(digest);
+
+        int bucket = bucket(digest);
+        List<Long> bucketItems = this.buckets.get(bucket);
+        bucketItems.remove(digest);
+        if (bucketItems.isEmpty()) {
+            this.buckets.remove(bucket);
+        }
+        this.updatePath(bucket, -digest);
+    }
+
+    // all nodes on the path to that bucket
+    private void updatePath(int bucket, long delta) {
+        int node = bucket;
+        for (int level = DEPTH; level >= 0; level--) {
+            this.levels[level][node] += delta;
+            node /= FANOUT;
+        }
+    }
+
+    /**
+     * @param level 0 is root, {@link #DEPTH} are buckets
+     * @param node index of node in that level
+     * @return hash of that node - 0 if no item is below that node
+     */
+    public synchronized long getHash(int level, int node) {
+        return this.levels[level][node];
+    }
+
+    /**
+     * @param bucket
+     * @return digests of all items in that bucket
+     */
+    public synchronized List<Long> getItems(int bucket) {
+        List<Long> bucketItems = this.buckets.get(bucket);
+        return bucketItems != null ? new ArrayList<>(bucketItems) : new ArrayList<Long>();
+    }
+
+    public synchronized boolean contains(long digest) {
+        return this.items.containsKey(digest);
+    }
+
+    /**
+     * @return number of items
+     */
+    public synchronized int size() {
+        return this.items.size();
+    }
+
+    /**
+     * @param digest
+     * @return bucket of an item
+     */
+    public static int bucket(long digest) {
+        return (int) (digest >>> (Long.SIZE - BUCKET_BITS));
+    }
+
+    /**
+     * Knowledge with those items. Tags are copied, information are not - their
+     * content is streamed when sent.
+     *
+     * @param digests items of that tree - unknown digests are ignored
+     * @return knowledge which can be sent to another peer
+     * @throws SharkKBException
+     */
+    public synchronized ASIPKnowledge extract(Collection<Long> digests) throws SharkKBException {
+        SharkKB vocabulary = new InMemoSharkKB();
+        List<Object> information = new ArrayList<>();
+
+        for (Long digest : digests) {
+            List<Item> sameDigest = this.items.get(digest);
+            if (sameDigest == null) {
+                continue;
+            }
+            Item item = sameDigest.get(0);
+            switch (item.kind) {
+                case SyncChangeLog.TOPICS:
+                    vocabulary.getTopicSTSet().merge((SemanticTag) item.entity);
+                    break;
+                case SyncChangeLog.TYPES:
+                    vocabulary.getTypeSTSet().merge((SemanticTag) item.entity);
+                    break;
+                case SyncChangeLog.PEERS:
+                    vocabulary.getPeerSTSet().merge((SemanticTag) item.entity);
+                    break;
+                case SyncChangeLog.LOCATIONS:
+                    vocabulary.getSpatialSTSet().merge((SemanticTag) item.entity);
+                    break;
+                case SyncChangeLog.TIMES:
+                    vocabulary.getTimeSTSet().merge((SemanticTag) item.entity);
+                    break;
+                default:
+                    information.add(item.entity);
+            }
+        }
+
+        return new SyncChangesKnowledge(vocabulary, information);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                              digests                              //
+    ///////////////////////////////////////////////////////////////////////
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // each java platform provides SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long toLong(byte[] hash) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (hash[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        if (s != null) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        // separator - ("ab", "c") differs from ("a", "bc")
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Subject identifiers are compared case insensitive like in
+     * SharkCSAlgebra - their case doesn't change the digest.
+     */
+    static long tagDigest(int kind, SemanticTag tag) {
+        MessageDigest digest = createDigest();
+        digest.update((byte) kind);
+
+        String[] sis = tag.getSI();
+        List<String> sorted = new ArrayList<>();
+        if (sis != null) {
+            for (String si : sis) {
+                if (si != null) {
+                    sorted.add(si.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        String[] sortedSIs = sorted.toArray(new String[sorted.size()]);
+        Arrays.sort(sortedSIs);
+        for (String si : sortedSIs) {
+            update(digest, si);
+        }
+
+        return toLong(digest.digest());
+    }
+
+    static long informationDigest(ASIPInformation info) throws SharkKBException {
+        final MessageDigest digest = createDigest();
+        digest.update((byte) SyncChangeLog.INFORMATION);
+        update(digest, info.getName());
+        update(digest, SharkAlgebra.fingerprint(info.getASIPSpace()));
+
+        // content is streamed into digest - no copy
+        info.streamContent(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                digest.update(b, off, len);
+            }
+        });
+
+        return toLong(digest.digest());
+    }
+}
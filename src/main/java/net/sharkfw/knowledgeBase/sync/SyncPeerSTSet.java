@@ -24,7 +24,7 @@ class SyncPeerSTSet extends SyncSTSet implements PeerSTSet {
     
     SyncPeerSemanticTag wrapSyncObject(PeerSemanticTag newST) {
         if(newST != null) {
-            return new SyncPeerSemanticTag(newST);
+            return Sync.logTo(this, new SyncPeerSemanticTag(newST));
         }
 
         return null;
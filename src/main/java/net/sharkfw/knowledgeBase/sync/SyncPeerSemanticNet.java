@@ -24,7 +24,7 @@ class SyncPeerSemanticNet extends SyncSemanticNet implements PeerSemanticNet {
     
     SyncPeer_SN_TX_SemanticTag wrapSyncObject(PeerSNSemanticTag target) {
         if(target != null) {
-            return new SyncPeer_SN_TX_SemanticTag(target);
+            return Sync.logTo(this, new SyncPeer_SN_TX_SemanticTag(target));
         }
         return null;
     }
@@ -25,7 +25,7 @@ class SyncPeerTaxonomy extends SyncTaxonomy implements PeerTaxonomy {
     
     SyncPeer_SN_TX_SemanticTag wrapSyncObject(PeerTXSemanticTag target) {
         if(target != null) {
-            return new SyncPeer_SN_TX_SemanticTag(target);
+            return Sync.logTo(this, new SyncPeer_SN_TX_SemanticTag(target));
         }
         return null;
     }
@@ -43,7 +43,7 @@ class SyncPeerTaxonomy extends SyncTaxonomy implements PeerTaxonomy {
 
     @Override
     public PeerSTSet asPeerSTSet() throws SharkKBException {
-        return new SyncPeerSTSet(this.target.asPeerSTSet());
+        return Sync.logTo(this, new SyncPeerSTSet(this.target.asPeerSTSet()));
     }
 
     @Override
@@ -33,14 +33,14 @@ class SyncPeer_SN_TX_SemanticTag extends SyncSNSemanticTag
 
     SyncPeer_SN_TX_SemanticTag wrapSyncObject(PeerSNSemanticTag target) {
         if(target != null) {
-            return new SyncPeer_SN_TX_SemanticTag(target);
+            return Sync.logTo(this, new SyncPeer_SN_TX_SemanticTag(target));
         }
         return null;
     }
 
     SyncPeer_SN_TX_SemanticTag wrapSyncObject(PeerTXSemanticTag target) {
         if(target != null) {
-            return new SyncPeer_SN_TX_SemanticTag(target);
+            return Sync.logTo(this, new SyncPeer_SN_TX_SemanticTag(target));
         }
         return null;
     }
@@ -74,16 +74,34 @@ abstract class SyncPropertyHolder extends Sync implements SystemPropertyHolder {
      * That method is to be called whenever a change occurred on that entity.
      */
     protected final void changed() {
-        String timeString = Long.toString(System.currentTimeMillis());
+        long time = System.currentTimeMillis();
+        String timeString = Long.toString(time);
         
         try {
             // set time stamp as non transferable property
             this.target.setProperty(SyncKB.TIME_PROPERTY_NAME, timeString, false);
+            if(this.changeLog != null) {
+                this.changeLog.record(this.changeLogKind, this.target, time);
+            }
         } 
         catch(SharkKBException e) {
             L.e("cannot write time stamp - sync won't work accordingly");
         }
     }
+
+    /**
+     * Records current time stamp of wrapped entity in change log.
+     */
+    final void logTimeStamp() {
+        try {
+            if(this.changeLog != null && this.target != null) {
+                this.changeLog.record(this.changeLogKind, this.target, this.getTimeStamp());
+            }
+        }
+        catch(SharkKBException | NumberFormatException e) {
+            L.e("cannot read time stamp - sync won't work accordingly");
+        }
+    }
     
     protected final long getTimeStamp() throws SharkKBException {
         return SyncKB.getTimeStamp(this.target);
@@ -23,7 +23,7 @@ class SyncSTSet extends Sync implements STSet {
 
     SyncSemanticTag wrapSyncObject(SemanticTag target) {
         if(target != null) {
-            return new SyncSemanticTag((SemanticTag) target);
+            return Sync.logTo(this, new SyncSemanticTag((SemanticTag) target));
         }
         
         return null;
@@ -47,16 +47,31 @@ class SyncSTSet extends Sync implements STSet {
     @Override
     public void removeSemanticTag(SemanticTag tag) throws SharkKBException {
         this.target.removeSemanticTag(tag);
+        this.logRemoval(tag);
     }
 
     @Override
     public void removeSemanticTag(String si) throws SharkKBException {
+        SemanticTag tag = this.target.getSemanticTag(si);
         this.target.removeSemanticTag(si);
+        this.logRemoval(tag);
     }
 
     @Override
     public void removeSemanticTag(String[] sis) throws SharkKBException {
+        SemanticTag tag = this.target.getSemanticTag(sis);
         this.target.removeSemanticTag(sis);
+        this.logRemoval(tag);
+    }
+
+    private void logRemoval(SemanticTag tag) {
+        if(this.changeLog == null || tag == null) return;
+
+        if(tag instanceof SyncPropertyHolder) {
+            this.changeLog.remove(((SyncPropertyHolder) tag).getTarget());
+        } else {
+            this.changeLog.remove(tag);
+        }
     }
 
     @Override
@@ -191,6 +206,18 @@ class SyncSTSet extends Sync implements STSet {
     
     void putChanges(Long since, STSet changes) throws SharkKBException {
         if(changes == null) return;
+
+        if(this.changeLog != null) {
+            // range scan on change log
+            for(Object entity : this.changeLog.changedSince(this.changeLogKind, since)) {
+                SemanticTag st = (SemanticTag) entity;
+                // tag could have been removed without this set
+                if(this.target.getSemanticTag(st.getSI()) != null) {
+                    changes.merge(st);
+                }
+            }
+            return;
+        }
         
         Enumeration<SemanticTag> tags = this.target.tags();
         if(tags == null) return;
@@ -22,7 +22,7 @@ class SyncSemanticNet extends SyncSTSet implements SemanticNet {
     
     SyncSNSemanticTag wrapSyncObject(SNSemanticTag target) {
         if(target != null) {
-            return new SyncSNSemanticTag(target);
+            return Sync.logTo(this, new SyncSNSemanticTag(target));
         }
         return null;
     }
@@ -16,7 +16,7 @@ class SyncSemanticTag extends SyncPropertyHolder implements SemanticTag {
     }
 
     SyncSemanticTag wrapSyncObject(SemanticTag target) {
-        return new SyncSemanticTag(target);
+        return Sync.logTo(this, new SyncSemanticTag(target));
     }
     
     @Override
@@ -25,7 +25,7 @@ class SyncSpatialSTSet extends SyncSTSet implements SpatialSTSet {
     
     SyncSpatialSemanticTag wrapSyncObject(SpatialSemanticTag sst) {
         if(sst != null) {
-            return new SyncSpatialSemanticTag(sst);
+            return Sync.logTo(this, new SyncSpatialSemanticTag(sst));
         }
         return null;
     }
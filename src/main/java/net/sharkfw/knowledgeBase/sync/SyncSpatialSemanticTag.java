@@ -17,7 +17,7 @@ class SyncSpatialSemanticTag extends SyncSemanticTag implements SpatialSemanticT
     
     SyncSpatialSemanticTag wrapSyncObject(SpatialSemanticTag sst) {
         if(sst != null) {
-            return new SyncSpatialSemanticTag(sst);
+            return Sync.logTo(this, new SyncSpatialSemanticTag(sst));
         }
         return null;
     }
@@ -20,7 +20,7 @@ class SyncTXSemanticTag extends SyncSemanticTag implements TXSemanticTag {
     
     SyncTXSemanticTag wrapSyncObject(TXSemanticTag target) {
         if(target != null) {
-            return new SyncTXSemanticTag(target);
+            return Sync.logTo(this, new SyncTXSemanticTag(target));
         }
         return null;
     }
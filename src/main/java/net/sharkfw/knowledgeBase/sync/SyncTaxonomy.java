@@ -23,7 +23,7 @@ class SyncTaxonomy extends SyncSTSet implements Taxonomy {
     
     SyncTXSemanticTag wrapSyncObject(TXSemanticTag txTag) {
         if(txTag != null) {
-            return new SyncTXSemanticTag(txTag);
+            return Sync.logTo(this, new SyncTXSemanticTag(txTag));
         }
         return null;
     }
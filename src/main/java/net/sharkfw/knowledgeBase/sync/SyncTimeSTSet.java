@@ -24,7 +24,7 @@ class SyncTimeSTSet extends SyncSTSet implements TimeSTSet {
     
     SyncTimeSemanticTag wrapSyncObject(TimeSemanticTag target) {
         if(target != null) {
-            return new SyncTimeSemanticTag(target);
+            return Sync.logTo(this, new SyncTimeSemanticTag(target));
         }
         
         return null;
@@ -63,4 +63,4 @@ class SyncTimeSTSet extends SyncSTSet implements TimeSTSet {
         this.putChanges(since, changes);
         return changes;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -17,7 +17,7 @@ class SyncTimeSemanticTag extends SyncSemanticTag implements TimeSemanticTag {
 
     SyncTimeSemanticTag wrapSyncObject(TimeSemanticTag target) {
         if(target != null) {
-            return new SyncTimeSemanticTag(target);
+            return Sync.logTo(this, new SyncTimeSemanticTag(target));
         }
         
         return null;
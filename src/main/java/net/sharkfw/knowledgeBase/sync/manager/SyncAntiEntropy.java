@@ -0,0 +1,200 @@
+package net.sharkfw.knowledgeBase.sync.manager;
+
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.sync.SyncKB;
+import net.sharkfw.knowledgeBase.sync.SyncMerkleTree;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Anti entropy reconciliation of two sync kbs by means of their hash trees.
+ * <p>
+ * Peers exchange node hashes level by level. Each side answers with the
+ * children of those nodes which differ from its own tree. On bucket level
+ * both sides exchange the item digests of differing buckets and send items
+ * the other side lacks. Reconciliation ends when no node differs.
+ * <pre>
+ * A: NODES level 0
+ * B: NODES level 1 (children of differing nodes)
+ * ...
+ * A: LEAVES          (items of differing buckets)
+ * B: LEAVES reply    + items A lacks
+ * A:                 items B lacks
+ * </pre>
+ * The protocol is stateless - each message is handled with the current
+ * tree of the sync kb.
+ */
+public class SyncAntiEntropy {
+
+    public static final String NODES = "NODES";
+    public static final String LEAVES = "LEAVES";
+
+    static final String COMMAND = "COMMAND";
+    static final String LEVEL = "LEVEL";
+    static final String HASHES = "HASHES";
+    static final String BUCKETS = "BUCKETS";
+    static final String REPLY = "REPLY";
+
+    /**
+     * Result of handling a message.
+     */
+    public static class Step {
+        private final String reply;
+        private final ASIPKnowledge knowledge;
+
+        Step(String reply, ASIPKnowledge knowledge) {
+            this.reply = reply;
+            this.knowledge = knowledge;
+        }
+
+        /**
+         * @return message to be sent back or null if reconciliation is done
+         */
+        public String getReply() {
+            return this.reply;
+        }
+
+        /**
+         * @return items the other side lacks or null
+         */
+        public ASIPKnowledge getKnowledge() {
+            return this.knowledge;
+        }
+    }
+
+    private final SyncKB kb;
+
+    public SyncAntiEntropy(SyncKB kb) {
+        this.kb = kb;
+    }
+
+    /**
+     * @return first message of a reconciliation - hash of root
+     * @throws SharkKBException
+     */
+    public String start() throws SharkKBException {
+        JSONObject hashes = new JSONObject();
+        hashes.put("0", Long.toString(this.kb.getMerkleTree().getHash(0, 0)));
+        return new JSONObject()
+                .put(COMMAND, NODES)
+                .put(LEVEL, 0)
+                .put(HASHES, hashes)
+                .toString();
+    }
+
+    /**
+     * @param message a message created by start() or handle() of another peer
+     * @return what is to be sent back
+     * @throws SharkKBException if message cannot be parsed
+     */
+    public Step handle(String message) throws SharkKBException {
+        try {
+            JSONObject jsonMessage = new JSONObject(message);
+            SyncMerkleTree tree = this.kb.getMerkleTree();
+            String command = jsonMessage.getString(COMMAND);
+            if (NODES.equals(command)) {
+                return this.handleNodes(tree, jsonMessage.getInt(LEVEL), jsonMessage.getJSONObject(HASHES));
+            } else if (LEAVES.equals(command)) {
+                return this.handleLeaves(tree, jsonMessage.getJSONObject(BUCKETS),
+                        jsonMessage.optBoolean(REPLY, false));
+            }
+            throw new SharkKBException("unknown anti entropy command: " + command);
+        } catch (JSONException | NumberFormatException | IndexOutOfBoundsException e) {
+            throw new SharkKBException("malformed anti entropy message: " + e.getMessage());
+        }
+    }
+
+    private Step handleNodes(SyncMerkleTree tree, int level, JSONObject hashes) throws SharkKBException {
+        if (level < 0 || level > SyncMerkleTree.DEPTH) {
+            throw new SharkKBException("anti entropy level out of range: " + level);
+        }
+
+        List<Integer> differing = new ArrayList<>();
+        Iterator<String> nodeIter = hashes.keys();
+        while (nodeIter.hasNext()) {
+            String node = nodeIter.next();
+            int index = Integer.parseInt(node);
+            if (tree.getHash(level, index) != Long.parseLong(hashes.getString(node))) {
+                differing.add(index);
+            }
+        }
+
+        if (differing.isEmpty()) {
+            return new Step(null, null);
+        }
+
+        if (level == SyncMerkleTree.DEPTH) {
+            // differing buckets - tell which items are here
+            return new Step(this.leaves(tree, differing, false), null);
+        }
+
+        JSONObject children = new JSONObject();
+        for (int node : differing) {
+            for (int i = 0; i < SyncMerkleTree.FANOUT; i++) {
+                int child = node * SyncMerkleTree.FANOUT + i;
+                children.put(Integer.toString(child), Long.toString(tree.getHash(level + 1, child)));
+            }
+        }
+        String reply = new JSONObject()
+                .put(COMMAND, NODES)
+                .put(LEVEL, level + 1)
+                .put(HASHES, children)
+                .toString();
+        return new Step(reply, null);
+    }
+
+    private Step handleLeaves(SyncMerkleTree tree, JSONObject buckets, boolean isReply) throws SharkKBException {
+        List<Integer> bucketList = new ArrayList<>();
+        List<Long> lacking = new ArrayList<>();
+
+        Iterator<String> bucketIter = buckets.keys();
+        while (bucketIter.hasNext()) {
+            String bucket = bucketIter.next();
+            int index = Integer.parseInt(bucket);
+            if (index < 0 || index >= SyncMerkleTree.BUCKETS) {
+                throw new SharkKBException("anti entropy bucket out of range: " + index);
+            }
+            bucketList.add(index);
+
+            JSONArray theirItems = buckets.getJSONArray(bucket);
+            Set<Long> theirs = new HashSet<>();
+            for (int i = 0; i < theirItems.length(); i++) {
+                theirs.add(Long.parseLong(theirItems.getString(i)));
+            }
+            for (Long digest : tree.getItems(index)) {
+                if (!theirs.contains(digest)) {
+                    lacking.add(digest);
+                }
+            }
+        }
+
+        ASIPKnowledge knowledge = lacking.isEmpty() ? null : tree.extract(lacking);
+        // the other side finds out what we lack
+        String reply = isReply ? null : this.leaves(tree, bucketList, true);
+        return new Step(reply, knowledge);
+    }
+
+    private String leaves(SyncMerkleTree tree, List<Integer> buckets, boolean isReply) {
+        JSONObject jsonBuckets = new JSONObject();
+        for (int bucket : buckets) {
+            JSONArray items = new JSONArray();
+            for (Long digest : tree.getItems(bucket)) {
+                items.put(Long.toString(digest));
+            }
+            jsonBuckets.put(Integer.toString(bucket), items);
+        }
+        return new JSONObject()
+                .put(COMMAND, LEAVES)
+                .put(REPLY, isReply)
+                .put(BUCKETS, jsonBuckets)
+                .toString();
+    }
+}
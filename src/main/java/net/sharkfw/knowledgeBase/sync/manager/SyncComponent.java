@@ -35,6 +35,7 @@ public class SyncComponent {
     private PeerSTSet approvedMembers = InMemoSharkKB.createInMemoPeerSTSet();
     private PeerSemanticTag owner;
     private boolean writable;
+    private boolean antiEntropy = false;
 
     public SyncComponent(SharkKB kb, SemanticTag uniqueName, PeerSTSet members, PeerSemanticTag owner, boolean writable) throws SharkKBException {
         this.syncKB = new SyncKB(kb);
@@ -182,4 +183,19 @@ public class SyncComponent {
     public boolean isWritable() {
         return writable;
     }
+
+    /**
+     * Anti entropy mode: peers compare hash trees of their kbs instead of
+     * sending changes since last merge. It repairs divergence after lost
+     * merges, restarts or clock skew.
+     *
+     * @param antiEntropy
+     */
+    public void setAntiEntropy(boolean antiEntropy) {
+        this.antiEntropy = antiEntropy;
+    }
+
+    public boolean isAntiEntropy() {
+        return antiEntropy;
+    }
 }
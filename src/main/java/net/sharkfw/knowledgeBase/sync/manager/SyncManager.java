@@ -1,18 +1,21 @@
 package net.sharkfw.knowledgeBase.sync.manager;
 
 import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.asip.engine.ASIPInMessage;
 import net.sharkfw.asip.engine.ASIPOutMessage;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.knowledgeBase.sync.manager.port.SyncAcceptKP;
+import net.sharkfw.knowledgeBase.sync.manager.port.SyncAntiEntropyKP;
 import net.sharkfw.knowledgeBase.sync.manager.port.SyncInviteKP;
 import net.sharkfw.knowledgeBase.sync.manager.port.SyncMergeKP;
 import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.routing.SemanticRoutingKP;
 import net.sharkfw.system.L;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -28,13 +31,16 @@ public class SyncManager {
     public static final String SHARK_SYNC_INVITE_TYPE_SI = "http://www.sharksystem.net/sync/invite";
     public static final String SHARK_SYNC_ACCEPT_TYPE_SI = "http://www.sharksystem.net/sync/accept";
     public static final String SHARK_SYNC_MERGE_TYPE_SI = "http://www.sharksystem.net/sync/merge";
+    public static final String SHARK_SYNC_ANTI_ENTROPY_TYPE_SI = "http://www.sharksystem.net/sync/antientropy";
     public static final SemanticTag SHARK_SYNC_INVITE_TAG = InMemoSharkKB.createInMemoSemanticTag("SYNC_INVITE", SHARK_SYNC_INVITE_TYPE_SI);
     public static final SemanticTag SHARK_SYNC_ACCEPT_TAG = InMemoSharkKB.createInMemoSemanticTag("SYNC_ACCEPT", SHARK_SYNC_ACCEPT_TYPE_SI);
     public static final SemanticTag SHARK_SYNC_MERGE_TAG = InMemoSharkKB.createInMemoSemanticTag("SYNC_MERGE", SHARK_SYNC_MERGE_TYPE_SI);
+    public static final SemanticTag SHARK_SYNC_ANTI_ENTROPY_TAG = InMemoSharkKB.createInMemoSemanticTag("SYNC_ANTI_ENTROPY", SHARK_SYNC_ANTI_ENTROPY_TYPE_SI);
 
     // Ports
     private final SyncAcceptKP syncAcceptKP;
     private final SyncMergeKP syncMergeKP;
+    private final SyncAntiEntropyKP syncAntiEntropyKP;
     private SyncInviteKP syncInviteKP;
 
     // Lists
@@ -49,6 +55,7 @@ public class SyncManager {
         this.engine = engine;
         this.syncAcceptKP = new SyncAcceptKP(this.engine, this);
         this.syncMergeKP = new SyncMergeKP(this.engine, this);
+        this.syncAntiEntropyKP = new SyncAntiEntropyKP(this.engine, this);
         this.mergeInfoSerializer = new SyncMergeInfoSerializer(this.engine.getStorage());
         executor = Executors.newSingleThreadExecutor();
     }
@@ -120,6 +127,32 @@ public class SyncManager {
         return changes;
     }
 
+    /**
+     * Like {@link #getChanges(SyncComponent, PeerSemanticTag)} but changed
+     * information aren't copied - their content is streamed when sent.
+     *
+     * @param component
+     * @param peerSemanticTag
+     * @return changes or null if there are no changes
+     * @throws SharkKBException
+     */
+    public ASIPKnowledge getChangesToSend(SyncComponent component, PeerSemanticTag peerSemanticTag) throws SharkKBException {
+        ASIPKnowledge changes = null;
+        SyncMergeInfo mergeInfo = this.mergeInfoSerializer.get(peerSemanticTag, component.getUniqueName());
+
+        if(mergeInfo!=null) {
+            long lastMerged = mergeInfo.getDate();
+            long lastChanges = component.getKb().getTimeOfLastChanges();
+
+            if (lastChanges > lastMerged) {
+                changes = component.getKb().getChangesToSend(lastMerged);
+            }
+        } else {
+            changes = component.getKb();
+        }
+        return changes;
+    }
+
     /**
      * Add Component
      * @param component
@@ -311,12 +344,14 @@ public class SyncManager {
      * @param peer
      */
     public void doSync(final SyncComponent component, final PeerSemanticTag peer){
-        if (component.hasAccepted(peer)){
+        if (component.hasAccepted(peer) && component.isAntiEntropy()){
+            doAntiEntropySync(component, peer);
+        } else if (component.hasAccepted(peer)){
             Runnable runnable = new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        SharkKB changes = getChanges(component, peer);
+                        ASIPKnowledge changes = getChangesToSend(component, peer);
                         L.d("We have some Changes so send insert to " + peer.getName(), this);
                         // We do have some changes we can send!
                         ASIPOutMessage outMessage = engine.createASIPOutMessage(
@@ -343,6 +378,39 @@ public class SyncManager {
         }
     }
 
+    /**
+     * Starts an anti entropy reconciliation with a peer. Hash trees of both
+     * kbs are compared - only items which differ are sent. That doesn't depend
+     * on time stamps of last merges.
+     *
+     * @param component
+     * @param peer
+     */
+    public void doAntiEntropySync(final SyncComponent component, final PeerSemanticTag peer){
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String start = new SyncAntiEntropy(component.getKb()).start();
+                    ASIPOutMessage outMessage = engine.createASIPOutMessage(
+                            peer.getAddresses(),
+                            engine.getOwner(),
+                            peer,
+                            null,
+                            null,
+                            component.getUniqueName(),
+                            SyncManager.SHARK_SYNC_ANTI_ENTROPY_TAG, 1);
+
+                    outMessage.raw(start.getBytes(StandardCharsets.UTF_8));
+                    mergeInfoSerializer.add(component.getUniqueName(), peer);
+                } catch (SharkKBException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        executor.submit(runnable);
+    }
+
     /**
      * Reply to a Message from a given Peer!
      * @param component
@@ -355,7 +423,7 @@ public class SyncManager {
             @Override
             public void run() {
                 try {
-                    SharkKB changes = getChanges(component, peer);
+                    ASIPKnowledge changes = getChangesToSend(component, peer);
 //                    if (hasChanged(changes)) {
                     ASIPOutMessage response = message.createResponse(null, SyncManager.SHARK_SYNC_MERGE_TAG);
                     response.insert(changes);
@@ -0,0 +1,84 @@
+package net.sharkfw.knowledgeBase.sync.manager.port;
+
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.engine.ASIPConnection;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.sync.manager.SyncAntiEntropy;
+import net.sharkfw.knowledgeBase.sync.manager.SyncComponent;
+import net.sharkfw.knowledgeBase.sync.manager.SyncManager;
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.ports.ContentPort;
+import net.sharkfw.system.L;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Handles anti entropy sync of components. Tree levels are exchanged as raw
+ * messages, missing items are sent as inserts. Both are typed with
+ * {@link SyncManager#SHARK_SYNC_ANTI_ENTROPY_TAG} and have the unique name of
+ * the component as topic.
+ *
+ * @see SyncAntiEntropy
+ */
+public class SyncAntiEntropyKP extends ContentPort {
+
+    private final SyncManager syncManager;
+
+    public SyncAntiEntropyKP(SharkEngine se, SyncManager syncManager) {
+        super(se);
+        this.syncManager = syncManager;
+    }
+
+    @Override
+    protected boolean handleRaw(ASIPInMessage message, ASIPConnection connection, InputStream inputStream) {
+        if(message.getType()==null || message.getType().isAny()) return false;
+        if(!SyncManager.SHARK_SYNC_ANTI_ENTROPY_TAG.getName().equals(message.getType().getName())) return false;
+
+        SyncComponent component = syncManager.getComponentByName(message.getTopic());
+        if(component == null) return false;
+
+        try {
+            if(message.getCommand() == ASIPMessage.ASIP_INSERT) {
+                component.getKb().putChanges((SharkKB) message.getKnowledge());
+                L.d(se.getOwner().getName() + " merged anti entropy items", this);
+                return true;
+            }
+            if(message.getCommand() != ASIPMessage.ASIP_RAW || inputStream == null) return false;
+
+            SyncAntiEntropy.Step step = new SyncAntiEntropy(component.getKb()).handle(readFully(inputStream));
+
+            ASIPKnowledge items = step.getKnowledge();
+            if(items != null) {
+                ASIPOutMessage insert = message.createResponse(component.getUniqueName(),
+                        SyncManager.SHARK_SYNC_ANTI_ENTROPY_TAG);
+                insert.insert(items);
+            }
+            if(step.getReply() != null) {
+                ASIPOutMessage reply = message.createResponse(component.getUniqueName(),
+                        SyncManager.SHARK_SYNC_ANTI_ENTROPY_TAG);
+                reply.raw(step.getReply().getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        } catch (SharkKBException | IOException e) {
+            L.e("anti entropy sync failed: " + e.getMessage(), this);
+            return false;
+        }
+    }
+
+    private static String readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while((n = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, n);
+        }
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -31,7 +31,9 @@ public class SyncMergeKP extends KnowledgePort {
         /**
          *
          * @param component
-         * @param changes - Should just be used to display e.g. the number of new messages
+         * @param changes - Should just be used to display e.g. the number of new messages.
+         *                Information are merged into the component while they are received -
+         *                changes hold vocabulary of the merge only.
          */
         void onNewMerge(SyncComponent component, SharkKB changes);
     }
@@ -44,21 +46,48 @@ public class SyncMergeKP extends KnowledgePort {
         this.syncManager = syncManager;
     }
 
+    private SyncComponent getMergeComponent(ASIPInMessage message) {
+        if(message.getType()==null || message.getType().isAny()) return null;
+        if(!SyncManager.SHARK_SYNC_MERGE_TAG.getName().equals(message.getType().getName())) return null;
+
+        return syncManager.getComponentByName(message.getTopic());
+    }
+
+    /**
+     * Sends our changes before the merge of the sender's changes is logged as a change of ours.
+     */
+    private void syncPreviousChanges(SyncComponent component, ASIPInMessage message) throws SharkKBException {
+        SharkKB previousChanges = syncManager.getChanges(component, message.getPhysicalSender());
+        if(previousChanges != null && syncManager.hasChanged(previousChanges)){
+            syncManager.doSync(component, message.getPhysicalSender(), message);
+        }
+    }
+
+    /**
+     * Changes are merged into the component kb while they are decoded.
+     */
+    @Override
+    public SharkKB getInsertTarget(ASIPInMessage message) throws SharkKBException {
+        SyncComponent component = this.getMergeComponent(message);
+        if(component == null) return null;
+
+        this.syncPreviousChanges(component, message);
+        return component.getKb();
+    }
+
     @Override
     protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
-        if(message.getType()==null || message.getType().isAny()) return;
-        if(!SyncManager.SHARK_SYNC_MERGE_TAG.getName().equals(message.getType().getName())) return;
+        SyncComponent component = this.getMergeComponent(message);
+        if(component == null) return;
 
         L.w(this.se.getOwner().getName() + " received a Merge from " + message.getPhysicalSender().getName(), this);
-        SyncComponent component = syncManager.getComponentByName(message.getTopic());
-        if(component == null) return;
 
         try {
-            SharkKB previousChanges = syncManager.getChanges(component, message.getPhysicalSender());
-            if(previousChanges != null && syncManager.hasChanged(previousChanges)){
-                syncManager.doSync(component, message.getPhysicalSender(), message);
+            if(message.getInsertTarget() != component.getKb()) {
+                // decoded without merging - e.g. component was created afterwards
+                this.syncPreviousChanges(component, message);
+                component.getKb().putChanges((SharkKB) asipKnowledge);
             }
-            component.getKb().putChanges((SharkKB) asipKnowledge);
             L.w(se.getOwner().getName() + " merged the changes!", this);
             for (SyncMergeListener listener : this.mergeListeners) {
                 listener.onNewMerge(component, (SharkKB) asipKnowledge);
@@ -3,6 +3,8 @@ package net.sharkfw.peer;
 import net.sharkfw.asip.SharkStub;
 import net.sharkfw.asip.engine.ASIPConnection;
 import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.ports.KPListener;
 
 import java.util.List;
@@ -16,6 +18,7 @@ public abstract class ASIPPort {
     protected SharkStub sharkStub;
     protected boolean isStarted;
     protected SharkEngine se;
+    private volatile boolean serialized = false;
 
     public ASIPPort(SharkEngine se) {
         this.se = se;
@@ -48,6 +51,35 @@ public abstract class ASIPPort {
     
     public abstract boolean handleMessage(ASIPInMessage message, ASIPConnection connection);
 
+    /**
+     * Knowledge of an insert is usually decoded into a new kb and handed to
+     * the ports. Ports which merge it anyway can provide their kb instead -
+     * information are added to it while content is read. The message is
+     * handed over afterwards, see {@link ASIPInMessage#getInsertTarget()}.
+     *
+     * @param message header is decoded - knowledge isn't
+     * @return kb to merge knowledge of that message into - null (default) if
+     * this port doesn't merge it
+     * @throws SharkKBException
+     */
+    public SharkKB getInsertTarget(ASIPInMessage message) throws SharkKBException {
+        return null;
+    }
+
+    /**
+     * Messages are dispatched to ports concurrently. Ports which aren't
+     * thread safe can ask for one message at a time.
+     *
+     * @param serialized true: handleMessage is never called concurrently
+     */
+    public void setSerialized(boolean serialized) {
+        this.serialized = serialized;
+    }
+
+    public boolean isSerialized() {
+        return this.serialized;
+    }
+
     public void addListener(KPListener listener){
         this.listeners.add(listener);
     }
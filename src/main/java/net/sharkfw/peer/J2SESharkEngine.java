@@ -8,6 +8,7 @@ import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.protocols.*;
 import net.sharkfw.protocols.mail.MailMessageStub;
+import net.sharkfw.protocols.tcp.NIOStreamStub;
 import net.sharkfw.protocols.tcp.TCPStreamStub;
 import net.sharkfw.system.L;
 
@@ -50,6 +51,8 @@ public class J2SESharkEngine extends SharkEngine {
     private final int kpStoreCount = 0;
 
     private TCPStreamStub tcp;
+    // > 0: tcp server uses a selector and that number of worker threads
+    private int tcpWorkers = 0;
     private static final boolean DEFAULT_SSL = false;
     private boolean sslSMTP = DEFAULT_SSL, sslPOP3 = DEFAULT_SSL;
 
@@ -77,7 +80,11 @@ public class J2SESharkEngine extends SharkEngine {
     @Override
     protected StreamStub createTCPStreamStub(RequestHandler handler, int port, boolean isHTTP) throws SharkProtocolNotSupportedException {
         try {
-            tcp = new TCPStreamStub(handler, port, this.connectionListener);
+            if (this.tcpWorkers > 0) {
+                tcp = new NIOStreamStub(handler, port, this.connectionListener, this.tcpWorkers);
+            } else {
+                tcp = new TCPStreamStub(handler, port, this.connectionListener);
+            }
             return tcp;
         } catch (IOException ioe) {
 //            ioe.printStackTrace();
@@ -189,6 +196,26 @@ public class J2SESharkEngine extends SharkEngine {
         }
     }
 
+    /**
+     * Start the TCP stub at the given portnumber. Incoming connections are
+     * served by a selector - not by a thread per connection.
+     *
+     * @param port The portnumber to use for TCP traffic.
+     * @param maxWorkers maximum number of threads handling incoming messages
+     * @throws java.io.IOException
+     */
+    @Override
+    public void startTCP(int port, int maxWorkers) throws IOException {
+        this.tcpWorkers = maxWorkers;
+        try {
+            this.start(Protocols.TCP, port, null);
+        } catch (SharkProtocolNotSupportedException ex) {
+            L.e(ex.getMessage(), this);
+        } finally {
+            this.tcpWorkers = 0;
+        }
+    }
+
     /**
      * Stop the TCP communication stub.
      */
@@ -2,9 +2,11 @@ package net.sharkfw.peer;
 
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPKnowledgeDigest;
 import net.sharkfw.asip.ASIPStub;
 import net.sharkfw.asip.SharkStub;
 import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
 import net.sharkfw.asip.engine.ASIPOutMessage;
 import net.sharkfw.asip.engine.SimpleASIPStub;
 import net.sharkfw.asip.engine.serializer.SharkProtocolNotSupportedException;
@@ -29,6 +31,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * This class is the facade for the Shark-System. It provides a single interface to the user/developer where
@@ -50,6 +53,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
 
     public static final String STRING_ENCODING = "ISO-8859-1";
     public final static int DEFAULT_SILTENT_PERIOD = 500;
+    public final static long DEFAULT_KNOWLEDGE_DIGEST_LIFETIME = 60000;
     private static final String PERSISTED_PORT_PROPERTY_NAME = "SharkFW_INTERNAL_PERSISTED_ASIPPORT_NAMES";
     private static final String SHARK_ENGINE_STRING_SEPARATOR = "_SHARK_FW_DELIM";
     private static final String SHARK_ENGINE_CLASSNAME = "net.sharkfw.peer.SharkEngine";
@@ -80,6 +84,14 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
      */
     protected String relaisaddress;
     protected ConnectionStatusListener connectionListener = null;
+    private final StreamConnectionPool connectionPool = new StreamConnectionPool();
+    private String asipFormat = ASIPMessage.FORMAT_JSON;
+    // SIs of peers which sent binary messages - they understand that format
+    private final Set<String> binaryFormatPeers = Collections.synchronizedSet(new HashSet<String>());
+    private volatile boolean exposeKnowledgeDigest = false;
+    private long knowledgeDigestLifetime = DEFAULT_KNOWLEDGE_DIGEST_LIFETIME;
+    private ASIPKnowledgeDigest knowledgeDigest = null;
+    private long knowledgeDigestCreated = 0;
     // security_deprecated settings
     private PrivateKey privateKey = null;
     private PeerSemanticTag engineOwnerPeer;
@@ -239,6 +251,20 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         this.asipStub = asipStub;
     }
 
+    /**
+     * Incoming exposes are handed to all ports on this executor. Ports
+     * handle an expose concurrently - see {@link ASIPPort#setSerialized(boolean)}.
+     * Messages with content (e.g. insert, raw) are read from the connection:
+     * their ports are still called one after another.
+     *
+     * @param executor null: ports are called one after another
+     */
+    public void setPortExecutor(Executor executor) {
+        if (this.asipStub instanceof SimpleASIPStub) {
+            ((SimpleASIPStub) this.asipStub).setExecutor(executor);
+        }
+    }
+
     /**
      * TODO: Pruefen, ob wir finalize() noch brauchen
      */
@@ -466,6 +492,19 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         throw new SharkProtocolNotSupportedException("device does not support tcp");
     }
 
+    /**
+     * Starts TCP with a selector based server: incoming connections don't
+     * occupy a thread each, messages are handled by at most maxWorkers threads.
+     *
+     * @param port
+     * @param maxWorkers maximum number of threads handling incoming messages
+     * @throws SharkProtocolNotSupportedException
+     * @throws IOException
+     */
+    public void startTCP(int port, int maxWorkers) throws SharkProtocolNotSupportedException, IOException {
+        throw new SharkProtocolNotSupportedException("device does not support tcp");
+    }
+
 //    private MessageStub startMailMessageStub(RequestHandler handler) throws SharkProtocolNotSupportedException {
 //        if (this.mailMessageStub == null && this.mailAvailable) {
 //            try {
@@ -531,6 +570,9 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         Stub protocolStub = this.protocolStubs[type];
 
         if (protocolStub != null) {
+            if (protocolStub instanceof StreamStub) {
+                this.connectionPool.closeAll();
+            }
             protocolStub.stop();
 
             this.removeProtocolStub(type);
@@ -571,6 +613,26 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         ports.add(kp);
     }
 
+    /**
+     * @param message insert with decoded header
+     * @return kb of first port which merges knowledge of that message while
+     * it is decoded - null if there is none
+     * @see ASIPPort#getInsertTarget(ASIPInMessage)
+     */
+    public SharkKB getInsertTarget(ASIPInMessage message) {
+        for (ASIPPort port : new ArrayList<>(this.ports)) {
+            try {
+                SharkKB target = port.getInsertTarget(message);
+                if (target != null) {
+                    return target;
+                }
+            } catch (SharkKBException e) {
+                L.w("port refused insert target: " + e.getMessage(), this);
+            }
+        }
+        return null;
+    }
+
     public void handleASIPInterest(ASIPInterest interest) {
         this.getAsipStub().handleASIPInterest(interest);
     }
@@ -713,6 +775,114 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         return this.sessionTimeOut;
     }
 
+    /**
+     * Outgoing stream connections are kept open and reused for further
+     * messages to the same address.
+     *
+     * @return pool of outgoing stream connections
+     */
+    public StreamConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
+    /**
+     * Sets format of messages sent by this engine. Default is
+     * {@link ASIPMessage#FORMAT_JSON} which is understood by all peers. Peers
+     * which sent binary messages are always addressed in binary format and
+     * responses are sent in the format of the request - setting binary format
+     * is only required if all peers are known to understand it.
+     *
+     * @param format {@link ASIPMessage#FORMAT_JSON} or {@link ASIPMessage#FORMAT_BINARY}
+     */
+    public void setASIPFormat(String format) {
+        this.asipFormat = format;
+    }
+
+    public String getASIPFormat() {
+        return this.asipFormat;
+    }
+
+    /**
+     * @param receiver can be null
+     * @return format of messages sent to receiver
+     */
+    public String getASIPFormat(PeerSemanticTag receiver) {
+        if (receiver != null && receiver.getSI() != null) {
+            for (String si : receiver.getSI()) {
+                if (this.binaryFormatPeers.contains(si)) {
+                    return ASIPMessage.FORMAT_BINARY;
+                }
+            }
+        }
+        return this.asipFormat;
+    }
+
+    /**
+     * Remembers format of a received message.
+     *
+     * @param sender
+     * @param format
+     */
+    public void asipFormatReceived(PeerSemanticTag sender, String format) {
+        if (sender == null || sender.getSI() == null || !ASIPMessage.FORMAT_BINARY.equals(format)) {
+            return;
+        }
+        for (String si : sender.getSI()) {
+            this.binaryFormatPeers.add(si);
+        }
+    }
+
+    /**
+     * Exposes carry a digest of storage if switched on. Receivers can skip
+     * sending knowledge which this engine already has, see
+     * {@link ASIPKnowledgeDigest#hasNothingNew(ASIPKnowledge, net.sharkfw.asip.ASIPSpace)}.
+     * Knowledge ports opt in by calling KnowledgePort#hasNothingToOffer.
+     * Peers which don't know digests ignore it.
+     *
+     * @param on default is off
+     */
+    public void setExposeKnowledgeDigest(boolean on) {
+        this.exposeKnowledgeDigest = on;
+    }
+
+    public boolean getExposeKnowledgeDigest() {
+        return this.exposeKnowledgeDigest;
+    }
+
+    /**
+     * Digest is rebuilt if older than lifetime. An outdated digest lacks
+     * recent knowledge - peers send more than required but nothing is lost.
+     *
+     * @param millis lifetime of digest of storage
+     */
+    public synchronized void setKnowledgeDigestLifetime(long millis) {
+        this.knowledgeDigestLifetime = millis;
+    }
+
+    /**
+     * @return digest of storage - null if it cannot be built
+     */
+    public synchronized ASIPKnowledgeDigest getKnowledgeDigest() {
+        long now = System.currentTimeMillis();
+        if (this.knowledgeDigest == null || now - this.knowledgeDigestCreated > this.knowledgeDigestLifetime) {
+            try {
+                this.knowledgeDigest = ASIPKnowledgeDigest.create(this.storage);
+                this.knowledgeDigestCreated = now;
+            } catch (SharkKBException e) {
+                L.w("cannot create knowledge digest: " + e.getMessage(), this);
+                return null;
+            }
+        }
+        return this.knowledgeDigest;
+    }
+
+    /**
+     * Digest is rebuilt when it is used next time - e.g. after a large merge.
+     */
+    public synchronized void invalidateKnowledgeDigest() {
+        this.knowledgeDigest = null;
+    }
+
     /**
      * Set the timeout value for KEPSessions (in milliseconds)
      *
@@ -952,7 +1122,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         while (addrEnum.hasMoreElements()) {
             String address = (String) addrEnum.nextElement();
 
-            //boolean fromPool = false;
+            boolean fromPool = false;
             try {
                 /*
                  * Check if stub is available
@@ -966,24 +1136,34 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                  */
                 if (protocolStub instanceof StreamStub) {
                     sStub = (StreamStub) protocolStub;
-                    //        sConn = this.kepStub.getConnectionByAddress(address);
-                    //      if(sConn == null) {
                     try {
-                        sConn = sStub.createStreamConnection(address);
-                        if (this.connectionListener != null) {
-                            sConn.addConnectionListener(this.connectionListener);
+                        sConn = this.connectionPool.acquire(address);
+                        if (sConn == null) {
+                            try {
+                                sConn = sStub.createStreamConnection(address);
+                            } catch (RuntimeException | IOException re) {
+                                this.connectionPool.cancel(address);
+                                throw re;
+                            }
+                            if (this.connectionListener != null) {
+                                sConn.addConnectionListener(this.connectionListener);
+                            }
+                            this.connectionPool.add(address, sConn);
+                        } else {
+                            fromPool = true;
                         }
                     } catch (RuntimeException | IOException re) {
+                        sConn = null;
                         throw new SharkException(re.getMessage(), re.getCause());
                     }
-                    //    } else {
-                    //  fromPool = true;
-                    //  }
                     message = new ASIPOutMessage(this, sConn, ttl, engineOwnerPeer, logicalSender, receiverPeer, receiverSpatial, receiverTime, topic, type);
+                    // connection is in use for this message until it is sent
+                    message.setAcquiredFromPool(true);
                 } else {
                     mStub = (MessageStub) protocolStub;
                     message = new ASIPOutMessage(this, mStub, ttl, engineOwnerPeer, logicalSender, receiverPeer, receiverSpatial, receiverTime, topic, type, address);
                 }
+                message.setFormat(this.getASIPFormat(receiverPeer));
             } catch (SharkNotSupportedException ex) {
                 L.e(ex.getMessage(), this);
 //                ex.printStackTrace();
@@ -998,12 +1178,17 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                 continue;
             } catch (SharkException sse) {
                 L.w("cannot create KEP message: " + sse.getMessage(), this);
+                if (sConn != null) {
+                    // removes it from pool as well
+                    sConn.close();
+                    sConn = null;
+                }
                 continue;
             }
 
-            if (sConn != null /*&& !fromPool*/) {
+            if (sConn != null && !fromPool) {
 //                L.d("creating an own session: " + this.getOwner().getName(), this);
-                // TODO is called to create Session if other peer is sending?
+                // session reads replies - pooled connections already have one
                 this.asipStub.handleStream(sConn);
             }
 
@@ -7,6 +7,7 @@ import java.io.InputStream;
 import java.security.PrivateKey;
 import java.util.Iterator;
 import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPKnowledgeDigest;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
@@ -135,6 +136,9 @@ public abstract class KnowledgePort extends ContentPort {
         } catch (SharkKBException e) {
             this.asipInterest = asipInterest;
         }
+        if (this.sharkStub != null) {
+            this.sharkStub.listenerChanged(this);
+        }
     }
 
 //    /**
@@ -272,6 +276,25 @@ public abstract class KnowledgePort extends ContentPort {
      */
     protected abstract void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) throws SharkKBException;
 
+    /**
+     * Call in handleExpose before extracting: peers can send a digest of
+     * their knowledge along with an expose.
+     *
+     * @param message expose
+     * @param knowledge local knowledge which would be extracted
+     * @return true if sender of message already has each information of
+     * knowledge which matches its interest - extraction can be skipped.
+     * False if message has no digest or the digest cannot prove it.
+     * @throws SharkKBException
+     */
+    protected boolean hasNothingToOffer(ASIPInMessage message, ASIPKnowledge knowledge) throws SharkKBException {
+        ASIPKnowledgeDigest digest = message.getKnowledgeDigest();
+        if (digest == null || knowledge == null) {
+            return false;
+        }
+        return digest.hasNothingNew(knowledge, message.getInterest());
+    }
+
     protected void doProcess(ASIPInMessage msg, ASIPConnection con) /*TODO what is here todo?*/{
 
         // Do a lot of other stuff here.. add what is required, see below
@@ -4,18 +4,37 @@ import net.sharkfw.asip.engine.ASIPConnection;
 import net.sharkfw.asip.engine.ASIPInMessage;
 import net.sharkfw.peer.ASIPPort;
 import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.routing.SemanticRoutingManager;
 
 /**
  * Created by j4rvis on 22.06.16.
+ *
+ * Forwards messages which are addressed to other peers.
+ *
+ * @see SemanticRoutingManager
  */
 public class RouterPort extends ASIPPort {
 
+    private final SemanticRoutingManager routingManager;
+
     public RouterPort(SharkEngine se) {
+        this(se, new SemanticRoutingManager(se));
+    }
+
+    public RouterPort(SharkEngine se, SemanticRoutingManager routingManager) {
         super(se);
+        this.routingManager = routingManager;
+    }
+
+    public SemanticRoutingManager getRoutingManager() {
+        return this.routingManager;
     }
 
+    /**
+     * @return true if message was forwarded to at least one hop
+     */
     @Override
     public final boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
-        return true;
+        return this.routingManager.route(message) > 0;
     }
 }
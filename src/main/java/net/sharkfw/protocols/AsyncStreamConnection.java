@@ -0,0 +1,42 @@
+package net.sharkfw.protocols;
+
+/**
+ * A <code>StreamConnection</code> which doesn't need a thread waiting for
+ * incoming data. The connection calls its <code>ReadHandler</code> whenever
+ * new data (or end of stream) has been received. The handler should read what
+ * is available and return - it is called again with next data.
+ *
+ * The input stream of such a connection still blocks if a handler reads more
+ * than is available.
+ */
+public interface AsyncStreamConnection extends StreamConnection {
+
+    interface ReadHandler {
+        /**
+         * Called whenever data has been received. Calls are never concurrent
+         * for one connection.
+         *
+         * @param con connection with new data
+         */
+        void dataAvailable(AsyncStreamConnection con);
+    }
+
+    /**
+     * Sets handler. It is called immediately if data has already been received.
+     *
+     * @param handler
+     */
+    public void setReadHandler(ReadHandler handler);
+
+    /**
+     * @return true if remote peer won't send any further data. Reading
+     * the input stream returns buffered data and end of stream afterwards.
+     */
+    public boolean isInputShutdown();
+
+    /**
+     * @return number of received bytes which are buffered at most - the
+     * connection stops reading from the network until they are consumed
+     */
+    public int getReceiveBufferLimit();
+}
@@ -0,0 +1,15 @@
+package net.sharkfw.protocols;
+
+/**
+ * A <code>StreamConnection</code> which can tell whether it is still usable
+ * without reading from it. The connection pool checks it before an idle
+ * connection is reused.
+ */
+public interface CheckedStreamConnection extends StreamConnection {
+
+    /**
+     * @return false if connection is closed or remote peer closed its side -
+     * e.g. the session reading from it hit end of stream
+     */
+    public boolean isUsable();
+}
@@ -0,0 +1,377 @@
+package net.sharkfw.protocols;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.sharkfw.system.L;
+
+/**
+ * Keeps outgoing stream connections open for further messages to the same
+ * address. A connection is in use from {@link #acquire(String)} (or
+ * {@link #add(String, StreamConnection)}) until {@link #release(StreamConnection)}.
+ * Afterwards it can be taken by the next message to that address.
+ * <p>
+ * Connections idle longer than the idle timeout are closed - remote peers close
+ * idle connections as well. Idle connections are checked periodically while
+ * there are any, not only when the next message asks for a connection. Closed
+ * connections are removed from the pool. Not more than a maximum number of
+ * connections are opened to one address - further messages wait for a released
+ * connection.
+ * <p>
+ * An idle connection is checked before it is handed out again: a
+ * {@link CheckedStreamConnection} which was closed by the remote peer (its
+ * session saw end of stream) is closed and not reused. Connections which
+ * can't be checked are reused until the idle timeout - keep it well below
+ * the socket timeout of remote peers.
+ */
+public class StreamConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_PEER = 2;
+
+    /** shorter than the socket timeout after which remote peers close idle connections */
+    public static final long DEFAULT_IDLE_TIMEOUT = 5000;
+
+    private final HashMap<String, List<PooledConnection>> connections = new HashMap<>();
+    private final HashMap<StreamConnection, PooledConnection> pooled = new HashMap<>();
+    private final HashMap<String, Integer> reserved = new HashMap<>();
+
+    private int maxConnectionsPerPeer = DEFAULT_MAX_CONNECTIONS_PER_PEER;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long waitTimeout = DEFAULT_IDLE_TIMEOUT;
+    private boolean enabled = true;
+
+    // periodic eviction of idle connections - runs while connections are pooled
+    private ScheduledExecutorService evictor = null;
+    private ScheduledFuture<?> eviction = null;
+
+    private class PooledConnection implements ConnectionStatusListener {
+        private final String address;
+        private final StreamConnection connection;
+        private boolean inUse = true;
+        private long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(String address, StreamConnection connection) {
+            this.address = address;
+            this.connection = connection;
+        }
+
+        boolean expired(long now) {
+            return !this.inUse && now - this.lastUsed > StreamConnectionPool.this.idleTimeout;
+        }
+
+        /**
+         * @return true if connection is idle and must not be reused - expired
+         * or closed by remote peer
+         */
+        boolean evictable(long now) {
+            if (this.inUse) {
+                return false;
+            }
+            if (this.expired(now)) {
+                return true;
+            }
+            return this.connection instanceof CheckedStreamConnection
+                    && !((CheckedStreamConnection) this.connection).isUsable();
+        }
+
+        @Override
+        public void connectionClosed() {
+            StreamConnectionPool.this.remove(this);
+        }
+    }
+
+    /**
+     * Returns an idle connection to address. It is in use until released.
+     *
+     * @param address
+     * @return idle connection or null. Null reserves a place for a new connection
+     * which must be created and added - or cancelled if creation fails.
+     * @throws IOException no connection was released within wait timeout
+     */
+    public synchronized StreamConnection acquire(String address) throws IOException {
+        if (!this.enabled) {
+            return null;
+        }
+
+        long deadline = System.currentTimeMillis() + this.waitTimeout;
+        while (true) {
+            long now = System.currentTimeMillis();
+            List<PooledConnection> list = this.getConnections(address);
+
+            // idle expiry - remote peer closes connections idle longer than its socket timeout
+            for (PooledConnection pc : new ArrayList<>(list)) {
+                if (pc.evictable(now)) {
+                    L.d("closing idle or closed connection to " + address, this);
+                    this.remove(pc);
+                    pc.connection.close();
+                }
+            }
+
+            for (PooledConnection pc : list) {
+                if (!pc.inUse) {
+                    pc.inUse = true;
+                    pc.lastUsed = now;
+                    return pc.connection;
+                }
+            }
+
+            int reservedNumber = this.reserved.containsKey(address) ? this.reserved.get(address) : 0;
+            if (list.size() + reservedNumber < this.maxConnectionsPerPeer) {
+                this.reserved.put(address, reservedNumber + 1);
+                return null;
+            }
+
+            long wait = deadline - now;
+            if (wait <= 0) {
+                throw new IOException("no connection to " + address + " available: "
+                        + this.maxConnectionsPerPeer + " connections in use");
+            }
+            try {
+                this.wait(wait);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted while waiting for connection to " + address);
+            }
+        }
+    }
+
+    /**
+     * Adds a new connection after {@link #acquire(String)} returned null.
+     * Connection is in use.
+     *
+     * @param address
+     * @param connection
+     */
+    public synchronized void add(String address, StreamConnection connection) {
+        if (!this.enabled) {
+            return;
+        }
+        this.unreserve(address);
+
+        PooledConnection pc = new PooledConnection(address, connection);
+        this.getConnections(address).add(pc);
+        this.pooled.put(connection, pc);
+        connection.addConnectionListener(pc);
+    }
+
+    /**
+     * Gives up place reserved by {@link #acquire(String)} - connection
+     * couldn't be created.
+     *
+     * @param address
+     */
+    public synchronized void cancel(String address) {
+        this.unreserve(address);
+        this.notifyAll();
+    }
+
+    /**
+     * Connection can be used by next message. Connections which aren't
+     * pooled are ignored.
+     *
+     * @param connection
+     */
+    public synchronized void release(StreamConnection connection) {
+        PooledConnection pc = this.pooled.get(connection);
+        if (pc == null) {
+            return;
+        }
+        pc.inUse = false;
+        pc.lastUsed = System.currentTimeMillis();
+        this.scheduleEviction();
+        this.notifyAll();
+    }
+
+    /**
+     * Removes connection from pool and closes it - e.g. a message was written
+     * partially, the stream lost its frame borders.
+     *
+     * @param connection
+     */
+    public void discard(StreamConnection connection) {
+        synchronized (this) {
+            PooledConnection pc = this.pooled.get(connection);
+            if (pc != null) {
+                connection.removeConnectionListener(pc);
+                this.remove(pc);
+            }
+        }
+        connection.close();
+    }
+
+    /**
+     * Sessions ask before closing an idle connection.
+     *
+     * @param connection
+     * @return true if connection is pooled and not expired - it can be used
+     * for further messages and shouldn't be closed.
+     */
+    public synchronized boolean keepOpen(StreamConnection connection) {
+        PooledConnection pc = this.pooled.get(connection);
+        if (pc == null) {
+            return false;
+        }
+        if (pc.evictable(System.currentTimeMillis())) {
+            this.remove(pc);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes idle connections which expired or were closed by the remote
+     * peer. It is called periodically while connections are pooled.
+     */
+    public void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (PooledConnection pc : new ArrayList<>(this.pooled.values())) {
+                if (pc.evictable(now)) {
+                    this.remove(pc);
+                    evicted.add(pc);
+                }
+            }
+            if (this.pooled.isEmpty() && this.eviction != null) {
+                this.eviction.cancel(false);
+                this.eviction = null;
+            }
+        }
+        for (PooledConnection pc : evicted) {
+            L.d("closing idle or closed connection to " + pc.address, this);
+            pc.connection.close();
+        }
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    public void closeAll() {
+        List<PooledConnection> all;
+        synchronized (this) {
+            all = new ArrayList<>(this.pooled.values());
+            this.pooled.clear();
+            this.connections.clear();
+            if (this.evictor != null) {
+                this.evictor.shutdownNow();
+                this.evictor = null;
+                this.eviction = null;
+            }
+            this.notifyAll();
+        }
+        for (PooledConnection pc : all) {
+            pc.connection.removeConnectionListener(pc);
+            pc.connection.close();
+        }
+    }
+
+    public synchronized int size() {
+        return this.pooled.size();
+    }
+
+    public synchronized void setMaxConnectionsPerPeer(int maxConnectionsPerPeer) {
+        this.maxConnectionsPerPeer = maxConnectionsPerPeer;
+    }
+
+    /**
+     * @param idleTimeout milliseconds an unused connection is kept open. Should be less than the
+     * time remote peers keep idle connections open.
+     */
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        if (this.eviction != null) {
+            // period depends on idle timeout
+            this.eviction.cancel(false);
+            this.eviction = null;
+            this.scheduleEviction();
+        }
+    }
+
+    /**
+     * @param waitTimeout milliseconds to wait for a released connection if
+     * maximum number of connections is reached.
+     */
+    public synchronized void setWaitTimeout(long waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * @param enabled false: a new connection is used for each message.
+     */
+    public void setEnabled(boolean enabled) {
+        synchronized (this) {
+            this.enabled = enabled;
+        }
+        if (!enabled) {
+            this.closeAll();
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return this.enabled;
+    }
+
+    private List<PooledConnection> getConnections(String address) {
+        List<PooledConnection> list = this.connections.get(address);
+        if (list == null) {
+            list = new ArrayList<>();
+            this.connections.put(address, list);
+        }
+        return list;
+    }
+
+    private void scheduleEviction() {
+        if (this.eviction != null) {
+            return;
+        }
+        if (this.evictor == null) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "StreamConnectionPool eviction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        long period = Math.max(1, this.idleTimeout / 2);
+        this.eviction = this.evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                StreamConnectionPool.this.evictIdle();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void unreserve(String address) {
+        Integer reservedNumber = this.reserved.get(address);
+        if (reservedNumber == null) {
+            return;
+        }
+        if (reservedNumber <= 1) {
+            this.reserved.remove(address);
+        } else {
+            this.reserved.put(address, reservedNumber - 1);
+        }
+    }
+
+    private synchronized void remove(PooledConnection pc) {
+        if (this.pooled.remove(pc.connection) == null) {
+            return;
+        }
+        List<PooledConnection> list = this.connections.get(pc.address);
+        if (list != null) {
+            list.remove(pc);
+            if (list.isEmpty()) {
+                this.connections.remove(pc.address);
+            }
+        }
+        this.notifyAll();
+    }
+}
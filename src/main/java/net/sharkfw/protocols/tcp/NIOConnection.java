@@ -0,0 +1,381 @@
+package net.sharkfw.protocols.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+import net.sharkfw.protocols.AsyncStreamConnection;
+import net.sharkfw.protocols.CheckedStreamConnection;
+import net.sharkfw.protocols.ConnectionListenerManager;
+import net.sharkfw.system.L;
+
+/**
+ * Connection accepted by a {@link NIOServer}. The channel is non-blocking
+ * and served by the selector thread of the server: received data is buffered
+ * and reported to the read handler on a worker thread, written data is queued
+ * and sent when the channel is writable.
+ *
+ * At most {@link #RECEIVE_BUFFER_LIMIT} received bytes are buffered: the
+ * server stops reading from the channel above that limit and continues when
+ * half of it is consumed. A slow reader slows down the remote peer by TCP
+ * flow control instead of filling memory.
+ */
+class NIOConnection extends ConnectionListenerManager implements AsyncStreamConnection, CheckedStreamConnection {
+
+    static final int RECEIVE_BUFFER_LIMIT = 256 * 1024;
+
+    private final NIOServer server;
+    private final SocketChannel channel;
+    private final String recAddress;
+    private final int portNo;
+    private final int readTimeout;
+    private String localAddress;
+    private final String replyAddressString;
+
+    // received data - guarded by this
+    private final LinkedList<ByteBuffer> inbound = new LinkedList<>();
+    private int buffered = 0;
+    private boolean inputShutdown = false;
+    private boolean readingPaused = false;
+
+    // data to be sent - guarded by outbound
+    private final LinkedList<ByteBuffer> outbound = new LinkedList<>();
+
+    // dispatching - guarded by this
+    private ReadHandler readHandler;
+    private boolean pending = false;
+    private boolean scheduled = false;
+
+    private volatile boolean closed = false;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private final InputStream in = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = this.read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return NIOConnection.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            synchronized (NIOConnection.this) {
+                return NIOConnection.this.buffered;
+            }
+        }
+    };
+
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            NIOConnection.this.write(b, off, len);
+        }
+    };
+
+    private final Runnable worker = new Runnable() {
+        @Override
+        public void run() {
+            NIOConnection.this.dispatch();
+        }
+    };
+
+    NIOConnection(NIOServer server, SocketChannel channel, String replyAddressString, int readTimeout) {
+        this.server = server;
+        this.channel = channel;
+        this.replyAddressString = replyAddressString;
+        this.localAddress = replyAddressString;
+        this.readTimeout = readTimeout;
+
+        InetSocketAddress remote = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        this.recAddress = remote.getAddress().getHostAddress();
+        this.portNo = remote.getPort();
+    }
+
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * Called by selector thread with received data.
+     *
+     * @return false if receive buffer is full - channel mustn't be read
+     * until {@link NIOServer#resumeReading(NIOConnection)} is called
+     */
+    boolean received(byte[] data) {
+        boolean full;
+        synchronized (this) {
+            this.inbound.add(ByteBuffer.wrap(data));
+            this.buffered += data.length;
+            this.lastActivity = System.currentTimeMillis();
+            full = this.buffered >= RECEIVE_BUFFER_LIMIT;
+            this.readingPaused = full;
+            this.notifyAll();
+        }
+        this.dataAvailable();
+        return !full;
+    }
+
+    /**
+     * Called by selector thread if remote peer closed its output.
+     */
+    void receivedEndOfStream() {
+        synchronized (this) {
+            this.inputShutdown = true;
+            this.notifyAll();
+        }
+        this.dataAvailable();
+    }
+
+    private void dataAvailable() {
+        synchronized (this) {
+            this.pending = true;
+            if (this.scheduled || this.readHandler == null) {
+                return;
+            }
+            this.scheduled = true;
+        }
+        this.schedule();
+    }
+
+    private void schedule() {
+        if (!this.server.execute(this.worker)) {
+            // workers are busy - server dispatches again later
+            synchronized (this) {
+                this.scheduled = false;
+            }
+            this.server.dispatchLater(this);
+        }
+    }
+
+    /**
+     * Called by selector thread if dispatching was rejected before.
+     */
+    void dispatchAgain() {
+        synchronized (this) {
+            if (!this.pending || this.scheduled || this.readHandler == null || this.closed) {
+                return;
+            }
+            this.scheduled = true;
+        }
+        this.schedule();
+    }
+
+    /**
+     * Runs on a worker thread: calls read handler until no new data has
+     * been reported in the meantime.
+     */
+    private void dispatch() {
+        while (true) {
+            ReadHandler handler;
+            synchronized (this) {
+                if (!this.pending || this.closed) {
+                    this.scheduled = false;
+                    return;
+                }
+                this.pending = false;
+                handler = this.readHandler;
+            }
+
+            try {
+                handler.dataAvailable(this);
+            } catch (RuntimeException e) {
+                L.w("read handler failed: " + e.getMessage(), this);
+            }
+        }
+    }
+
+    @Override
+    public void setReadHandler(ReadHandler handler) {
+        synchronized (this) {
+            this.readHandler = handler;
+            if (handler == null || !this.pending || this.scheduled) {
+                return;
+            }
+            this.scheduled = true;
+        }
+        this.schedule();
+    }
+
+    @Override
+    public synchronized boolean isInputShutdown() {
+        return this.inputShutdown || this.closed;
+    }
+
+    @Override
+    public boolean isUsable() {
+        return !this.isInputShutdown();
+    }
+
+    @Override
+    public int getReceiveBufferLimit() {
+        return RECEIVE_BUFFER_LIMIT;
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        long deadline = System.currentTimeMillis() + this.readTimeout;
+        while (this.buffered == 0 && !this.inputShutdown && !this.closed) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                throw new SocketTimeoutException("no data received within " + this.readTimeout + " ms");
+            }
+            try {
+                this.wait(wait);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted while waiting for data");
+            }
+        }
+
+        if (this.buffered == 0) {
+            return -1;
+        }
+
+        int read = 0;
+        while (read < len && !this.inbound.isEmpty()) {
+            ByteBuffer head = this.inbound.getFirst();
+            int n = Math.min(len - read, head.remaining());
+            head.get(b, off + read, n);
+            read += n;
+            if (!head.hasRemaining()) {
+                this.inbound.removeFirst();
+            }
+        }
+        this.buffered -= read;
+        if (this.readingPaused && this.buffered <= RECEIVE_BUFFER_LIMIT / 2) {
+            this.readingPaused = false;
+            this.server.resumeReading(this);
+        }
+        return read;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("connection closed");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        buffer.put(b, off, len);
+        buffer.flip();
+
+        synchronized (this.outbound) {
+            this.outbound.add(buffer);
+        }
+        this.lastActivity = System.currentTimeMillis();
+        this.server.writeRequested(this);
+    }
+
+    /**
+     * Called by selector thread if channel is writable.
+     *
+     * @return true if all queued data are sent
+     */
+    boolean writeQueued() throws IOException {
+        synchronized (this.outbound) {
+            while (!this.outbound.isEmpty()) {
+                ByteBuffer head = this.outbound.getFirst();
+                this.channel.write(head);
+                if (head.hasRemaining()) {
+                    return false;
+                }
+                this.outbound.removeFirst();
+            }
+            return true;
+        }
+    }
+
+    boolean hasQueuedData() {
+        synchronized (this.outbound) {
+            return !this.outbound.isEmpty();
+        }
+    }
+
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return true if read handler is running or about to run
+     */
+    synchronized boolean isBusy() {
+        return this.scheduled;
+    }
+
+    /**
+     * Called by selector thread when channel is closed.
+     */
+    void closed() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.notifyAll();
+        }
+        this.notifyConnectionClosed();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return this.in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return this.out;
+    }
+
+    @Override
+    public void sendMessage(byte[] msg) throws IOException {
+        this.write(msg, 0, msg.length);
+    }
+
+    @Override
+    public String getReplyAddressString() {
+        return this.replyAddressString;
+    }
+
+    @Override
+    public String getReceiverAddressString() {
+        return "tcp://" + this.recAddress + ":" + Integer.toString(this.portNo);
+    }
+
+    @Override
+    public String getLocalAddressString() {
+        return this.localAddress;
+    }
+
+    @Override
+    public void setLocalAddressString(String localAddress) {
+        this.localAddress = localAddress;
+    }
+
+    /**
+     * Channel is closed after queued data are sent.
+     */
+    @Override
+    public void close() {
+        L.d("Closing NIO-Connection from: " + this.getReplyAddressString() + " to: " + this.recAddress, this);
+        this.server.closeRequested(this);
+    }
+}
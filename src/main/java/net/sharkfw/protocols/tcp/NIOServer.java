@@ -0,0 +1,356 @@
+package net.sharkfw.protocols.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.sharkfw.protocols.ConnectionStatusListener;
+import net.sharkfw.protocols.Protocols;
+import net.sharkfw.protocols.RequestHandler;
+import net.sharkfw.protocols.StreamStub;
+import net.sharkfw.system.L;
+
+/**
+ * A TCP server which serves all connections with a single selector thread.
+ * No thread waits for an idle connection: received data are handed to the
+ * connection which calls its read handler on a bounded pool of worker threads.
+ * Connections without any traffic are closed after the socket timeout.
+ *
+ * Both the data buffered per connection (see {@link NIOConnection}) and the
+ * tasks waiting for a worker are limited. If all workers are busy and the
+ * queue is full, a new connection is refused and a connection with new data
+ * is dispatched again by the selector thread later.
+ *
+ * @see TCPServer thread per connection alternative
+ */
+class NIOServer implements SharkServer {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int QUEUED_TASKS_PER_WORKER = 16;
+    // selector wakes up that often while dispatching is deferred
+    private static final int DISPATCH_RETRY_INTERVAL = 20;
+
+    private final ConnectionStatusListener listener;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final StreamStub stub;
+    private final int port;
+    private RequestHandler handler;
+    private int socketTimeout = 10000;
+    private volatile boolean active = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile Thread selectorThread = null;
+
+    // one read buffer for all connections - only used by selector thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    // changes requested by other threads - executed by selector thread
+    private final ConcurrentLinkedQueue<NIOConnection> writeRequests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<NIOConnection> closeRequests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<NIOConnection> resumeRequests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<NIOConnection> deferredDispatches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param port Port the server will listen on
+     * @param handler Listener which will be notified if a connection is established
+     * @param stub the Stub which created the Server used to get the local address of the device
+     * @param listener notified when a connection is closed
+     * @param maxWorkers maximum number of threads handling received data
+     * @throws IOException
+     */
+    NIOServer(int port, RequestHandler handler, StreamStub stub, ConnectionStatusListener listener, int maxWorkers)
+            throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        if (port == Protocols.ARBITRARY_PORT) {
+            this.serverChannel.socket().bind(new InetSocketAddress(0));
+        } else {
+            this.serverChannel.socket().bind(new InetSocketAddress(port));
+        }
+        this.serverChannel.configureBlocking(false);
+
+        this.selector = Selector.open();
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxWorkers * QUEUED_TASKS_PER_WORKER),
+                new ThreadPoolExecutor.AbortPolicy());
+        ((ThreadPoolExecutor) this.workers).allowCoreThreadTimeOut(true);
+
+        this.port = this.serverChannel.socket().getLocalPort();
+        this.handler = handler;
+        this.stub = stub;
+        this.listener = listener;
+
+        L.l("NIO Server is bound to port " + this.port, this);
+    }
+
+    @Override
+    public int getPortNumber() {
+        return this.port;
+    }
+
+    @Override
+    public void setHandler(RequestHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Stops the server. Listening socket and all connections are closed.
+     */
+    @Override
+    public void hold() {
+        this.active = false;
+        try {
+            // connections are closed by selector thread
+            this.serverChannel.close();
+        } catch (IOException ex) {
+            L.e("NIO Server hold failed: " + ex.getMessage(), this);
+        }
+        this.selector.wakeup();
+
+        Thread selectorThread = this.selectorThread;
+        if (selectorThread != null && selectorThread != Thread.currentThread()) {
+            // port is released when selector thread deregistered the channel
+            try {
+                this.stopped.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return false if task was rejected - server stopped or workers overloaded
+     */
+    boolean execute(Runnable task) {
+        try {
+            this.workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (!this.active) {
+                L.d("server stopped - task rejected", this);
+            }
+            return false;
+        }
+    }
+
+    void dispatchLater(NIOConnection con) {
+        if (this.active) {
+            this.deferredDispatches.add(con);
+        }
+    }
+
+    void resumeReading(NIOConnection con) {
+        this.resumeRequests.add(con);
+        this.selector.wakeup();
+    }
+
+    void writeRequested(NIOConnection con) {
+        this.writeRequests.add(con);
+        this.selector.wakeup();
+    }
+
+    void closeRequested(NIOConnection con) {
+        this.closeRequests.add(con);
+        this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        this.selectorThread = Thread.currentThread();
+        try {
+            while (this.active) {
+                this.selector.select(this.deferredDispatches.isEmpty()
+                        ? this.socketTimeout / 2 : DISPATCH_RETRY_INTERVAL);
+
+                this.handleRequests();
+
+                Iterator<SelectionKey> keyIter = this.selector.selectedKeys().iterator();
+                while (keyIter.hasNext()) {
+                    SelectionKey key = keyIter.next();
+                    keyIter.remove();
+
+                    try {
+                        if (key.isValid() && key.isAcceptable()) {
+                            this.accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            this.read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.write(key);
+                        }
+                    } catch (IOException e) {
+                        L.d("connection failed: " + e.getMessage(), this);
+                        this.close(key);
+                    }
+                }
+
+                this.closeIdleConnections();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            L.e("NIO Server stopped: " + e.getMessage(), this);
+        } finally {
+            this.shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+
+        NIOConnection con = new NIOConnection(this, channel, this.stub.getLocalAddress(), this.socketTimeout);
+        if (this.listener != null) {
+            con.addConnectionListener(this.listener);
+        }
+        channel.register(this.selector, SelectionKey.OP_READ, con);
+
+        L.d("Calling handler for stream on: " + this.port, this);
+        final RequestHandler requestHandler = this.handler;
+        final NIOConnection newCon = con;
+        // handler might block - don't call it on selector thread
+        boolean accepted = this.execute(new Runnable() {
+            @Override
+            public void run() {
+                requestHandler.handleStream(newCon);
+            }
+        });
+        if (!accepted) {
+            L.w("workers overloaded - connection refused: " + con.getReceiverAddressString(), this);
+            this.close(channel.keyFor(this.selector));
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        NIOConnection con = (NIOConnection) key.attachment();
+
+        this.readBuffer.clear();
+        int n = con.getChannel().read(this.readBuffer);
+        if (n < 0) {
+            // remote peer won't send anymore - stop reading from channel
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            con.receivedEndOfStream();
+            return;
+        }
+        if (n > 0) {
+            this.readBuffer.flip();
+            byte[] data = new byte[n];
+            this.readBuffer.get(data);
+            if (!con.received(data)) {
+                // receive buffer full - resumed when data are consumed
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        NIOConnection con = (NIOConnection) key.attachment();
+        if (con.writeQueued()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (con.isClosed()) {
+                this.close(key);
+            }
+        }
+    }
+
+    private void handleRequests() {
+        NIOConnection con;
+        while ((con = this.resumeRequests.poll()) != null) {
+            SelectionKey key = con.getChannel().keyFor(this.selector);
+            if (key != null && key.isValid() && !con.isInputShutdown()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        int deferred = this.deferredDispatches.size();
+        for (int i = 0; i < deferred && (con = this.deferredDispatches.poll()) != null; i++) {
+            con.dispatchAgain();
+        }
+
+        while ((con = this.writeRequests.poll()) != null) {
+            SelectionKey key = con.getChannel().keyFor(this.selector);
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        while ((con = this.closeRequests.poll()) != null) {
+            SelectionKey key = con.getChannel().keyFor(this.selector);
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+            if (con.hasQueuedData()) {
+                // close after sending - done in write()
+                con.closed();
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                this.close(key);
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : this.selector.keys()) {
+            if (!(key.attachment() instanceof NIOConnection)) {
+                continue;
+            }
+            NIOConnection con = (NIOConnection) key.attachment();
+            if (now - con.getLastActivity() > this.socketTimeout && !con.isBusy()) {
+                L.d("closing idle connection: " + con.getReceiverAddressString(), this);
+                this.close(key);
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof NIOConnection) {
+            NIOConnection con = (NIOConnection) key.attachment();
+            try {
+                con.getChannel().close();
+            } catch (IOException e) {
+                L.d(e.getMessage(), this);
+            }
+            con.closed();
+        }
+    }
+
+    private void shutdown() {
+        if (this.selector.isOpen()) {
+            for (SelectionKey key : new ArrayList<>(this.selector.keys())) {
+                this.close(key);
+            }
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                L.d(e.getMessage(), this);
+            }
+        }
+        try {
+            this.serverChannel.close();
+        } catch (IOException e) {
+            L.d(e.getMessage(), this);
+        }
+        this.workers.shutdown();
+        this.stopped.countDown();
+    }
+}
@@ -0,0 +1,38 @@
+package net.sharkfw.protocols.tcp;
+
+import java.io.IOException;
+
+import net.sharkfw.protocols.ConnectionStatusListener;
+import net.sharkfw.protocols.RequestHandler;
+
+/**
+ * TCP stub which serves incoming connections with a selector instead of a
+ * thread per connection. Received data are handled by a bounded number of
+ * worker threads. Outgoing connections are created like in
+ * {@link TCPStreamStub}.
+ *
+ * @see NIOServer
+ */
+public class NIOStreamStub extends TCPStreamStub {
+
+    public static final int DEFAULT_MAX_WORKERS = 8;
+
+    private final int maxWorkers;
+
+    /**
+     * @param handler Listener which will be notified if an connection is established
+     * @param port Port the Server is listening on
+     * @param listener notified when a connection is closed
+     * @param maxWorkers maximum number of threads handling incoming messages
+     * @throws IOException
+     */
+    public NIOStreamStub(RequestHandler handler, int port, ConnectionStatusListener listener, int maxWorkers) throws IOException {
+        super(handler, port, listener);
+        this.maxWorkers = maxWorkers > 0 ? maxWorkers : DEFAULT_MAX_WORKERS;
+    }
+
+    @Override
+    protected SharkServer createServer() throws IOException {
+        return new NIOServer(this.port, this.handler, this, this.listener, this.maxWorkers);
+    }
+}
@@ -1,13 +1,14 @@
 package net.sharkfw.protocols.tcp;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import net.sharkfw.protocols.CheckedStreamConnection;
 import net.sharkfw.protocols.ConnectionListenerManager;
-import net.sharkfw.protocols.StreamConnection;
 import net.sharkfw.system.L;
 import net.sharkfw.system.Streamer;
 
@@ -17,7 +18,7 @@ import net.sharkfw.system.Streamer;
  *
  * @author thsc
  */
-public class TCPConnection extends ConnectionListenerManager implements StreamConnection {
+public class TCPConnection extends ConnectionListenerManager implements CheckedStreamConnection {
 
     private int portNo;
     private String localAddress;
@@ -27,6 +28,35 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
     private OutputStream out;
     private InputStream in;
     private int socketTimeout = 10000;
+    // remote peer closed its side - seen by the reader of the input stream
+    private volatile boolean endOfStream = false;
+
+    /**
+     * Remembers end of stream - the socket doesn't tell.
+     */
+    private class EndOfStreamTracker extends FilterInputStream {
+        EndOfStreamTracker(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                TCPConnection.this.endOfStream = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                TCPConnection.this.endOfStream = true;
+            }
+            return n;
+        }
+    }
 
     public TCPConnection(String recAddress, int port) throws UnknownHostException, IOException {
         this(recAddress, port, null);
@@ -58,7 +88,7 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
 
         s.setSoTimeout(this.socketTimeout);
         this.out = s.getOutputStream();
-        this.in = s.getInputStream();
+        this.in = new EndOfStreamTracker(s.getInputStream());
         L.d("Creating TCPConnection w/ local address of:" + s.getLocalAddress() + ":" + s.getLocalPort(), this);
         this.localAddress = replyAddressString;
         this.replyAddressString = replyAddressString;
@@ -84,7 +114,7 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
         this.portNo = this.s.getPort();
 
         this.out = this.s.getOutputStream();
-        this.in = this.s.getInputStream();
+        this.in = new EndOfStreamTracker(this.s.getInputStream());
     }
 
     public String getReplyAddressString() {
@@ -147,6 +177,12 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
         }
     }
 
+    @Override
+    public boolean isUsable() {
+        return !this.endOfStream && !this.s.isClosed()
+                && !this.s.isInputShutdown() && !this.s.isOutputShutdown();
+    }
+
     public String getReceiverAddressString() {
         return "tcp://" + this.recAddress + ":" + Integer.toString(this.portNo);
     }
@@ -32,10 +32,10 @@ import net.sharkfw.system.Util;
  */
 public class TCPStreamStub implements StreamStub {
 
-    private ConnectionStatusListener listener;
+    protected final ConnectionStatusListener listener;
     private SharkServer server;
-    private final RequestHandler handler;
-    private final int port;
+    protected final RequestHandler handler;
+    protected final int port;
     private final String uri;
 
     /**
@@ -56,7 +56,7 @@ public class TCPStreamStub implements StreamStub {
     public final void start() throws IOException {
         if(!this.started()) {
             try {
-                this.server = new TCPServer(this.port, this.handler, this, this.listener);
+                this.server = this.createServer();
                 new Thread(server).start();
 
             } catch (IOException ex) {
@@ -66,6 +66,15 @@ public class TCPStreamStub implements StreamStub {
         }
     }
     
+    /**
+     * Creates server which accepts incoming connections.
+     * @return a server with a thread per connection
+     * @throws IOException
+     */
+    protected SharkServer createServer() throws IOException {
+        return new TCPServer(this.port, this.handler, this, this.listener);
+    }
+
     public boolean started() {
         return this.server != null;
     }
@@ -94,6 +103,7 @@ public class TCPStreamStub implements StreamStub {
         this.handler = handler;
         this.port = port;
         this.uri = uri;
+        this.listener = null;
         
         try {
             this.server = new WebServer(port, handler, this);
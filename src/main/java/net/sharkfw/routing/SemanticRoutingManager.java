@@ -1,4 +1,488 @@
 package net.sharkfw.routing;
 
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.asip.serialization.ASIPMessageSerializerHelper;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.system.L;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards ASIP messages over several hops.
+ * <p>
+ * Next hops are learned from received messages: the physical sender of a
+ * message is the next hop towards its logical sender. Topics and locations
+ * of messages are remembered per neighbour - messages without a known route
+ * are sent to neighbours which dealt with same topic or location before, or
+ * to a few neighbours at all.
+ * <p>
+ * Each hop decrements TTL - message isn't forwarded if TTL is used up.
+ * Messages are identified by a digest of header and content. Messages which
+ * were seen within the seen window (default {@link #DEFAULT_SEEN_WINDOW} ms)
+ * are dropped - that breaks loops in meshed networks. Messages carry no
+ * sequence number, a peer which announces same knowledge periodically is
+ * forwarded again once the window has passed. Loops must settle within the
+ * window - TTL limits them anyway.
+ * Raw content is a stream which is read once. Raw messages addressed to
+ * another peer are read before they are checked - their content is forwarded
+ * anyway and is part of the digest. Other raw messages are identified by
+ * signature and header only.
+ *
+ * @see net.sharkfw.ports.RouterPort
+ */
 public class SemanticRoutingManager {
+
+    public static final int DEFAULT_SEEN_CAPACITY = 1024;
+    public static final int DEFAULT_ROUTE_CAPACITY = 256;
+    public static final int DEFAULT_FAN_OUT = 3;
+    public static final long DEFAULT_SEEN_WINDOW = 30000; // ms
+
+    // tags remembered per neighbour
+    private static final int MAX_NEIGHBOUR_TAGS = 32;
+
+    private static class Neighbour {
+        private PeerSemanticTag peer;
+        private final List<SemanticTag> topics = new ArrayList<>();
+        private final List<SpatialSemanticTag> locations = new ArrayList<>();
+
+        Neighbour(PeerSemanticTag peer) {
+            this.peer = peer;
+        }
+
+        private static <T extends SemanticTag> void remember(List<T> tags, T tag) {
+            if (tag == null || SharkCSAlgebra.isAny(tag)) return;
+            for (int i = 0; i < tags.size(); i++) {
+                if (SharkCSAlgebra.identical(tags.get(i), tag)) {
+                    // most recent last
+                    tags.add(tags.remove(i));
+                    return;
+                }
+            }
+            tags.add(tag);
+            if (tags.size() > MAX_NEIGHBOUR_TAGS) {
+                tags.remove(0);
+            }
+        }
+
+        private static boolean knows(List<? extends SemanticTag> tags, SemanticTag tag) {
+            if (tag == null || SharkCSAlgebra.isAny(tag)) return false;
+            for (SemanticTag known : tags) {
+                if (SharkCSAlgebra.identical(known, tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        BoundedMap(int capacity) {
+            // access order - least recently used entry is dropped
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return this.size() > this.capacity;
+        }
+    }
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final SharkEngine se;
+    private final int fanOut;
+    private final long seenWindow;
+
+    // digest -> time message was seen first
+    private final Map<String, Long> seen;
+    // peer si -> next hop towards that peer
+    private final Map<String, PeerSemanticTag> routes;
+    // si of neighbour -> neighbour
+    private final Map<String, Neighbour> neighbours;
+
+    private long forwarded = 0;
+    private long dropped = 0;
+
+    public SemanticRoutingManager(SharkEngine se) {
+        this(se, DEFAULT_SEEN_CAPACITY, DEFAULT_ROUTE_CAPACITY, DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * @param se
+     * @param seenCapacity number of message digests kept to detect duplicates
+     * @param routeCapacity number of peers and neighbours kept in routing table
+     * @param fanOut max. number of neighbours a message without route is sent to
+     */
+    public SemanticRoutingManager(SharkEngine se, int seenCapacity, int routeCapacity, int fanOut) {
+        this(se, seenCapacity, routeCapacity, fanOut, DEFAULT_SEEN_WINDOW);
+    }
+
+    /**
+     * @param se
+     * @param seenCapacity number of message digests kept to detect duplicates
+     * @param routeCapacity number of peers and neighbours kept in routing table
+     * @param fanOut max. number of neighbours a message without route is sent to
+     * @param seenWindow ms a message is taken as duplicate after it was seen first
+     */
+    public SemanticRoutingManager(SharkEngine se, int seenCapacity, int routeCapacity, int fanOut,
+                                  long seenWindow) {
+        this.se = se;
+        this.fanOut = Math.max(1, fanOut);
+        this.seenWindow = Math.max(0, seenWindow);
+        this.seen = new BoundedMap<>(Math.max(1, seenCapacity));
+        this.routes = new BoundedMap<>(Math.max(1, routeCapacity));
+        this.neighbours = new BoundedMap<>(Math.max(1, routeCapacity));
+    }
+
+    /**
+     * Learns, drops duplicates and forwards message to next hops. Messages
+     * which are addressed to the engine owner aren't forwarded.
+     *
+     * @param message
+     * @return number of hops the message was forwarded to
+     */
+    public int route(ASIPInMessage message) {
+        this.learn(message);
+
+        PeerSemanticTag receiver = message.getReceiverPeer();
+        byte[] raw = null;
+        if (message.getCommand() == ASIPMessage.ASIP_RAW && receiver != null
+                && !SharkCSAlgebra.isAny(receiver) && !this.isOwner(receiver)) {
+            try {
+                raw = readFully(message.getRaw());
+            } catch (IOException e) {
+                L.w("cannot read raw content to forward: " + e.getMessage(), this);
+                return 0;
+            }
+            // other ports read the buffered content
+            message.setRaw(new ByteArrayInputStream(raw));
+        }
+
+        if (!this.markSeen(message, raw)) {
+            L.d("drop duplicate message", this);
+            return 0;
+        }
+
+        if (this.isOwner(receiver)) {
+            return 0;
+        }
+
+        long ttl = message.getTtl() - 1;
+        if (ttl <= 0) {
+            synchronized (this) {
+                this.dropped++;
+            }
+            return 0;
+        }
+
+        if (message.getCommand() == ASIPMessage.ASIP_RAW && (receiver == null || SharkCSAlgebra.isAny(receiver))) {
+            // stream is read once - don't take it from local ports
+            return 0;
+        }
+
+        List<PeerSemanticTag> hops = this.selectNextHops(message);
+        if (hops.isEmpty()) {
+            return 0;
+        }
+
+        int count = 0;
+        for (PeerSemanticTag hop : hops) {
+            ASIPOutMessage out = this.se.createASIPOutMessage(hop.getAddresses(), message.getLogicalSender(),
+                    receiver, message.getReceiverSpatial(), message.getReceiverTime(),
+                    message.getTopic(), message.getType(), ttl);
+            if (out == null) {
+                continue;
+            }
+            switch (message.getCommand()) {
+                case ASIPMessage.ASIP_EXPOSE:
+                    out.expose(message.getInterest());
+                    break;
+                case ASIPMessage.ASIP_INSERT:
+                    out.insert(message.getKnowledge());
+                    break;
+                case ASIPMessage.ASIP_RAW:
+                    out.raw(raw);
+                    break;
+                default:
+                    continue;
+            }
+            count++;
+        }
+
+        synchronized (this) {
+            this.forwarded += count;
+        }
+        return count;
+    }
+
+    /**
+     * Remembers physical sender as neighbour and as next hop towards the
+     * logical sender of that message.
+     *
+     * @param message
+     */
+    public synchronized void learn(ASIPMessage message) {
+        PeerSemanticTag hop = message.getPhysicalSender();
+        if (hop == null || hop.getSI() == null || this.isOwner(hop)) return;
+        String[] addresses = hop.getAddresses();
+        if (addresses == null || addresses.length == 0) return;
+
+        Neighbour neighbour = null;
+        for (String si : hop.getSI()) {
+            neighbour = this.neighbours.get(si);
+            if (neighbour != null) break;
+        }
+        if (neighbour == null) {
+            neighbour = new Neighbour(hop);
+        } else {
+            // addresses can change
+            neighbour.peer = hop;
+        }
+        for (String si : hop.getSI()) {
+            this.neighbours.put(si, neighbour);
+            this.routes.put(si, hop);
+        }
+        Neighbour.remember(neighbour.topics, message.getTopic());
+        Neighbour.remember(neighbour.locations, message.getReceiverSpatial());
+
+        PeerSemanticTag origin = message.getLogicalSender();
+        if (origin != null && origin.getSI() != null && !this.isOwner(origin)) {
+            for (String si : origin.getSI()) {
+                this.routes.put(si, hop);
+            }
+        }
+    }
+
+    /**
+     * @param message
+     * @return true if message wasn't seen within the seen window - it is
+     * remembered now
+     */
+    public boolean markSeen(ASIPInMessage message) {
+        return this.markSeen(message, null);
+    }
+
+    private boolean markSeen(ASIPInMessage message, byte[] raw) {
+        // content is read without holding the tables
+        String key = digest(message, raw);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Long firstSeen = this.seen.get(key);
+            // duplicates don't extend the window - loops would keep it open
+            if (firstSeen != null && now - firstSeen < this.seenWindow) {
+                this.dropped++;
+                return false;
+            }
+            this.seen.put(key, now);
+            return true;
+        }
+    }
+
+    /**
+     * @param peer
+     * @return neighbour which leads to peer - null if unknown
+     */
+    public synchronized PeerSemanticTag getNextHop(PeerSemanticTag peer) {
+        if (peer == null || peer.getSI() == null) return null;
+        for (String si : peer.getSI()) {
+            PeerSemanticTag hop = this.routes.get(si);
+            if (hop != null) {
+                return hop;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Known route to receiver peer is taken first. Otherwise message goes to
+     * neighbours which dealt with its topic or location - or to up to fan
+     * out neighbours. Neither physical nor logical sender get the message back.
+     *
+     * @param message
+     * @return next hops - can be empty
+     */
+    public synchronized List<PeerSemanticTag> selectNextHops(ASIPMessage message) {
+        List<PeerSemanticTag> hops = new ArrayList<>();
+        PeerSemanticTag receiver = message.getReceiverPeer();
+
+        if (receiver != null && !SharkCSAlgebra.isAny(receiver)) {
+            PeerSemanticTag hop = this.getNextHop(receiver);
+            if (hop == null && receiver.getAddresses() != null && receiver.getAddresses().length > 0) {
+                // receiver can be reached directly
+                hop = receiver;
+            }
+            if (hop != null && !this.isExcluded(hop, message)) {
+                hops.add(hop);
+                return hops;
+            }
+        }
+
+        List<Neighbour> candidates = new ArrayList<>();
+        for (Neighbour neighbour : this.neighbours.values()) {
+            if (!candidates.contains(neighbour) && !this.isExcluded(neighbour.peer, message)) {
+                candidates.add(neighbour);
+            }
+        }
+
+        for (Neighbour neighbour : candidates) {
+            if (Neighbour.knows(neighbour.topics, message.getTopic())
+                    || Neighbour.knows(neighbour.locations, message.getReceiverSpatial())) {
+                hops.add(neighbour.peer);
+            }
+        }
+
+        if (hops.isEmpty()) {
+            // most recently heard neighbours first
+            for (int i = candidates.size() - 1; i >= 0 && hops.size() < this.fanOut; i--) {
+                hops.add(candidates.get(i).peer);
+            }
+        }
+        return hops;
+    }
+
+    public synchronized long getForwarded() {
+        return this.forwarded;
+    }
+
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    private boolean isOwner(PeerSemanticTag peer) {
+        return peer != null && this.se != null && this.se.getOwner() != null
+                && SharkCSAlgebra.identical(peer, this.se.getOwner());
+    }
+
+    private boolean isExcluded(PeerSemanticTag hop, ASIPMessage message) {
+        return this.isOwner(hop)
+                || (message.getPhysicalSender() != null && SharkCSAlgebra.identical(hop, message.getPhysicalSender()))
+                || (message.getLogicalSender() != null && SharkCSAlgebra.identical(hop, message.getLogicalSender()));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // each java platform provides SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, String s) {
+        if (s != null) {
+            md.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
+    }
+
+    private static void update(MessageDigest md, SemanticTag tag) {
+        if (tag != null && tag.getSI() != null) {
+            for (String si : tag.getSI()) {
+                update(md, si);
+            }
+        }
+        md.update((byte) 1);
+    }
+
+    /**
+     * @param message
+     * @param raw raw content already read from message - null if not read
+     * @return digest of everything but TTL and physical sender - those
+     * change on each hop
+     */
+    static String digest(ASIPInMessage message, byte[] raw) {
+        MessageDigest md = createDigest();
+        update(md, Integer.toString(message.getCommand()));
+        update(md, message.getLogicalSender());
+        update(md, message.getReceiverPeer());
+        update(md, message.getReceiverSpatial());
+        update(md, message.getReceiverTime());
+        update(md, message.getTopic());
+        update(md, message.getType());
+        update(md, message.getSignature());
+        if (raw != null) {
+            md.update(raw);
+        }
+
+        try {
+            if (message.getInterest() != null) {
+                update(md, ASIPMessageSerializerHelper.serializeASIPSpace(message.getInterest()).toString());
+            }
+            ASIPKnowledge knowledge = message.getKnowledge();
+            if (knowledge != null) {
+                DigestOutputStream dos = new DigestOutputStream(DISCARD, md);
+                Iterator<ASIPInformationSpace> spaces = knowledge.informationSpaces();
+                while (spaces.hasNext()) {
+                    ASIPInformationSpace space = spaces.next();
+                    update(md, ASIPMessageSerializerHelper.serializeASIPSpace(space.getASIPSpace()).toString());
+                    Iterator<ASIPInformation> infos = space.informations();
+                    while (infos.hasNext()) {
+                        ASIPInformation info = infos.next();
+                        update(md, info.getName());
+                        info.streamContent(dos);
+                        md.update((byte) 2);
+                    }
+                }
+            }
+        } catch (SharkKBException e) {
+            L.d("message content not part of digest: " + e.getMessage(), SemanticRoutingManager.class);
+        }
+
+        byte[] digest = md.digest();
+        StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (is == null) {
+            return baos.toByteArray();
+        }
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) >= 0) {
+            baos.write(buffer, 0, n);
+        }
+        return baos.toByteArray();
+    }
 }
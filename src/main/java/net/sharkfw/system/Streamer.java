@@ -1,5 +1,6 @@
 package net.sharkfw.system;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -52,6 +53,9 @@ public class Streamer {
 //            }
             int numBytesReallyRead = in.read(buffer, 0, numBytesToRead);
 //            L.d("Bytes really wrote: " + numBytesReallyRead, Streamer.class);
+            if (numBytesReallyRead < 0) {
+                throw new EOFException("stream ended " + lenLeft + " bytes too early");
+            }
             out.write(buffer, 0, numBytesReallyRead);
             lenLeft -= numBytesReallyRead;
             alreadyRead += numBytesReallyRead;
@@ -1,12 +1,21 @@
 package net.sharkfw.asip;
 
+import net.sharkfw.asip.engine.ASIPConnection;
 import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
 import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.asip.serialization.ASIPFrameDecoder;
+import net.sharkfw.asip.serialization.ASIPMessageSerializer;
+import net.sharkfw.asip.serialization.ASIPSharedInsert;
 import net.sharkfw.knowledgeBase.SharkAlgebra;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
 import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.inmemory.InMemoASIPKnowledge;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.ports.KnowledgePort;
 import net.sharkfw.system.L;
 import net.sharkfw.system.TestUtils;
 import org.junit.After;
@@ -15,6 +24,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Scanner;
@@ -202,4 +213,242 @@ public class ASIPMessageTest extends ASIPBaseTest{
         Assert.assertTrue(rawInput.equals(receivedContent));
 
     }
+
+    @Test
+    public void ASIPMessage_severalMessagesOnSlowStream_success() throws Exception {
+
+        String rawInput = "Hello ASIP.";
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        ASIPKnowledge knowledge = new InMemoASIPKnowledge(kb.getVocabulary());
+        knowledge.addInformation("Hello Knowledge.", space);
+
+        new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null).raw(rawInput.getBytes(StandardCharsets.UTF_8));
+        new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null).insert(knowledge);
+        new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null).expose((ASIPInterest) space);
+        this.connection.createInputStream();
+
+        // deliver a single byte per read
+        ASIPFrameDecoder decoder = new ASIPFrameDecoder(new FilterInputStream(this.connection.getInputStream()) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        });
+
+        // raw content isn't read - it is skipped by the decoder
+        ASIPInMessage rawMessage = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(rawMessage.parse());
+
+        ASIPInMessage insertMessage = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(insertMessage.parse());
+        ASIPInformation info = insertMessage.getKnowledge().informationSpaces().next().informations().next();
+        Assert.assertEquals("Hello Knowledge.", info.getContentAsString());
+
+        ASIPInMessage exposeMessage = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(exposeMessage.parse());
+        Assert.assertTrue(SharkAlgebra.identical(space, exposeMessage.getInterest()));
+
+        ASIPInMessage nothing = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertFalse(nothing.parse());
+        Assert.assertTrue(decoder.isClosed());
+    }
+
+    @Test
+    public void ASIPMessage_sharedInsertToTwoReceivers_success() throws Exception {
+
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("Hello Knowledge.", space);
+
+        ASIPOutMessage first = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        ASIPSharedInsert sharedInsert = ASIPMessageSerializer.serializeSharedInsert(first, kb);
+        first.insert(sharedInsert);
+        new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, sender, null, null, null, null).insert(sharedInsert);
+        this.connection.createInputStream();
+
+        ASIPFrameDecoder decoder = new ASIPFrameDecoder(this.connection.getInputStream());
+
+        ASIPInMessage firstIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(firstIn.parse());
+        Assert.assertTrue(SharkCSAlgebra.identical(receiverPeer, firstIn.getReceiverPeer()));
+        ASIPInformation info = firstIn.getKnowledge().informationSpaces().next().informations().next();
+        Assert.assertEquals("Hello Knowledge.", info.getContentAsString());
+
+        ASIPInMessage secondIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(secondIn.parse());
+        Assert.assertTrue(SharkCSAlgebra.identical(sender, secondIn.getReceiverPeer()));
+        info = secondIn.getKnowledge().informationSpaces().next().informations().next();
+        Assert.assertEquals("Hello Knowledge.", info.getContentAsString());
+    }
+
+    @Test
+    public void ASIPMessage_binaryFormat_success() throws Exception {
+
+        String rawInput = "Hello ASIP.";
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("Hello Knowledge.", space);
+
+        ASIPOutMessage rawOut = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        rawOut.setFormat(ASIPMessage.FORMAT_BINARY);
+        rawOut.raw(rawInput.getBytes(StandardCharsets.UTF_8));
+        ASIPOutMessage insertOut = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        insertOut.setFormat(ASIPMessage.FORMAT_BINARY);
+        insertOut.insert(kb);
+        ASIPOutMessage exposeOut = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        exposeOut.setFormat(ASIPMessage.FORMAT_BINARY);
+        exposeOut.expose((ASIPInterest) space);
+        // json still understood on the same stream
+        new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null).raw(rawInput.getBytes(StandardCharsets.UTF_8));
+        this.connection.createInputStream();
+
+        ASIPFrameDecoder decoder = new ASIPFrameDecoder(this.connection.getInputStream());
+
+        ASIPInMessage rawIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(rawIn.parse());
+        Assert.assertEquals(rawOut, rawIn);
+        try (Scanner scanner = new Scanner(rawIn.getRaw(), StandardCharsets.UTF_8.name())) {
+            Assert.assertEquals(rawInput, scanner.useDelimiter("\\A").next());
+        }
+
+        ASIPInMessage insertIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(insertIn.parse());
+        Assert.assertEquals(ASIPMessage.FORMAT_BINARY, insertIn.getFormat());
+        ASIPInformationSpace informationSpace = insertIn.getKnowledge().informationSpaces().next();
+        Assert.assertTrue(SharkAlgebra.identical(space, informationSpace.getASIPSpace()));
+        Assert.assertEquals("Hello Knowledge.", informationSpace.informations().next().getContentAsString());
+
+        ASIPInMessage exposeIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(exposeIn.parse());
+        Assert.assertTrue(SharkAlgebra.identical(space, exposeIn.getInterest()));
+        Assert.assertTrue(SharkCSAlgebra.identical(sender, exposeIn.getLogicalSender()));
+        Assert.assertTrue(SharkCSAlgebra.identical(receiverPeer, exposeIn.getReceiverPeer()));
+
+        ASIPInMessage jsonIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(jsonIn.parse());
+        Assert.assertEquals(ASIPMessage.FORMAT_JSON, jsonIn.getFormat());
+
+        // sender of binary messages is addressed in binary format
+        Assert.assertEquals(ASIPMessage.FORMAT_BINARY, this.engine.getASIPFormat(sender));
+        Assert.assertEquals(ASIPMessage.FORMAT_JSON, this.engine.getASIPFormat(receiverPeer));
+    }
+
+    @Test
+    public void ASIPMessage_exposeWithKnowledgeDigest_success() throws Exception {
+
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("Hello Knowledge.", space);
+
+        ASIPOutMessage jsonOut = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        jsonOut.setKnowledgeDigest(ASIPKnowledgeDigest.create(kb));
+        jsonOut.expose((ASIPInterest) space);
+        ASIPOutMessage binaryOut = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        binaryOut.setFormat(ASIPMessage.FORMAT_BINARY);
+        binaryOut.setKnowledgeDigest(ASIPKnowledgeDigest.create(kb));
+        binaryOut.expose((ASIPInterest) space);
+        this.connection.createInputStream();
+
+        ASIPFrameDecoder decoder = new ASIPFrameDecoder(this.connection.getInputStream());
+        for (int i = 0; i < 2; i++) {
+            ASIPInMessage exposeIn = new ASIPInMessage(this.engine, this.connection, decoder);
+            Assert.assertTrue(exposeIn.parse());
+            ASIPKnowledgeDigest digest = exposeIn.getKnowledgeDigest();
+            Assert.assertNotNull(digest);
+
+            // receiver holds same knowledge - nothing to send
+            SharkKB local = new InMemoSharkKB();
+            ASIPSpace localSpace = local.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+            local.addInformation("Hello Knowledge.", localSpace);
+            Assert.assertTrue(digest.hasNothingNew(local, exposeIn.getInterest()));
+            Assert.assertTrue(digest.mightContain(ASIPKnowledgeDigest.TOPIC, topics.tags().nextElement()));
+
+            local.addInformation("Something new.", localSpace);
+            Assert.assertFalse(digest.hasNothingNew(local, exposeIn.getInterest()));
+        }
+    }
+
+    @Test
+    public void ASIPKnowledgeDigest_falsePositive_informationNotSkipped() throws Exception {
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("Hello Knowledge.", space);
+
+        // saturated filter - each item is reported
+        ASIPKnowledgeDigest digest = new ASIPKnowledgeDigest(1, 0.5);
+        for (int i = 0; i < 1000; i++) {
+            digest.add(ASIPKnowledgeDigest.TOPIC, InMemoSharkKB.createInMemoSemanticTag("t" + i, "http://t.org/" + i));
+        }
+
+        ASIPInformation info = kb.getAllInformationSpaces().next().informations().next();
+        Assert.assertTrue(digest.mightContain(info));
+        Assert.assertFalse(digest.contains(info));
+        Assert.assertFalse(digest.hasNothingNew(kb, space));
+
+        // survives transmission
+        ASIPKnowledgeDigest received = ASIPKnowledgeDigest.fromByteArray(digest.toByteArray());
+        Assert.assertTrue(received.mightContain(info));
+        Assert.assertFalse(received.hasNothingNew(kb, space));
+
+        digest.add(info);
+        Assert.assertTrue(ASIPKnowledgeDigest.fromByteArray(digest.toByteArray()).hasNothingNew(kb, space));
+    }
+
+    /**
+     * Opts in to digests: records whether an expose could be left unanswered.
+     */
+    private static class DigestAwarePort extends KnowledgePort {
+        private final SharkKB kb;
+        private Boolean nothingToOffer = null;
+
+        DigestAwarePort(SharkEngine se, SharkKB kb) {
+            super(se);
+            this.kb = kb;
+        }
+
+        @Override
+        protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
+        }
+
+        @Override
+        protected void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) throws SharkKBException {
+            this.nothingToOffer = this.hasNothingToOffer(message, this.kb);
+        }
+    }
+
+    @Test
+    public void KnowledgePort_hasNothingToOffer_onlyIfDigestProvesIt() throws Exception {
+        SharkKB kb = new InMemoSharkKB();
+        ASIPSpace space = kb.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("Hello Knowledge.", space);
+
+        SharkKB local = new InMemoSharkKB();
+        ASIPSpace localSpace = local.createASIPSpace(topics, types, peers, sender, peers, null, null, ASIPSpace.DIRECTION_INOUT);
+        local.addInformation("Hello Knowledge.", localSpace);
+        DigestAwarePort port = new DigestAwarePort(this.engine, local);
+
+        ASIPOutMessage withDigest = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        withDigest.setKnowledgeDigest(ASIPKnowledgeDigest.create(kb));
+        withDigest.expose((ASIPInterest) space);
+        ASIPOutMessage withoutDigest = new ASIPOutMessage(this.engine, this.connection, 10, sender, sender, receiverPeer, null, null, null, null);
+        withoutDigest.expose((ASIPInterest) space);
+        this.connection.createInputStream();
+        ASIPFrameDecoder decoder = new ASIPFrameDecoder(this.connection.getInputStream());
+
+        ASIPInMessage exposeIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(exposeIn.parse());
+        port.handleMessage(exposeIn, null);
+        Assert.assertTrue(port.nothingToOffer);
+
+        local.addInformation("Something new.", localSpace);
+        port.handleMessage(exposeIn, null);
+        Assert.assertFalse(port.nothingToOffer);
+
+        ASIPInMessage plainExposeIn = new ASIPInMessage(this.engine, this.connection, decoder);
+        Assert.assertTrue(plainExposeIn.parse());
+        port.nothingToOffer = null;
+        port.handleMessage(plainExposeIn, null);
+        Assert.assertFalse(port.nothingToOffer);
+    }
 }
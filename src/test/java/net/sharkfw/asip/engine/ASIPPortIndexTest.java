@@ -0,0 +1,100 @@
+package net.sharkfw.asip.engine;
+
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.STSet;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.ASIPPort;
+import net.sharkfw.peer.J2SESharkEngine;
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.ports.KnowledgePort;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ASIPPortIndexTest {
+
+    private J2SESharkEngine engine;
+    private InterestPort sportPort;
+    private InterestPort musicPort;
+    private InterestPort anyPort;
+    private List<ASIPPort> ports;
+
+    private static class InterestPort extends KnowledgePort {
+        InterestPort(SharkEngine se, ASIPInterest interest) {
+            super(se);
+            if (interest != null) {
+                this.setAsipInterest(interest);
+            }
+        }
+
+        @Override
+        protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
+        }
+
+        @Override
+        protected void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) {
+        }
+    }
+
+    private ASIPInterest topicInterest(String si) throws SharkKBException {
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        topics.createSemanticTag(si, si);
+        return InMemoSharkKB.createInMemoASIPInterest(topics, null, null, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+    }
+
+    @Before
+    public void setUp() throws SharkKBException {
+        this.engine = new J2SESharkEngine();
+        this.sportPort = new InterestPort(this.engine, this.topicInterest("http://sport.org"));
+        this.musicPort = new InterestPort(this.engine, this.topicInterest("http://music.org"));
+        this.anyPort = new InterestPort(this.engine, null);
+
+        this.ports = new ArrayList<>();
+        this.ports.add(this.sportPort);
+        this.ports.add(this.musicPort);
+        this.ports.add(this.anyPort);
+    }
+
+    @Test
+    public void getCandidates_topic_matchingAndAnyPorts() throws SharkKBException {
+        ASIPPortIndex index = new ASIPPortIndex(this.ports, 0);
+        ASIPInMessage msg = new ASIPInMessage(this.engine, InMemoSharkKB.createInMemoASIPInterest(),
+                this.engine.getAsipStub());
+        msg.setTopic(InMemoSharkKB.createInMemoSemanticTag("Sport", "HTTP://SPORT.ORG"));
+
+        List<ASIPPort> candidates = index.getCandidates(msg);
+
+        Assert.assertEquals(2, candidates.size());
+        Assert.assertSame(this.sportPort, candidates.get(0));
+        Assert.assertSame(this.anyPort, candidates.get(1));
+    }
+
+    @Test
+    public void getCandidates_noTopic_allPorts() throws SharkKBException {
+        ASIPPortIndex index = new ASIPPortIndex(this.ports, 0);
+        ASIPInMessage msg = new ASIPInMessage(this.engine, InMemoSharkKB.createInMemoASIPInterest(),
+                this.engine.getAsipStub());
+
+        Assert.assertEquals(3, index.getCandidates(msg).size());
+    }
+
+    @Test
+    public void getCandidates_unknownTopic_onlyAnyPort() throws SharkKBException {
+        ASIPPortIndex index = new ASIPPortIndex(this.ports, 0);
+        ASIPInMessage msg = new ASIPInMessage(this.engine, InMemoSharkKB.createInMemoASIPInterest(),
+                this.engine.getAsipStub());
+        msg.setTopic(InMemoSharkKB.createInMemoSemanticTag("Art", "http://art.org"));
+
+        List<ASIPPort> candidates = index.getCandidates(msg);
+
+        Assert.assertEquals(1, candidates.size());
+        Assert.assertSame(this.anyPort, candidates.get(0));
+    }
+}
@@ -0,0 +1,149 @@
+package net.sharkfw.asip.engine;
+
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.ASIPPort;
+import net.sharkfw.peer.J2SESharkEngine;
+import net.sharkfw.peer.SharkEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ports handle exposes concurrently unless they ask for serialization.
+ */
+public class SimpleASIPStubTest {
+
+    private J2SESharkEngine engine;
+    private ExecutorService executor;
+
+    /**
+     * Waits until all ports are called - succeeds only if ports run concurrently.
+     */
+    private static class MeetingPort extends ASIPPort {
+        private final CountDownLatch meeting;
+
+        MeetingPort(SharkEngine se, CountDownLatch meeting) {
+            super(se);
+            this.meeting = meeting;
+        }
+
+        @Override
+        public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+            this.meeting.countDown();
+            try {
+                return this.meeting.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class CountingPort extends ASIPPort {
+        private final AtomicInteger active;
+        private final AtomicInteger maxActive;
+
+        CountingPort(SharkEngine se) {
+            this(se, new AtomicInteger(), new AtomicInteger());
+        }
+
+        CountingPort(SharkEngine se, AtomicInteger active, AtomicInteger maxActive) {
+            super(se);
+            this.active = active;
+            this.maxActive = maxActive;
+        }
+
+        @Override
+        public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+            int now = this.active.incrementAndGet();
+            if (now > this.maxActive.get()) {
+                this.maxActive.set(now);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                this.active.decrementAndGet();
+            }
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.engine = new J2SESharkEngine();
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void callListener_executor_portsRunConcurrently() throws Exception {
+        CountDownLatch meeting = new CountDownLatch(3);
+        new MeetingPort(this.engine, meeting);
+        new MeetingPort(this.engine, meeting);
+        new MeetingPort(this.engine, meeting);
+        this.engine.setPortExecutor(this.executor);
+
+        ASIPInterest interest = InMemoSharkKB.createInMemoASIPInterest();
+        ASIPInMessage message = new ASIPInMessage(this.engine, interest, this.engine.getAsipStub());
+
+        Assert.assertTrue(this.engine.getAsipStub().callListener(message));
+        Assert.assertEquals(0, meeting.getCount());
+    }
+
+    @Test
+    public void callListener_serializedPort_neverConcurrent() throws Exception {
+        final CountingPort port = new CountingPort(this.engine);
+        port.setSerialized(true);
+        this.engine.setPortExecutor(this.executor);
+
+        ASIPInterest interest = InMemoSharkKB.createInMemoASIPInterest();
+        final ASIPInMessage message = new ASIPInMessage(this.engine, interest, this.engine.getAsipStub());
+
+        Thread[] sessions = new Thread[3];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new Thread() {
+                @Override
+                public void run() {
+                    SimpleASIPStubTest.this.engine.getAsipStub().callListener(message);
+                }
+            };
+            sessions[i].start();
+        }
+        for (Thread session : sessions) {
+            session.join();
+        }
+
+        Assert.assertEquals(1, port.maxActive.get());
+    }
+
+    @Test
+    public void callListener_executor_insertPortsCalledOneAfterAnother() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        new CountingPort(this.engine, active, maxActive);
+        new CountingPort(this.engine, active, maxActive);
+        new CountingPort(this.engine, active, maxActive);
+        this.engine.setPortExecutor(this.executor);
+
+        ASIPInterest interest = InMemoSharkKB.createInMemoASIPInterest();
+        ASIPInMessage message = new ASIPInMessage(this.engine, interest, this.engine.getAsipStub());
+        // content is read from the connection - ports must not share it concurrently
+        message.setCommand(ASIPMessage.ASIP_INSERT);
+
+        Assert.assertTrue(this.engine.getAsipStub().callListener(message));
+        Assert.assertEquals(1, maxActive.get());
+    }
+}
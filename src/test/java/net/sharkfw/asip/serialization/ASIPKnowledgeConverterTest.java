@@ -0,0 +1,43 @@
+package net.sharkfw.asip.serialization;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Content is streamed from the information - offsets and bytes must fit
+ * the materialized content.
+ */
+public class ASIPKnowledgeConverterTest {
+
+    @Test
+    public void streamContent_twoInformation_roundTrip() throws SharkKBException, ASIPSerializerException, IOException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        SemanticTag shark = kb.getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+        ASIPSpace space = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("first", space);
+        kb.addInformation("second information", space);
+
+        ASIPKnowledgeConverter converter = new ASIPKnowledgeConverter(kb);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        converter.streamContent(baos);
+        byte[] content = baos.toByteArray();
+
+        Assert.assertEquals(content.length, converter.getContentLength());
+        Assert.assertArrayEquals(content, converter.getContent());
+
+        ASIPKnowledgeConverter received = new ASIPKnowledgeConverter(converter.getSerializedKnowledge(), content);
+        Iterator<ASIPInformation> infos = received.getKnowledge().informationSpaces().next().informations();
+        Assert.assertEquals("first", infos.next().getContentAsString());
+        Assert.assertEquals("second information", infos.next().getContentAsString());
+    }
+}
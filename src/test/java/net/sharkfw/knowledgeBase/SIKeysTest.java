@@ -0,0 +1,46 @@
+package net.sharkfw.knowledgeBase;
+
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SIKeysTest {
+
+    @Test
+    public void of_caseInsensitive_sameInternedKey() {
+        SIKeys a = SIKeys.of(new String[]{"http://www.Java.com", "http://a.org", "http://b.org"});
+        SIKeys b = SIKeys.of(new String[]{"http://c.org", "HTTP://WWW.JAVA.COM"});
+        SIKeys c = SIKeys.of(new String[]{"http://c.org", "http://d.org"});
+
+        Assert.assertTrue(a.intersects(b));
+        Assert.assertTrue(b.intersects(a));
+        Assert.assertFalse(a.intersects(c));
+        Assert.assertTrue(b.intersects(c));
+        Assert.assertFalse(a.isAny());
+
+        Assert.assertSame(SIKeys.intern(new String("http://x.org")), SIKeys.intern(new String("http://x.org")));
+
+        Assert.assertTrue(SIKeys.of(null).isAny());
+        Assert.assertTrue(SIKeys.of(new String[]{"http://a.org", ASIPSpace.ANYURL.toUpperCase()}).isAny());
+    }
+
+    @Test
+    public void identical_inMemoTags_keysFollowSIChanges() throws SharkKBException {
+        SemanticTag java = InMemoSharkKB.createInMemoSemanticTag("Java", new String[]{"http://java.com", "http://oracle.com/java"});
+        SemanticTag other = InMemoSharkKB.createInMemoSemanticTag("Java", "HTTP://ORACLE.COM/JAVA");
+        SemanticTag python = InMemoSharkKB.createInMemoSemanticTag("Python", "http://python.org");
+
+        Assert.assertTrue(SharkCSAlgebra.identical(java, other));
+        Assert.assertFalse(SharkCSAlgebra.identical(java, python));
+
+        python.addSI("http://java.com");
+        Assert.assertTrue(SharkCSAlgebra.identical(java, python));
+        java.removeSI("http://java.com");
+        Assert.assertFalse(SharkCSAlgebra.identical(java, python));
+
+        SemanticTag any = InMemoSharkKB.createInMemoSemanticTag("any", ASIPSpace.ANYURL);
+        Assert.assertTrue(SharkCSAlgebra.isAny(any));
+        Assert.assertTrue(SharkCSAlgebra.identical(python, any));
+    }
+}
@@ -0,0 +1,208 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lookups in InMemoASIPKnowledge are answered by an index - results
+ * must not differ from the plain algebra.
+ */
+public class InMemoASIPKnowledgeTest {
+
+    private InMemoSharkKB kb;
+    private SemanticTag shark;
+    private SemanticTag htw;
+    private PeerSemanticTag alice;
+    private PeerSemanticTag bob;
+
+    @Before
+    public void setUp() throws SharkKBException {
+        this.kb = new InMemoSharkKB();
+        this.shark = kb.getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+        this.htw = kb.getTopicSTSet().createSemanticTag("HTW", "http://www.htw-berlin.de/");
+        this.alice = kb.getPeerSTSet().createPeerSemanticTag("Alice", "http://alice.org", "tcp://localhost:7070");
+        this.bob = kb.getPeerSTSet().createPeerSemanticTag("Bob", "http://bob.org", "tcp://localhost:7071");
+    }
+
+    private int count(Iterator<?> iter) {
+        int i = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            i++;
+        }
+        return i;
+    }
+
+    @Test
+    public void informationSpaces_concurrentWriter_readersSeeSnapshots() throws Exception {
+        kb.addInformation("shark", kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+
+        // snapshot isn't affected by later changes
+        Iterator<ASIPInformationSpace> snapshot = kb.getAllInformationSpaces();
+        kb.addInformation("htw", kb.createASIPSpace(htw, null, bob, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        Assert.assertEquals(1, this.count(snapshot));
+
+        final ASIPSpace query = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        int spaces = count(kb.getAllInformationSpaces());
+                        if (spaces < 2 || count(kb.getInformationSpaces(query)) < 1) {
+                            throw new AssertionError("lost information space: " + spaces);
+                        }
+                        count(kb.getTopicSTSet().stTags());
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        reader.start();
+
+        for (int i = 0; i < 200; i++) {
+            SemanticTag topic = kb.getTopicSTSet().createSemanticTag("t" + i, "http://topic.org/" + i);
+            kb.addInformation("info" + i, kb.createASIPSpace(topic, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        }
+        done.set(true);
+        reader.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(202, this.count(kb.getAllInformationSpaces()));
+    }
+
+    @Test
+    public void addInformation_identicalSpace_reusesInformationSpace() throws SharkKBException {
+        ASIPSpace space = kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        ASIPSpace sameSpace = kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        ASIPSpace otherDirection = kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_OUT);
+
+        kb.addInformation("first", space);
+        kb.addInformation("second", sameSpace);
+        kb.addInformation("third", otherDirection);
+
+        Assert.assertEquals(2, this.count(kb.getAllInformationSpaces()));
+        Assert.assertEquals(3, kb.getNumberInformation());
+    }
+
+    @Test
+    public void getInformationSpaces_topic_returnsMatchingAndAnySpaces() throws SharkKBException {
+        kb.addInformation("shark", kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        kb.addInformation("htw", kb.createASIPSpace(htw, null, bob, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        kb.addInformation("anything", kb.createASIPSpace((SemanticTag) null, null, bob, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+
+        ASIPSpace query = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        Iterator<ASIPInformationSpace> result = kb.getInformationSpaces(query);
+
+        Assert.assertEquals(2, this.count(result));
+
+        ASIPSpace nothing = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_NOTHING);
+        Assert.assertEquals(0, this.count(kb.getInformationSpaces(nothing)));
+    }
+
+    @Test
+    public void removeInformationSpace_removesFromLookup() throws SharkKBException {
+        ASIPSpace space = kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("shark", space);
+
+        kb.removeInformationSpace(space);
+
+        Assert.assertNull(kb.getInformation(space));
+        Assert.assertEquals(0, this.count(kb.getAllInformationSpaces()));
+    }
+    @Test
+    public void fingerprint_tagOrder_doesNotMatter() throws SharkKBException {
+        STSet topics1 = InMemoSharkKB.createInMemoSTSet();
+        topics1.merge(shark);
+        topics1.merge(htw);
+
+        STSet topics2 = InMemoSharkKB.createInMemoSTSet();
+        topics2.merge(htw);
+        topics2.merge(shark);
+
+        ASIPSpace space1 = kb.createASIPSpace(topics1, null, null, alice, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        ASIPSpace space2 = kb.createASIPSpace(topics2, null, null, alice, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        ASIPSpace space3 = kb.createASIPSpace(topics2, null, null, bob, null, null, null, ASIPSpace.DIRECTION_INOUT);
+
+        Assert.assertEquals(SharkAlgebra.fingerprint(space1), SharkAlgebra.fingerprint(space2));
+        Assert.assertNotEquals(SharkAlgebra.fingerprint(space1), SharkAlgebra.fingerprint(space3));
+    }
+
+    @Test
+    public void getInformation_siAddedToStoredTag_findsSpaceByNewSI() throws SharkKBException {
+        ASIPSpace space = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("shark", space);
+
+        ASIPInformationSpace stored = kb.getAllInformationSpaces().next();
+        SemanticTag storedTopic = stored.getASIPSpace().getTopics().tags().nextElement();
+        storedTopic.addSI("http://shark.org/");
+
+        SemanticTag newTopic = InMemoSharkKB.createInMemoSemanticTag("Shark", "http://shark.org/");
+        ASIPSpace query = kb.createASIPSpace(newTopic, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+
+        Iterator<ASIPInformation> infos = kb.getInformation(query);
+        Assert.assertNotNull(infos);
+        Assert.assertEquals("shark", infos.next().getContentAsString());
+    }
+
+    @Test
+    public void addInformation_identicalContent_storedOnce() throws SharkKBException {
+        ASIPSpace space = kb.createASIPSpace(shark, null, alice, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        byte[] attachment = "attachment from several peers".getBytes(StandardCharsets.UTF_8);
+
+        ASIPInformation first = kb.addInformation("attachment", attachment, space);
+        ASIPInformation duplicate = kb.addInformation("attachment",
+                new ByteArrayInputStream(attachment), attachment.length, space);
+        Assert.assertSame(first, duplicate);
+        Assert.assertEquals(1, kb.getNumberInformation());
+
+        // same content in another kb shares the blob
+        InMemoSharkKB otherKB = new InMemoSharkKB();
+        InMemoInformation other = (InMemoInformation) otherKB.addInformation("other", attachment,
+                otherKB.createASIPSpace(shark, null, bob, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        InMemoInformation firstInfo = (InMemoInformation) first;
+        Assert.assertEquals(firstInfo.getContentDigest(), other.getContentDigest());
+        Assert.assertTrue(InMemoBlobStore.getDefault().contains(other.getContentDigest()));
+
+        // views are read only - content cannot be changed by callers
+        firstInfo.getContentAsByte()[0] = 0;
+        Assert.assertTrue(firstInfo.getContentBuffer().isReadOnly());
+        Assert.assertEquals("attachment from several peers", other.getContentAsString());
+
+        String digest = other.getContentDigest();
+        firstInfo.setContent("changed");
+        other.setContent("changed too");
+        Assert.assertFalse(InMemoBlobStore.getDefault().contains(digest));
+    }
+
+    @Test
+    public void getInformationSpace_partiallyMatchingSIs_firstIdenticalInOrder() throws SharkKBException {
+        InMemoASIPKnowledge knowledge = new InMemoASIPKnowledge();
+        SemanticTag sharkTwice = InMemoSharkKB.createInMemoSemanticTag("Shark",
+                new String[] {"http://sharksystem.net/", "http://shark.org/"});
+
+        ASIPInformationSpace first = knowledge.addInformationSpace(
+                kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+        ASIPSpace both = kb.createASIPSpace(sharkTwice, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        knowledge.addInformationSpace(both);
+
+        // fingerprint of second space matches - but first one is identical as well
+        Assert.assertTrue(SharkCSAlgebra.identical(first.getASIPSpace(), both));
+        Assert.assertSame(first, knowledge.getInformationSpace(both));
+    }
+}
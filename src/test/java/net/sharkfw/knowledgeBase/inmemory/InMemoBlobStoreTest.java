@@ -0,0 +1,74 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+public class InMemoBlobStoreTest {
+
+    private static byte[] randomContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    public void put_aboveThreshold_mappedAndShared() throws Exception {
+        InMemoBlobStore store = new InMemoBlobStore();
+        store.setMappingThreshold(1024);
+        byte[] large = randomContent(200 * 1024);
+        byte[] small = randomContent(100);
+
+        InMemoBlobStore.Blob streamed = store.put(new ByteArrayInputStream(large), large.length);
+        Assert.assertTrue(streamed.isMapped());
+        Assert.assertFalse(streamed.getBuffer().hasArray());
+        Assert.assertEquals(large.length, streamed.length());
+        Assert.assertEquals(InMemoBlobStore.digestOf(large), streamed.getDigest());
+        Assert.assertArrayEquals(large, streamed.toByteArray());
+
+        // same content is found by its digest
+        InMemoBlobStore.Blob copied = store.put(large);
+        Assert.assertSame(streamed, copied);
+
+        InMemoBlobStore.Blob onHeap = store.put(small);
+        Assert.assertFalse(onHeap.isMapped());
+        Assert.assertEquals(2, store.size());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        streamed.writeTo(baos);
+        Assert.assertArrayEquals(large, baos.toByteArray());
+
+        store.release(streamed);
+        Assert.assertTrue(store.contains(streamed.getDigest()));
+        store.release(copied);
+        store.release(onHeap);
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void setContent_largeStream_servedFromMappedSegment() throws Exception {
+        InMemoBlobStore store = InMemoBlobStore.getDefault();
+        long threshold = store.getMappingThreshold();
+        store.setMappingThreshold(64 * 1024);
+        try {
+            byte[] large = randomContent(300 * 1024);
+            InMemoInformation info = new InMemoInformation();
+            info.setContent(new ByteArrayInputStream(large), large.length);
+
+            Assert.assertEquals(large.length, info.getContentLength());
+            Assert.assertFalse(info.getContentBuffer().hasArray());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            info.streamContent(baos);
+            Assert.assertArrayEquals(large, baos.toByteArray());
+
+            byte[] read = new byte[large.length];
+            Assert.assertEquals(large.length, info.getInputStream().read(read));
+            Assert.assertArrayEquals(large, read);
+        } finally {
+            store.setMappingThreshold(threshold);
+        }
+    }
+}
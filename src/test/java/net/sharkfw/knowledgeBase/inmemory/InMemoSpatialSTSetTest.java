@@ -0,0 +1,106 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpatialSTSet;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.geom.PlanarGeometry;
+import net.sharkfw.knowledgeBase.geom.SharkGeometry;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+public class InMemoSpatialSTSetTest {
+
+    private static SpatialSemanticTag location(String name, String wkt) throws SharkKBException {
+        SharkGeometry geom = InMemoSharkGeometry.createGeomByWKT(wkt);
+        return new InMemoSpatialSemanticTag(name, new String[]{"http://location/" + name}, geom);
+    }
+
+    private static String square(double x, double y, double size) {
+        return "POLYGON((" + x + " " + y + ", " + (x + size) + " " + y + ", " + (x + size) + " " + (y + size)
+                + ", " + x + " " + (y + size) + ", " + x + " " + y + "))";
+    }
+
+    private static int count(Iterator<SpatialSemanticTag> tags) {
+        int count = 0;
+        while (tags.hasNext()) {
+            tags.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void planarGeometry_polygonWithHole_coversAndIntersects() throws SharkKBException {
+        PlanarGeometry polygon = PlanarGeometry.parseWKT(
+                "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))");
+
+        Assert.assertTrue(polygon.covers(PlanarGeometry.parseWKT("POINT(1 1)")));
+        Assert.assertTrue(polygon.covers(PlanarGeometry.parseWKT("POINT(10 5)")));
+        Assert.assertFalse(polygon.covers(PlanarGeometry.parseWKT("POINT(5 5)")));
+        Assert.assertFalse(polygon.covers(PlanarGeometry.parseWKT("LINESTRING(1 5, 9 5)")));
+        Assert.assertTrue(polygon.intersects(PlanarGeometry.parseWKT("LINESTRING(1 5, 9 5)")));
+        Assert.assertTrue(polygon.covers(PlanarGeometry.parseWKT("MULTIPOINT((1 1), (9 9))")));
+        Assert.assertFalse(polygon.intersects(PlanarGeometry.parseWKT("POINT Z(20 20 3)")));
+
+        Assert.assertTrue(PlanarGeometry.parseWKT("SRID=4326;POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))")
+                .equalsTopologically(PlanarGeometry.parseWKT("POLYGON((10 10, 0 10, 0 0, 10 0, 10 10))")));
+    }
+
+    @Test(expected = SharkKBException.class)
+    public void planarGeometry_noWKT_exception() throws SharkKBException {
+        PlanarGeometry.parseWKT("52.123456, 13.123456, 10");
+    }
+
+    @Test
+    public void index_randomSquares_sameAsScan() throws SharkKBException {
+        Random random = new Random(42);
+        InMemoSpatialSTSet set = new InMemoSpatialSTSet();
+        SpatialSemanticTag[] tags = new SpatialSemanticTag[300];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = location("l" + i, square(random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(50)));
+            set.add(tags[i]);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            SpatialSemanticTag probe = location("p" + i, square(random.nextInt(1000), random.nextInt(1000), 5));
+            PlanarGeometry probeGeometry = PlanarGeometry.of(probe.getGeometry());
+
+            int intersecting = 0;
+            boolean covered = false;
+            for (SpatialSemanticTag tag : tags) {
+                PlanarGeometry g = PlanarGeometry.of(tag.getGeometry());
+                if (g.intersects(probeGeometry)) intersecting++;
+                if (g.covers(probeGeometry)) covered = true;
+            }
+
+            Assert.assertEquals(intersecting, count(set.intersecting(probe)));
+            Assert.assertEquals(covered, set.covers(probe));
+        }
+    }
+
+    @Test
+    public void isIn_pointInRegion_matchesByGeometry() throws SharkKBException {
+        SpatialSTSet interest = InMemoSharkKB.createInMemoSpatialSTSet();
+        interest.merge(location("region", square(0, 0, 10)));
+
+        SpatialSTSet inside = InMemoSharkKB.createInMemoSpatialSTSet();
+        inside.merge(location("inside", "POINT(5 5)"));
+        SpatialSTSet outside = InMemoSharkKB.createInMemoSpatialSTSet();
+        outside.merge(location("outside", "POINT(50 5)"));
+
+        Assert.assertTrue(SharkCSAlgebra.isIn(interest, inside));
+        Assert.assertFalse(SharkCSAlgebra.isIn(interest, outside));
+        Assert.assertFalse(SharkCSAlgebra.identical(
+                location("a", "POINT(5 5)"), location("b", "POINT(50 5)")));
+
+        SpatialSTSet context = InMemoSharkKB.createInMemoSpatialSTSet();
+        context.merge(location("context", "LINESTRING(-5 5, 5 5)"));
+        interest.merge(location("far", square(100, 100, 10)));
+        Assert.assertEquals(1, interest.contextualize(context, null).size());
+    }
+}
@@ -0,0 +1,98 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.TimeSTSet;
+import net.sharkfw.knowledgeBase.TimeSemanticTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class InMemoTimeSTSetTest {
+
+    private static int count(Iterator<TimeSemanticTag> tags) {
+        int count = 0;
+        while (tags.hasNext()) {
+            tags.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void intervalTree_randomIntervals_sameAsScan() {
+        Random random = new Random(42);
+        InMemoTimeIntervalTree tree = new InMemoTimeIntervalTree();
+        List<TimeSemanticTag> tags = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            TimeSemanticTag tag = new InMemoTimeSemanticTag(random.nextInt(10000), 1 + random.nextInt(500));
+            tags.add(tag);
+            tree.add(tag);
+        }
+        for (int i = 0; i < 100; i++) {
+            tree.remove(tags.remove(random.nextInt(tags.size())));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            long from = random.nextInt(10000);
+            long end = from + random.nextInt(300);
+
+            int overlapping = 0;
+            int containing = 0;
+            for (TimeSemanticTag tag : tags) {
+                long tagEnd = tag.getFrom() + tag.getDuration();
+                if (tag.getFrom() <= end && tagEnd >= from) overlapping++;
+                if (tag.getFrom() <= from && tagEnd >= end) containing++;
+            }
+
+            List<TimeSemanticTag> result = new ArrayList<>();
+            tree.overlapping(from, end, result);
+            Assert.assertEquals(overlapping, result.size());
+
+            result.clear();
+            tree.containing(from, end, result);
+            Assert.assertEquals(containing, result.size());
+            Assert.assertEquals(containing > 0, tree.containsInterval(from, end));
+        }
+    }
+
+    @Test
+    public void isIn_foreverTimeFrame_containsLaterProbes() throws SharkKBException {
+        TimeSTSet times = InMemoSharkKB.createInMemoTimeSTSet();
+        times.createTimeSemanticTag(1000, TimeSemanticTag.FOREVER);
+
+        Assert.assertTrue(SharkCSAlgebra.isIn(times, new InMemoTimeSemanticTag(5000, 10)));
+        Assert.assertTrue(SharkCSAlgebra.isIn(times, new InMemoTimeSemanticTag(5000, TimeSemanticTag.FOREVER)));
+        Assert.assertFalse(SharkCSAlgebra.isIn(times, new InMemoTimeSemanticTag(500, 10)));
+    }
+
+    @Test
+    public void add_overlappingTags_merged() throws SharkKBException {
+        InMemoTimeSTSet times = new InMemoTimeSTSet();
+        times.createTimeSemanticTag(100, 100);
+        times.createTimeSemanticTag(150, 100);
+        times.createTimeSemanticTag(1000, 10);
+
+        Assert.assertEquals(2, times.size());
+        Assert.assertEquals(1, count(times.containing(100, 150)));
+        Assert.assertEquals(1, count(times.at(1005)));
+        Assert.assertEquals(0, count(times.at(500)));
+    }
+
+    @Test
+    public void fragment_containedTag_intersection() throws SharkKBException {
+        InMemoTimeSTSet times = new InMemoTimeSTSet();
+        times.createTimeSemanticTag(100, 10);
+        times.createTimeSemanticTag(200, 100);
+
+        TimeSTSet fragment = times.fragment(new InMemoTimeSemanticTag(0, 250));
+
+        Assert.assertEquals(2, fragment.size());
+        Assert.assertTrue(SharkCSAlgebra.isIn(fragment, new InMemoTimeSemanticTag(200, 50)));
+        Assert.assertFalse(SharkCSAlgebra.isIn(fragment, new InMemoTimeSemanticTag(200, 60)));
+    }
+}
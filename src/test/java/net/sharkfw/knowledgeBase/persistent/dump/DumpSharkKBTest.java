@@ -1,7 +1,14 @@
 package net.sharkfw.knowledgeBase.persistent.dump;
 
 import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SNSemanticTag;
+import net.sharkfw.knowledgeBase.SemanticNet;
+import net.sharkfw.knowledgeBase.SharkKB;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.TXSemanticTag;
+import net.sharkfw.knowledgeBase.Taxonomy;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.knowledgeBase.persistent.dump.DumpSharkKB;
 import net.sharkfw.system.L;
@@ -10,7 +17,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by j4rvis on 3/1/17.
@@ -46,11 +57,163 @@ public class DumpSharkKBTest {
 
     }
 
+    private static String contents(SharkKB kb) throws SharkKBException {
+        List<String> contents = new ArrayList<>();
+        Iterator<ASIPInformation> information = kb.getInformation(InMemoSharkKB.createInMemoASIPInterest());
+        while (information.hasNext()) {
+            contents.add(information.next().getContentAsString());
+        }
+        Collections.sort(contents);
+        return contents.toString();
+    }
+
+    @Test
+    public void journal_reopen_snapshotAndJournalReplayed() throws SharkKBException {
+        File testfile = new File("testfile");
+        DumpSharkKB kb = new DumpSharkKB(new InMemoSharkKB(), testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        long snapshotLength = testfile.length();
+
+        ASIPSpace space = InMemoSharkKB.createInMemoASIPInterest();
+        ASIPInformation first = kb.addInformation("first", space);
+        ASIPInformation second = kb.addInformation("second", space);
+        kb.addInformation("third", space);
+        second.setContent("changed");
+        kb.removeInformation(first, space);
+        kb.setProperty("color", "blue");
+
+        // changes are appended - snapshot isn't touched
+        Assert.assertEquals(snapshotLength, testfile.length());
+        Assert.assertTrue(kb.getJournalSize() > 0);
+
+        DumpSharkKB reopened = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        Assert.assertEquals("[changed, third]", contents(reopened));
+        Assert.assertEquals("blue", reopened.getProperty("color"));
+        kb.close();
+        reopened.close();
+    }
+
+    @Test
+    public void journal_tagsChanged_replayedWithoutSnapshot() throws SharkKBException {
+        File testfile = new File("testfile");
+        DumpSharkKB kb = new DumpSharkKB(new InMemoSharkKB(), testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        long snapshotLength = testfile.length();
+
+        SemanticNet topics = kb.getTopicsAsSemanticNet();
+        SNSemanticTag shark = topics.createSemanticTag("Shark", "http://shark.de");
+        SNSemanticTag fish = topics.createSemanticTag("Fish", "http://fish.de");
+        SNSemanticTag whale = topics.createSemanticTag("Whale", "http://whale.de");
+        shark.setName("Great White");
+        shark.addSI("http://whiteshark.de");
+        shark.removeSI("http://shark.de");
+        shark.setProperty("teeth", "many");
+        shark.setPredicate("isA", fish);
+        whale.setPredicate("eats", shark);
+        topics.removeSemanticTag(whale);
+
+        Taxonomy taxonomy = kb.getTopicsAsTaxonomy();
+        TXSemanticTag animal = taxonomy.createTXSemanticTag("Animal", "http://animal.de");
+        taxonomy.move(animal, taxonomy.getSemanticTag("http://fish.de"));
+
+        kb.getPeersAsTaxonomy().createPeerTXSemanticTag("Alice", "http://alice.de", "tcp://alice.de:7070");
+
+        // changes are appended - snapshot isn't touched
+        Assert.assertEquals(snapshotLength, testfile.length());
+
+        DumpSharkKB reopened = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        SNSemanticTag replayed = reopened.getTopicsAsSemanticNet().getSemanticTag("http://whiteshark.de");
+        Assert.assertEquals("Great White", replayed.getName());
+        Assert.assertArrayEquals(new String[]{"http://whiteshark.de"}, replayed.getSI());
+        Assert.assertEquals("many", replayed.getProperty("teeth"));
+        Assert.assertEquals("http://fish.de", replayed.targetTags("isA").nextElement().getSI()[0]);
+        Assert.assertEquals(3, reopened.getTopicSTSet().size());
+        Assert.assertEquals("http://animal.de",
+                reopened.getTopicsAsTaxonomy().getSemanticTag("http://fish.de").getSuperTag().getSI()[0]);
+        PeerSemanticTag alice = reopened.getPeersAsTaxonomy().getSemanticTag(new String[]{"http://alice.de"});
+        Assert.assertEquals("tcp://alice.de:7070", alice.getAddresses()[0]);
+
+        // snapshot keeps the replayed state
+        reopened.persist();
+        replayed = new DumpSharkKB(testfile).getTopicsAsSemanticNet().getSemanticTag("http://whiteshark.de");
+        Assert.assertEquals("many", replayed.getProperty("teeth"));
+        kb.close();
+        reopened.close();
+    }
+
+    @Test
+    public void journal_thresholdExceeded_compacted() throws SharkKBException {
+        File testfile = new File("testfile");
+        DumpSharkKB kb = new DumpSharkKB(new InMemoSharkKB(), testfile, DumpJournal.FsyncPolicy.NEVER);
+        kb.setCompactionThreshold(1);
+
+        kb.addInformation("first", InMemoSharkKB.createInMemoASIPInterest());
+        kb.addInformation("second", InMemoSharkKB.createInMemoASIPInterest());
+        kb.close();
+        Assert.assertEquals(0, kb.getJournalSize());
+
+        ASIPInformation info = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.NEVER)
+                .getInformation(InMemoSharkKB.createInMemoASIPInterest()).next();
+        info.setContent("changed");
+
+        DumpSharkKB reopened = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.NEVER);
+        Assert.assertEquals(2, reopened.getNumberInformation());
+        Assert.assertTrue(contents(reopened).contains("changed"));
+        reopened.close();
+    }
+
+    @Test
+    public void journal_tornRecord_cutOff() throws Exception {
+        File testfile = new File("testfile");
+        DumpSharkKB kb = new DumpSharkKB(new InMemoSharkKB(), testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        kb.addInformation("first", InMemoSharkKB.createInMemoASIPInterest());
+        kb.close();
+        long journalLength = new File("testfile" + DumpSharkKB.JOURNAL_EXTENSION).length();
+
+        FileOutputStream journal = new FileOutputStream("testfile" + DumpSharkKB.JOURNAL_EXTENSION, true);
+        journal.write(new byte[]{DumpSharkKB.INFORMATION_PUT, 0, 0, 1});
+        journal.close();
+
+        DumpSharkKB reopened = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        Assert.assertEquals("[first]", contents(reopened));
+        Assert.assertEquals(journalLength, reopened.getJournalSize());
+        reopened.close();
+    }
+
+    @Test
+    public void journal_compactionInterrupted_rotatedJournalReplayed() throws Exception {
+        File testfile = new File("testfile");
+        DumpSharkKB kb = new DumpSharkKB(new InMemoSharkKB(), testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        kb.addInformation("first", InMemoSharkKB.createInMemoASIPInterest());
+        kb.close();
+
+        // crash after rotation - before the snapshot was stored
+        File journal = new File("testfile" + DumpSharkKB.JOURNAL_EXTENSION);
+        Assert.assertTrue(journal.renameTo(new File(journal.getPath() + DumpJournal.ROTATED_EXTENSION)));
+
+        DumpSharkKB reopened = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        Assert.assertEquals("[first]", contents(reopened));
+        reopened.addInformation("second", InMemoSharkKB.createInMemoASIPInterest());
+        reopened.close();
+
+        DumpSharkKB again = new DumpSharkKB(testfile, DumpJournal.FsyncPolicy.ALWAYS);
+        Assert.assertEquals("[first, second]", contents(again));
+        again.persist();
+        Assert.assertFalse(new File(journal.getPath() + DumpJournal.ROTATED_EXTENSION).exists());
+        again.close();
+    }
+
     @After
     public void tearDown() throws Exception {
         File file = new File("testfile");
         if(file.exists()){
             file.delete();
         }
+        File journal = new File("testfile" + DumpSharkKB.JOURNAL_EXTENSION);
+        if(journal.exists()){
+            journal.delete();
+        }
+        File rotated = new File(journal.getPath() + DumpJournal.ROTATED_EXTENSION);
+        if(rotated.exists()){
+            rotated.delete();
+        }
     }
 }
@@ -17,10 +17,15 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -32,7 +37,8 @@ import java.util.List;
 public class SqlAsipInformationTest {
 
     public static final String JDBC = "jdbc:sqlite:";
-    public static final String PATH = ".\\src\\test\\java\\net\\sharkfw\\knowledgeBase\\persistent\\sql\\";
+    // test databases aren't kept in the source tree
+    public static final String PATH = System.getProperty("java.io.tmpdir") + File.separator;
 
     public static final String DB1 = "info1.db";
     public static final String DB2 = "info2.db";
@@ -423,6 +429,50 @@ public class SqlAsipInformationTest {
         Assert.assertEquals(2, numberOfSpaces);
     }
 
+    @Test
+    public void streamContent_largeContent_success() throws SharkKBException, IOException, SQLException {
+        L.d("Using database: " + DB12, this);
+        SqlSharkKB sqlSharkKB = new SqlSharkKB(CONNECTION12, "org.sqlite.JDBC");
+        ASIPSpace space = sqlSharkKB.createASIPSpace(semanticTag6, null, null, null, null, null, null, ASIPSpace.DIRECTION_IN);
+
+        byte[] content = new byte[SqlAsipInformation.CHUNK_SIZE * 3 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        sqlSharkKB.addInformation(infoName1, content, space);
+
+        SqlAsipInformation information = (SqlAsipInformation) sqlSharkKB.getInformation(space).next();
+        Assert.assertEquals(content.length, information.getContentLength());
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        information.streamContent(streamed);
+        Assert.assertArrayEquals(content, streamed.toByteArray());
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        InputStream is = information.getContentAsStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            read.write(buffer, 0, n);
+        }
+        Assert.assertArrayEquals(content, read.toByteArray());
+
+        byte[] newContent = Arrays.copyOf(content, SqlAsipInformation.CHUNK_SIZE);
+        information.setContent(new ByteArrayInputStream(newContent), newContent.length);
+        SqlAsipInformation reloaded = (SqlAsipInformation) sqlSharkKB.getInformation(space).next();
+        Assert.assertEquals(newContent.length, reloaded.getContentLength());
+        Assert.assertArrayEquals(newContent, reloaded.getContentAsByte());
+
+        // content stored before chunk rows existed
+        SqlHelper.executeUpdate(sqlSharkKB.getConnection(),
+                "UPDATE information SET content_stream = ? WHERE id = ?", content, reloaded.getId());
+        SqlHelper.executeUpdate(sqlSharkKB.getConnection(),
+                "DELETE FROM information_chunk WHERE info_id = ?", reloaded.getId());
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        reloaded.streamContent(legacy);
+        Assert.assertArrayEquals(content, legacy.toByteArray());
+    }
+
     @Test
     public void mergeInformation() throws SharkKBException {
         L.d("Using database: " + DB11, this);
@@ -0,0 +1,71 @@
+package net.sharkfw.knowledgeBase.persistent.sql;
+
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlCacheTest {
+
+    @Test
+    public void put_exceedsMaxSize_leastRecentlyUsedEvicted() {
+        SqlCache cache = new SqlCache(100);
+        cache.put("a", "a", 40);
+        cache.put("b", "b", 40);
+        Assert.assertEquals("a", cache.get("a", String.class));
+        cache.put("c", "c", 40);
+
+        Assert.assertNull(cache.get("b", String.class));
+        Assert.assertEquals("a", cache.get("a", String.class));
+        Assert.assertEquals("c", cache.get("c", String.class));
+        Assert.assertEquals(80, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        // wrong type is a miss
+        Assert.assertNull(cache.get("a", Integer.class));
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void getSemanticTag_readThroughAndInvalidatedOnWrite() throws SharkKBException {
+        SqlSharkKB sqlSharkKB = new SqlSharkKB("jdbc:sqlite::memory:", "org.sqlite.JDBC");
+        SqlCache cache = sqlSharkKB.getCache();
+
+        SqlSemanticTag created = SqlSharkHelper.createSemanticTag(sqlSharkKB,
+                InMemoSharkKB.createInMemoSemanticTag("cached", "si:cached"));
+        long hits = cache.getHits();
+
+        SqlSemanticTag first = SqlSharkHelper.getSemanticTag(sqlSharkKB, "si:cached");
+        SqlSemanticTag second = SqlSharkHelper.getSemanticTag(sqlSharkKB, created.getId());
+        Assert.assertSame(first, second);
+        Assert.assertEquals(hits + 2, cache.getHits());
+
+        first.setName("renamed");
+        long misses = cache.getMisses();
+        SqlSemanticTag reloaded = SqlSharkHelper.getSemanticTag(sqlSharkKB, "si:cached");
+        Assert.assertEquals(misses + 1, cache.getMisses());
+        Assert.assertNotSame(first, reloaded);
+        Assert.assertEquals("renamed", reloaded.getName());
+
+        sqlSharkKB.close();
+    }
+
+    @Test
+    public void setName_removeSI_quotesStoredVerbatim() throws SharkKBException {
+        SqlSharkKB sqlSharkKB = new SqlSharkKB("jdbc:sqlite::memory:", "org.sqlite.JDBC");
+        String si = "si:it's \"quoted\"";
+        SqlSemanticTag tag = SqlSharkHelper.createSemanticTag(sqlSharkKB,
+                InMemoSharkKB.createInMemoSemanticTag("plain", new String[]{si, "si:other"}));
+
+        tag.setName("Bob's \"tag\"");
+        tag.removeSI(si);
+
+        SqlSemanticTag reloaded = SqlSharkHelper.getSemanticTag(sqlSharkKB, tag.getId());
+        Assert.assertEquals("Bob's \"tag\"", reloaded.getName());
+        Assert.assertArrayEquals(new String[]{"si:other"}, reloaded.getSI());
+
+        sqlSharkKB.close();
+    }
+}
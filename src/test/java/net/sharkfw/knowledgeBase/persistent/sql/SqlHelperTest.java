@@ -0,0 +1,103 @@
+package net.sharkfw.knowledgeBase.persistent.sql;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SqlHelperTest {
+
+    private static final String INSERT = "INSERT INTO subject_identifier (identifier, tag_id) VALUES (?, ?)";
+    private static final String COUNT = "SELECT COUNT(*) AS count FROM subject_identifier WHERE tag_id = ?";
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SqlHelper.executeSQLCommand(this.connection, "CREATE TABLE subject_identifier ("
+                + "id integer PRIMARY KEY autoincrement, identifier text, tag_id integer)");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        SqlHelper.releaseStatements(this.connection);
+        this.connection.close();
+    }
+
+    private int count(int tagId) throws SQLException {
+        try (ResultSet rs = SqlHelper.executeQuery(this.connection, COUNT, tagId)) {
+            rs.next();
+            return rs.getInt("count");
+        }
+    }
+
+    @Test
+    public void executeInsert_generatedKeys() throws SQLException {
+        int first = SqlHelper.executeInsert(this.connection, INSERT, "si:1", 1);
+        int second = SqlHelper.executeInsert(this.connection, INSERT, "si:2", 1);
+        Assert.assertEquals(first + 1, second);
+        Assert.assertEquals(2, this.count(1));
+    }
+
+    @Test
+    public void executeBatch_allRowsInserted() throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Object[]{"si:" + i, 2});
+        }
+        SqlHelper.executeBatch(this.connection, INSERT, rows);
+        Assert.assertEquals(100, this.count(2));
+    }
+
+    @Test
+    public void executeQuery_nested() throws SQLException {
+        SqlHelper.executeInsert(this.connection, INSERT, "si:1", 1);
+        SqlHelper.executeInsert(this.connection, INSERT, "si:2", 2);
+        try (ResultSet rs = SqlHelper.executeQuery(this.connection, COUNT, 1)) {
+            Assert.assertTrue(rs.next());
+            // same statement while the first result set is still open
+            Assert.assertEquals(1, this.count(2));
+            Assert.assertEquals(1, rs.getInt("count"));
+        }
+    }
+
+    @Test
+    public void transaction_nestedCommit() throws SQLException {
+        SqlHelper.beginTransaction(this.connection);
+        SqlHelper.executeInsert(this.connection, INSERT, "si:1", 3);
+        SqlHelper.beginTransaction(this.connection);
+        SqlHelper.executeInsert(this.connection, INSERT, "si:2", 3);
+        SqlHelper.commitTransaction(this.connection);
+        // inner scope doesn't commit
+        Assert.assertFalse(this.connection.getAutoCommit());
+        SqlHelper.commitTransaction(this.connection);
+        Assert.assertTrue(this.connection.getAutoCommit());
+        Assert.assertEquals(2, this.count(3));
+    }
+
+    @Test
+    public void transaction_innerRollback_nothingWritten() throws SQLException {
+        SqlHelper.beginTransaction(this.connection);
+        SqlHelper.executeInsert(this.connection, INSERT, "si:1", 4);
+        SqlHelper.beginTransaction(this.connection);
+        SqlHelper.executeInsert(this.connection, INSERT, "si:2", 4);
+        SqlHelper.rollbackTransaction(this.connection);
+        try {
+            SqlHelper.commitTransaction(this.connection);
+            Assert.fail("outer scope must not commit");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertTrue(this.connection.getAutoCommit());
+        Assert.assertEquals(0, this.count(4));
+    }
+}
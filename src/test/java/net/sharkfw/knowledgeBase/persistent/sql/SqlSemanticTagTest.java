@@ -20,7 +20,7 @@ import static org.junit.Assert.assertNotNull;
 @Ignore
 public class SqlSemanticTagTest {
 
-    public static final String PATH = "jdbc:sqlite:.\\src\\test\\java\\net\\sharkfw\\knowledgeBase\\persistent\\sql\\info12.db";
+    public static final String PATH = SqlAsipInformationTest.JDBC + SqlAsipInformationTest.PATH + SqlAsipInformationTest.DB12;
     public static final String[] sis1 = new String[]{"si1", "si2"};
     public static final String[] sis2 = new String[]{"si3", "si4"};
     public static final String[] sis3 = new String[]{"si5", "si6"};
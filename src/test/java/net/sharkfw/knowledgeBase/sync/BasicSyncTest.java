@@ -1,7 +1,10 @@
 package net.sharkfw.knowledgeBase.sync;
 
+import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.asip.serialization.ASIPKnowledgeConverter;
 import net.sharkfw.knowledgeBase.Knowledge;
 import net.sharkfw.knowledgeBase.PeerSemanticTag;
 import net.sharkfw.knowledgeBase.SemanticTag;
@@ -13,6 +16,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+
 
 /**
  * Created by thsc on 28.07.16.
@@ -112,4 +119,74 @@ public class BasicSyncTest {
         Assert.assertNotNull(target2.getPeerSTSet().getSemanticTag("http://www.sharksystem.net/bob.html"));
         Assert.assertNull(target2.getPeerSTSet().getSemanticTag("http://www.sharksystem.net/alice.html"));
     }
+
+    @Test
+    public void SyncKB_streamedChanges_success() throws Exception {
+        SharkKB target1 = new InMemoSharkKB();
+        SyncKB syncKB1 = new SyncKB(target1);
+
+        SemanticTag eiscreme = syncKB1.getTopicSTSet().createSemanticTag("Eiscreme",
+                "https://en.wikipedia.org/wiki/Ice_cream");
+        PeerSemanticTag bob = syncKB1.getPeerSTSet().createPeerSemanticTag
+                ("Bob", "http://www.sharksystem.net/bob.html", (String)null);
+        ASIPSpace asipSpace = syncKB1.createASIPSpace(eiscreme, null, bob, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+
+        ASIPInformation info = syncKB1.addInformation("Bob data", asipSpace);
+        syncKB1.addInformation("like ice cream too", asipSpace);
+
+        // changes refer to information of kb - nothing copied
+        ASIPKnowledge changes = syncKB1.getChangesToSend(0L);
+        Assert.assertEquals(2, changes.getNumberInformation());
+        Iterator<ASIPInformation> infoIter = changes.informationSpaces().next().informations();
+        Assert.assertSame(SyncInformation.unwrap(info), infoIter.next());
+
+        ASIPKnowledgeConverter converter = new ASIPKnowledgeConverter(changes);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        converter.streamContent(content);
+
+        ASIPKnowledgeConverter received = new ASIPKnowledgeConverter(converter.getSerializedKnowledge(),
+                new ByteArrayInputStream(content.toByteArray()));
+        SharkKB target2 = new InMemoSharkKB();
+        SyncKB syncKB2 = new SyncKB(target2);
+        syncKB2.putChanges((SharkKB) received.getKnowledge());
+
+        Assert.assertNotNull(target2.getPeerSTSet().getSemanticTag("http://www.sharksystem.net/bob.html"));
+        Assert.assertEquals(2, target2.getNumberInformation());
+        Assert.assertEquals(2, syncKB2.getChanges(0L).getNumberInformation());
+    }
+
+    @Test
+    public void SyncKB_changesMergedWhileDecoded_success() throws Exception {
+        SharkKB target1 = new InMemoSharkKB();
+        SyncKB syncKB1 = new SyncKB(target1);
+
+        SemanticTag eiscreme = syncKB1.getTopicSTSet().createSemanticTag("Eiscreme",
+                "https://en.wikipedia.org/wiki/Ice_cream");
+        SemanticTag recipe = syncKB1.getTypeSTSet().createSemanticTag("Recipe",
+                "http://www.sharksystem.net/recipe.html");
+        ASIPSpace asipSpace = syncKB1.createASIPSpace(eiscreme, recipe, null, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+        syncKB1.addInformation("Bob data", asipSpace);
+        syncKB1.addInformation("like ice cream too", asipSpace);
+
+        ASIPKnowledgeConverter converter = new ASIPKnowledgeConverter(syncKB1.getChangesToSend(0L));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        converter.streamContent(content);
+
+        SharkKB target2 = new InMemoSharkKB();
+        SyncKB syncKB2 = new SyncKB(target2);
+        ASIPKnowledgeConverter received = new ASIPKnowledgeConverter(converter.getSerializedKnowledge(),
+                new ByteArrayInputStream(content.toByteArray()), syncKB2);
+
+        // information went straight into target - decoded knowledge holds vocabulary only
+        Assert.assertEquals(0, received.getKnowledge().getNumberInformation());
+        Assert.assertEquals(2, target2.getNumberInformation());
+        Assert.assertNotNull(target2.getTopicSTSet().getSemanticTag("https://en.wikipedia.org/wiki/Ice_cream"));
+
+        // merge is recorded like putChanges does
+        SharkKB changes = syncKB2.getChanges(0L);
+        Assert.assertEquals(2, changes.getNumberInformation());
+        Assert.assertNotNull(changes.getTypeSTSet().getSemanticTag("http://www.sharksystem.net/recipe.html"));
+    }
 }
@@ -0,0 +1,100 @@
+package net.sharkfw.knowledgeBase.sync;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+public class SyncChangeLogTest {
+
+    @Test
+    public void changedSince_rangeScan_onlyNewerEntries() {
+        SyncChangeLog log = new SyncChangeLog(new InMemoSharkKB());
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+
+        log.record(SyncChangeLog.TOPICS, a, 10);
+        log.record(SyncChangeLog.TOPICS, b, 20);
+        log.record(SyncChangeLog.PEERS, c, 30);
+
+        Assert.assertEquals(1, log.changedSince(SyncChangeLog.TOPICS, 10).size());
+        Assert.assertEquals(1, log.changedSince(SyncChangeLog.PEERS, 10).size());
+
+        // a newer change replaces the older one
+        log.record(SyncChangeLog.TOPICS, a, 40);
+        List<Object> changed = log.changedSince(SyncChangeLog.TOPICS, 30);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertSame(a, changed.get(0));
+        Assert.assertEquals(3, log.size());
+
+        log.remove(a);
+        Assert.assertTrue(log.changedSince(SyncChangeLog.TOPICS, 30).isEmpty());
+    }
+
+    @Test
+    public void getChanges_logRestoredBySecondSyncKB() throws Exception {
+        SharkKB target = new InMemoSharkKB();
+        SyncKB syncKB = new SyncKB(target);
+
+        SemanticTag topic = syncKB.getTopicSTSet().createSemanticTag("Topic", "http://topic.de");
+        PeerSemanticTag alice = syncKB.getPeerSTSet().createPeerSemanticTag(
+                "Alice", "http://alice.de", (String) null);
+        ASIPSpace space = syncKB.createASIPSpace(topic, null, alice, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+        syncKB.addInformation("first", space);
+
+        Long t1 = System.currentTimeMillis();
+        Thread.sleep(10);
+        syncKB.addInformation("second", space);
+
+        Assert.assertEquals(1, syncKB.getChanges(t1).getNumberInformation());
+
+        // log was persisted with the last getChanges call
+        SyncKB secondSyncKB = new SyncKB(target);
+        Assert.assertEquals(1, secondSyncKB.getChanges(t1).getNumberInformation());
+        Assert.assertEquals(2, secondSyncKB.getChanges(0L).getNumberInformation());
+    }
+
+    @Test
+    public void getChanges_editedInformation_logged() throws Exception {
+        SyncKB syncKB = new SyncKB(new InMemoSharkKB());
+        SemanticTag topic = syncKB.getTopicSTSet().createSemanticTag("Topic", "http://topic.de");
+        ASIPSpace space = syncKB.createASIPSpace(topic, null, null, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+        ASIPInformation info = syncKB.addInformation("first", space);
+        syncKB.addInformation("untouched", space);
+
+        Thread.sleep(10);
+        Long t1 = System.currentTimeMillis();
+        Thread.sleep(10);
+        Assert.assertEquals(0, syncKB.getChanges(t1).getNumberInformation());
+
+        info.setContent("edited");
+        SharkKB changes = syncKB.getChanges(t1);
+        Assert.assertEquals(1, changes.getNumberInformation());
+        Assert.assertEquals("edited", changes.getInformation(space).next().getContentAsString());
+
+        // information found in kb are tracked as well
+        Thread.sleep(10);
+        Long t2 = System.currentTimeMillis();
+        Thread.sleep(10);
+        Iterator<ASIPInformation> infoIter = syncKB.getInformation(space);
+        while (infoIter.hasNext()) {
+            ASIPInformation next = infoIter.next();
+            if ("untouched".equals(next.getContentAsString())) {
+                next.setName("renamed");
+            }
+        }
+        changes = syncKB.getChanges(t2);
+        Assert.assertEquals(1, changes.getNumberInformation());
+        Assert.assertEquals("renamed", changes.getInformation(space).next().getName());
+    }
+}
@@ -0,0 +1,105 @@
+package net.sharkfw.knowledgeBase.sync.manager;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.asip.serialization.ASIPKnowledgeConverter;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.knowledgeBase.sync.SyncKB;
+import net.sharkfw.knowledgeBase.sync.SyncMerkleTree;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SyncAntiEntropyTest {
+
+    private int transferred = 0;
+
+    private static void addEntry(SyncKB kb, int i) throws SharkKBException {
+        SemanticTag topic = kb.getTopicSTSet().createSemanticTag("t" + i, "http://topic/" + i);
+        ASIPSpace space = kb.createASIPSpace(topic, null, null, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("i" + i, "content " + i, space);
+    }
+
+    private void deliver(ASIPKnowledge knowledge, SyncKB receiver) throws Exception {
+        if (knowledge == null) {
+            return;
+        }
+        this.transferred += knowledge.getNumberInformation();
+        ASIPKnowledgeConverter converter = new ASIPKnowledgeConverter(knowledge);
+        ASIPKnowledgeConverter decoded = new ASIPKnowledgeConverter(
+                converter.getSerializedKnowledge(), converter.getContent());
+        receiver.putChanges((SharkKB) decoded.getKnowledge());
+    }
+
+    @Test
+    public void reconcile_fewDifferences_onlyDifferencesSent() throws Exception {
+        SyncKB kbA = new SyncKB(new InMemoSharkKB());
+        SyncKB kbB = new SyncKB(new InMemoSharkKB());
+        for (int i = 0; i < 300; i++) {
+            addEntry(kbA, i);
+            addEntry(kbB, i);
+        }
+        Assert.assertEquals(kbA.getMerkleTree().getHash(0, 0), kbB.getMerkleTree().getHash(0, 0));
+
+        addEntry(kbA, 1000);
+        addEntry(kbB, 2000);
+        Assert.assertNotEquals(kbA.getMerkleTree().getHash(0, 0), kbB.getMerkleTree().getHash(0, 0));
+
+        SyncAntiEntropy a = new SyncAntiEntropy(kbA);
+        SyncAntiEntropy b = new SyncAntiEntropy(kbB);
+
+        String message = a.start();
+        boolean toB = true;
+        int rounds = 0;
+        while (message != null) {
+            SyncAntiEntropy.Step step = toB ? b.handle(message) : a.handle(message);
+            this.deliver(step.getKnowledge(), toB ? kbA : kbB);
+            message = step.getReply();
+            toB = !toB;
+            rounds++;
+        }
+
+        // one round per level and two for leaves
+        Assert.assertTrue(rounds <= SyncMerkleTree.DEPTH + 3);
+        Assert.assertEquals(2, this.transferred);
+        Assert.assertEquals(302, kbA.getNumberInformation());
+        Assert.assertEquals(302, kbB.getNumberInformation());
+        Assert.assertEquals(kbA.getMerkleTree().getHash(0, 0), kbB.getMerkleTree().getHash(0, 0));
+
+        // nothing left to do
+        Assert.assertNull(b.handle(a.start()).getReply());
+    }
+
+    @Test
+    public void getMerkleTree_informationEdited_treeUpdated() throws Exception {
+        SharkKB target = new InMemoSharkKB();
+        SyncKB kb = new SyncKB(target);
+        for (int i = 0; i < 10; i++) {
+            addEntry(kb, i);
+        }
+        SemanticTag topic = kb.getTopicSTSet().createSemanticTag("edited", "http://topic/edited");
+        ASIPSpace space = kb.createASIPSpace(topic, null, null, null, null, null, null,
+                ASIPSpace.DIRECTION_INOUT);
+        ASIPInformation info = kb.addInformation("before", space);
+
+        SyncMerkleTree tree = kb.getMerkleTree();
+        long before = tree.getHash(0, 0);
+        Assert.assertEquals(before, new SyncKB(target).getMerkleTree().getHash(0, 0));
+
+        info.setContent("after");
+        Assert.assertSame(tree, kb.getMerkleTree());
+        Assert.assertNotEquals(before, tree.getHash(0, 0));
+        // same as a tree built from scratch
+        Assert.assertEquals(new SyncKB(target).getMerkleTree().getHash(0, 0), tree.getHash(0, 0));
+        Assert.assertEquals(22, tree.size());
+
+        // tags implicitly created with a space are hashed, too
+        addEntry(kb, 10);
+        Assert.assertEquals(new SyncKB(target).getMerkleTree().getHash(0, 0), kb.getMerkleTree().getHash(0, 0));
+        Assert.assertEquals(24, tree.size());
+    }
+}
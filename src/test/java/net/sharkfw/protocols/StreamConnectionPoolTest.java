@@ -0,0 +1,238 @@
+package net.sharkfw.protocols;
+
+import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.J2SESharkEngine;
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.protocols.tcp.TCPConnection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+public class StreamConnectionPoolTest {
+
+    private static final String ADDRESS = "tcp://localhost:7090";
+
+    private StreamConnectionPool pool;
+
+    private static class TestConnection extends ConnectionListenerManager implements CheckedStreamConnection {
+        boolean closed = false;
+        boolean usable = true;
+        OutputStream out = new ByteArrayOutputStream();
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return this.out;
+        }
+
+        @Override
+        public void sendMessage(byte[] msg) throws IOException {
+        }
+
+        @Override
+        public String getReplyAddressString() {
+            return null;
+        }
+
+        @Override
+        public String getReceiverAddressString() {
+            return ADDRESS;
+        }
+
+        @Override
+        public String getLocalAddressString() {
+            return null;
+        }
+
+        @Override
+        public void setLocalAddressString(String localAddress) {
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            this.notifyConnectionClosed();
+        }
+
+        @Override
+        public boolean isUsable() {
+            return this.usable && !this.closed;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.pool = new StreamConnectionPool();
+        this.pool.setMaxConnectionsPerPeer(1);
+        this.pool.setWaitTimeout(100);
+    }
+
+    @Test
+    public void acquire_releasedConnection_reused() throws IOException {
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        this.pool.add(ADDRESS, con);
+        this.pool.release(con);
+
+        Assert.assertSame(con, this.pool.acquire(ADDRESS));
+        Assert.assertEquals(1, this.pool.size());
+        Assert.assertTrue(this.pool.keepOpen(con));
+    }
+
+    @Test(expected = IOException.class)
+    public void acquire_maxConnectionsInUse_fails() throws IOException {
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        this.pool.add(ADDRESS, new TestConnection());
+
+        this.pool.acquire(ADDRESS);
+    }
+
+    @Test
+    public void acquire_idleConnection_evicted() throws Exception {
+        this.pool.setIdleTimeout(10);
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        this.pool.add(ADDRESS, con);
+        this.pool.release(con);
+
+        Thread.sleep(50);
+
+        Assert.assertFalse(this.pool.keepOpen(con));
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        Assert.assertEquals(0, this.pool.size());
+    }
+
+    @Test
+    public void acquire_closedByRemotePeer_notReused() throws IOException {
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        this.pool.add(ADDRESS, con);
+        this.pool.release(con);
+
+        // e.g. session saw end of stream but didn't close the connection yet
+        con.usable = false;
+
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        Assert.assertTrue(con.closed);
+        Assert.assertEquals(0, this.pool.size());
+    }
+
+    @Test
+    public void tcpConnection_remotePeerClosed_notUsable() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            TCPConnection con = new TCPConnection("localhost", server.getLocalPort());
+            Socket remote = server.accept();
+            Assert.assertTrue(con.isUsable());
+
+            remote.close();
+            // session reading from the connection sees end of stream
+            Assert.assertEquals(-1, con.getInputStream().read());
+            Assert.assertFalse(con.isUsable());
+            con.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void release_idleConnection_evictedWithoutAcquire() throws Exception {
+        this.pool.setIdleTimeout(10);
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        this.pool.add(ADDRESS, con);
+        this.pool.release(con);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!con.closed && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertTrue(con.closed);
+        Assert.assertEquals(0, this.pool.size());
+        this.pool.closeAll();
+    }
+
+    @Test
+    public void connectionClosed_removedFromPool() throws IOException {
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        this.pool.add(ADDRESS, con);
+        this.pool.release(con);
+
+        con.close();
+
+        Assert.assertEquals(0, this.pool.size());
+        Assert.assertNull(this.pool.acquire(ADDRESS));
+    }
+
+    private ASIPOutMessage message(SharkEngine se, StreamConnection con) throws SharkKBException {
+        PeerSemanticTag alice = InMemoSharkKB.createInMemoPeerSemanticTag("Alice", "http://alice.org", ADDRESS);
+        return new ASIPOutMessage(se, con, 5, alice, alice, null, null, null, null, null);
+    }
+
+    @Test
+    public void send_onlyAcquiringMessageReleases() throws IOException, SharkKBException {
+        SharkEngine se = new J2SESharkEngine();
+        StreamConnectionPool enginePool = se.getConnectionPool();
+        enginePool.setMaxConnectionsPerPeer(1);
+        enginePool.setWaitTimeout(10);
+
+        Assert.assertNull(enginePool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        enginePool.add(ADDRESS, con);
+
+        // e.g. a response on that connection - it doesn't own it
+        this.message(se, con).expose(InMemoSharkKB.createInMemoASIPInterest());
+        try {
+            enginePool.acquire(ADDRESS);
+            Assert.fail("connection was released by a message which didn't acquire it");
+        } catch (IOException e) {
+            // still in use
+        }
+
+        ASIPOutMessage owner = this.message(se, con);
+        owner.setAcquiredFromPool(true);
+        owner.expose(InMemoSharkKB.createInMemoASIPInterest());
+        Assert.assertSame(con, enginePool.acquire(ADDRESS));
+    }
+
+    @Test
+    public void send_writeFails_connectionDiscarded() throws IOException, SharkKBException {
+        SharkEngine se = new J2SESharkEngine();
+        StreamConnectionPool enginePool = se.getConnectionPool();
+
+        Assert.assertNull(enginePool.acquire(ADDRESS));
+        TestConnection con = new TestConnection();
+        con.out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        enginePool.add(ADDRESS, con);
+
+        ASIPOutMessage message = this.message(se, con);
+        message.setAcquiredFromPool(true);
+        message.expose(InMemoSharkKB.createInMemoASIPInterest());
+
+        Assert.assertFalse(message.responseSent());
+        Assert.assertTrue(con.closed);
+        Assert.assertEquals(0, enginePool.size());
+    }
+}
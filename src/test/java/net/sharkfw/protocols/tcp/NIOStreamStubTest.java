@@ -0,0 +1,202 @@
+package net.sharkfw.protocols.tcp;
+
+import net.sharkfw.asip.ASIPInformation;
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.TestConnection;
+import net.sharkfw.asip.engine.ASIPConnection;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPOutMessage;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.J2SESharkEngine;
+import net.sharkfw.ports.KnowledgePort;
+import net.sharkfw.protocols.Protocols;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages sent to an engine with selector based tcp server are delivered
+ * to its ports.
+ */
+public class NIOStreamStubTest {
+
+    private J2SESharkEngine engineA;
+    private J2SESharkEngine engineB;
+    private PeerSemanticTag peerA;
+    private PeerSemanticTag peerB;
+
+    @Before
+    public void setUp() throws Exception {
+        this.engineA = new J2SESharkEngine();
+        this.engineB = new J2SESharkEngine();
+
+        this.peerA = InMemoSharkKB.createInMemoPeerSemanticTag("Peer A", "www.peer-a.de", "tcp://localhost:7080");
+        this.peerB = InMemoSharkKB.createInMemoPeerSemanticTag("Peer B", "www.peer-b.de", "tcp://localhost:7081");
+        this.engineA.setEngineOwnerPeer(this.peerA);
+        this.engineB.setEngineOwnerPeer(this.peerB);
+
+        this.engineB.startTCP(7081, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.engineB.stopTCP();
+    }
+
+    @Test
+    public void insert_severalConnections_allDelivered() throws Exception {
+        Assert.assertTrue(this.engineB.getProtocolStub(Protocols.TCP) instanceof NIOStreamStub);
+
+        final int messages = 5;
+        final CountDownLatch received = new CountDownLatch(messages);
+        final Set<String> contents = Collections.synchronizedSet(new HashSet<String>());
+
+        new KnowledgePort(this.engineB) {
+            @Override
+            protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
+                try {
+                    ASIPInformation info = asipKnowledge.informationSpaces().next().informations().next();
+                    contents.add(info.getContentAsString());
+                } catch (SharkKBException e) {
+                    Assert.fail(e.getMessage());
+                }
+                received.countDown();
+            }
+
+            @Override
+            protected void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) {
+            }
+        };
+
+        for (int i = 0; i < messages; i++) {
+            InMemoSharkKB kb = new InMemoSharkKB();
+            kb.addInformation("message " + i, InMemoSharkKB.createInMemoASIPInterest());
+
+            ASIPOutMessage outMessage = this.engineA.createASIPOutMessage(this.peerB.getAddresses(),
+                    this.peerA, this.peerB, null, null, null, null, 10);
+            outMessage.insert(kb);
+        }
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(messages, contents.size());
+    }
+
+    private CountDownLatch insertPort(final int messages, final Set<String> contents) {
+        final CountDownLatch received = new CountDownLatch(messages);
+        new KnowledgePort(this.engineB) {
+            @Override
+            protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
+                try {
+                    ASIPInformation info = asipKnowledge.informationSpaces().next().informations().next();
+                    contents.add(info.getContentAsString());
+                } catch (SharkKBException e) {
+                    Assert.fail(e.getMessage());
+                }
+                received.countDown();
+            }
+
+            @Override
+            protected void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) {
+            }
+        };
+        return received;
+    }
+
+    private void insert(String content) throws Exception {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        kb.addInformation(content, InMemoSharkKB.createInMemoASIPInterest());
+        ASIPOutMessage outMessage = this.engineA.createASIPOutMessage(this.peerB.getAddresses(),
+                this.peerA, this.peerB, null, null, null, null, 10);
+        outMessage.insert(kb);
+    }
+
+    @Test
+    public void insert_partialFramesOnOtherConnections_workersNotBlocked() throws Exception {
+        Set<String> contents = Collections.synchronizedSet(new HashSet<String>());
+        CountDownLatch received = this.insertPort(1, contents);
+
+        // more stalled frames than workers
+        Socket[] stalled = new Socket[3];
+        for (int i = 0; i < stalled.length; i++) {
+            stalled[i] = new Socket("localhost", 7081);
+            OutputStream os = stalled[i].getOutputStream();
+            os.write("JSONASIP1.0".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+
+        try {
+            this.insert("not blocked");
+            Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(contents.contains("not blocked"));
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void insert_contentAboveAndBelowReceiveBuffer_delivered() throws Exception {
+        Set<String> contents = Collections.synchronizedSet(new HashSet<String>());
+        CountDownLatch received = this.insertPort(2, contents);
+
+        char[] small = new char[NIOConnection.RECEIVE_BUFFER_LIMIT / 2];
+        Arrays.fill(small, 's');
+        char[] large = new char[NIOConnection.RECEIVE_BUFFER_LIMIT * 4];
+        Arrays.fill(large, 'l');
+
+        this.insert(new String(small));
+        this.insert(new String(large));
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(contents.contains(new String(small)));
+        Assert.assertTrue(contents.contains(new String(large)));
+    }
+
+    @Test
+    public void insert_contentArrivesLater_deliveredWhenComplete() throws Exception {
+        Set<String> contents = Collections.synchronizedSet(new HashSet<String>());
+        CountDownLatch received = this.insertPort(1, contents);
+
+        char[] chars = new char[64 * 1024];
+        Arrays.fill(chars, 'c');
+        String content = new String(chars);
+        InMemoSharkKB kb = new InMemoSharkKB();
+        kb.addInformation(content, InMemoSharkKB.createInMemoASIPInterest());
+
+        TestConnection capture = new TestConnection();
+        new ASIPOutMessage(this.engineA, capture, 10, this.peerA, this.peerA, this.peerB,
+                null, null, null, null).insert(kb);
+        byte[] frame = ((ByteArrayOutputStream) capture.getOutputStream()).toByteArray();
+
+        Socket socket = new Socket("localhost", 7081);
+        try {
+            OutputStream os = socket.getOutputStream();
+            os.write(frame, 0, frame.length - chars.length / 2);
+            os.flush();
+            Assert.assertFalse(received.await(300, TimeUnit.MILLISECONDS));
+
+            os.write(frame, frame.length - chars.length / 2, chars.length / 2);
+            os.flush();
+            Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(contents.contains(content));
+        } finally {
+            socket.close();
+        }
+    }
+}
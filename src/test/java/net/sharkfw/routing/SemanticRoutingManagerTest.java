@@ -0,0 +1,124 @@
+package net.sharkfw.routing;
+
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.J2SESharkEngine;
+import net.sharkfw.peer.SharkEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class SemanticRoutingManagerTest {
+
+    private final PeerSemanticTag alice = InMemoSharkKB.createInMemoPeerSemanticTag("Alice", "http://alice.org", "tcp://localhost:7070");
+    private final PeerSemanticTag bob = InMemoSharkKB.createInMemoPeerSemanticTag("Bob", "http://bob.org", "tcp://localhost:7071");
+    private final PeerSemanticTag carol = InMemoSharkKB.createInMemoPeerSemanticTag("Carol", "http://carol.org", null);
+    private final PeerSemanticTag dave = InMemoSharkKB.createInMemoPeerSemanticTag("Dave", "http://dave.org", "tcp://localhost:7073");
+    private final SemanticTag java = InMemoSharkKB.createInMemoSemanticTag("Java", "http://java.com");
+
+    private ASIPInMessage message(SharkEngine se, PeerSemanticTag physicalSender, PeerSemanticTag logicalSender,
+                                  PeerSemanticTag receiver, SemanticTag topic, long ttl) throws SharkKBException {
+        ASIPInMessage message = new ASIPInMessage(se, InMemoSharkKB.createInMemoASIPInterest(), null);
+        message.setPhysicalSender(physicalSender);
+        message.setLogicalSender(logicalSender);
+        message.setReceiverPeer(receiver);
+        message.setTopic(topic);
+        message.setTtl(ttl);
+        return message;
+    }
+
+    @Test
+    public void learn_physicalSender_becomesNextHop() throws SharkKBException {
+        SharkEngine se = new J2SESharkEngine();
+        se.setEngineOwnerPeer(this.alice);
+        SemanticRoutingManager manager = new SemanticRoutingManager(se);
+
+        // carol is reached via bob - bob dealt with java
+        manager.learn(this.message(se, this.bob, this.carol, null, this.java, 5));
+        Assert.assertSame(this.bob, manager.getNextHop(this.carol));
+        Assert.assertSame(this.bob, manager.getNextHop(this.bob));
+        Assert.assertNull(manager.getNextHop(this.dave));
+
+        manager.learn(this.message(se, this.dave, this.dave, null, null, 5));
+
+        List<PeerSemanticTag> hops = manager.selectNextHops(this.message(se, this.dave, this.dave, this.carol, null, 5));
+        Assert.assertEquals(1, hops.size());
+        Assert.assertSame(this.bob, hops.get(0));
+
+        hops = manager.selectNextHops(this.message(se, this.dave, this.dave, null, this.java, 5));
+        Assert.assertEquals(1, hops.size());
+        Assert.assertSame(this.bob, hops.get(0));
+
+        // no route back to sender
+        hops = manager.selectNextHops(this.message(se, this.bob, this.carol, null, this.java, 5));
+        Assert.assertEquals(1, hops.size());
+        Assert.assertSame(this.dave, hops.get(0));
+    }
+
+    @Test
+    public void route_duplicateOrTtlUsedUp_dropped() throws SharkKBException {
+        SharkEngine se = new J2SESharkEngine();
+        se.setEngineOwnerPeer(this.alice);
+        SemanticRoutingManager manager = new SemanticRoutingManager(se, 2, 16, 3);
+
+        Assert.assertTrue(manager.markSeen(this.message(se, this.bob, this.carol, this.dave, this.java, 5)));
+        // forwarded over another hop - still same message
+        Assert.assertFalse(manager.markSeen(this.message(se, this.dave, this.carol, this.dave, this.java, 4)));
+        Assert.assertTrue(manager.markSeen(this.message(se, this.bob, this.carol, this.dave, null, 5)));
+
+        Assert.assertEquals(0, manager.route(this.message(se, this.bob, this.bob, this.carol, this.java, 1)));
+        Assert.assertEquals(2, manager.getDropped());
+        Assert.assertEquals(0, manager.getForwarded());
+    }
+
+    @Test
+    public void markSeen_windowPassed_announcedAgain() throws Exception {
+        SharkEngine se = new J2SESharkEngine();
+        se.setEngineOwnerPeer(this.alice);
+        SemanticRoutingManager manager = new SemanticRoutingManager(se, 16, 16, 3, 50);
+
+        Assert.assertTrue(manager.markSeen(this.message(se, this.bob, this.carol, this.dave, this.java, 5)));
+        Assert.assertFalse(manager.markSeen(this.message(se, this.bob, this.carol, this.dave, this.java, 5)));
+
+        // e.g. periodic announcement - not a loop
+        Thread.sleep(100);
+        Assert.assertTrue(manager.markSeen(this.message(se, this.bob, this.carol, this.dave, this.java, 5)));
+    }
+
+    private ASIPInMessage raw(SharkEngine se, String content) throws SharkKBException {
+        // nobody has an address - no hop to forward to
+        PeerSemanticTag erin = InMemoSharkKB.createInMemoPeerSemanticTag("Erin", "http://erin.org", null);
+        ASIPInMessage message = this.message(se, erin, erin, this.carol, this.java, 5);
+        message.setCommand(ASIPMessage.ASIP_RAW);
+        message.setRaw(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        return message;
+    }
+
+    @Test
+    public void route_rawToPeer_contentIdentifiesMessage() throws Exception {
+        SharkEngine se = new J2SESharkEngine();
+        se.setEngineOwnerPeer(this.alice);
+        SemanticRoutingManager manager = new SemanticRoutingManager(se);
+
+        manager.route(this.raw(se, "round 1"));
+        // e.g. next anti entropy round - same header, other content
+        ASIPInMessage second = this.raw(se, "round 2");
+        manager.route(second);
+        Assert.assertEquals(0, manager.getDropped());
+
+        // local ports can still read content
+        byte[] content = new byte[7];
+        Assert.assertEquals(7, second.getRaw().read(content));
+        Assert.assertEquals("round 2", new String(content, StandardCharsets.UTF_8));
+
+        manager.route(this.raw(se, "round 1"));
+        Assert.assertEquals(1, manager.getDropped());
+    }
+}